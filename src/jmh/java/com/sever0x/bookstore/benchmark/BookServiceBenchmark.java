@@ -0,0 +1,77 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.GetBookRequest;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full round trips through the in-process gRPC server, the service and the embedded database.
+ * {@code cacheEnabled} compares {@code GetBook} with and without the book lookup cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookServiceBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"true", "false"})
+    private boolean cacheEnabled;
+
+    private EmbeddedBookstore bookstore;
+
+    private BookServiceGrpc.BookServiceBlockingStub stub;
+
+    private List<BookResponse> books;
+
+    @Setup
+    public void setUp() {
+        bookstore = EmbeddedBookstore.start("bookstore.cache.book.enabled=" + cacheEnabled);
+        stub = bookstore.blockingStub();
+        books = bookstore.seed(CATALOG_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        bookstore.close();
+    }
+
+    @Benchmark
+    public BookResponse getBook() {
+        // a small set of popular books receives most lookups
+        int index = ThreadLocalRandom.current().nextInt(100) < 80
+                ? ThreadLocalRandom.current().nextInt(100)
+                : ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+        return stub.getBook(GetBookRequest.newBuilder().setId(books.get(index).getId()).build());
+    }
+
+    @Benchmark
+    public GetBooksResponse getBooksPage() {
+        return stub.getBooks(GetBooksRequest.newBuilder()
+                .setPageNumber(ThreadLocalRandom.current().nextInt(CATALOG_SIZE / 20))
+                .setPageSize(20)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .build());
+    }
+
+    @Benchmark
+    public BookResponse addBook() {
+        return stub.addBook(EmbeddedBookstore.newBook(ThreadLocalRandom.current().nextInt()));
+    }
+}
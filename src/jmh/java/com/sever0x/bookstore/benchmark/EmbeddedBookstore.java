@@ -0,0 +1,118 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.GrpcBookstoreInventoryApplication;
+import com.sever0x.bookstore.proto.AddBookRequest;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts the whole application against an in-memory H2 database with an in-process gRPC server,
+ * so benchmarks exercise the real service stack without network or PostgreSQL.
+ */
+public final class EmbeddedBookstore implements AutoCloseable {
+
+    // random start keeps ISBNs unique across runs against the same server
+    private static final AtomicLong ISBN_SEQUENCE =
+            new AtomicLong(1_000_000_000_000L + ThreadLocalRandom.current().nextLong(8_000_000_000_000L));
+
+    private final ConfigurableApplicationContext context;
+
+    private final ManagedChannel channel;
+
+    private EmbeddedBookstore(ConfigurableApplicationContext context, ManagedChannel channel) {
+        this.context = context;
+        this.channel = channel;
+    }
+
+    /**
+     * Starts the application.
+     *
+     * @param properties additional {@code name=value} properties overriding the defaults
+     * @return the running bookstore
+     */
+    public static EmbeddedBookstore start(String... properties) {
+        String name = "bookstore-" + UUID.randomUUID();
+        Map<String, String> args = new LinkedHashMap<>();
+        args.put("spring.datasource.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        args.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        args.put("spring.datasource.username", "sa");
+        args.put("spring.datasource.password", "");
+        args.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        args.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        args.put("spring.main.web-application-type", "none");
+        args.put("grpc.server.port", "-1");
+        args.put("grpc.server.in-process-name", name);
+        args.put("logging.level.root", "WARN");
+        for (String property : properties) {
+            int separator = property.indexOf('=');
+            if (separator < 0) {
+                args.put(property, "");
+            } else {
+                args.put(property.substring(0, separator), property.substring(separator + 1));
+            }
+        }
+        List<String> commandLine = new ArrayList<>(args.size());
+        args.forEach((key, value) -> commandLine.add("--" + key + "=" + value));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(GrpcBookstoreInventoryApplication.class)
+                .run(commandLine.toArray(String[]::new));
+        return new EmbeddedBookstore(context, InProcessChannelBuilder.forName(args.get("grpc.server.in-process-name"))
+                .build());
+    }
+
+    public BookServiceGrpc.BookServiceBlockingStub blockingStub() {
+        return BookServiceGrpc.newBlockingStub(channel);
+    }
+
+    public BookServiceGrpc.BookServiceStub asyncStub() {
+        return BookServiceGrpc.newStub(channel);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Adds the given number of books with unique ISBNs.
+     *
+     * @return the added books
+     */
+    public List<BookResponse> seed(int count) {
+        BookServiceGrpc.BookServiceBlockingStub stub = blockingStub();
+        List<BookResponse> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(stub.addBook(newBook(i)));
+        }
+        return books;
+    }
+
+    /**
+     * Returns a valid request for a book with a unique ISBN.
+     */
+    public static AddBookRequest newBook(int seed) {
+        return AddBookRequest.newBuilder()
+                .setTitle("Title " + seed)
+                .setAuthor("Author " + (seed % 100))
+                .setIsbn(Long.toString(ISBN_SEQUENCE.getAndIncrement()))
+                .setQuantity(1_000_000)
+                .build();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+}
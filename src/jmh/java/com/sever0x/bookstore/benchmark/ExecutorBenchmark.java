@@ -0,0 +1,61 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking {@code GetBooks} calls from many concurrent clients, with service calls running on
+ * platform threads or on virtual threads limited to the connection pool size.
+ * Sample mode reports latency percentiles next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class ExecutorBenchmark {
+
+    private static final int CATALOG_SIZE = 5_000;
+
+    @Param({"platform", "virtual"})
+    private String executorMode;
+
+    private EmbeddedBookstore bookstore;
+
+    private BookServiceGrpc.BookServiceBlockingStub stub;
+
+    @Setup
+    public void setUp() {
+        bookstore = EmbeddedBookstore.start("bookstore.grpc.executor.mode=" + executorMode);
+        stub = bookstore.blockingStub();
+        bookstore.seed(CATALOG_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        bookstore.close();
+    }
+
+    @Benchmark
+    public GetBooksResponse getBooksPage() {
+        return stub.getBooks(GetBooksRequest.newBuilder()
+                .setPageNumber(ThreadLocalRandom.current().nextInt(CATALOG_SIZE / 50))
+                .setPageSize(50)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .build());
+    }
+}
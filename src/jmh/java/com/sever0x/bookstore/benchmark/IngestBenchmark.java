@@ -0,0 +1,82 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.proto.AddBookRequest;
+import com.sever0x.bookstore.proto.AddBooksResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Books inserted per second through one {@code AddBook} call per book compared to a single
+ * {@code AddBooks} stream persisting them in batched chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestBenchmark {
+
+    private static final int BOOKS = 2_000;
+
+    private EmbeddedBookstore bookstore;
+
+    private BookServiceGrpc.BookServiceBlockingStub blockingStub;
+
+    private BookServiceGrpc.BookServiceStub asyncStub;
+
+    @Setup
+    public void setUp() {
+        bookstore = EmbeddedBookstore.start();
+        blockingStub = bookstore.blockingStub();
+        asyncStub = bookstore.asyncStub();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        bookstore.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS)
+    public void addBookPerBook() {
+        for (int i = 0; i < BOOKS; i++) {
+            blockingStub.addBook(EmbeddedBookstore.newBook(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS)
+    public AddBooksResponse addBooksStream() {
+        CompletableFuture<AddBooksResponse> result = new CompletableFuture<>();
+        StreamObserver<AddBookRequest> requests = asyncStub.addBooks(new StreamObserver<>() {
+            @Override
+            public void onNext(AddBooksResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        for (int i = 0; i < BOOKS; i++) {
+            requests.onNext(EmbeddedBookstore.newBook(i));
+        }
+        requests.onCompleted();
+        return result.join();
+    }
+}
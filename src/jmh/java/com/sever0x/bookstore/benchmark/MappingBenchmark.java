@@ -0,0 +1,46 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.mapper.BookMapper;
+import com.sever0x.bookstore.mapper.BookMapperImpl;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.proto.AddBookRequest;
+import com.sever0x.bookstore.proto.BookResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the MapStruct conversions between {@link Book} and the protobuf messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappingBenchmark {
+
+    private final BookMapper mapper = new BookMapperImpl();
+
+    private final Book book = new Book(UUID.randomUUID(), "Book Title", "Book Author", "1234567890123", 10);
+
+    private final AddBookRequest request = AddBookRequest.newBuilder()
+            .setTitle("Book Title")
+            .setAuthor("Book Author")
+            .setIsbn("1234567890123")
+            .setQuantity(10)
+            .build();
+
+    @Benchmark
+    public BookResponse bookToBookResponse() {
+        return mapper.bookToBookResponse(book);
+    }
+
+    @Benchmark
+    public Book addBookRequestToBook() {
+        return mapper.addBookRequestToBook(request);
+    }
+}
@@ -0,0 +1,66 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.config.SearchIndexProperties;
+import com.sever0x.bookstore.index.BookSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link BookSearchIndex#search} over a synthetic catalog whose titles and authors are
+ * drawn from a fixed vocabulary, for a selective token, a common token and a short prefix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchIndexBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+
+    @Param({"100000", "2000000"})
+    private int books;
+
+    private BookSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new BookSearchIndex(new SearchIndexProperties(), null, null);
+        Random random = new Random(42);
+        for (int i = 0; i < books; i++) {
+            index.index(UUID.randomUUID(),
+                    word(random) + " " + word(random) + " " + word(random),
+                    word(random) + " " + word(random));
+        }
+    }
+
+    @Benchmark
+    public BookSearchIndex.SearchResult selectiveToken() {
+        return index.search("w" + (VOCABULARY - 1), false, 0, 20);
+    }
+
+    @Benchmark
+    public BookSearchIndex.SearchResult commonTokens() {
+        return index.search("w0 w1", false, 0, 20);
+    }
+
+    @Benchmark
+    public BookSearchIndex.SearchResult prefix() {
+        return index.search("w123", true, 0, 20);
+    }
+
+    // skewed so that a few words are common and most are rare
+    private static String word(Random random) {
+        double skew = random.nextDouble();
+        return "w" + (int) (VOCABULARY * skew * skew * skew);
+    }
+}
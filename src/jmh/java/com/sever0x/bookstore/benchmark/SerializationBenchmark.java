@@ -0,0 +1,59 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Protobuf serialization cost of a {@link GetBooksResponse} page depending on its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private GetBooksResponse response;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() {
+        GetBooksResponse.Builder builder = GetBooksResponse.newBuilder()
+                .setCurrentPage(0)
+                .setTotalPages(100);
+        for (int i = 0; i < pageSize; i++) {
+            builder.addBooks(BookResponse.newBuilder()
+                    .setId(UUID.randomUUID().toString())
+                    .setTitle("Book Title " + i)
+                    .setAuthor("Book Author " + i)
+                    .setIsbn(String.format("%013d", i))
+                    .setQuantity(i));
+        }
+        response = builder.build();
+        serialized = response.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return response.toByteArray();
+    }
+
+    @Benchmark
+    public GetBooksResponse parse() throws InvalidProtocolBufferException {
+        return GetBooksResponse.parseFrom(serialized);
+    }
+}
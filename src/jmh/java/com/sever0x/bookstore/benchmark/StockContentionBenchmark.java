@@ -0,0 +1,62 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.proto.AdjustQuantityRequest;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.QuantityResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads adjusting the quantity of the same book: conditional row updates compared to
+ * write-behind counters flushed in the background.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class StockContentionBenchmark {
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private EmbeddedBookstore bookstore;
+
+    private BookServiceGrpc.BookServiceBlockingStub stub;
+
+    private String hotBookId;
+
+    @Setup
+    public void setUp() {
+        bookstore = EmbeddedBookstore.start(
+                "bookstore.inventory.write-behind.enabled=" + writeBehind,
+                "bookstore.inventory.write-behind.flush-interval=100ms");
+        stub = bookstore.blockingStub();
+        hotBookId = bookstore.seed(1).get(0).getId();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        bookstore.close();
+    }
+
+    @Benchmark
+    public QuantityResponse adjustHotBook() {
+        // balanced increments and decrements keep the quantity far from zero
+        int delta = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+        return stub.adjustQuantity(AdjustQuantityRequest.newBuilder()
+                .setId(hotBookId)
+                .setDelta(delta)
+                .build());
+    }
+}
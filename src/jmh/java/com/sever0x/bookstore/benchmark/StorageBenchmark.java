@@ -0,0 +1,108 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.proto.AdjustQuantityRequest;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.GetBookRequest;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import com.sever0x.bookstore.proto.QuantityResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the throughput of the service on the JPA backend over the in-memory database with the
+ * embedded storage engine, with and without forcing each change to disk. The book lookup cache is
+ * disabled, so every call reaches the storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class StorageBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"jpa", "embedded", "embedded-nosync"})
+    private String storage;
+
+    private Path directory;
+
+    private EmbeddedBookstore bookstore;
+
+    private BookServiceGrpc.BookServiceBlockingStub stub;
+
+    private List<BookResponse> books;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("storage-benchmark");
+        bookstore = storage.equals("jpa")
+                ? EmbeddedBookstore.start("bookstore.cache.book.enabled=false")
+                : EmbeddedBookstore.start("bookstore.cache.book.enabled=false",
+                "spring.profiles.active=embedded",
+                "bookstore.storage.embedded.directory=" + directory,
+                "bookstore.storage.embedded.sync=" + storage.equals("embedded"));
+        stub = bookstore.blockingStub();
+        books = bookstore.seed(CATALOG_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException, IOException {
+        bookstore.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public BookResponse getBook() {
+        return stub.getBook(GetBookRequest.newBuilder().setId(randomBook().getId()).build());
+    }
+
+    @Benchmark
+    public GetBooksResponse getBooksWindow() {
+        return stub.getBooks(GetBooksRequest.newBuilder()
+                .setPageSize(20)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .setKeyset(true)
+                .build());
+    }
+
+    @Benchmark
+    public QuantityResponse adjustQuantity() {
+        return stub.adjustQuantity(AdjustQuantityRequest.newBuilder()
+                .setId(randomBook().getId())
+                .setDelta(ThreadLocalRandom.current().nextBoolean() ? 1 : -1)
+                .build());
+    }
+
+    @Benchmark
+    public BookResponse addBook() {
+        return stub.addBook(EmbeddedBookstore.newBook(ThreadLocalRandom.current().nextInt()));
+    }
+
+    private BookResponse randomBook() {
+        return books.get(ThreadLocalRandom.current().nextInt(CATALOG_SIZE));
+    }
+}
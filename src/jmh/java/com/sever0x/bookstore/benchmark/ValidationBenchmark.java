@@ -0,0 +1,32 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.validation.BookValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link BookValidator#validateRequest} for valid and invalid input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValidationBenchmark {
+
+    private final BookValidator validator = new BookValidator();
+
+    @Benchmark
+    public BookValidator.ValidationResult validRequest() {
+        return validator.validateRequest("Book Title", "Book Author", "1234567890123", 10);
+    }
+
+    @Benchmark
+    public BookValidator.ValidationResult invalidRequest() {
+        return validator.validateRequest("", "Book Author", "123456789012X", -1);
+    }
+}
@@ -0,0 +1,101 @@
+package com.sever0x.bookstore.benchmark;
+
+import com.sever0x.bookstore.snapshot.CatalogSnapshotWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time until an embedded bookstore is ready to serve calls when it loads its indexes
+ * from the database and when it warms up from a catalog snapshot.
+ * <p>
+ * Options, given as {@code --name=value}: {@code books} is the catalog size (1,000,000 by default),
+ * {@code runs} the number of starts per mode (3), {@code property} an application property of
+ * the bookstore, repeatable. The catalog is seeded with SQL straight into the embedded database.
+ */
+public final class WarmStartComparison {
+
+    private static final int SEED_BATCH = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int books = 1_000_000;
+        int runs = 3;
+        List<String> properties = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--books=")) {
+                books = Integer.parseInt(arg.substring("--books=".length()));
+            } else if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (arg.startsWith("--property=")) {
+                properties.add(arg.substring("--property=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option '" + arg + "'");
+            }
+        }
+
+        Path snapshot = Files.createTempDirectory("bookstore-snapshot").resolve("catalog.snapshot");
+        // the database outlives each bookstore, so every start finds the seeded catalog
+        properties.add(0, "spring.datasource.url=jdbc:h2:mem:warm-start-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.add(1, "spring.jpa.hibernate.ddl-auto=update");
+        properties.add(2, "bookstore.snapshot.path=" + snapshot);
+        properties.add(3, "bookstore.snapshot.write-on-shutdown=false");
+        // each warm bookstore is closed while it still verifies the snapshot in the background
+        properties.add(4, "logging.level.com.sever0x.bookstore.snapshot=ERROR");
+
+        System.out.printf("Seeding %d books...%n", books);
+        try (EmbeddedBookstore bookstore = start(properties, false)) {
+            seed(bookstore.getBean(DataSource.class), books);
+        }
+        try (EmbeddedBookstore bookstore = start(properties, true)) {
+            bookstore.getBean(CatalogSnapshotWriter.class).write();
+        }
+        System.out.printf("Snapshot of %d MB%n", Files.size(snapshot) / (1024 * 1024));
+
+        long[] cold = new long[runs];
+        long[] warm = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            cold[run] = timeToReady(properties, false);
+            warm[run] = timeToReady(properties, true);
+        }
+        System.out.printf("%n%-10s %10s %10s%n", "start", "best ms", "median ms");
+        printRow("database", cold);
+        printRow("snapshot", warm);
+    }
+
+    private static EmbeddedBookstore start(List<String> properties, boolean snapshot) {
+        List<String> all = new ArrayList<>(properties);
+        all.add("bookstore.snapshot.enabled=" + snapshot);
+        return EmbeddedBookstore.start(all.toArray(String[]::new));
+    }
+
+    private static long timeToReady(List<String> properties, boolean snapshot) throws InterruptedException {
+        long start = System.nanoTime();
+        EmbeddedBookstore bookstore = start(properties, snapshot);
+        long elapsed = System.nanoTime() - start;
+        bookstore.close();
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    private static void seed(DataSource dataSource, int books) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (int from = 1; from <= books; from += SEED_BATCH) {
+            jdbcTemplate.update("""
+                    insert into books (id, title, author, isbn, quantity)
+                    select random_uuid(), 'Title ' || x, 'Author ' || mod(x, 10000), cast(9780000000000 + x as varchar), 100
+                    from system_range(?, ?)""", from, Math.min(books, from + SEED_BATCH - 1));
+        }
+    }
+
+    private static void printRow(String name, long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-10s %10d %10d%n", name, sorted[0], sorted[sorted.length / 2]);
+    }
+}
@@ -0,0 +1,252 @@
+package com.sever0x.bookstore.loadtest;
+
+import com.sever0x.bookstore.benchmark.EmbeddedBookstore;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.DeleteBookRequest;
+import com.sever0x.bookstore.proto.GetBookRequest;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.UpdateBookRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives {@code BookService} with a configurable mix of operations and reports latency percentiles.
+ * <p>
+ * Keys are chosen with Zipfian popularity over a seeded catalog. Latency is measured from the
+ * <em>intended</em> start of a call rather than its actual start: in the open model calls are
+ * scheduled at a fixed rate, in the closed model paced clients follow a fixed schedule. A stalled
+ * server therefore shows up in the percentiles instead of silently lowering the request rate
+ * (coordinated omission). Unpaced closed-model clients report plain service time.
+ * <p>
+ * By default the generator starts the application in-process on an embedded database, so it needs
+ * no network. See {@link LoadOptions} for the options.
+ */
+public final class LoadGenerator {
+
+    private final LoadOptions options;
+
+    private final BookServiceGrpc.BookServiceBlockingStub stub;
+
+    private final List<BookResponse> catalog;
+
+    private final ZipfianGenerator keys;
+
+    private final Queue<String> addedIds = new ConcurrentLinkedQueue<>();
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    private volatile long measureFromNanos;
+
+    private LoadGenerator(LoadOptions options, BookServiceGrpc.BookServiceBlockingStub stub,
+                          List<BookResponse> catalog) {
+        this.options = options;
+        this.stub = stub;
+        this.catalog = catalog;
+        this.keys = new ZipfianGenerator(catalog.size(), options.zipf());
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        System.out.printf("mix=%s model=%s clients=%d rate=%.0f/s duration=%s warmup=%s catalog=%d zipf=%.2f target=%s%n",
+                options.mix(), options.model(), options.clients(), options.rate(), options.duration(),
+                options.warmup(), options.catalog(), options.zipf(), options.target());
+
+        EmbeddedBookstore bookstore = null;
+        ManagedChannel channel = null;
+        BookServiceGrpc.BookServiceBlockingStub stub;
+        if ("in-process".equals(options.target())) {
+            bookstore = EmbeddedBookstore.start(options.properties().toArray(String[]::new));
+            stub = bookstore.blockingStub();
+        } else {
+            channel = ManagedChannelBuilder.forTarget(options.target()).usePlaintext().build();
+            stub = BookServiceGrpc.newBlockingStub(channel);
+        }
+
+        try {
+            System.out.printf("Seeding %d books...%n", options.catalog());
+            List<BookResponse> catalog = new ArrayList<>(options.catalog());
+            for (int i = 0; i < options.catalog(); i++) {
+                catalog.add(stub.addBook(EmbeddedBookstore.newBook(i)));
+            }
+            new LoadGenerator(options, stub, catalog).run();
+        } finally {
+            if (channel != null) {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+            if (bookstore != null) {
+                bookstore.close();
+            }
+        }
+    }
+
+    private void run() throws InterruptedException {
+        long start = System.nanoTime();
+        measureFromNanos = start + options.warmup().toNanos();
+        long end = measureFromNanos + options.duration().toNanos();
+
+        if (options.openModel()) {
+            runOpen(start, end);
+        } else {
+            runClosed(start, end);
+        }
+        report();
+    }
+
+    private void runOpen(long start, long end) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long intended = start; intended < end; intended += interval) {
+                parkUntil(intended);
+                long scheduled = intended;
+                executor.execute(() -> execute(options.mix().next(), scheduled));
+            }
+        }
+    }
+
+    private void runClosed(long start, long end) throws InterruptedException {
+        long interval = options.rate() > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) * options.clients() / options.rate())
+                : 0;
+        ExecutorService clients = Executors.newFixedThreadPool(options.clients());
+        for (int i = 0; i < options.clients(); i++) {
+            // spread paced clients over one interval so they do not fire in lockstep
+            long first = start + (interval * i) / options.clients();
+            clients.execute(() -> {
+                long next = first;
+                while (System.nanoTime() < end) {
+                    long intended;
+                    if (interval > 0) {
+                        parkUntil(next);
+                        intended = next;
+                        next += interval;
+                    } else {
+                        intended = System.nanoTime();
+                    }
+                    execute(options.mix().next(), intended);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(end - start + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+    }
+
+    private void execute(Operation operation, long intendedNanos) {
+        Operation executed = operation;
+        boolean failed = false;
+        try {
+            executed = call(operation);
+        } catch (StatusRuntimeException e) {
+            failed = true;
+        }
+        if (intendedNanos >= measureFromNanos) {
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+            latencies.get(executed).recordValue(Math.max(1, latencyMicros));
+            if (failed) {
+                errors.get(executed).increment();
+            }
+        }
+    }
+
+    /**
+     * Issues the call of the operation.
+     *
+     * @return the operation actually executed, deletes fall back to adds until books were added
+     */
+    private Operation call(Operation operation) {
+        switch (operation) {
+            case ADD -> addedIds.offer(stub.addBook(EmbeddedBookstore.newBook(ThreadLocalRandom.current().nextInt()))
+                    .getId());
+            case GET -> stub.getBook(GetBookRequest.newBuilder()
+                    .setId(catalog.get(keys.next()).getId())
+                    .build());
+            case LIST -> stub.getBooks(GetBooksRequest.newBuilder()
+                    .setPageNumber(keys.next() / options.pageSize())
+                    .setPageSize(options.pageSize())
+                    .setSortBy("title")
+                    .setDirection("ASC")
+                    .build());
+            case UPDATE -> {
+                BookResponse book = catalog.get(keys.next());
+                stub.updateBook(UpdateBookRequest.newBuilder()
+                        .setId(book.getId())
+                        .setTitle(book.getTitle())
+                        .setAuthor(book.getAuthor())
+                        .setIsbn(book.getIsbn())
+                        .setQuantity(ThreadLocalRandom.current().nextInt(1_000))
+                        .build());
+            }
+            case DELETE -> {
+                String id = addedIds.poll();
+                if (id == null) {
+                    return call(Operation.ADD);
+                }
+                stub.deleteBook(DeleteBookRequest.newBuilder().setId(id).build());
+            }
+        }
+        return operation;
+    }
+
+    private void report() {
+        double seconds = options.duration().toNanos() / 1e9;
+        long total = 0;
+        Histogram all = new Histogram(3);
+        System.out.printf("%n%-8s %10s %8s %10s %10s %10s %10s %10s%n",
+                "op", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            all.add(histogram);
+            total += histogram.getTotalCount();
+            printRow(operation.name().toLowerCase(Locale.ROOT), histogram, errors.get(operation).sum(), seconds);
+        }
+        long totalErrors = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        if (total > 0) {
+            printRow("total", all, totalErrors, seconds);
+        }
+    }
+
+    private static void printRow(String name, Histogram histogram, long errors, double seconds) {
+        System.out.printf("%-8s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                name,
+                histogram.getTotalCount(),
+                errors,
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.sever0x.bookstore.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line options of {@link LoadGenerator}, given as {@code --name=value}.
+ *
+ * @param mix        weights of the operations, e.g. {@code get:70,list:15,add:5,update:5,delete:5}
+ * @param model      {@code closed}: a fixed number of clients issue calls back to back, optionally paced;
+ *                   {@code open}: calls arrive at a fixed rate regardless of how fast they complete
+ * @param clients    number of concurrent clients in the closed model
+ * @param rate       calls per second in the open model, or in total over all paced clients in the closed model
+ *                   (zero for unpaced clients)
+ * @param duration   measured duration
+ * @param warmup     duration of the warmup, whose calls are not reported
+ * @param catalog    number of books seeded before the run
+ * @param zipf       Zipfian exponent of the key popularity, in {@code (0, 1)}
+ * @param pageSize   page size of {@code GetBooks} calls
+ * @param target     {@code in-process} to start an embedded bookstore, or {@code host:port} of a running server
+ * @param properties application properties of the embedded bookstore
+ */
+record LoadOptions(OperationMix mix, String model, int clients, double rate, Duration duration, Duration warmup,
+                   int catalog, double zipf, int pageSize, String target, List<String> properties) {
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>(Map.of(
+                "mix", "get:70,list:15,add:5,update:5,delete:5",
+                "model", "closed",
+                "clients", "16",
+                "rate", "0",
+                "duration", "30s",
+                "warmup", "5s",
+                "catalog", "10000",
+                "zipf", "0.99",
+                "page-size", "20",
+                "target", "in-process"
+        ));
+        List<String> properties = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got '" + arg + "'");
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if ("property".equals(name)) {
+                properties.add(value);
+            } else if (values.containsKey(name)) {
+                values.put(name, value);
+            } else {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+
+        String model = values.get("model").toLowerCase(Locale.ROOT);
+        double rate = Double.parseDouble(values.get("rate"));
+        if (!model.equals("closed") && !model.equals("open")) {
+            throw new IllegalArgumentException("Model must be closed or open: " + model);
+        }
+        if (model.equals("open") && rate <= 0) {
+            throw new IllegalArgumentException("The open model needs a positive --rate");
+        }
+        return new LoadOptions(
+                OperationMix.parse(values.get("mix")),
+                model,
+                Integer.parseInt(values.get("clients")),
+                rate,
+                parseDuration(values.get("duration")),
+                parseDuration(values.get("warmup")),
+                Integer.parseInt(values.get("catalog")),
+                Double.parseDouble(values.get("zipf")),
+                Integer.parseInt(values.get("page-size")),
+                values.get("target"),
+                List.copyOf(properties)
+        );
+    }
+
+    boolean openModel() {
+        return model.equals("open");
+    }
+
+    private static Duration parseDuration(String value) {
+        return Duration.parse("PT" + value.toUpperCase(Locale.ROOT));
+    }
+}
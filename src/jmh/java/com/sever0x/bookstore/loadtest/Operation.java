@@ -0,0 +1,12 @@
+package com.sever0x.bookstore.loadtest;
+
+/**
+ * Operations the load generator can issue against {@code BookService}.
+ */
+enum Operation {
+    ADD,
+    GET,
+    LIST,
+    UPDATE,
+    DELETE
+}
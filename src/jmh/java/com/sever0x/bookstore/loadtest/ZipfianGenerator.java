@@ -0,0 +1,55 @@
+package com.sever0x.bookstore.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws indexes in {@code [0, items)} following a Zipfian distribution, so that a few low indexes
+ * are very popular and the rest form a long tail. Uses the constant-time method of Gray et al.,
+ * "Quickly Generating Billion-Record Synthetic Databases", with the zeta constant computed once.
+ */
+class ZipfianGenerator {
+
+    private final int items;
+
+    private final double theta;
+
+    private final double alpha;
+
+    private final double zetaN;
+
+    private final double eta;
+
+    private final double halfPowTheta;
+
+    ZipfianGenerator(int items, double theta) {
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("Zipfian exponent must be in (0, 1): " + theta);
+        }
+        this.items = items;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetaN = zeta(items, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        this.halfPowTheta = 1 + Math.pow(0.5, theta);
+    }
+
+    int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < halfPowTheta) {
+            return Math.min(1, items - 1);
+        }
+        return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
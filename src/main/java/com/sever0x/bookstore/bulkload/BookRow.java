@@ -0,0 +1,9 @@
+package com.sever0x.bookstore.bulkload;
+
+import java.util.UUID;
+
+/**
+ * A validated book to upsert. The identifier is used only if no book with the ISBN exists yet.
+ */
+record BookRow(UUID id, String title, String author, String isbn, int quantity) {
+}
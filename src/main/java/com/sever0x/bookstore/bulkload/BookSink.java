@@ -0,0 +1,31 @@
+package com.sever0x.bookstore.bulkload;
+
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Upserts books into the {@code books} table by ISBN: books with a new ISBN are inserted with
+ * version 1, books whose ISBN exists replace its title, author and quantity and increment its
+ * version, unless nothing changed. Existing books keep their identifiers.
+ */
+interface BookSink {
+
+    /**
+     * Upserts the books within the transaction of the connection, without committing it.
+     *
+     * @param books books with distinct ISBNs, sorted by ISBN so that concurrent chunks lock
+     *              existing rows in the same order and cannot deadlock
+     * @return the number of inserted or changed books
+     */
+    int upsert(Connection connection, List<BookRow> books) throws SQLException;
+
+    /**
+     * @return the COPY based sink for PostgreSQL, or the {@code MERGE} based sink for other databases
+     */
+    static BookSink of(Connection connection) throws SQLException {
+        return connection.isWrapperFor(PGConnection.class) ? new CopyBookSink() : new MergeBookSink();
+    }
+}
@@ -0,0 +1,32 @@
+package com.sever0x.bookstore.bulkload;
+
+import com.sever0x.bookstore.validation.BookValidator;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Command loading a supplier catalog file into the database, see {@link BulkLoader}. It runs
+ * without the service, e.g. {@code ./gradlew bulkLoad -PbulkLoadArgs="--file=catalog.csv"}.
+ */
+public final class BulkLoad {
+
+    private BulkLoad() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        BulkLoadOptions options = BulkLoadOptions.parse(args);
+        System.out.printf("file=%s format=%s parallelism=%d chunk-size=%d reject-file=%s%n", options.file(),
+                options.format(), options.parallelism(), options.chunkSize(), options.rejectFile());
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(options.url(), options.username(), options.password());
+        BulkLoadReport report = new BulkLoader(dataSource, new BookValidator(), options).load(progress ->
+                System.out.printf("%5.1f%% %,12d records %,10d rejected %,12.0f rows/s%n", 100 * progress.completion(),
+                        progress.records(), progress.rejected(), progress.rowsPerSecond()));
+
+        System.out.printf("%nLoaded %,d records in %.1f s (%,.0f rows/s): %,d inserted or changed, %,d unchanged, %,d rejected%n",
+                report.records(), report.elapsed().toMillis() / 1000.0, report.rowsPerSecond(), report.changed(),
+                report.records() - report.rejected() - report.changed(), report.rejected());
+        if (report.rejected() > 0) {
+            System.out.printf("Rejected records are in %s%n", options.rejectFile());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.sever0x.bookstore.bulkload;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line options of {@link BulkLoad}, given as {@code --name=value}.
+ *
+ * @param file             the CSV or JSON Lines file to load
+ * @param format           the format of the file, detected from its extension unless given
+ * @param url              JDBC URL of the database, {@code DB_URL} by default
+ * @param username         database user, {@code DB_USERNAME} by default
+ * @param password         database password, {@code DB_PASSWORD} by default
+ * @param parallelism      number of chunks parsed and loaded at the same time, each on its own connection
+ * @param chunkSize        bytes of the file per chunk, each chunk is loaded in one transaction
+ * @param rejectFile       file receiving the records that failed to parse or validate
+ * @param progressInterval interval between progress reports
+ */
+public record BulkLoadOptions(Path file, RecordFormat format, String url, String username, String password,
+                              int parallelism, long chunkSize, Path rejectFile, Duration progressInterval) {
+
+    public BulkLoadOptions {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+    }
+
+    public static BulkLoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>(Map.of(
+                "format", "auto",
+                "url", env("DB_URL"),
+                "username", env("DB_USERNAME"),
+                "password", env("DB_PASSWORD"),
+                "parallelism", String.valueOf(Runtime.getRuntime().availableProcessors()),
+                "chunk-size", "8m",
+                "reject-file", "",
+                "progress-interval", "5s"
+        ));
+        values.put("file", "");
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got '" + arg + "'");
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            if (!values.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            }
+            values.put(name, arg.substring(arg.indexOf('=') + 1));
+        }
+        if (values.get("file").isEmpty()) {
+            throw new IllegalArgumentException("The file to load is given with --file");
+        }
+        if (values.get("url").isEmpty()) {
+            throw new IllegalArgumentException("The database is given with --url or DB_URL");
+        }
+
+        Path file = Path.of(values.get("file"));
+        String format = values.get("format").toLowerCase(Locale.ROOT);
+        String rejectFile = values.get("reject-file");
+        return new BulkLoadOptions(
+                file,
+                format.equals("auto") ? RecordFormat.of(file) : RecordFormat.valueOf(format.toUpperCase(Locale.ROOT)),
+                values.get("url"),
+                values.get("username"),
+                values.get("password"),
+                Integer.parseInt(values.get("parallelism")),
+                parseSize(values.get("chunk-size")),
+                rejectFile.isEmpty() ? Path.of(file + ".rejects") : Path.of(rejectFile),
+                Duration.parse("PT" + values.get("progress-interval").toUpperCase(Locale.ROOT))
+        );
+    }
+
+    private static String env(String name) {
+        String value = System.getenv(name);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * @param value a number of bytes, optionally with the suffix {@code k}, {@code m} or {@code g}
+     */
+    private static long parseSize(String value) {
+        String size = value.toLowerCase(Locale.ROOT);
+        long unit = switch (size.charAt(size.length() - 1)) {
+            case 'k' -> 1L << 10;
+            case 'm' -> 1L << 20;
+            case 'g' -> 1L << 30;
+            default -> 1;
+        };
+        return Long.parseLong(unit == 1 ? size : size.substring(0, size.length() - 1)) * unit;
+    }
+}
@@ -0,0 +1,29 @@
+package com.sever0x.bookstore.bulkload;
+
+import java.time.Duration;
+
+/**
+ * Progress or outcome of a {@link BulkLoader} run.
+ *
+ * @param bytes      bytes of the file loaded so far
+ * @param totalBytes size of the file
+ * @param records    records read, excluding the header and blank lines
+ * @param rejected   records written to the reject file
+ * @param changed    books inserted or changed; the other valid records matched their books already
+ *                   or were superseded by a later record of the same ISBN
+ * @param elapsed    time since the load started
+ */
+public record BulkLoadReport(long bytes, long totalBytes, long records, long rejected, long changed,
+                             Duration elapsed) {
+
+    public double rowsPerSecond() {
+        return elapsed.isZero() ? 0 : records * 1e9 / elapsed.toNanos();
+    }
+
+    /**
+     * @return the share of the file loaded so far, from 0 to 1
+     */
+    public double completion() {
+        return totalBytes == 0 ? 1 : (double) bytes / totalBytes;
+    }
+}
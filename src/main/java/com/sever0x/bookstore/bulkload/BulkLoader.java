@@ -0,0 +1,442 @@
+package com.sever0x.bookstore.bulkload;
+
+import com.sever0x.bookstore.validation.BookValidator;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * Loads a supplier catalog file into the {@code books} table, bypassing the service.
+ * <p>
+ * The file is split at line breaks into chunks of about {@code chunkSize} bytes. Each chunk is
+ * memory-mapped, parsed and validated with the rules of {@link BookValidator} on a worker thread,
+ * and its valid records are upserted by ISBN in one transaction through a {@link BookSink}, on
+ * PostgreSQL with the COPY protocol. Records that fail to parse or validate are written to the
+ * reject file as the line number, the reasons and the line, separated by tabs. Chunks are
+ * committed independently, so a failed load leaves the chunks loaded before it committed; loading
+ * the file again is safe as records are upserted.
+ * <p>
+ * When an ISBN has several valid records, the last one in the file wins. Within a chunk the later
+ * record replaces the earlier one before the upsert. Chunks commit in any order, so a file of
+ * several chunks is first read once in parallel to collect the valid ISBNs of each chunk, and a
+ * chunk skips the records of ISBNs that a later chunk also has.
+ * <p>
+ * Books are written directly to the database, so caches and indexes of a running service and an
+ * existing catalog snapshot do not reflect the load until the service restarts without the snapshot.
+ */
+public class BulkLoader {
+
+    /**
+     * Length of the text columns of {@code books}.
+     */
+    private static final int MAX_LENGTH = 255;
+
+    private final DataSource dataSource;
+
+    private final BookValidator validator;
+
+    private final BulkLoadOptions options;
+
+    public BulkLoader(DataSource dataSource, BookValidator validator, BulkLoadOptions options) {
+        this.dataSource = dataSource;
+        this.validator = validator;
+        this.options = options;
+    }
+
+    /**
+     * Loads the file of the options.
+     *
+     * @param progress receives a report every {@code progressInterval}
+     * @return the report of the completed load
+     * @throws IllegalStateException if a chunk failed to load, with the failure as cause
+     */
+    public BulkLoadReport load(Consumer<BulkLoadReport> progress) throws IOException, SQLException, InterruptedException {
+        long start = System.nanoTime();
+        Files.deleteIfExists(options.rejectFile());
+        try (FileChannel channel = FileChannel.open(options.file(), StandardOpenOption.READ);
+             ConnectionPool connections = new ConnectionPool(dataSource, options.parallelism())) {
+            long size = channel.size();
+            String firstLine = size == 0 ? null : readLine(channel, 0);
+            RecordParser parser = RecordParser.of(options.format(), firstLine);
+            long dataStart = parser.skipsFirstLine() ? lineEnd(channel, 0) : 0;
+
+            ExecutorService workers = Executors.newFixedThreadPool(options.parallelism());
+            BufferedWriter rejects = null;
+            try {
+                List<Chunk> chunks = chunks(channel, dataStart);
+                List<long[]> superseded = superseded(channel, chunks, parser, workers);
+                int next = 0;
+                Deque<Future<ChunkResult>> pending = new ArrayDeque<>();
+                long line = dataStart > 0 ? 1 : 0;
+                long bytes = dataStart;
+                long records = 0;
+                long rejected = 0;
+                long changed = 0;
+                long nextProgress = start + options.progressInterval().toNanos();
+                while (next < chunks.size() || !pending.isEmpty()) {
+                    // a bounded number of chunks ahead keeps the parsed records of the file out of memory
+                    while (next < chunks.size() && pending.size() < 2 * options.parallelism()) {
+                        Chunk chunk = chunks.get(next);
+                        long[] supersededIsbns = superseded.get(next++);
+                        pending.add(workers.submit(() -> loadChunk(channel, chunk, supersededIsbns, parser, connections)));
+                    }
+                    ChunkResult result;
+                    try {
+                        result = pending.remove().get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Loading the lines from " + (line + 1) + " failed, "
+                                + "earlier chunks may be committed and loading again is safe", e.getCause());
+                    }
+                    for (Reject reject : result.rejects()) {
+                        if (rejects == null) {
+                            rejects = Files.newBufferedWriter(options.rejectFile(), StandardCharsets.UTF_8);
+                        }
+                        rejects.write(line + reject.line() + "\t" + reject.reasons() + "\t" + reject.text());
+                        rejects.newLine();
+                    }
+                    line += result.lines();
+                    bytes += result.chunk().end() - result.chunk().start();
+                    records += result.records();
+                    rejected += result.rejects().size();
+                    changed += result.changed();
+
+                    long now = System.nanoTime();
+                    if (now >= nextProgress && (next < chunks.size() || !pending.isEmpty())) {
+                        progress.accept(new BulkLoadReport(bytes, size, records, rejected, changed,
+                                Duration.ofNanos(now - start)));
+                        nextProgress = now + options.progressInterval().toNanos();
+                    }
+                }
+                return new BulkLoadReport(bytes, size, records, rejected, changed,
+                        Duration.ofNanos(System.nanoTime() - start));
+            } finally {
+                workers.shutdownNow();
+                workers.awaitTermination(1, TimeUnit.MINUTES);
+                if (rejects != null) {
+                    rejects.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param superseded the sorted ISBNs, as numbers, that a later chunk has a valid record of
+     */
+    private ChunkResult loadChunk(FileChannel channel, Chunk chunk, long[] superseded, RecordParser parser,
+                                  ConnectionPool connections) throws IOException, SQLException, InterruptedException {
+        Map<String, BookRow> books = new HashMap<>();
+        List<Reject> rejects = new ArrayList<>();
+        LineCount count = readLines(channel, chunk, (text, line) -> {
+            BookRow book;
+            try {
+                book = validate(parser.parse(text));
+            } catch (IllegalArgumentException e) {
+                rejects.add(new Reject(line, e.getMessage(), text));
+                return;
+            }
+            if (Arrays.binarySearch(superseded, Long.parseLong(book.isbn())) < 0) {
+                // the last record of an ISBN wins, a statement cannot upsert a row twice
+                books.put(book.isbn(), book);
+            }
+        });
+
+        List<BookRow> sorted = new ArrayList<>(books.values());
+        sorted.sort(Comparator.comparing(BookRow::isbn));
+        int changed = sorted.isEmpty() ? 0 : connections.upsert(sorted);
+        return new ChunkResult(chunk, count.lines(), count.records(), changed, rejects);
+    }
+
+    /**
+     * Reads the valid ISBNs of every chunk in parallel to find the records that a later chunk
+     * replaces. A single chunk needs no reading ahead.
+     *
+     * @return for each chunk the sorted ISBNs, as numbers, that a later chunk has a valid record of
+     */
+    private List<long[]> superseded(FileChannel channel, List<Chunk> chunks, RecordParser parser,
+                                    ExecutorService workers) throws InterruptedException {
+        if (chunks.size() < 2) {
+            return chunks.stream().map(chunk -> new long[0]).toList();
+        }
+        List<Future<long[]>> reads = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            reads.add(workers.submit(() -> isbns(channel, chunk, parser)));
+        }
+        List<long[]> isbns = new ArrayList<>();
+        for (Future<long[]> read : reads) {
+            try {
+                isbns.add(read.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Reading the ISBNs of the file failed, nothing was loaded", e.getCause());
+            }
+        }
+        return superseded(isbns);
+    }
+
+    /**
+     * @return the distinct ISBNs of the valid records of the chunk, as numbers, sorted
+     */
+    private long[] isbns(FileChannel channel, Chunk chunk, RecordParser parser) throws IOException {
+        LongStream.Builder isbns = LongStream.builder();
+        readLines(channel, chunk, (text, line) -> {
+            try {
+                isbns.add(Long.parseLong(validate(parser.parse(text)).isbn()));
+            } catch (IllegalArgumentException e) {
+                // rejected when the chunk is loaded
+            }
+        });
+        return isbns.build().sorted().distinct().toArray();
+    }
+
+    /**
+     * Merges the ISBNs of the chunks in ISBN order. Of the chunks having an ISBN the last one is
+     * taken first, so any further chunk taken with the same ISBN has an earlier record of it.
+     *
+     * @param isbns the distinct ISBNs of each chunk, sorted
+     * @return for each chunk the sorted ISBNs that a later chunk also has
+     */
+    static List<long[]> superseded(List<long[]> isbns) {
+        int[] next = new int[isbns.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Comparator
+                .<Integer>comparingLong(chunk -> isbns.get(chunk)[next[chunk]])
+                .thenComparing(Comparator.reverseOrder()));
+        List<LongStream.Builder> superseded = new ArrayList<>();
+        for (int chunk = 0; chunk < isbns.size(); chunk++) {
+            superseded.add(LongStream.builder());
+            if (isbns.get(chunk).length > 0) {
+                heads.add(chunk);
+            }
+        }
+        long previous = -1;
+        while (!heads.isEmpty()) {
+            int chunk = heads.remove();
+            long isbn = isbns.get(chunk)[next[chunk]++];
+            if (isbn == previous) {
+                superseded.get(chunk).add(isbn);
+            }
+            previous = isbn;
+            if (next[chunk] < isbns.get(chunk).length) {
+                heads.add(chunk);
+            }
+        }
+        return superseded.stream().map(chunk -> chunk.build().toArray()).toList();
+    }
+
+    /**
+     * Memory-maps the chunk and passes each line that is not blank to the consumer with its line
+     * number within the chunk, starting at 1.
+     */
+    private static LineCount readLines(FileChannel channel, Chunk chunk, ObjIntConsumer<String> consumer)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.end() - chunk.start());
+        int lines = 0;
+        int records = 0;
+        byte[] bytes = new byte[1024];
+        int limit = buffer.limit();
+        int lineStart = 0;
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && buffer.get(i) != '\n' || i == limit && lineStart == limit) {
+                continue;
+            }
+            int length = i - lineStart;
+            if (length > 0 && buffer.get(lineStart + length - 1) == '\r') {
+                length--;
+            }
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            buffer.get(lineStart, bytes, 0, length);
+            String text = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            lineStart = i + 1;
+            lines++;
+            if (text.isBlank()) {
+                continue;
+            }
+
+            records++;
+            consumer.accept(text, lines);
+        }
+        return new LineCount(lines, records);
+    }
+
+    /**
+     * @throws IllegalArgumentException with the reasons if the record is invalid
+     */
+    private BookRow validate(SupplierRecord record) {
+        List<String> errors = new ArrayList<>();
+        Integer quantity = null;
+        try {
+            quantity = record.quantity() == null ? null : Integer.valueOf(record.quantity().trim());
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        BookValidator.ValidationResult result = validator.validateRequest(record.title(), record.author(),
+                record.isbn(), quantity == null ? 0 : quantity);
+        errors.addAll(result.getErrors());
+        if (quantity == null) {
+            errors.add("Quantity must be an integer");
+        }
+        if (record.title() != null && record.title().length() > MAX_LENGTH) {
+            errors.add("Title must be at most " + MAX_LENGTH + " characters");
+        }
+        if (record.author() != null && record.author().length() > MAX_LENGTH) {
+            errors.add("Author must be at most " + MAX_LENGTH + " characters");
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", errors));
+        }
+        return new BookRow(UUID.randomUUID(), record.title(), record.author(), record.isbn(), quantity);
+    }
+
+    /**
+     * Splits the file from the given position into chunks ending at line breaks.
+     */
+    private List<Chunk> chunks(FileChannel channel, long start) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long size = channel.size();
+        while (start < size) {
+            long end = start + options.chunkSize() >= size ? size : lineEnd(channel, start + options.chunkSize() - 1);
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the position after the first line break at or after the given position, or the
+     * size of the file if there is none
+     */
+    private static long lineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private static String readLine(FileChannel channel, long position) throws IOException {
+        long end = lineEnd(channel, position);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - position));
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // read up to the line break
+        }
+        String line = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        return line.endsWith("\n") ? line.stripTrailing() : line;
+    }
+
+    /**
+     * Bytes of the file from {@code start} inclusive to {@code end} exclusive.
+     */
+    private record Chunk(long start, long end) {
+    }
+
+    /**
+     * @param line the line number within the chunk, starting at 1
+     */
+    private record Reject(int line, String reasons, String text) {
+    }
+
+    /**
+     * @param records the number of lines that are not blank
+     */
+    private record LineCount(int lines, int records) {
+    }
+
+    private record ChunkResult(Chunk chunk, int lines, int records, int changed, List<Reject> rejects) {
+    }
+
+    /**
+     * One connection per worker, opened up front so that a load fails fast on a wrong URL or password.
+     */
+    private static final class ConnectionPool implements AutoCloseable {
+
+        private final BlockingQueue<Connection> connections;
+
+        private final List<Connection> opened = new ArrayList<>();
+
+        private final BookSink sink;
+
+        private ConnectionPool(DataSource dataSource, int size) throws SQLException {
+            connections = new ArrayBlockingQueue<>(size);
+            try {
+                for (int i = 0; i < size; i++) {
+                    Connection connection = dataSource.getConnection();
+                    opened.add(connection);
+                    connection.setAutoCommit(false);
+                    connections.add(connection);
+                }
+                sink = BookSink.of(opened.get(0));
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private int upsert(List<BookRow> books) throws SQLException, InterruptedException {
+            Connection connection = connections.take();
+            try {
+                int changed = sink.upsert(connection, books);
+                connection.commit();
+                return changed;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connections.add(connection);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            SQLException failure = null;
+            for (Connection connection : opened) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.sever0x.bookstore.bulkload;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Streams books with the COPY protocol of PostgreSQL into a temporary staging table, then upserts
+ * them into {@code books} with a single {@code insert ... on conflict} statement. COPY cannot
+ * upsert by itself, but it avoids a statement per row, which makes it several times faster than
+ * batched inserts.
+ */
+final class CopyBookSink implements BookSink {
+
+    private static final String CREATE_STAGE = """
+            create temporary table books_load (
+                id uuid, title varchar(255), author varchar(255), isbn varchar(255), quantity integer
+            ) on commit drop""";
+
+    private static final String COPY = "copy books_load (id, title, author, isbn, quantity) from stdin (format csv)";
+
+    private static final String UPSERT = """
+            insert into books (id, title, author, isbn, quantity, version)
+            select id, title, author, isbn, quantity, 1 from books_load order by isbn
+            on conflict (isbn) do update
+            set title = excluded.title, author = excluded.author, quantity = excluded.quantity, version = books.version + 1
+            where (books.title, books.author, books.quantity)
+                is distinct from (excluded.title, excluded.author, excluded.quantity)""";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public int upsert(Connection connection, List<BookRow> books) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGE);
+        }
+        copy(connection.unwrap(PGConnection.class), books);
+        try (Statement statement = connection.createStatement()) {
+            return statement.executeUpdate(UPSERT);
+        }
+    }
+
+    private static void copy(PGConnection connection, List<BookRow> books) throws SQLException {
+        CopyIn copyIn = connection.getCopyAPI().copyIn(COPY);
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE + 1024);
+            StringBuilder line = new StringBuilder(256);
+            for (BookRow book : books) {
+                line.setLength(0);
+                line.append(book.id()).append(',');
+                quote(line, book.title()).append(',');
+                quote(line, book.author()).append(',');
+                quote(line, book.isbn()).append(',');
+                line.append(book.quantity()).append('\n');
+                buffer.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+                if (buffer.size() >= BUFFER_SIZE) {
+                    copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+                    buffer.reset();
+                }
+            }
+            if (buffer.size() > 0) {
+                copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            }
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static StringBuilder quote(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            line.append(c);
+            if (c == '"') {
+                line.append('"');
+            }
+        }
+        return line.append('"');
+    }
+}
@@ -0,0 +1,110 @@
+package com.sever0x.bookstore.bulkload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses {@link RecordFormat#CSV} lines. Unquoted values are trimmed, quoted values are taken as is.
+ */
+final class CsvRecordParser implements RecordParser {
+
+    private static final List<String> COLUMNS = List.of("title", "author", "isbn", "quantity");
+
+    /**
+     * Positions of the title, author, ISBN and quantity within a line.
+     */
+    private final int[] positions;
+
+    private final boolean header;
+
+    private CsvRecordParser(int[] positions, boolean header) {
+        this.positions = positions;
+        this.header = header;
+    }
+
+    static CsvRecordParser of(String firstLine) {
+        List<String> names = firstLine == null ? List.of() : split(firstLine).stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .toList();
+        if (!names.contains("isbn")) {
+            return new CsvRecordParser(new int[]{0, 1, 2, 3}, false);
+        }
+        int[] positions = new int[COLUMNS.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = names.indexOf(COLUMNS.get(i));
+            if (positions[i] < 0) {
+                throw new IllegalArgumentException("The CSV header lacks the column " + COLUMNS.get(i));
+            }
+        }
+        return new CsvRecordParser(positions, true);
+    }
+
+    @Override
+    public SupplierRecord parse(String line) {
+        List<String> values = split(line);
+        return new SupplierRecord(value(values, positions[0]), value(values, positions[1]),
+                value(values, positions[2]), value(values, positions[3]));
+    }
+
+    @Override
+    public boolean skipsFirstLine() {
+        return header;
+    }
+
+    private static String value(List<String> values, int position) {
+        return position < values.size() ? values.get(position) : null;
+    }
+
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        int i = 0;
+        while (true) {
+            value.setLength(0);
+            while (i < line.length() && line.charAt(i) == ' ') {
+                i++;
+            }
+            if (i < line.length() && line.charAt(i) == '"') {
+                i = quoted(line, i + 1, value);
+                while (i < line.length() && line.charAt(i) == ' ') {
+                    i++;
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected character after quoted value at column " + (i + 1));
+                }
+                values.add(value.toString());
+            } else {
+                int end = line.indexOf(',', i);
+                end = end < 0 ? line.length() : end;
+                values.add(line.substring(i, end).trim());
+                i = end;
+            }
+            if (i >= line.length()) {
+                return values;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Appends the quoted value starting at the given position to the builder.
+     *
+     * @return the position after the closing quote
+     */
+    private static int quoted(String line, int start, StringBuilder value) {
+        int i = start;
+        while (i < line.length()) {
+            char c = line.charAt(i++);
+            if (c != '"') {
+                value.append(c);
+            } else if (i < line.length() && line.charAt(i) == '"') {
+                value.append('"');
+                i++;
+            } else {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated quoted value starting at column " + start);
+    }
+}
@@ -0,0 +1,40 @@
+package com.sever0x.bookstore.bulkload;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Parses {@link RecordFormat#JSONL} lines. Numbers are accepted for the ISBN and strings for the
+ * quantity, as supplier feeds mix both.
+ */
+final class JsonLinesRecordParser implements RecordParser {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public SupplierRecord parse(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return new SupplierRecord(value(node, "title"), value(node, "author"), value(node, "isbn"),
+                value(node, "quantity"));
+    }
+
+    private static String value(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (!value.isValueNode()) {
+            throw new IllegalArgumentException("Expected a string or number as " + name);
+        }
+        return value.asText();
+    }
+}
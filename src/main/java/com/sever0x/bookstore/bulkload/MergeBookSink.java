@@ -0,0 +1,47 @@
+package com.sever0x.bookstore.bulkload;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Upserts books with batches of standard SQL {@code MERGE} statements, for databases without the
+ * COPY protocol such as the embedded H2 database of tests and benchmarks.
+ */
+final class MergeBookSink implements BookSink {
+
+    private static final String MERGE = """
+            merge into books b
+            using (values (cast(? as uuid), cast(? as varchar(255)), cast(? as varchar(255)),
+                           cast(? as varchar(255)), cast(? as integer))) s (id, title, author, isbn, quantity)
+            on b.isbn = s.isbn
+            when matched and (b.title <> s.title or b.author <> s.author or b.quantity <> s.quantity) then
+                update set title = s.title, author = s.author, quantity = s.quantity, version = b.version + 1
+            when not matched then
+                insert (id, title, author, isbn, quantity, version) values (s.id, s.title, s.author, s.isbn, s.quantity, 1)""";
+
+    private static final int BATCH_SIZE = 500;
+
+    @Override
+    public int upsert(Connection connection, List<BookRow> books) throws SQLException {
+        int changed = 0;
+        try (PreparedStatement statement = connection.prepareStatement(MERGE)) {
+            for (int i = 0; i < books.size(); i++) {
+                BookRow book = books.get(i);
+                statement.setObject(1, book.id());
+                statement.setString(2, book.title());
+                statement.setString(3, book.author());
+                statement.setString(4, book.isbn());
+                statement.setInt(5, book.quantity());
+                statement.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0 || i == books.size() - 1) {
+                    for (int count : statement.executeBatch()) {
+                        changed += Math.max(0, count);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+}
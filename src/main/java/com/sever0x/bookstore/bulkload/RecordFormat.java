@@ -0,0 +1,39 @@
+package com.sever0x.bookstore.bulkload;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formats of supplier catalog files. Either format holds one record per line, which lets
+ * {@link BulkLoader} split files at line breaks into chunks that are parsed independently.
+ */
+public enum RecordFormat {
+
+    /**
+     * Comma separated values with optional double quotes, {@code ""} standing for a quote within
+     * a quoted value. A first line naming an {@code isbn} column is a header and may put the
+     * columns in any order and add columns that are ignored; without a header the columns are
+     * title, author, ISBN and quantity.
+     */
+    CSV,
+
+    /**
+     * One JSON object per line with the members {@code title}, {@code author}, {@code isbn} and
+     * {@code quantity}, other members are ignored.
+     */
+    JSONL;
+
+    /**
+     * @return the format matching the extension of the file
+     */
+    public static RecordFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return JSONL;
+        }
+        throw new IllegalArgumentException("Cannot tell the format of " + file + ", give it with --format=csv|jsonl");
+    }
+}
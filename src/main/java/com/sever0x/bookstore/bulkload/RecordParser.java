@@ -0,0 +1,34 @@
+package com.sever0x.bookstore.bulkload;
+
+/**
+ * Parses the lines of a supplier file into records. Parsers are shared by the threads loading
+ * the chunks of a file.
+ */
+interface RecordParser {
+
+    /**
+     * @param line a line of the file without its line break
+     * @return the values of the record
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    SupplierRecord parse(String line);
+
+    /**
+     * @param format    the format of the file
+     * @param firstLine the first line of the file, which may be a header
+     * @return a parser for the lines of the file
+     */
+    static RecordParser of(RecordFormat format, String firstLine) {
+        return switch (format) {
+            case CSV -> CsvRecordParser.of(firstLine);
+            case JSONL -> new JsonLinesRecordParser();
+        };
+    }
+
+    /**
+     * @return whether the first line of the file is a header rather than a record
+     */
+    default boolean skipsFirstLine() {
+        return false;
+    }
+}
@@ -0,0 +1,7 @@
+package com.sever0x.bookstore.bulkload;
+
+/**
+ * The values of a record of a supplier file, as given in the file. Missing values are {@code null}.
+ */
+record SupplierRecord(String title, String author, String isbn, String quantity) {
+}
@@ -0,0 +1,209 @@
+package com.sever0x.bookstore.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sever0x.bookstore.config.BookCacheProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.proto.BookResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of books by identifier. Eviction is size-bounded with Caffeine's
+ * frequency-aware W-TinyLFU policy, so a small set of popular books stays resident.
+ * Not-found lookups are cached too, with a shorter time to live. Entries are invalidated
+ * once a change to the book is committed.
+ * <p>
+ * Single lookups load through Caffeine, which makes an invalidation wait for a load of the same
+ * book. Bulk loads are not coordinated that way, so invalidations are also counted per stripe of
+ * books, and a bulk-loaded book is cached only if its stripe saw no invalidation since the load began.
+ * <p>
+ * Hit, miss and eviction counters are published as {@code cache.*} metrics with {@code cache=book}.
+ */
+@Component
+public class BookCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "book";
+
+    /**
+     * Number of invalidation counters, books share one by the hash of their identifier.
+     */
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private final boolean enabled;
+
+    private final Cache<UUID, Optional<BookResponse>> cache;
+
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    public BookCache(BookCacheProperties properties) {
+        this.enabled = properties.isEnabled();
+        long ttl = properties.getTtl().toNanos();
+        long negativeTtl = properties.getNegativeTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<UUID, Optional<BookResponse>>() {
+                    @Override
+                    public long expireAfterCreate(UUID key, Optional<BookResponse> value, long currentTime) {
+                        return value.isPresent() ? ttl : negativeTtl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID key, Optional<BookResponse> value, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID key, Optional<BookResponse> value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached lookup of the book, loading it on a miss.
+     *
+     * @param bookId the book identifier
+     * @param loader loads the book when it is not cached, returns an empty optional if it does not exist
+     * @return the book, or an empty optional if it does not exist
+     */
+    public Optional<BookResponse> get(UUID bookId, Function<UUID, Optional<BookResponse>> loader) {
+        if (!enabled) {
+            return loader.apply(bookId);
+        }
+        return cache.get(bookId, loader);
+    }
+
+    /**
+     * Returns the cached lookups of the books, loading all misses with a single call. A loaded book
+     * invalidated while the loader ran is returned but not cached, the loader may have read it
+     * before the change committed.
+     *
+     * @param bookIds the book identifiers
+     * @param loader  loads the books that are not cached, must map every requested identifier and
+     *                use an empty optional for books that do not exist
+     * @return the lookup of every requested book
+     */
+    public Map<UUID, Optional<BookResponse>> getAll(Collection<UUID> bookIds,
+                                                     Function<Set<? extends UUID>, Map<UUID, Optional<BookResponse>>> loader) {
+        if (!enabled) {
+            return loader.apply(new HashSet<>(bookIds));
+        }
+        Map<UUID, Optional<BookResponse>> books = new HashMap<>(cache.getAllPresent(bookIds));
+        Map<UUID, Long> misses = new HashMap<>();
+        for (UUID bookId : bookIds) {
+            if (!books.containsKey(bookId)) {
+                misses.put(bookId, invalidations.get(stripe(bookId)));
+            }
+        }
+        if (misses.isEmpty()) {
+            return books;
+        }
+
+        Map<UUID, Optional<BookResponse>> loaded = loader.apply(misses.keySet());
+        misses.forEach((bookId, invalidation) -> {
+            Optional<BookResponse> book = loaded.getOrDefault(bookId, Optional.empty());
+            books.put(bookId, book);
+            if (invalidations.get(stripe(bookId)) == invalidation) {
+                cache.asMap().putIfAbsent(bookId, book);
+                // an invalidation counted before the entry was put may have found nothing to remove
+                if (invalidations.get(stripe(bookId)) != invalidation) {
+                    cache.asMap().remove(bookId, book);
+                }
+            }
+        });
+        return books;
+    }
+
+    /**
+     * Returns the cached book without loading it.
+     *
+     * @param bookId the book identifier
+     * @return the book, or an empty optional if it is not cached or cached as not found
+     */
+    public Optional<BookResponse> getIfPresent(UUID bookId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<BookResponse> cached = cache.getIfPresent(bookId);
+        return cached == null ? Optional.empty() : cached;
+    }
+
+    public void invalidate(UUID bookId) {
+        invalidations.incrementAndGet(stripe(bookId));
+        cache.invalidate(bookId);
+    }
+
+    /**
+     * Caches the book unless a lookup of it is cached already, used to warm the cache at startup.
+     *
+     * @param ttl time to live of the entry instead of the configured one
+     */
+    public void putIfAbsent(UUID bookId, BookResponse book, Duration ttl) {
+        if (enabled) {
+            cache.policy().expireVariably()
+                    .ifPresent(expiration -> expiration.putIfAbsent(bookId, Optional.of(book), ttl));
+        }
+    }
+
+    /**
+     * Invalidates the cached lookup of the book unless it equals the given state read from the
+     * database. A newer cached state is never overwritten; at worst it is loaded again.
+     */
+    public void invalidateIfChanged(UUID bookId, BookResponse book) {
+        cache.asMap().computeIfPresent(bookId, (id, cached) -> cached.equals(Optional.of(book)) ? cached : null);
+    }
+
+    /**
+     * Returns the cached books that are most likely to be retained, i.e. the most frequently used.
+     *
+     * @param limit the maximum number of books
+     * @return the identifiers of the books, hottest first
+     */
+    public List<UUID> hottest(int limit) {
+        if (!enabled) {
+            return List.of();
+        }
+        return cache.policy().eviction()
+                .map(eviction -> eviction.hottest(limit).entrySet().stream()
+                        .filter(entry -> entry.getValue().isPresent())
+                        .map(Map.Entry::getKey)
+                        .toList())
+                .orElse(List.of());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        invalidate(event.bookId());
+    }
+
+    private static int stripe(UUID bookId) {
+        return (bookId.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+}
@@ -0,0 +1,57 @@
+package com.sever0x.bookstore.cache;
+
+import com.sever0x.bookstore.config.CoalescingProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Shares one in-flight database read between concurrent identical requests: lookups of the same
+ * book and {@code GetBooks} requests with identical parameters. This protects the database from
+ * bursts on a popular book or page, also when {@link BookCache} is disabled or just expired.
+ * <p>
+ * Once a change commits, requests arriving afterwards no longer join reads that started before
+ * it, so coalescing never hides a committed write from a later request.
+ */
+@Component
+public class BookReadCoalescer {
+
+    private final boolean enabled;
+
+    private final SingleFlight<UUID, Optional<BookResponse>> books = new SingleFlight<>();
+
+    private final SingleFlight<GetBooksRequest, GetBooksResponse> pages = new SingleFlight<>();
+
+    public BookReadCoalescer(CoalescingProperties properties) {
+        this.enabled = properties.isEnabled();
+    }
+
+    public Optional<BookResponse> book(UUID bookId, Supplier<Optional<BookResponse>> loader) {
+        return enabled ? books.execute(bookId, loader) : loader.get();
+    }
+
+    public GetBooksResponse page(GetBooksRequest request, Supplier<GetBooksResponse> loader) {
+        return enabled ? pages.execute(request, loader) : loader.get();
+    }
+
+    /**
+     * Returns the number of {@code GetBooks} requests waiting for the read of an identical request.
+     */
+    public int pageWaiterCount() {
+        return pages.waiterCount();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        books.forget(event.bookId());
+        pages.forgetAll();
+    }
+}
@@ -0,0 +1,86 @@
+package com.sever0x.bookstore.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one load per key at a time: callers asking for a key that is already being loaded
+ * wait for that load and share its result or exception instead of starting their own. Nothing is
+ * kept once the load finished, so this coalesces concurrent work without caching.
+ *
+ * @param <K> the key type, must implement {@code equals} and {@code hashCode}
+ * @param <V> the result type, shared between callers and therefore expected to be immutable
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * Returns the result of the load in flight for the key, or runs the loader on the calling
+     * thread if there is none.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            waiters.incrementAndGet();
+            try {
+                return await(existing);
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Lets later callers of the key start a new load instead of joining the one in flight, e.g.
+     * because the data changed after it started. Callers already waiting still get its result.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Returns the number of callers waiting for a load started by another caller.
+     */
+    public int waiterCount() {
+        return waiters.get();
+    }
+
+    private static <V> V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
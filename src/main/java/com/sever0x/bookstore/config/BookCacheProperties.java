@@ -0,0 +1,33 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-process cache of books looked up by identifier.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.cache.book")
+public class BookCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of cached lookups, including not-found ones.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * How long a found book stays cached.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * How long a not-found identifier stays cached.
+     */
+    private Duration negativeTtl = Duration.ofSeconds(30);
+}
@@ -0,0 +1,16 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the coalescing of concurrent identical reads into one database query.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.coalescing")
+public class CoalescingProperties {
+
+    private boolean enabled = true;
+}
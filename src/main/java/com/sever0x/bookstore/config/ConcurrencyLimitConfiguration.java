@@ -0,0 +1,22 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.limit.ConcurrencyLimitInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the load shedding interceptor for all gRPC services when
+ * {@code bookstore.grpc.limit.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bookstore.grpc.limit.enabled", havingValue = "true")
+public class ConcurrencyLimitConfiguration {
+
+    @GrpcGlobalServerInterceptor
+    public ConcurrencyLimitInterceptor concurrencyLimitInterceptor(ConcurrencyLimitProperties properties,
+                                                                   MeterRegistry meterRegistry) {
+        return new ConcurrencyLimitInterceptor(properties, meterRegistry);
+    }
+}
@@ -0,0 +1,62 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Set;
+
+/**
+ * Settings of the adaptive concurrency limits of unary service calls. Each method has its own
+ * limit, and all methods share a server limit of which reads may only use a part, so writes keep
+ * headroom when the server is overloaded.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.grpc.limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Limit of each method until latencies have been observed.
+     */
+    private int initialLimit = 20;
+
+    private int minLimit = 2;
+
+    private int maxLimit = 500;
+
+    /**
+     * Limit of all methods together until latencies have been observed.
+     */
+    private int serverInitialLimit = 50;
+
+    private int serverMaxLimit = 2000;
+
+    /**
+     * Scales the number of queueing calls at which limits stop growing and start shrinking;
+     * higher values trade latency for throughput.
+     */
+    private double tolerance = 1.0;
+
+    /**
+     * Methods that may use the whole server limit.
+     */
+    private Set<String> writeMethods = Set.of("AddBook", "UpdateBook", "DeleteBook", "AdjustQuantity", "ReserveStock");
+
+    /**
+     * Methods reading many books, which are rejected first.
+     */
+    private Set<String> bulkMethods = Set.of("GetBooks", "SearchBooks", "GetBooksByIds", "GetBooksByIsbn");
+
+    /**
+     * Share of the server limit available to reads that are not bulk methods.
+     */
+    private double readShare = 0.9;
+
+    /**
+     * Share of the server limit available to bulk methods.
+     */
+    private double bulkShare = 0.5;
+}
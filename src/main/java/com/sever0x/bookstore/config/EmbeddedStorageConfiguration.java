@@ -0,0 +1,56 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.repository.BookStorage;
+import com.sever0x.bookstore.storage.BookStore;
+import com.sever0x.bookstore.storage.BookStoreCompactor;
+import com.sever0x.bookstore.storage.EmbeddedBookRepository;
+import com.sever0x.bookstore.storage.EmbeddedTransactionManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+
+/**
+ * Keeps books in the embedded {@link BookStore} instead of the database when
+ * {@code bookstore.storage.engine=embedded}.
+ * <p>
+ * The embedded repository and transaction manager replace the JPA ones wherever they are
+ * injected. The {@code embedded} profile also excludes the data source and JPA auto-configuration,
+ * so the application starts without a database.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bookstore.storage.engine", havingValue = "embedded")
+public class EmbeddedStorageConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public BookStore bookStore(StorageProperties properties, ShardingProperties shardingProperties,
+                               ReplicaRoutingProperties replicaRoutingProperties) throws IOException {
+        if (shardingProperties.isEnabled() || replicaRoutingProperties.isEnabled()) {
+            throw new IllegalStateException("The embedded storage engine cannot be combined with sharding or replica routing");
+        }
+        StorageProperties.Embedded embedded = properties.getEmbedded();
+        return BookStore.open(embedded.getDirectory(), Math.toIntExact(embedded.getSegmentSize().toBytes()),
+                embedded.isSync());
+    }
+
+    @Bean
+    public BookStoreCompactor bookStoreCompactor(BookStore bookStore, StorageProperties properties) {
+        StorageProperties.Embedded embedded = properties.getEmbedded();
+        return new BookStoreCompactor(bookStore, embedded.getCompactionInterval(), embedded.getCompactionThreshold());
+    }
+
+    @Bean
+    @Primary
+    public BookStorage embeddedBookRepository(BookStore bookStore) {
+        return new EmbeddedBookRepository(bookStore);
+    }
+
+    @Bean
+    @Primary
+    public PlatformTransactionManager embeddedTransactionManager() {
+        return new EmbeddedTransactionManager();
+    }
+}
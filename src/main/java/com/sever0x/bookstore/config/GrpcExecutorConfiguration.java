@@ -0,0 +1,59 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.limit.MaxConcurrentCallsInterceptor;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Switches the gRPC server to virtual threads when {@code bookstore.grpc.executor.mode} is
+ * {@link GrpcExecutorProperties.Mode#VIRTUAL}. Service methods block on JPA, so each call gets its
+ * own virtual thread, while {@link MaxConcurrentCallsInterceptor} keeps the number of running unary
+ * calls within the connection pool size.
+ */
+@Configuration
+@Conditional(GrpcExecutorConfiguration.VirtualMode.class)
+public class GrpcExecutorConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService grpcVirtualThreadExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-virtual-", 0).factory());
+    }
+
+    @Bean
+    public GrpcServerConfigurer virtualThreadServerConfigurer(ExecutorService grpcVirtualThreadExecutor) {
+        return serverBuilder -> serverBuilder.executor(grpcVirtualThreadExecutor);
+    }
+
+    @GrpcGlobalServerInterceptor
+    public MaxConcurrentCallsInterceptor maxConcurrentCallsInterceptor(GrpcExecutorProperties properties) {
+        return new MaxConcurrentCallsInterceptor(properties.getMaxConcurrency());
+    }
+
+    /**
+     * Matches when the mode binds to {@link GrpcExecutorProperties.Mode#VIRTUAL}, with the same
+     * relaxed binding as the properties class.
+     */
+    static class VirtualMode extends SpringBootCondition {
+
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            GrpcExecutorProperties.Mode mode = Binder.get(context.getEnvironment())
+                    .bind("bookstore.grpc.executor.mode", GrpcExecutorProperties.Mode.class)
+                    .orElse(GrpcExecutorProperties.Mode.PLATFORM);
+            return mode == GrpcExecutorProperties.Mode.VIRTUAL
+                    ? ConditionOutcome.match("gRPC executor mode is " + mode)
+                    : ConditionOutcome.noMatch("gRPC executor mode is " + mode);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the executor the gRPC server runs service calls on.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.grpc.executor")
+public class GrpcExecutorProperties {
+
+    public enum Mode {
+        /**
+         * The default cached pool of platform threads of grpc-java.
+         */
+        PLATFORM,
+        /**
+         * A new virtual thread per call task, with a bound on running unary calls.
+         */
+        VIRTUAL
+    }
+
+    private Mode mode = Mode.PLATFORM;
+
+    /**
+     * Maximum number of unary calls running at once in virtual mode. Should match the size of
+     * the connection pool, so excess calls wait on cheap virtual threads instead of timing out
+     * on connection acquisition. Streaming calls are not counted.
+     */
+    private int maxConcurrency = 10;
+}
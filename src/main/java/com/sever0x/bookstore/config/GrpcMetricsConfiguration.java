@@ -0,0 +1,18 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.metrics.GrpcMetricsInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the metrics interceptor for all gRPC services.
+ */
+@Configuration
+public class GrpcMetricsConfiguration {
+
+    @GrpcGlobalServerInterceptor
+    public GrpcMetricsInterceptor grpcMetricsInterceptor(MeterRegistry meterRegistry) {
+        return new GrpcMetricsInterceptor(meterRegistry);
+    }
+}
@@ -0,0 +1,21 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.idempotency.IdempotencyInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the deduplication of calls with idempotency keys for all gRPC services unless
+ * {@code bookstore.grpc.idempotency.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bookstore.grpc.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfiguration {
+
+    @GrpcGlobalServerInterceptor
+    public IdempotencyInterceptor idempotencyInterceptor(IdempotencyProperties properties, MeterRegistry meterRegistry) {
+        return new IdempotencyInterceptor(properties, meterRegistry);
+    }
+}
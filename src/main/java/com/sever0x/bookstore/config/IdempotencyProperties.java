@@ -0,0 +1,33 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the store of recent idempotency keys and the responses to their calls.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.grpc.idempotency")
+public class IdempotencyProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of remembered keys, including keys of calls still in progress.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * How long a key is remembered after its first submission.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Longest accepted key.
+     */
+    private int maxKeyLength = 128;
+}
@@ -0,0 +1,20 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the bulk {@code AddBooks} ingest stream.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.ingest")
+public class IngestProperties {
+
+    /**
+     * Number of books persisted in a single transaction. Should be a multiple of
+     * {@code hibernate.jdbc.batch_size} so every chunk is sent as full JDBC batches.
+     */
+    private int chunkSize = 500;
+}
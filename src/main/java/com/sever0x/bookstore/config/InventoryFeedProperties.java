@@ -0,0 +1,27 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the inventory change feed streamed to {@code WatchInventory} subscribers.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.inventory.feed")
+public class InventoryFeedProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of books with undelivered changes per subscriber. Changes to a book that is
+     * already pending are merged; a subscriber exceeding the limit is disconnected.
+     */
+    private int bufferSize = 1024;
+
+    /**
+     * Maximum number of concurrent subscribers.
+     */
+    private int maxSubscribers = 10_000;
+}
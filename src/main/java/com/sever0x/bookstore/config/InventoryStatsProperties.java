@@ -0,0 +1,23 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the inventory statistics kept in memory for {@code GetInventoryStats} and
+ * {@code GetLowStock}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.inventory.stats")
+public class InventoryStatsProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Highest threshold of {@code GetLowStock}. Only books with at most this quantity are kept
+     * sorted by quantity, so the bound trades memory against the thresholds that can be queried.
+     */
+    private int maxLowStockThreshold = 100;
+}
@@ -0,0 +1,21 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the in-memory index resolving ISBNs to book identifiers.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.index.isbn")
+public class IsbnIndexProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of books the index is sized for initially, it grows when exceeded.
+     */
+    private int expectedSize = 100_000;
+}
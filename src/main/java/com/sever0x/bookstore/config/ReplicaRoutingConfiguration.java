@@ -0,0 +1,90 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.cache.BookCache;
+import com.sever0x.bookstore.datasource.ClientContextInterceptor;
+import com.sever0x.bookstore.datasource.RecentWriters;
+import com.sever0x.bookstore.datasource.ReplicaDataSource;
+import com.sever0x.bookstore.datasource.ReplicaLagInvalidation;
+import com.sever0x.bookstore.datasource.WriteTrackingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * Routes read-only transactions to replicas when {@code bookstore.datasource.routing.enabled=true}.
+ * <p>
+ * The application data source is a {@link LazyConnectionDataSourceProxy}: it takes a physical
+ * connection only at the first statement, once the transaction is known to be read-only, and then
+ * uses the {@link ReplicaDataSource} instead of the primary. Clients that wrote recently keep
+ * reading from the primary (read-your-writes).
+ */
+@Configuration
+@ConditionalOnProperty(name = "bookstore.datasource.routing.enabled", havingValue = "true")
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public RecentWriters recentWriters(ReplicaRoutingProperties properties) {
+        return new RecentWriters(properties.getReadYourWritesWindow());
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource, DataSourceProperties primaryProperties,
+                                               ReplicaRoutingProperties properties, RecentWriters recentWriters) {
+        List<DataSource> replicas = properties.getReplicas().stream()
+                .map(replica -> (DataSource) createReplica(replica, primaryProperties))
+                .toList();
+        return new ReplicaDataSource(primaryDataSource, replicas, properties.getBalancing(), recentWriters);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource,
+                                 RecentWriters recentWriters) {
+        LazyConnectionDataSourceProxy dataSource =
+                new LazyConnectionDataSourceProxy(new WriteTrackingDataSource(primaryDataSource, recentWriters));
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        // known defaults spare the proxy probing a primary connection while a read-only transaction begins
+        dataSource.setDefaultAutoCommit(primaryDataSource.isAutoCommit());
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+
+    @GrpcGlobalServerInterceptor
+    public ClientContextInterceptor clientContextInterceptor() {
+        return new ClientContextInterceptor();
+    }
+
+    @Bean
+    public ReplicaLagInvalidation replicaLagInvalidation(BookCache bookCache, ReplicaRoutingProperties properties) {
+        return new ReplicaLagInvalidation(bookCache, properties.getReadYourWritesWindow());
+    }
+
+    private static HikariDataSource createReplica(ReplicaRoutingProperties.Replica replica,
+                                                  DataSourceProperties primaryProperties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(replica.getUrl());
+        dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : primaryProperties.determineUsername());
+        dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : primaryProperties.determinePassword());
+        dataSource.setDriverClassName(primaryProperties.determineDriverClassName());
+        dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+        dataSource.setReadOnly(true);
+        dataSource.setPoolName("replica-" + replica.getUrl());
+        return dataSource;
+    }
+}
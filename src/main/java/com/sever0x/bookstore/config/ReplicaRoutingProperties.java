@@ -0,0 +1,50 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.datasource.ReplicaDataSource;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the routing of read-only transactions to database replicas.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.datasource.routing")
+public class ReplicaRoutingProperties {
+
+    private boolean enabled = false;
+
+    private ReplicaDataSource.Balancing balancing = ReplicaDataSource.Balancing.ROUND_ROBIN;
+
+    /**
+     * How long reads of a client go to the primary after the client wrote. Should exceed the
+     * usual replication lag.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(2);
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Replica {
+
+        private String url;
+
+        /**
+         * Defaults to the primary's user name.
+         */
+        private String username;
+
+        /**
+         * Defaults to the primary's password.
+         */
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
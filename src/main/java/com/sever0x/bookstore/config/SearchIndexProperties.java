@@ -0,0 +1,22 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the in-memory full-text index over book titles and authors.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.index.search")
+public class SearchIndexProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of dictionary terms a query token expands to in prefix mode, bounding the
+     * cost of very short prefixes. Searches with a token expanding to more terms are rejected.
+     */
+    private int maxPrefixExpansions = 256;
+}
@@ -0,0 +1,108 @@
+package com.sever0x.bookstore.config;
+
+import com.sever0x.bookstore.repository.BookRepository;
+import com.sever0x.bookstore.repository.BookStorage;
+import com.sever0x.bookstore.shard.IsbnDirectory;
+import com.sever0x.bookstore.shard.ShardInitializer;
+import com.sever0x.bookstore.shard.ShardRebalancer;
+import com.sever0x.bookstore.shard.ShardRoutingDataSource;
+import com.sever0x.bookstore.shard.ShardedBookRepository;
+import com.sever0x.bookstore.shard.Shards;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * Spreads books over several databases when {@code bookstore.sharding.enabled=true}.
+ * <p>
+ * The application data source is a {@link LazyConnectionDataSourceProxy} over a
+ * {@link ShardRoutingDataSource}: it takes a physical connection only at the first statement, by
+ * then {@link ShardedBookRepository} has pinned the shard of the call. The sharded repository
+ * replaces the JPA repository wherever a {@link BookStorage} is injected; the JPA repository
+ * remains available as the repository of a single shard.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bookstore.sharding.enabled", havingValue = "true")
+public class ShardingConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties primaryProperties,
+                                                         ShardingProperties properties,
+                                                         ReplicaRoutingProperties replicaRoutingProperties) {
+        if (replicaRoutingProperties.isEnabled()) {
+            throw new IllegalStateException("Sharding cannot be combined with replica routing");
+        }
+        List<HikariDataSource> shards = properties.getShards().stream()
+                .map(shard -> createShard(shard, primaryProperties))
+                .toList();
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+        // known defaults spare the proxy probing a connection of an unpinned shard while a transaction begins
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "close")
+    public Shards shards(ShardRoutingDataSource shardRoutingDataSource, PlatformTransactionManager transactionManager) {
+        return new Shards(shardRoutingDataSource.size(), transactionManager);
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(@Qualifier("bookRepository") BookRepository bookRepository, Shards shards) {
+        return new ShardRebalancer(bookRepository, shards);
+    }
+
+    @Bean
+    public IsbnDirectory isbnDirectory(DataSource dataSource,
+                                       @Qualifier("bookRepository") BookRepository bookRepository, Shards shards) {
+        return new IsbnDirectory(dataSource, bookRepository, shards);
+    }
+
+    @Bean
+    public ShardInitializer shardInitializer(ShardRoutingDataSource shardRoutingDataSource,
+                                             EntityManagerFactory entityManagerFactory,
+                                             ShardRebalancer shardRebalancer, IsbnDirectory isbnDirectory,
+                                             ShardingProperties properties) {
+        return new ShardInitializer(shardRoutingDataSource, entityManagerFactory, shardRebalancer, isbnDirectory,
+                properties.isInitializeSchema(), properties.isRebalanceOnStartup());
+    }
+
+    /**
+     * Depends on the initializer, so the shards are ready before the first book is read.
+     */
+    @Bean
+    @Primary
+    public BookStorage shardedBookRepository(@Qualifier("bookRepository") BookRepository bookRepository,
+                                             Shards shards, IsbnDirectory isbnDirectory,
+                                             ShardInitializer shardInitializer) {
+        return new ShardedBookRepository(bookRepository, shards, isbnDirectory);
+    }
+
+    private static HikariDataSource createShard(ShardingProperties.Shard shard, DataSourceProperties primaryProperties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(shard.getUrl());
+        dataSource.setUsername(shard.getUsername() != null ? shard.getUsername() : primaryProperties.determineUsername());
+        dataSource.setPassword(shard.getPassword() != null ? shard.getPassword() : primaryProperties.determinePassword());
+        dataSource.setDriverClassName(primaryProperties.determineDriverClassName());
+        dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+        dataSource.setPoolName("shard-" + shard.getUrl());
+        return dataSource;
+    }
+}
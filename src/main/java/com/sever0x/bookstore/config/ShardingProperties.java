@@ -0,0 +1,53 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the sharding of books over several databases.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * The shards in placement order; shards may only be appended, see {@code ShardRebalancer}.
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Whether the tables are created on shards that do not have them yet.
+     */
+    private boolean initializeSchema = true;
+
+    /**
+     * Whether misplaced books are moved to their shard at startup, after a shard was appended.
+     */
+    private boolean rebalanceOnStartup = false;
+
+    @Getter
+    @Setter
+    public static class Shard {
+
+        private String url;
+
+        /**
+         * Defaults to the user name of {@code spring.datasource}.
+         */
+        private String username;
+
+        /**
+         * Defaults to the password of {@code spring.datasource}.
+         */
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
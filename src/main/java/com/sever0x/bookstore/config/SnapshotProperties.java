@@ -0,0 +1,42 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the catalog snapshot used to warm caches and indexes at startup.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.snapshot")
+public class SnapshotProperties {
+
+    private boolean enabled = false;
+
+    private Path path = Path.of("data", "catalog.snapshot");
+
+    /**
+     * Delay between two snapshots while the application runs.
+     */
+    private Duration interval = Duration.ofMinutes(5);
+
+    /**
+     * Whether a snapshot is written when the application stops.
+     */
+    private boolean writeOnShutdown = true;
+
+    /**
+     * Snapshots older than this are ignored at startup.
+     */
+    private Duration maxAge = Duration.ofHours(1);
+
+    /**
+     * Time to live of books cached from a snapshot. Their stock may be as old as the snapshot, so
+     * they expire soon and are then loaded from the database like any other book.
+     */
+    private Duration cacheTtl = Duration.ofSeconds(5);
+}
@@ -0,0 +1,55 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the storage engine keeping the books.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.storage")
+public class StorageProperties {
+
+    /**
+     * The storage engine: {@code jpa} for the database or {@code embedded}.
+     */
+    private String engine = "jpa";
+
+    private Embedded embedded = new Embedded();
+
+    @Getter
+    @Setter
+    public static class Embedded {
+
+        /**
+         * Directory of the write-ahead log.
+         */
+        private Path directory = Path.of("data", "books");
+
+        /**
+         * Size of each segment file of the log, at least 1 MB.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Whether changes are forced to the storage device before a call returns.
+         */
+        private boolean sync = true;
+
+        /**
+         * Delay between two checks whether the log needs compaction.
+         */
+        private Duration compactionInterval = Duration.ofMinutes(1);
+
+        /**
+         * Share of outdated records in the sealed segments that triggers compaction.
+         */
+        private double compactionThreshold = 0.5;
+    }
+}
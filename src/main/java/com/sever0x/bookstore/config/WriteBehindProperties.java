@@ -0,0 +1,24 @@
+package com.sever0x.bookstore.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind inventory mode, where quantity changes are accumulated in memory
+ * and flushed to the database periodically.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bookstore.inventory.write-behind")
+public class WriteBehindProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Delay between two flushes of the accumulated quantity changes.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+}
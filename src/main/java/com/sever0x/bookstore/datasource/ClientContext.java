@@ -0,0 +1,35 @@
+package com.sever0x.bookstore.datasource;
+
+/**
+ * Identity of the client whose call the current thread is handling, used to give clients
+ * read-your-writes consistency with replicas. {@link ClientContextInterceptor} binds the client
+ * while the service handles a call; outside of a call there is no current client.
+ */
+public final class ClientContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ClientContext() {
+    }
+
+    /**
+     * @return the identifier of the current client, or {@code null} outside of a call
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    static String enter(String clientId) {
+        String previous = CURRENT.get();
+        CURRENT.set(clientId);
+        return previous;
+    }
+
+    static void exit(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.sever0x.bookstore.datasource;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Binds the calling client to the threads handling its call, see {@link ClientContext}, for the
+ * start of the call and every listener callback. Clients identify themselves with the
+ * {@value #CLIENT_ID_HEADER} header, which is required for read-your-writes when replica routing
+ * is enabled: without it the remote host is used, so clients behind the same address share their
+ * window, and a client whose connections arrive through different proxies or load balancer nodes
+ * may read its own writes from a lagging replica.
+ */
+public class ClientContextInterceptor implements ServerInterceptor {
+
+    public static final String CLIENT_ID_HEADER = "bookstore-client-id";
+
+    private static final Metadata.Key<String> CLIENT_ID =
+            Metadata.Key.of(CLIENT_ID_HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        String clientId = headers.get(CLIENT_ID);
+        if (clientId == null) {
+            clientId = remoteHost(call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR));
+        }
+        if (clientId == null) {
+            return next.startCall(call, headers);
+        }
+        ServerCall.Listener<ReqT> listener;
+        String previous = ClientContext.enter(clientId);
+        try {
+            listener = next.startCall(call, headers);
+        } finally {
+            ClientContext.exit(previous);
+        }
+        return new ClientListener<>(listener, clientId);
+    }
+
+    private static String remoteHost(SocketAddress address) {
+        if (address instanceof InetSocketAddress inetAddress) {
+            return inetAddress.getHostString();
+        }
+        return address == null ? null : address.toString();
+    }
+
+    private static final class ClientListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final String clientId;
+
+        private ClientListener(ServerCall.Listener<ReqT> delegate, String clientId) {
+            super(delegate);
+            this.clientId = clientId;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            String previous = ClientContext.enter(clientId);
+            try {
+                super.onMessage(message);
+            } finally {
+                ClientContext.exit(previous);
+            }
+        }
+
+        @Override
+        public void onHalfClose() {
+            String previous = ClientContext.enter(clientId);
+            try {
+                super.onHalfClose();
+            } finally {
+                ClientContext.exit(previous);
+            }
+        }
+
+        @Override
+        public void onReady() {
+            String previous = ClientContext.enter(clientId);
+            try {
+                super.onReady();
+            } finally {
+                ClientContext.exit(previous);
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            String previous = ClientContext.enter(clientId);
+            try {
+                super.onCancel();
+            } finally {
+                ClientContext.exit(previous);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            String previous = ClientContext.enter(clientId);
+            try {
+                super.onComplete();
+            } finally {
+                ClientContext.exit(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.sever0x.bookstore.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Remembers which clients wrote within the read-your-writes window. Reads of these clients go to
+ * the primary, so they see their own changes even while replicas lag behind.
+ */
+public class RecentWriters {
+
+    private static final long MAXIMUM_CLIENTS = 100_000;
+
+    private final Cache<String, Boolean> writers;
+
+    public RecentWriters(Duration window) {
+        this.writers = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(MAXIMUM_CLIENTS)
+                .build();
+    }
+
+    public void recordWrite(String clientId) {
+        writers.put(clientId, Boolean.TRUE);
+    }
+
+    public boolean wroteRecently(String clientId) {
+        return writers.getIfPresent(clientId) != null;
+    }
+}
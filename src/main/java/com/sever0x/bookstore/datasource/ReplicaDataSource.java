@@ -0,0 +1,101 @@
+package com.sever0x.bookstore.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves connections for read-only transactions from a set of replicas, balanced round-robin or
+ * towards the replica with the fewest busy connections. Clients that wrote within the
+ * read-your-writes window are served by the primary instead.
+ */
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    public enum Balancing {
+        ROUND_ROBIN,
+        /**
+         * The replica with the fewest active and awaited pool connections; only pools that
+         * expose their load (Hikari) are compared, others count as idle.
+         */
+        LEAST_LOADED
+    }
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final Balancing balancing;
+
+    private final RecentWriters recentWriters;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<DataSource> replicas, Balancing balancing,
+                             RecentWriters recentWriters) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required");
+        }
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.balancing = balancing;
+        this.recentWriters = recentWriters;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target().getConnection(username, password);
+    }
+
+    DataSource target() {
+        String clientId = ClientContext.current();
+        if (clientId != null && recentWriters.wroteRecently(clientId)) {
+            return primary;
+        }
+        // start at a rotating offset, so least-loaded ties are spread as well
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        if (balancing == Balancing.ROUND_ROBIN) {
+            return replicas.get(first);
+        }
+        DataSource best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            DataSource replica = replicas.get((first + i) % replicas.size());
+            int load = load(replica);
+            if (load < bestLoad) {
+                best = replica;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private static int load(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool != null) {
+                return pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : replicas) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
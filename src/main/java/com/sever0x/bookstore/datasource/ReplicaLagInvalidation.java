@@ -0,0 +1,45 @@
+package com.sever0x.bookstore.datasource;
+
+import com.sever0x.bookstore.cache.BookCache;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidates a changed book in {@link BookCache} a second time once the read-your-writes window
+ * has passed. A lookup right after the commit may have been served by a replica that had not
+ * applied the change yet, and would otherwise stay cached until it expires.
+ */
+public class ReplicaLagInvalidation implements DisposableBean {
+
+    private final BookCache bookCache;
+
+    private final long delayMillis;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-lag-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicaLagInvalidation(BookCache bookCache, Duration replicationLag) {
+        this.bookCache = bookCache;
+        this.delayMillis = replicationLag.toMillis();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        scheduler.schedule(() -> bookCache.invalidate(event.bookId()), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
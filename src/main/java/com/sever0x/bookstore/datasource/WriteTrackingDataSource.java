@@ -0,0 +1,41 @@
+package com.sever0x.bookstore.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The primary database, recording the current client as a {@link RecentWriters writer} whenever
+ * a connection is taken for a transaction that is not read-only.
+ */
+public class WriteTrackingDataSource extends DelegatingDataSource {
+
+    private final RecentWriters recentWriters;
+
+    public WriteTrackingDataSource(DataSource primary, RecentWriters recentWriters) {
+        super(primary);
+        this.recentWriters = recentWriters;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        recordWrite();
+        return super.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        recordWrite();
+        return super.getConnection(username, password);
+    }
+
+    private void recordWrite() {
+        String clientId = ClientContext.current();
+        if (clientId != null && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recentWriters.recordWrite(clientId);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.sever0x.bookstore.event;
+
+import com.sever0x.bookstore.proto.BookResponse;
+
+import java.util.UUID;
+
+/**
+ * Published by the service whenever a book is created, updated or deleted. Listeners that keep
+ * derived state (caches, indexes) should react after the surrounding transaction commits.
+ * <p>
+ * After-commit listeners run on the committing thread, so events of concurrent transactions may
+ * arrive out of commit order. Listeners keeping the state of a book should ignore events with a
+ * lower version than the one they hold.
+ *
+ * @param type     the kind of change
+ * @param bookId   the identifier of the changed book
+ * @param book     the book after the change, {@code null} when it was deleted or only its quantity changed
+ * @param quantity the quantity after the change, zero when the book was deleted
+ * @param version  the version of the book after the change, zero when it was deleted
+ */
+public record BookChangedEvent(Type type, UUID bookId, BookResponse book, int quantity, long version) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        QUANTITY_CHANGED,
+        DELETED
+    }
+
+    public static BookChangedEvent created(UUID bookId, BookResponse book) {
+        return new BookChangedEvent(Type.CREATED, bookId, book, book.getQuantity(), book.getVersion());
+    }
+
+    public static BookChangedEvent updated(UUID bookId, BookResponse book) {
+        return new BookChangedEvent(Type.UPDATED, bookId, book, book.getQuantity(), book.getVersion());
+    }
+
+    public static BookChangedEvent quantityChanged(UUID bookId, int quantity, long version) {
+        return new BookChangedEvent(Type.QUANTITY_CHANGED, bookId, null, quantity, version);
+    }
+
+    public static BookChangedEvent deleted(UUID bookId) {
+        return new BookChangedEvent(Type.DELETED, bookId, null, 0, 0);
+    }
+}
@@ -0,0 +1,140 @@
+package com.sever0x.bookstore.feed;
+
+import com.sever0x.bookstore.config.InventoryFeedProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.proto.InventoryEvent;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans committed book changes out to all {@code WatchInventory} subscribers.
+ * <p>
+ * Each change is converted to an {@link InventoryEvent} once and offered to every interested
+ * subscriber's bounded, coalescing buffer (see {@link InventorySubscription}). Offering never
+ * blocks the committing thread; delivery happens on virtual threads and on the transport's
+ * ready callbacks, so a slow client only ever delays itself.
+ */
+@Component
+public class InventoryFeed implements MeterBinder, DisposableBean {
+
+    private final InventoryFeedProperties properties;
+
+    private final CopyOnWriteArrayList<InventorySubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService deliveryExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder overflows = new LongAdder();
+
+    public InventoryFeed(InventoryFeedProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Subscribes the stream to changes of the given books. Must be called from the service
+     * method that received the stream, before it returns.
+     *
+     * @param observer the stream to send changes to
+     * @param bookIds  the books to watch, empty for all books
+     * @return {@code false} if the maximum number of subscribers is reached
+     */
+    public boolean subscribe(ServerCallStreamObserver<InventoryEvent> observer, Set<UUID> bookIds) {
+        if (subscriptions.size() >= properties.getMaxSubscribers()) {
+            return false;
+        }
+        InventorySubscription subscription = new InventorySubscription(observer, bookIds, properties.getBufferSize());
+        observer.setOnReadyHandler(subscription::drain);
+        observer.setOnCancelHandler(() -> {
+            subscription.cancelled();
+            subscriptions.remove(subscription);
+        });
+        subscriptions.add(subscription);
+        return true;
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        InventoryEvent inventoryEvent = toInventoryEvent(event);
+        published.increment();
+        for (InventorySubscription subscription : subscriptions) {
+            if (!subscription.watches(event.bookId())) {
+                continue;
+            }
+            switch (subscription.offer(event.bookId(), inventoryEvent)) {
+                case QUEUED -> deliveryExecutor.execute(subscription::drain);
+                case BUFFERED -> {
+                }
+                case MERGED -> coalesced.increment();
+                case OVERFLOWED -> {
+                    overflows.increment();
+                    subscriptions.remove(subscription);
+                    deliveryExecutor.execute(subscription::drain);
+                }
+                case DROPPED -> subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("bookstore.feed.subscribers", subscriptions, CopyOnWriteArrayList::size)
+                .description("Open WatchInventory streams")
+                .register(registry);
+        FunctionCounter.builder("bookstore.feed.published", published, LongAdder::sum)
+                .description("Changes fanned out to subscribers")
+                .register(registry);
+        FunctionCounter.builder("bookstore.feed.coalesced", coalesced, LongAdder::sum)
+                .description("Changes merged into a pending change of a slow subscriber")
+                .register(registry);
+        FunctionCounter.builder("bookstore.feed.overflows", overflows, LongAdder::sum)
+                .description("Subscribers disconnected for falling too far behind")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.forEach(InventorySubscription::complete);
+        subscriptions.clear();
+        deliveryExecutor.close();
+    }
+
+    static InventoryEvent toInventoryEvent(BookChangedEvent event) {
+        InventoryEvent.Builder builder = InventoryEvent.newBuilder()
+                .setType(InventoryEvent.Type.valueOf(event.type().name()))
+                .setId(event.bookId().toString())
+                .setQuantity(event.quantity())
+                .setVersion(event.version());
+        if (event.book() != null) {
+            builder.setBook(event.book());
+        }
+        return builder.build();
+    }
+}
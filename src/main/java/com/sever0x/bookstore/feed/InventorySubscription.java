@@ -0,0 +1,201 @@
+package com.sever0x.bookstore.feed;
+
+import com.sever0x.bookstore.proto.InventoryEvent;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One {@code WatchInventory} stream. Changes are buffered per book in arrival order, and a change
+ * to a book that is still pending is merged into the pending event, so a slow client receives the
+ * latest state of each book rather than every intermediate step. The buffer is bounded by the
+ * number of distinct books; a client falling further behind is disconnected with
+ * {@code RESOURCE_EXHAUSTED} and has to resubscribe.
+ * <p>
+ * Offering never blocks. Delivery respects outbound flow control and is serialized by a
+ * work-in-progress counter, so it runs on whichever thread triggers it without locking the stream.
+ */
+class InventorySubscription {
+
+    private final ServerCallStreamObserver<InventoryEvent> observer;
+
+    private final Set<UUID> bookIds;
+
+    private final int bufferSize;
+
+    private final LinkedHashMap<UUID, InventoryEvent> pending = new LinkedHashMap<>();
+
+    private final AtomicInteger work = new AtomicInteger();
+
+    private boolean overflowed;
+
+    private boolean completing;
+
+    private volatile boolean terminated;
+
+    /**
+     * @param observer   the stream to deliver to
+     * @param bookIds    the books to watch, empty for all books
+     * @param bufferSize the maximum number of books with pending changes
+     */
+    InventorySubscription(ServerCallStreamObserver<InventoryEvent> observer, Set<UUID> bookIds, int bufferSize) {
+        this.observer = observer;
+        this.bookIds = bookIds;
+        this.bufferSize = bufferSize;
+    }
+
+    boolean watches(UUID bookId) {
+        return bookIds.isEmpty() || bookIds.contains(bookId);
+    }
+
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * Buffers the event for delivery.
+     *
+     * @return the outcome; the caller schedules a delivery for {@link Offer#QUEUED} and
+     * {@link Offer#OVERFLOWED}
+     */
+    Offer offer(UUID bookId, InventoryEvent event) {
+        synchronized (pending) {
+            if (terminated || overflowed || completing) {
+                return Offer.DROPPED;
+            }
+            InventoryEvent previous = pending.get(bookId);
+            if (previous != null) {
+                pending.put(bookId, merge(previous, event));
+                return Offer.MERGED;
+            }
+            if (pending.size() >= bufferSize) {
+                overflowed = true;
+                pending.clear();
+                return Offer.OVERFLOWED;
+            }
+            pending.put(bookId, event);
+            // a non-empty buffer already has a delivery scheduled or waits for the client
+            return pending.size() == 1 ? Offer.QUEUED : Offer.BUFFERED;
+        }
+    }
+
+    /**
+     * Sends pending events while the client is ready. Safe to call from any thread; concurrent
+     * calls are folded into the one already running.
+     */
+    void drain() {
+        if (work.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            if (!terminated) {
+                deliver();
+            }
+            missed = work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Completes the stream, e.g. on shutdown, so the client can reconnect elsewhere.
+     */
+    void complete() {
+        synchronized (pending) {
+            completing = true;
+            pending.clear();
+        }
+        drain();
+    }
+
+    void cancelled() {
+        terminated = true;
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    private void deliver() {
+        if (observer.isCancelled()) {
+            cancelled();
+            return;
+        }
+        while (true) {
+            InventoryEvent next = null;
+            synchronized (pending) {
+                if (overflowed || completing) {
+                    terminated = true;
+                } else if (observer.isReady()) {
+                    next = poll();
+                }
+            }
+            if (terminated) {
+                if (overflowed) {
+                    observer.onError(Status.RESOURCE_EXHAUSTED
+                            .withDescription("Subscriber fell more than " + bufferSize + " books behind, resubscribe")
+                            .asRuntimeException());
+                } else {
+                    observer.onCompleted();
+                }
+                return;
+            }
+            if (next == null) {
+                return;
+            }
+            observer.onNext(next);
+        }
+    }
+
+    private InventoryEvent poll() {
+        Iterator<Map.Entry<UUID, InventoryEvent>> iterator = pending.entrySet().iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        InventoryEvent event = iterator.next().getValue();
+        iterator.remove();
+        return event;
+    }
+
+    /**
+     * Folds a later change into a pending one. Listeners run after commit on the committing
+     * threads, so changes may arrive out of order: a change older than the pending version is
+     * counted but otherwise dropped, and a deletion is never superseded. A quantity change keeps
+     * the book details of a pending creation or update, anything else supersedes the pending event.
+     */
+    static InventoryEvent merge(InventoryEvent previous, InventoryEvent next) {
+        InventoryEvent.Builder merged;
+        if (isStale(previous, next)) {
+            merged = previous.toBuilder();
+        } else if (next.getType() == InventoryEvent.Type.QUANTITY_CHANGED && previous.hasBook()) {
+            merged = previous.toBuilder()
+                    .setQuantity(next.getQuantity())
+                    .setVersion(next.getVersion())
+                    .setBook(previous.getBook().toBuilder()
+                            .setQuantity(next.getQuantity())
+                            .setVersion(next.getVersion()));
+        } else {
+            merged = next.toBuilder();
+        }
+        return merged.setCoalesced(previous.getCoalesced() + next.getCoalesced() + 1).build();
+    }
+
+    private static boolean isStale(InventoryEvent previous, InventoryEvent next) {
+        if (previous.getType() == InventoryEvent.Type.DELETED) {
+            return true;
+        }
+        return next.getType() != InventoryEvent.Type.DELETED && next.getVersion() < previous.getVersion();
+    }
+
+    enum Offer {
+        QUEUED,
+        BUFFERED,
+        MERGED,
+        OVERFLOWED,
+        DROPPED
+    }
+}
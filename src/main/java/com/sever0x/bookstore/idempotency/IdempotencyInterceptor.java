@@ -0,0 +1,315 @@
+package com.sever0x.bookstore.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.sever0x.bookstore.config.IdempotencyProperties;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplicates retried unary calls whose request has an {@value #KEY_FIELD} field, such as
+ * {@code AddBook} and {@code UpdateBook}.
+ * <p>
+ * The first call with a key runs, later calls with the same method and key do not reach the
+ * service: they are answered with the response of the first call, once it completes if it is
+ * still in progress. Waiting calls hold no thread. Keys are remembered for {@code ttl} after their
+ * first submission, at most {@code maximumSize} of them, so a retry arriving after its key was
+ * evicted runs again.
+ * <p>
+ * Only successful responses are kept, and only after the service method returned, that is after
+ * its transaction committed. When the first call fails, the calls waiting for it fail with the same
+ * status and the key is forgotten, so that the next retry runs again. A key reused for a different
+ * request is rejected with {@code INVALID_ARGUMENT}. Requests without a key are not deduplicated.
+ * <p>
+ * Calls answered with a kept response are counted as {@code bookstore.rpc.idempotency.replayed}.
+ */
+public class IdempotencyInterceptor implements ServerInterceptor {
+
+    public static final String KEY_FIELD = "idempotencyKey";
+
+    private final int maxKeyLength;
+
+    private final Cache<Key, Submission> submissions;
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentHashMap<String, Optional<FieldDescriptor>> keyFields = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Counter> replays = new ConcurrentHashMap<>();
+
+    public IdempotencyInterceptor(IdempotencyProperties properties, MeterRegistry registry) {
+        this.maxKeyLength = properties.getMaxKeyLength();
+        this.registry = registry;
+        this.submissions = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        FieldDescriptor keyField = keyField(call.getMethodDescriptor());
+        if (keyField == null) {
+            return next.startCall(call, headers);
+        }
+        RecordingCall<ReqT, RespT> recordingCall = new RecordingCall<>(call);
+        return new IdempotentListener<>(next.startCall(recordingCall, headers), call, recordingCall, keyField);
+    }
+
+    /**
+     * @return the key field of the requests of the method, or {@code null} if it takes no key
+     */
+    private FieldDescriptor keyField(MethodDescriptor<?, ?> descriptor) {
+        Optional<FieldDescriptor> keyField = keyFields.get(descriptor.getFullMethodName());
+        if (keyField == null) {
+            keyField = keyFields.computeIfAbsent(descriptor.getFullMethodName(), name -> {
+                if (descriptor.getType() == MethodDescriptor.MethodType.UNARY
+                        && descriptor.getRequestMarshaller() instanceof MethodDescriptor.PrototypeMarshaller<?> marshaller
+                        && marshaller.getMessagePrototype() instanceof Message prototype) {
+                    FieldDescriptor field = prototype.getDescriptorForType().findFieldByName(KEY_FIELD);
+                    if (field != null && !field.isRepeated() && field.getJavaType() == FieldDescriptor.JavaType.STRING) {
+                        return Optional.of(field);
+                    }
+                }
+                return Optional.empty();
+            });
+        }
+        return keyField.orElse(null);
+    }
+
+    private Counter replays(String method) {
+        return replays.computeIfAbsent(method, name -> Counter.builder("bookstore.rpc.idempotency.replayed")
+                .description("Calls answered with the response to an earlier call with the same idempotency key")
+                .tag("method", name)
+                .register(registry));
+    }
+
+    private record Key(String method, String key) {
+    }
+
+    /**
+     * @param response the response of a successful call, {@code null} if the call failed
+     */
+    private record Outcome(Object response, Status status) {
+    }
+
+    /**
+     * A call running or completed for a key, with its request to recognize reused keys.
+     */
+    private static final class Submission {
+
+        private final Object request;
+
+        private final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+
+        private Submission(Object request) {
+            this.request = request;
+        }
+    }
+
+    /**
+     * Records the response of a call running for a key, and completes its submission once the call
+     * is closed and the service method returned, whichever comes last.
+     */
+    private final class RecordingCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private Key key;
+
+        private Submission submission;
+
+        private RespT response;
+
+        private Status status;
+
+        private boolean returned;
+
+        private RecordingCall(ServerCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        private synchronized void run(Key key, Submission submission) {
+            this.key = key;
+            this.submission = submission;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            synchronized (this) {
+                response = message;
+            }
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            boolean complete;
+            synchronized (this) {
+                this.status = status;
+                complete = returned;
+            }
+            super.close(status, trailers);
+            if (complete) {
+                complete();
+            }
+        }
+
+        private void returned() {
+            boolean complete;
+            synchronized (this) {
+                returned = true;
+                complete = status != null;
+            }
+            if (complete) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            Submission submission;
+            Outcome outcome;
+            synchronized (this) {
+                if (this.submission == null) {
+                    return;
+                }
+                submission = this.submission;
+                outcome = new Outcome(status.isOk() ? response : null, status);
+            }
+            if (outcome.response() != null) {
+                submission.outcome.complete(outcome);
+            } else {
+                fail(outcome.status());
+            }
+        }
+
+        private void fail(Status status) {
+            Submission submission;
+            synchronized (this) {
+                if (this.submission == null) {
+                    return;
+                }
+                submission = this.submission;
+            }
+            if (submission.outcome.complete(new Outcome(null, status))) {
+                submissions.asMap().remove(key, submission);
+            }
+        }
+    }
+
+    private final class IdempotentListener<ReqT, RespT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final ServerCall<ReqT, RespT> call;
+
+        private final RecordingCall<ReqT, RespT> recordingCall;
+
+        private final FieldDescriptor keyField;
+
+        /**
+         * Whether the call is answered here instead of by the service.
+         */
+        private boolean intercepted;
+
+        private boolean running;
+
+        private volatile boolean cancelled;
+
+        private IdempotentListener(ServerCall.Listener<ReqT> delegate, ServerCall<ReqT, RespT> call,
+                                   RecordingCall<ReqT, RespT> recordingCall, FieldDescriptor keyField) {
+            super(delegate);
+            this.call = call;
+            this.recordingCall = recordingCall;
+            this.keyField = keyField;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            String key = (String) ((Message) message).getField(keyField);
+            if (key.isEmpty()) {
+                super.onMessage(message);
+                return;
+            }
+            if (key.length() > maxKeyLength) {
+                intercepted = true;
+                call.close(Status.INVALID_ARGUMENT.withDescription(
+                        "Idempotency key must be at most " + maxKeyLength + " characters"), new Metadata());
+                return;
+            }
+
+            String method = call.getMethodDescriptor().getFullMethodName();
+            Key submissionKey = new Key(method, key);
+            Submission submission = new Submission(message);
+            Submission original = submissions.asMap().putIfAbsent(submissionKey, submission);
+            if (original == null) {
+                running = true;
+                recordingCall.run(submissionKey, submission);
+                super.onMessage(message);
+                return;
+            }
+
+            intercepted = true;
+            if (!original.request.equals(message)) {
+                call.close(Status.INVALID_ARGUMENT.withDescription(
+                        "Idempotency key was already used for a different request"), new Metadata());
+                return;
+            }
+            replays(method).increment();
+            original.outcome.thenAccept(this::replay);
+        }
+
+        @Override
+        public void onHalfClose() {
+            if (intercepted) {
+                return;
+            }
+            if (!running) {
+                super.onHalfClose();
+                return;
+            }
+            try {
+                super.onHalfClose();
+            } catch (RuntimeException | Error e) {
+                // the transaction did not commit even if a response was sent
+                recordingCall.fail(Status.fromThrowable(e));
+                throw e;
+            }
+            recordingCall.returned();
+        }
+
+        @Override
+        public void onCancel() {
+            cancelled = true;
+            if (running) {
+                recordingCall.fail(Status.ABORTED.withDescription(
+                        "The call with the same idempotency key was cancelled, retry it"));
+            }
+            super.onCancel();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void replay(Outcome outcome) {
+            if (cancelled) {
+                return;
+            }
+            if (outcome.response() != null) {
+                call.sendHeaders(new Metadata());
+                call.sendMessage((RespT) outcome.response());
+            }
+            call.close(outcome.status(), new Metadata());
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package com.sever0x.bookstore.index;
+
+import com.sever0x.bookstore.config.SearchIndexProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.repository.BookStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over book titles and authors.
+ * <p>
+ * Text is case-folded, stripped of diacritics and split into tokens at every character that is
+ * not a letter or digit. Each book gets a dense document number, kept across updates and reused
+ * after the book is deleted, and every token keeps sorted
+ * {@code int} posting lists of the documents containing it in the title and in the author, so the
+ * index costs a few bytes per token occurrence. The sorted term dictionary answers prefix queries
+ * by range scans.
+ * <p>
+ * All query tokens must match. A document scores, per query token, the best of its matching terms
+ * weighted by field (title over author), match kind (exact over prefix) and rarity of the term.
+ * <p>
+ * The index is loaded at startup and updated when changes commit. Searches run concurrently,
+ * updates are serialized. When it is loaded from a catalog snapshot instead, the snapshot's books
+ * are {@link #verify verified} against the database afterwards.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex implements SmartInitializingSingleton {
+
+    private static final float TITLE_WEIGHT = 2.0f;
+
+    private static final float AUTHOR_WEIGHT = 1.0f;
+
+    private static final float PREFIX_FACTOR = 0.5f;
+
+    /**
+     * Books matching a search, ordered by descending relevance.
+     *
+     * @param totalHits number of matching books
+     * @param bookIds   identifiers of the books of the requested page
+     */
+    public record SearchResult(int totalHits, List<UUID> bookIds) {
+    }
+
+    private final SearchIndexProperties properties;
+
+    private final BookStorage bookStorage;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+    private final Map<UUID, Integer> documents = new HashMap<>();
+
+    private UUID[] bookIds = new UUID[1024];
+
+    private String[][] titleTerms = new String[1024][];
+
+    private String[][] authorTerms = new String[1024][];
+
+    private int nextDocument;
+
+    /**
+     * Document numbers of deleted books, handed out again before new ones.
+     */
+    private final BitSet freeDocuments = new BitSet();
+
+    /**
+     * Documents loaded from a snapshot and not verified yet, {@code null} unless verifying.
+     */
+    private BitSet unverified;
+
+    /**
+     * Books changed by committed changes since the snapshot was loaded, {@code null} unless verifying.
+     */
+    private Set<UUID> changedSinceSnapshot;
+
+    private volatile boolean loaded;
+
+    public BookSearchIndex(SearchIndexProperties properties, BookStorage bookStorage,
+                           PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.bookStorage = bookStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Searches books whose title or author contain all tokens of the query.
+     *
+     * @param query    the free-text query
+     * @param prefix   whether query tokens also match terms starting with them
+     * @param offset   number of best matches to skip
+     * @param limit    maximum number of books to return
+     * @return the total number of matches and the requested page of them
+     * @throws IllegalArgumentException if a token in prefix mode starts more than
+     *                                  {@code maxPrefixExpansions} other terms, whose matches would be incomplete
+     */
+    public SearchResult search(String query, boolean prefix, int offset, int limit) {
+        Set<String> tokens = new LinkedHashSet<>(tokenize(query));
+        if (tokens.isEmpty()) {
+            return new SearchResult(0, List.of());
+        }
+
+        lock.readLock().lock();
+        try {
+            List<List<Match>> matchesPerToken = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                List<Match> matches = matchingTerms(token, prefix);
+                if (matches.isEmpty()) {
+                    return new SearchResult(0, List.of());
+                }
+                matchesPerToken.add(matches);
+            }
+            // start from the most selective token to keep the candidate set small
+            matchesPerToken.sort((a, b) -> Long.compare(postingCount(a), postingCount(b)));
+
+            Candidates candidates = union(matchesPerToken.get(0));
+            for (int i = 1; i < matchesPerToken.size() && candidates.size > 0; i++) {
+                candidates.intersect(matchesPerToken.get(i));
+            }
+            return page(candidates, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the book to the index, replacing its previous title and author.
+     */
+    public void index(UUID bookId, String title, String author) {
+        lock.writeLock().lock();
+        try {
+            markChanged(bookId);
+            indexDocument(bookId, title, author);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID bookId) {
+        lock.writeLock().lock();
+        try {
+            markChanged(bookId);
+            removeDocument(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a book of a catalog snapshot, which may be outdated until it is verified.
+     * The index is considered loaded from then on.
+     */
+    public void indexFromSnapshot(UUID bookId, String title, String author) {
+        lock.writeLock().lock();
+        try {
+            if (unverified == null) {
+                unverified = new BitSet();
+                changedSinceSnapshot = new HashSet<>();
+            }
+            int document = indexDocument(bookId, title, author);
+            unverified.set(document);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Corrects the book from the snapshot with its state read from the database, unless a change
+     * to it committed since the snapshot was loaded: that change is at least as recent as the
+     * database read. Books missing from the snapshot are added.
+     */
+    public void verify(UUID bookId, String title, String author) {
+        lock.writeLock().lock();
+        try {
+            if (unverified == null || changedSinceSnapshot.contains(bookId)) {
+                return;
+            }
+            Integer document = documents.get(bookId);
+            if (document == null) {
+                indexDocument(bookId, title, author);
+            } else if (unverified.get(document)) {
+                unverified.clear(document);
+                if (!Arrays.equals(titleTerms[document], distinctTokens(title))
+                        || !Arrays.equals(authorTerms[document], distinctTokens(author))) {
+                    indexDocument(bookId, title, author);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends the verification of a snapshot.
+     *
+     * @param complete whether every book of the database was verified; if so, books of the
+     *                 snapshot that were not verified no longer exist and are removed
+     * @return the number of removed books
+     */
+    public int finishVerification(boolean complete) {
+        lock.writeLock().lock();
+        try {
+            if (unverified == null) {
+                return 0;
+            }
+            int removed = 0;
+            if (complete) {
+                for (int document = unverified.nextSetBit(0); document >= 0; document = unverified.nextSetBit(document + 1)) {
+                    removeDocument(bookIds[document]);
+                    removed++;
+                }
+            }
+            unverified = null;
+            changedSinceSnapshot = null;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        switch (event.type()) {
+            case CREATED, UPDATED -> index(event.bookId(), event.book().getTitle(), event.book().getAuthor());
+            case DELETED -> remove(event.bookId());
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isEnabled() || loaded) {
+            return;
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<BookStorage.SearchEntry> books = bookStorage.streamSearchEntries()) {
+                books.forEach(book -> index(book.getId(), book.getTitle(), book.getAuthor()));
+            }
+        });
+        log.info("Indexed {} books with {} distinct terms for search in {} ms",
+                size(), terms.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean tokenChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private List<Match> matchingTerms(String token, boolean prefix) {
+        List<Match> matches = new ArrayList<>();
+        Postings exact = terms.get(token);
+        if (exact != null) {
+            matches.add(new Match(exact, idf(exact), true));
+        }
+        if (prefix) {
+            Collection<Postings> expansions = terms.subMap(token, false, token + Character.MAX_VALUE, false).values();
+            if (expansions.size() > properties.getMaxPrefixExpansions()) {
+                // a truncated expansion would return a partial result that looks complete
+                throw new IllegalArgumentException("Prefix '" + token + "' matches more than "
+                        + properties.getMaxPrefixExpansions() + " words, use a longer prefix");
+            }
+            for (Postings postings : expansions) {
+                matches.add(new Match(postings, idf(postings), false));
+            }
+        }
+        return matches;
+    }
+
+    private float idf(Postings postings) {
+        return (float) Math.log(1.0 + (double) documents.size() / Math.max(1, postings.documentFrequency()));
+    }
+
+    private static long postingCount(List<Match> matches) {
+        long count = 0;
+        for (Match match : matches) {
+            count += match.postings().title.size + match.postings().author.size;
+        }
+        return count;
+    }
+
+    private Candidates union(List<Match> matches) {
+        long[] packed = new long[(int) postingCount(matches)];
+        int size = 0;
+        for (Match match : matches) {
+            size = pack(packed, size, match.postings().title, match.weight(true));
+            size = pack(packed, size, match.postings().author, match.weight(false));
+        }
+        Arrays.sort(packed, 0, size);
+
+        Candidates candidates = new Candidates(size);
+        for (int i = 0; i < size; i++) {
+            int document = (int) (packed[i] >>> 32);
+            float score = Float.intBitsToFloat((int) packed[i]);
+            if (candidates.size > 0 && candidates.documents[candidates.size - 1] == document) {
+                candidates.scores[candidates.size - 1] = Math.max(candidates.scores[candidates.size - 1], score);
+            } else {
+                candidates.documents[candidates.size] = document;
+                candidates.scores[candidates.size] = score;
+                candidates.size++;
+            }
+        }
+        return candidates;
+    }
+
+    private static int pack(long[] packed, int size, IntList documents, float weight) {
+        int bits = Float.floatToIntBits(weight);
+        for (int i = 0; i < documents.size; i++) {
+            packed[size++] = ((long) documents.values[i] << 32) | (bits & 0xFFFFFFFFL);
+        }
+        return size;
+    }
+
+    private SearchResult page(Candidates candidates, int offset, int limit) {
+        long[] ranked = new long[candidates.size];
+        for (int i = 0; i < candidates.size; i++) {
+            // higher scores first, equal scores in document order
+            long inverted = Integer.MAX_VALUE - Float.floatToIntBits(candidates.scores[i]);
+            ranked[i] = (inverted << 32) | candidates.documents[i];
+        }
+        Arrays.sort(ranked);
+
+        List<UUID> page = new ArrayList<>(Math.max(0, Math.min(limit, candidates.size - offset)));
+        for (int i = offset; i < candidates.size && page.size() < limit; i++) {
+            page.add(bookIds[(int) ranked[i]]);
+        }
+        return new SearchResult(candidates.size, page);
+    }
+
+    private int indexDocument(UUID bookId, String title, String author) {
+        Integer previous = documents.get(bookId);
+        int document;
+        if (previous != null) {
+            document = previous;
+            clearDocument(document);
+        } else {
+            document = allocateDocument();
+        }
+        bookIds[document] = bookId;
+        titleTerms[document] = addPostings(document, title, true);
+        authorTerms[document] = addPostings(document, author, false);
+        documents.put(bookId, document);
+        return document;
+    }
+
+    private void markChanged(UUID bookId) {
+        if (changedSinceSnapshot != null) {
+            changedSinceSnapshot.add(bookId);
+        }
+    }
+
+    private static String[] distinctTokens(String text) {
+        return new LinkedHashSet<>(tokenize(text)).toArray(String[]::new);
+    }
+
+    private String[] addPostings(int document, String text, boolean title) {
+        String[] tokens = distinctTokens(text);
+        String[] canonical = new String[tokens.length];
+        for (int i = 0; i < canonical.length; i++) {
+            String token = tokens[i];
+            Postings postings = terms.computeIfAbsent(token, key -> new Postings());
+            (title ? postings.title : postings.author).add(document);
+            // keep the dictionary's instance so documents do not hold copies of the strings
+            canonical[i] = terms.ceilingKey(token);
+        }
+        return canonical;
+    }
+
+    private int allocateDocument() {
+        int document = freeDocuments.nextSetBit(0);
+        if (document >= 0) {
+            freeDocuments.clear(document);
+            return document;
+        }
+        document = nextDocument++;
+        ensureCapacity(document);
+        return document;
+    }
+
+    private void removeDocument(UUID bookId) {
+        Integer document = documents.remove(bookId);
+        if (document == null) {
+            return;
+        }
+        clearDocument(document);
+        bookIds[document] = null;
+        freeDocuments.set(document);
+    }
+
+    private void clearDocument(int document) {
+        if (unverified != null) {
+            unverified.clear(document);
+        }
+        removePostings(document, titleTerms[document], true);
+        removePostings(document, authorTerms[document], false);
+        titleTerms[document] = null;
+        authorTerms[document] = null;
+    }
+
+    private void removePostings(int document, String[] tokens, boolean title) {
+        for (String token : tokens) {
+            Postings postings = terms.get(token);
+            (title ? postings.title : postings.author).remove(document);
+            if (postings.documentFrequency() == 0) {
+                terms.remove(token);
+            }
+        }
+    }
+
+    private void ensureCapacity(int document) {
+        if (document >= bookIds.length) {
+            int capacity = bookIds.length * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            titleTerms = Arrays.copyOf(titleTerms, capacity);
+            authorTerms = Arrays.copyOf(authorTerms, capacity);
+        }
+    }
+
+    private record Match(Postings postings, float idf, boolean exact) {
+
+        float weight(boolean title) {
+            return (title ? TITLE_WEIGHT : AUTHOR_WEIGHT) * idf * (exact ? 1.0f : PREFIX_FACTOR);
+        }
+    }
+
+    /**
+     * Documents containing a term, one sorted list per field.
+     */
+    private static final class Postings {
+
+        private final IntList title = new IntList();
+
+        private final IntList author = new IntList();
+
+        private int documentFrequency() {
+            return title.size + author.size;
+        }
+    }
+
+    /**
+     * Candidate documents in ascending order with their scores so far.
+     */
+    private static final class Candidates {
+
+        private final int[] documents;
+
+        private final float[] scores;
+
+        private int size;
+
+        private Candidates(int capacity) {
+            documents = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        /**
+         * Keeps only documents matched by one of the terms, adding the best weight among them.
+         */
+        private void intersect(List<Match> matches) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                float best = 0;
+                for (Match match : matches) {
+                    if (match.postings().title.contains(documents[i])) {
+                        best = Math.max(best, match.weight(true));
+                    }
+                    if (match.postings().author.contains(documents[i])) {
+                        best = Math.max(best, match.weight(false));
+                    }
+                }
+                if (best > 0) {
+                    documents[kept] = documents[i];
+                    scores[kept] = scores[i] + best;
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+
+    /**
+     * Growable sorted array of {@code int} document numbers. New documents get the highest number
+     * and are appended; only reused numbers are inserted in the middle.
+     */
+    private static final class IntList {
+
+        private int[] values = new int[2];
+
+        private int size;
+
+        private void add(int value) {
+            int index = size == 0 || values[size - 1] < value ? size : Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) {
+                index = -index - 1;
+            } else if (index < size) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+        }
+
+        private void remove(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+        }
+
+        private boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+    }
+}
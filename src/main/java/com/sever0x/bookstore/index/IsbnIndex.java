@@ -0,0 +1,124 @@
+package com.sever0x.bookstore.index;
+
+import com.sever0x.bookstore.config.IsbnIndexProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.repository.BookStorage;
+import com.sever0x.bookstore.validation.BookValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index from ISBN to book identifier. The 13-digit ISBN is kept as a primitive
+ * {@code long} in a {@link LongUuidHashMap}, so millions of entries fit in a few tens of megabytes.
+ * <p>
+ * The index is loaded at startup, from a catalog snapshot when one is available, and updated when
+ * changes commit. It is a hint, not the source of truth: an entry can be stale after a book
+ * changed its ISBN or was deleted, so callers must check the resolved book and call
+ * {@link #remove(String, UUID)} when it does not match. ISBNs that are not 13 digits, e.g. rows
+ * written before validation existed, are never indexed; lookups of such books fall back to the
+ * database.
+ */
+@Slf4j
+@Component
+public class IsbnIndex implements SmartInitializingSingleton {
+
+    private final boolean enabled;
+
+    private final LongUuidHashMap entries;
+
+    private final BookStorage bookStorage;
+
+    private final BookValidator bookValidator;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean loaded;
+
+    public IsbnIndex(IsbnIndexProperties properties, BookStorage bookStorage, BookValidator bookValidator,
+                     PlatformTransactionManager transactionManager) {
+        this.enabled = properties.isEnabled();
+        this.entries = new LongUuidHashMap(enabled ? properties.getExpectedSize() : 0);
+        this.bookStorage = bookStorage;
+        this.bookValidator = bookValidator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the identifier of the book last known to have the given ISBN.
+     *
+     * @param isbn the 13-digit ISBN
+     * @return the book identifier, or an empty optional if unknown, not a valid ISBN or the index is disabled
+     */
+    public Optional<UUID> find(String isbn) {
+        if (!enabled || !bookValidator.isValidISBN(isbn)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(entries.get(Long.parseLong(isbn)));
+    }
+
+    public void put(String isbn, UUID bookId) {
+        if (enabled && indexable(isbn, bookId)) {
+            entries.put(Long.parseLong(isbn), bookId);
+        }
+    }
+
+    /**
+     * Removes the entry of the ISBN if it still points to the given book.
+     */
+    public void remove(String isbn, UUID bookId) {
+        if (enabled && indexable(isbn, bookId)) {
+            entries.remove(Long.parseLong(isbn), bookId);
+        }
+    }
+
+    /**
+     * Marks the index as loaded, e.g. from a catalog snapshot, so it is not loaded from the
+     * database at startup.
+     */
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.book() != null) {
+            put(event.book().getIsbn(), event.bookId());
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled || loaded) {
+            return;
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<BookStorage.IsbnEntry> isbns = bookStorage.streamIsbnEntries()) {
+                isbns.forEach(entry -> put(entry.getIsbn(), entry.getId()));
+            }
+        });
+        log.info("Loaded {} ISBNs into the index in {} ms", entries.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private boolean indexable(String isbn, UUID bookId) {
+        if (bookValidator.isValidISBN(isbn)) {
+            return true;
+        }
+        log.warn("Skipping invalid ISBN '{}' of book {} in the index", isbn, bookId);
+        return false;
+    }
+}
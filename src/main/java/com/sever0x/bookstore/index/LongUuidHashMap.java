@@ -0,0 +1,175 @@
+package com.sever0x.bookstore.index;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash map from non-negative {@code long} keys to {@link UUID} values, stored in
+ * three primitive arrays (about 24 bytes per slot instead of several boxed objects per entry).
+ * Uses linear probing with backward-shift deletion, so no tombstones accumulate.
+ * <p>
+ * Safe for concurrent use: writers take an exclusive lock, readers use optimistic reads and
+ * fall back to a shared lock only when a write interfered.
+ */
+class LongUuidHashMap {
+
+    private static final long EMPTY = 0L;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+
+    private long[] mostSignificantBits;
+
+    private long[] leastSignificantBits;
+
+    private int size;
+
+    LongUuidHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    UUID get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        UUID value = find(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = find(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    void put(long key, UUID value) {
+        long stamp = lock.writeLock();
+        try {
+            if (size + 1 > keys.length * LOAD_FACTOR) {
+                resize(keys.length * 2);
+            }
+            if (insert(key + 1, value.getMostSignificantBits(), value.getLeastSignificantBits())) {
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the key only if it is still mapped to the given value.
+     */
+    void remove(long key, UUID value) {
+        long stamp = lock.writeLock();
+        try {
+            long stored = key + 1;
+            int mask = keys.length - 1;
+            int slot = slot(stored, mask);
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == stored) {
+                    if (mostSignificantBits[slot] == value.getMostSignificantBits()
+                            && leastSignificantBits[slot] == value.getLeastSignificantBits()) {
+                        shiftBack(slot, mask);
+                        size--;
+                    }
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private UUID find(long key) {
+        long[] currentKeys = keys;
+        long[] currentMsb = mostSignificantBits;
+        long[] currentLsb = leastSignificantBits;
+        if (currentKeys.length != currentMsb.length || currentKeys.length != currentLsb.length) {
+            return null;
+        }
+        long stored = key + 1;
+        int mask = currentKeys.length - 1;
+        int slot = slot(stored, mask);
+        for (int probes = 0; probes < currentKeys.length && currentKeys[slot] != EMPTY; probes++) {
+            if (currentKeys[slot] == stored) {
+                return new UUID(currentMsb[slot], currentLsb[slot]);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private boolean insert(long stored, long msb, long lsb) {
+        int mask = keys.length - 1;
+        int slot = slot(stored, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == stored) {
+                mostSignificantBits[slot] = msb;
+                leastSignificantBits[slot] = lsb;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = stored;
+        mostSignificantBits[slot] = msb;
+        leastSignificantBits[slot] = lsb;
+        return true;
+    }
+
+    private void shiftBack(int removed, int mask) {
+        int gap = removed;
+        int slot = (gap + 1) & mask;
+        while (keys[slot] != EMPTY) {
+            int home = slot(keys[slot], mask);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                mostSignificantBits[gap] = mostSignificantBits[slot];
+                leastSignificantBits[gap] = leastSignificantBits[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldMsb = mostSignificantBits;
+        long[] oldLsb = leastSignificantBits;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                insert(oldKeys[i], oldMsb[i], oldLsb[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+    }
+
+    private static int slot(long stored, int mask) {
+        long hash = stored * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)));
+        return capacity < expectedSize / LOAD_FACTOR ? capacity * 2 : capacity;
+    }
+}
@@ -0,0 +1,350 @@
+package com.sever0x.bookstore.inventory;
+
+import com.sever0x.bookstore.config.InventoryStatsProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.repository.BookStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Inventory totals maintained incrementally from committed changes, so that they are answered
+ * without reading the catalog.
+ * <p>
+ * The author and quantity of every book are kept by identifier, which turns each change into a
+ * delta of the catalog totals and of the author's totals. Authors are also kept sorted by units
+ * for the top authors. Books with at most {@code maxLowStockThreshold} units are kept sorted by
+ * quantity and identifier in a partial index, along with a count per quantity, so low stock is
+ * listed in {@code O(log n + k)} and counted in {@code O(threshold)}, independent of the catalog size.
+ * <p>
+ * The statistics are loaded at startup and updated when changes commit; in write-behind mode a
+ * quantity change counts once it is flushed. Reads run concurrently, updates are serialized.
+ * Changes carry the version of the book and a change older than the version already recorded for
+ * the book is ignored, since concurrent transactions deliver their changes out of commit order.
+ */
+@Slf4j
+@Component
+public class InventoryStats implements SmartInitializingSingleton {
+
+    /**
+     * Totals of the catalog and of the requested authors, taken at the same time.
+     *
+     * @param titles     number of books
+     * @param units      sum of the quantities
+     * @param outOfStock number of books without units
+     */
+    public record Stats(int titles, long units, int outOfStock, List<AuthorTotals> authors) {
+    }
+
+    public record AuthorTotals(String author, int titles, long units, int outOfStock) {
+    }
+
+    /**
+     * @param totalCount    number of books at or below the threshold
+     * @param bookIds       identifiers of the books of the page, by ascending quantity
+     * @param nextPageToken position after the page, empty when there are no more books
+     */
+    public record LowStockPage(int totalCount, List<UUID> bookIds, String nextPageToken) {
+    }
+
+    private static final int TOKEN_LENGTH = Integer.BYTES + 2 * Long.BYTES;
+
+    private final InventoryStatsProperties properties;
+
+    private final BookStorage bookStorage;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, Stock> books = new HashMap<>();
+
+    private final Map<String, Author> authors = new HashMap<>();
+
+    private final NavigableSet<Author> authorsByUnits = new TreeSet<>(Comparator.comparingLong((Author author) -> author.units)
+            .reversed()
+            .thenComparing(author -> author.name));
+
+    private final NavigableSet<LowStock> lowStock = new TreeSet<>(Comparator.comparingInt(LowStock::quantity)
+            .thenComparing(LowStock::bookId));
+
+    /**
+     * Number of books per quantity up to the highest threshold.
+     */
+    private final int[] lowStockCounts;
+
+    private long units;
+
+    private int outOfStock;
+
+    public InventoryStats(InventoryStatsProperties properties, BookStorage bookStorage,
+                          PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.bookStorage = bookStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.lowStockCounts = new int[properties.getMaxLowStockThreshold() + 1];
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public int getMaxLowStockThreshold() {
+        return properties.getMaxLowStockThreshold();
+    }
+
+    /**
+     * @param authorNames authors to report, in the given order; unknown authors have zero totals
+     * @param topAuthors  number of authors with the most units to report after them
+     * @return the catalog totals and the totals of the authors
+     */
+    public Stats stats(Collection<String> authorNames, int topAuthors) {
+        lock.readLock().lock();
+        try {
+            List<AuthorTotals> authorTotals = new ArrayList<>(authorNames.size() + Math.min(topAuthors, authors.size()));
+            for (String name : authorNames) {
+                Author author = authors.get(name);
+                authorTotals.add(author == null ? new AuthorTotals(name, 0, 0, 0) : author.totals());
+            }
+            Iterator<Author> top = authorsByUnits.iterator();
+            for (int i = 0; i < topAuthors && top.hasNext(); i++) {
+                authorTotals.add(top.next().totals());
+            }
+            return new Stats(books.size(), units, outOfStock, authorTotals);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lists the books with at most the given quantity, by ascending quantity and identifier.
+     *
+     * @param threshold the highest quantity, at most {@code maxLowStockThreshold}
+     * @param pageToken the next page token of the previous page, empty for the first page
+     * @param limit     the maximum number of books to return
+     * @return the requested page
+     * @throws IllegalArgumentException if the page token is malformed
+     */
+    public LowStockPage lowStock(int threshold, String pageToken, int limit) {
+        if (threshold < 0 || threshold > getMaxLowStockThreshold()) {
+            throw new IllegalArgumentException("Threshold must be between 0 and " + getMaxLowStockThreshold());
+        }
+        LowStock after = pageToken.isEmpty() ? null : decode(pageToken);
+
+        lock.readLock().lock();
+        try {
+            int totalCount = 0;
+            for (int quantity = 0; quantity <= threshold; quantity++) {
+                totalCount += lowStockCounts[quantity];
+            }
+            Iterator<LowStock> entries = (after == null ? lowStock : lowStock.tailSet(after, false)).iterator();
+            List<UUID> bookIds = new ArrayList<>(Math.min(limit, totalCount));
+            LowStock last = null;
+            while (bookIds.size() < limit && entries.hasNext()) {
+                LowStock entry = entries.next();
+                if (entry.quantity() > threshold) {
+                    return new LowStockPage(totalCount, bookIds, "");
+                }
+                bookIds.add(entry.bookId());
+                last = entry;
+            }
+            boolean more = entries.hasNext() && entries.next().quantity() <= threshold;
+            return new LowStockPage(totalCount, bookIds, more ? encode(last) : "");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the author and quantity of a book, replacing what was known about it unless that has
+     * a higher version.
+     */
+    public void put(UUID bookId, String author, int quantity, long version) {
+        lock.writeLock().lock();
+        try {
+            Stock previous = books.get(bookId);
+            if (previous != null) {
+                if (previous.version() > version) {
+                    return;
+                }
+                books.remove(bookId);
+                subtract(bookId, previous);
+            }
+            add(bookId, author == null ? "" : author, quantity, version);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records the quantity of a known book unless a higher version of it is recorded, a book not
+     * known yet is ignored.
+     */
+    public void setQuantity(UUID bookId, int quantity, long version) {
+        lock.writeLock().lock();
+        try {
+            Stock previous = books.get(bookId);
+            if (previous != null && previous.version() <= version) {
+                books.remove(bookId);
+                subtract(bookId, previous);
+                add(bookId, previous.author(), quantity, version);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID bookId) {
+        lock.writeLock().lock();
+        try {
+            Stock previous = books.remove(bookId);
+            if (previous != null) {
+                subtract(bookId, previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        switch (event.type()) {
+            case CREATED, UPDATED -> put(event.bookId(), event.book().getAuthor(), event.book().getQuantity(), event.version());
+            case QUANTITY_CHANGED -> setQuantity(event.bookId(), event.quantity(), event.version());
+            case DELETED -> remove(event.bookId());
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<BookStorage.StockEntry> entries = bookStorage.streamStockEntries()) {
+                entries.forEach(entry -> put(entry.getId(), entry.getAuthor(),
+                        entry.getQuantity() == null ? 0 : entry.getQuantity(),
+                        entry.getVersion() == null ? 1 : entry.getVersion()));
+            }
+        });
+        log.info("Loaded inventory statistics of {} books by {} authors in {} ms",
+                books.size(), authors.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void add(UUID bookId, String authorName, int quantity, long version) {
+        Author author = authors.get(authorName);
+        if (author == null) {
+            author = new Author(authorName);
+            authors.put(authorName, author);
+        } else {
+            authorsByUnits.remove(author);
+        }
+        author.titles++;
+        author.units += quantity;
+        units += quantity;
+        if (quantity <= 0) {
+            author.outOfStock++;
+            outOfStock++;
+        }
+        authorsByUnits.add(author);
+        // the author's name is shared by all of its books
+        books.put(bookId, new Stock(author.name, quantity, version));
+        if (quantity >= 0 && quantity < lowStockCounts.length) {
+            lowStock.add(new LowStock(quantity, bookId));
+            lowStockCounts[quantity]++;
+        }
+    }
+
+    private void subtract(UUID bookId, Stock stock) {
+        Author author = authors.get(stock.author());
+        authorsByUnits.remove(author);
+        author.titles--;
+        author.units -= stock.quantity();
+        units -= stock.quantity();
+        if (stock.quantity() <= 0) {
+            author.outOfStock--;
+            outOfStock--;
+        }
+        if (author.titles == 0) {
+            authors.remove(author.name);
+        } else {
+            authorsByUnits.add(author);
+        }
+        if (stock.quantity() >= 0 && stock.quantity() < lowStockCounts.length) {
+            lowStock.remove(new LowStock(stock.quantity(), bookId));
+            lowStockCounts[stock.quantity()]--;
+        }
+    }
+
+    private static String encode(LowStock position) {
+        ByteBuffer buffer = ByteBuffer.allocate(TOKEN_LENGTH)
+                .putInt(position.quantity())
+                .putLong(position.bookId().getMostSignificantBits())
+                .putLong(position.bookId().getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    private static LowStock decode(String token) {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != TOKEN_LENGTH) {
+            throw new IllegalArgumentException("Malformed page token");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new LowStock(buffer.getInt(), new UUID(buffer.getLong(), buffer.getLong()));
+    }
+
+    /**
+     * @param version the version of the book the quantity was recorded at
+     */
+    private record Stock(String author, int quantity, long version) {
+    }
+
+    private record LowStock(int quantity, UUID bookId) {
+    }
+
+    /**
+     * Totals of an author, mutated only while removed from {@link #authorsByUnits}.
+     */
+    private static final class Author {
+
+        private final String name;
+
+        private int titles;
+
+        private long units;
+
+        private int outOfStock;
+
+        private Author(String name) {
+            this.name = name;
+        }
+
+        private AuthorTotals totals() {
+            return new AuthorTotals(name, titles, units, outOfStock);
+        }
+    }
+}
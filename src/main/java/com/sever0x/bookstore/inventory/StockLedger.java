@@ -0,0 +1,354 @@
+package com.sever0x.bookstore.inventory;
+
+import com.sever0x.bookstore.config.WriteBehindProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.repository.BookStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Applies quantity changes of books.
+ * <p>
+ * By default every change is a conditional update of the book row. In write-behind mode changes
+ * are applied to a per-book counter in memory and are visible to readers immediately. A scheduler
+ * periodically drains the counters and applies the coalesced deltas in one transaction; if the
+ * transaction fails the deltas are put back, so a change is either committed once or retried.
+ * <p>
+ * A counter holds the stored quantity and version of the book, read together from the primary,
+ * and the changes not flushed yet in one immutable state replaced by compare-and-set. Checking that
+ * the quantity stays non-negative and applying the change are one atomic step, so concurrent
+ * reservations of the last units cannot oversell. A flush applies a delta only while the row still
+ * has the version the counter was seeded or last flushed with, which orders it against replacements
+ * of the book: when an update or delete of the book commits first, the delta is dropped as if its
+ * changes had been made before the replacement. Replacements also retire the counter, and changes
+ * racing with the retirement retry on a new counter seeded from the database. Counters without
+ * changes left after a flush commits are retired as well, so only books changed since the last
+ * flush are kept in memory.
+ * <p>
+ * Changes not flushed yet, at most one flush interval of them, are lost if the process crashes:
+ * there is no journal, crash safety is limited to each flush committing atomically and never twice.
+ * A remaining flush runs on shutdown.
+ */
+@Slf4j
+@Component
+public class StockLedger implements SmartLifecycle {
+
+    public enum Outcome {
+        APPLIED,
+        NOT_FOUND,
+        INSUFFICIENT_STOCK
+    }
+
+    /**
+     * @param outcome  whether the change was applied
+     * @param quantity the quantity after the change, or the current one if the stock was insufficient
+     */
+    public record Adjustment(Outcome outcome, int quantity) {
+    }
+
+    private final WriteBehindProperties properties;
+
+    private final BookStorage bookStorage;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<UUID, Counter> counters = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+    public StockLedger(WriteBehindProperties properties, BookStorage bookStorage,
+                       PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher) {
+        this.properties = properties;
+        this.bookStorage = bookStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    public boolean isWriteBehind() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Adds a signed delta to the quantity of a book unless it would become negative.
+     *
+     * @param bookId the book identifier
+     * @param delta  the change of the quantity
+     * @return the outcome and the resulting quantity
+     */
+    public Adjustment adjust(UUID bookId, int delta) {
+        return isWriteBehind() ? adjustInMemory(bookId, delta) : adjustInDatabase(bookId, delta);
+    }
+
+    /**
+     * Returns the book with its quantity and version including changes not yet flushed to the database.
+     *
+     * @param book the book as stored in the database
+     * @return the book with the current quantity
+     */
+    public BookResponse withPendingQuantity(BookResponse book) {
+        if (!isWriteBehind()) {
+            return book;
+        }
+        Counter counter = counters.get(UUID.fromString(book.getId()));
+        State state = counter == null ? null : counter.get();
+        return state == null || state.retired() ? book : book.toBuilder()
+                .setQuantity(Math.toIntExact(state.quantity()))
+                .setVersion(state.version())
+                .build();
+    }
+
+    /**
+     * Returns the version of a book including changes not yet flushed to the database.
+     *
+     * @param bookId the book identifier
+     * @return the version, or an empty optional if the book has no changes in memory
+     */
+    public Optional<Long> pendingVersion(UUID bookId) {
+        if (!isWriteBehind()) {
+            return Optional.empty();
+        }
+        Counter counter = counters.get(bookId);
+        State state = counter == null ? null : counter.get();
+        return state == null || state.retired() ? Optional.empty() : Optional.of(state.version());
+    }
+
+    private Adjustment adjustInDatabase(UUID bookId, int delta) {
+        return transactionTemplate.execute(status -> {
+            if (bookStorage.adjustQuantity(bookId, delta) == 0) {
+                return bookStorage.findQuantityById(bookId)
+                        .map(quantity -> new Adjustment(Outcome.INSUFFICIENT_STOCK, quantity))
+                        .orElseGet(() -> new Adjustment(Outcome.NOT_FOUND, 0));
+            }
+            BookStorage.QuantityVersion stored = bookStorage.findQuantityVersionById(bookId).orElseThrow();
+            eventPublisher.publishEvent(BookChangedEvent.quantityChanged(bookId, stored.getQuantity(), stored.getVersion()));
+            return new Adjustment(Outcome.APPLIED, stored.getQuantity());
+        });
+    }
+
+    private Adjustment adjustInMemory(UUID bookId, int delta) {
+        while (true) {
+            Counter counter = counters.get(bookId);
+            if (counter == null) {
+                // read-write, so replica routing reads the primary: a lagging replica would seed an
+                // outdated version and every flush of the counter would be dropped
+                Optional<BookStorage.QuantityVersion> stored = transactionTemplate.execute(status ->
+                        bookStorage.findQuantityVersionById(bookId).filter(book -> book.getQuantity() != null));
+                if (stored.isEmpty()) {
+                    return new Adjustment(Outcome.NOT_FOUND, 0);
+                }
+                counter = counters.computeIfAbsent(bookId, id -> new Counter(new State(
+                        stored.get().getQuantity(), stored.get().getVersion(), 0, 0, false)));
+            }
+            State state = counter.get();
+            if (state.retired()) {
+                counters.remove(bookId, counter);
+                continue;
+            }
+            long quantity = state.quantity();
+            if (quantity + delta < 0) {
+                return new Adjustment(Outcome.INSUFFICIENT_STOCK, Math.toIntExact(quantity));
+            }
+            int result = Math.toIntExact(quantity + delta);
+            if (counter.compareAndSet(state, state.add(delta))) {
+                return new Adjustment(Outcome.APPLIED, result);
+            }
+        }
+    }
+
+    /**
+     * Applies all accumulated quantity changes to the database in a single transaction.
+     */
+    public synchronized void flush() {
+        List<Drained> drained = new ArrayList<>();
+        counters.forEach((bookId, counter) -> {
+            State state;
+            do {
+                state = counter.get();
+                if (state.retired() || state.pendingChanges() == 0) {
+                    return;
+                }
+            } while (!counter.compareAndSet(state, state.drain()));
+            drained.add(new Drained(bookId, counter, state));
+        });
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Drained change : drained) {
+                    State state = change.state();
+                    if (bookStorage.addQuantity(change.bookId(), Math.toIntExact(state.pending()),
+                            state.pendingChanges(), state.storedVersion()) == 0) {
+                        log.warn("Dropping quantity change {} of book {} replaced or deleted since version {}",
+                                state.pending(), change.bookId(), state.storedVersion());
+                        retire(change.bookId(), change.counter(), any -> true);
+                        continue;
+                    }
+                    eventPublisher.publishEvent(BookChangedEvent.quantityChanged(
+                            change.bookId(), Math.toIntExact(state.quantity()), state.version()));
+                }
+            });
+            // the database holds the drained changes now, the next change seeds a new counter
+            for (Drained change : drained) {
+                retire(change.bookId(), change.counter(), state -> state.pendingChanges() == 0);
+            }
+            log.debug("Flushed quantity changes of {} books", drained.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to flush quantity changes of {} books, retrying on next flush", drained.size(), e);
+            for (Drained change : drained) {
+                State state;
+                do {
+                    state = change.counter().get();
+                    if (state.retired()) {
+                        break;
+                    }
+                } while (!change.counter().compareAndSet(state, state.restore(change.state())));
+            }
+        }
+    }
+
+    /**
+     * @return the number of books with a counter in memory
+     */
+    int size() {
+        return counters.size();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        Counter counter = counters.get(event.bookId());
+        if (counter == null) {
+            return;
+        }
+        if (event.type() == BookChangedEvent.Type.DELETED) {
+            retire(event.bookId(), counter, any -> true);
+        } else if (event.type() == BookChangedEvent.Type.UPDATED) {
+            // a counter seeded after the update already holds the replaced book
+            long version = event.book().getVersion();
+            retire(event.bookId(), counter, state -> state.storedVersion() < version);
+        }
+    }
+
+    /**
+     * Retires the counter if its state matches and removes it; changes not flushed yet are dropped.
+     */
+    private void retire(UUID bookId, Counter counter, Predicate<State> condition) {
+        State state;
+        do {
+            state = counter.get();
+            if (state.retired() || !condition.test(state)) {
+                return;
+            }
+        } while (!counter.compareAndSet(state, state.retire()));
+        counters.remove(bookId, counter);
+    }
+
+    @Override
+    public void start() {
+        if (isWriteBehind()) {
+            long interval = properties.getFlushInterval().toMillis();
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "stock-ledger-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(properties.getFlushInterval().toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class Counter extends AtomicReference<State> {
+
+        private Counter(State state) {
+            super(state);
+        }
+    }
+
+    /**
+     * @param stored         the quantity as stored in the database, including flushes in progress
+     * @param storedVersion  the version as stored in the database, including flushes in progress
+     * @param pending        the sum of the changes not flushed yet
+     * @param pendingChanges the number of changes not flushed yet, each increments the version even if
+     *                       the deltas cancel out
+     * @param retired        whether the book was replaced or deleted, the counter must not be changed
+     */
+    private record State(long stored, long storedVersion, long pending, long pendingChanges, boolean retired) {
+
+        long quantity() {
+            return stored + pending;
+        }
+
+        long version() {
+            return storedVersion + pendingChanges;
+        }
+
+        State add(int delta) {
+            return new State(stored, storedVersion, pending + delta, pendingChanges + 1, false);
+        }
+
+        State drain() {
+            return new State(quantity(), version(), 0, 0, false);
+        }
+
+        /**
+         * Puts back the changes of a drained state whose flush failed.
+         */
+        State restore(State drained) {
+            return new State(stored - drained.pending(), storedVersion - drained.pendingChanges(),
+                    pending + drained.pending(), pendingChanges + drained.pendingChanges(), false);
+        }
+
+        State retire() {
+            return new State(stored, storedVersion, pending, pendingChanges, true);
+        }
+    }
+
+    /**
+     * @param state the state of the counter before it was drained
+     */
+    private record Drained(UUID bookId, Counter counter, State state) {
+    }
+}
@@ -0,0 +1,144 @@
+package com.sever0x.bookstore.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to the observed latency, after TCP Vegas as in Netflix's
+ * concurrency-limits library.
+ * <p>
+ * The lowest latency seen stands for the latency without queueing. From the ratio of a call's
+ * latency to it, the number of calls queueing behind the limit is estimated as
+ * {@code limit * (1 - minRtt / rtt)}. While the estimated queue is short the limit grows, once it
+ * exceeds {@code tolerance} times {@code 6 * log10(limit)} calls the limit shrinks, so latency stays
+ * close to the unloaded latency instead of growing with the offered load. Calls that time out or
+ * are cancelled cut the limit by a tenth. Samples taken while fewer than half of the permits are
+ * in use do not change the limit, the latency says nothing about a higher concurrency then.
+ * <p>
+ * The lowest latency is forgotten every few hundred samples, so it follows lasting changes of the
+ * service time, e.g. a larger catalog.
+ */
+public final class AdaptiveLimit {
+
+    private static final double SMOOTHING = 0.5;
+
+    private static final double BACKOFF = 0.9;
+
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private long minRtt;
+
+    private long samplesUntilProbe;
+
+    private double estimate;
+
+    private volatile int limit;
+
+    /**
+     * @param initialLimit the limit until latencies have been observed
+     * @param minLimit     the lowest the limit may drop to
+     * @param maxLimit     the highest the limit may grow to
+     * @param tolerance    the factor applied to the queue lengths at which the limit stops growing
+     *                     and starts shrinking
+     */
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.estimate = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimate;
+        this.samplesUntilProbe = nextProbe();
+    }
+
+    /**
+     * Takes a permit unless the calls in flight reach the given share of the limit.
+     *
+     * @param share the share of the limit available to the call, lower shares are rejected first
+     * @return whether a permit was taken, to be returned with {@link #complete} or {@link #release}
+     */
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        if (inFlight.incrementAndGet() > allowed) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a permit and adapts the limit to the latency of the call.
+     *
+     * @param rttNanos the latency of the call
+     * @param dropped  whether the call timed out or was cancelled
+     */
+    public void complete(long rttNanos, boolean dropped) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        sample(Math.max(1, rttNanos), inFlightBefore, dropped);
+    }
+
+    /**
+     * Returns a permit without a latency sample, for calls that never ran.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightBefore, boolean dropped) {
+        if (--samplesUntilProbe <= 0) {
+            minRtt = 0;
+            samplesUntilProbe = nextProbe();
+        }
+        if (minRtt == 0 || rttNanos < minRtt) {
+            minRtt = rttNanos;
+        }
+        if (dropped) {
+            update(estimate * BACKOFF);
+            return;
+        }
+        if (inFlightBefore * 2 < estimate) {
+            return;
+        }
+
+        double queue = Math.ceil(estimate * (1 - (double) minRtt / rttNanos));
+        double log = Math.max(1, Math.log10(estimate));
+        double alpha = 3 * log * tolerance;
+        double beta = 6 * log * tolerance;
+        double target;
+        if (queue <= log) {
+            target = estimate + beta;
+        } else if (queue < alpha) {
+            target = estimate + log;
+        } else if (queue > beta) {
+            target = estimate - log;
+        } else {
+            return;
+        }
+        update(estimate * (1 - SMOOTHING) + target * SMOOTHING);
+    }
+
+    private void update(double newEstimate) {
+        estimate = Math.max(minLimit, Math.min(maxLimit, newEstimate));
+        limit = (int) estimate;
+    }
+
+    private long nextProbe() {
+        return PROBE_MULTIPLIER * Math.max(10L, limit);
+    }
+}
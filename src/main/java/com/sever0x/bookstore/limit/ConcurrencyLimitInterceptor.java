@@ -0,0 +1,181 @@
+package com.sever0x.bookstore.limit;
+
+import com.sever0x.bookstore.config.ConcurrencyLimitProperties;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Sheds load of unary service calls with adaptive concurrency limits, see {@link AdaptiveLimit}.
+ * <p>
+ * A call needs a permit of its method's limit and of the server limit shared by all methods.
+ * Writes may use the whole server limit, other reads {@code readShare} and bulk reads only
+ * {@code bulkShare} of it, so bulk reads are rejected first and writes such as stock adjustments
+ * still get through when the database slows down. Calls over a limit are closed right away with
+ * {@code RESOURCE_EXHAUSTED} instead of queueing until they time out. Streaming calls are not
+ * limited, their duration is no latency signal.
+ * <p>
+ * Limits are published as {@code bookstore.rpc.concurrency.limit}, the server limit with
+ * {@code method=all}, and rejections as {@code bookstore.rpc.concurrency.rejected}.
+ */
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+    private static final String SERVER = "all";
+
+    private final ConcurrencyLimitProperties properties;
+
+    private final MeterRegistry registry;
+
+    private final AdaptiveLimit serverLimit;
+
+    private final ConcurrentHashMap<String, MethodLimit> methods = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimitProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+        this.serverLimit = new AdaptiveLimit(properties.getServerInitialLimit(), properties.getMinLimit(),
+                properties.getServerMaxLimit(), properties.getTolerance());
+        registerGauge(SERVER, serverLimit);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> descriptor = call.getMethodDescriptor();
+        if (descriptor.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.startCall(call, headers);
+        }
+        MethodLimit method = methods.get(descriptor.getFullMethodName());
+        if (method == null) {
+            method = methods.computeIfAbsent(descriptor.getFullMethodName(),
+                    name -> new MethodLimit(name, share(descriptor.getBareMethodName())));
+        }
+
+        if (!method.limit.tryAcquire(1.0)) {
+            return reject(call, method.methodRejections, "Concurrency limit of " + descriptor.getBareMethodName() + " reached");
+        }
+        if (!serverLimit.tryAcquire(method.share)) {
+            method.limit.release();
+            return reject(call, method.serverRejections, "Server concurrency limit reached");
+        }
+        LimitedCall<ReqT, RespT> limitedCall = new LimitedCall<>(call, method.limit, serverLimit);
+        try {
+            return new LimitedListener<>(next.startCall(limitedCall, headers), limitedCall);
+        } catch (RuntimeException e) {
+            limitedCall.complete(false);
+            throw e;
+        }
+    }
+
+    private double share(String bareMethodName) {
+        if (properties.getWriteMethods().contains(bareMethodName)) {
+            return 1.0;
+        }
+        return properties.getBulkMethods().contains(bareMethodName) ? properties.getBulkShare() : properties.getReadShare();
+    }
+
+    private static <ReqT, RespT> ServerCall.Listener<ReqT> reject(ServerCall<ReqT, RespT> call, Counter rejections,
+                                                                 String description) {
+        rejections.increment();
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription(description), new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+
+    private void registerGauge(String method, AdaptiveLimit limit) {
+        Gauge.builder("bookstore.rpc.concurrency.limit", limit, AdaptiveLimit::getLimit)
+                .description("Current adaptive limit of concurrent service calls")
+                .tag("method", method)
+                .register(registry);
+    }
+
+    private Counter rejections(String method, String limit) {
+        return Counter.builder("bookstore.rpc.concurrency.rejected")
+                .description("Service calls rejected because a concurrency limit was reached")
+                .tags("method", method, "limit", limit)
+                .register(registry);
+    }
+
+    private final class MethodLimit {
+
+        private final AdaptiveLimit limit;
+
+        private final double share;
+
+        private final Counter methodRejections;
+
+        private final Counter serverRejections;
+
+        private MethodLimit(String method, double share) {
+            this.limit = new AdaptiveLimit(properties.getInitialLimit(), properties.getMinLimit(),
+                    properties.getMaxLimit(), properties.getTolerance());
+            this.share = share;
+            this.methodRejections = rejections(method, "method");
+            this.serverRejections = rejections(method, "server");
+            registerGauge(method, limit);
+        }
+    }
+
+    private static final class LimitedCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private static final AtomicIntegerFieldUpdater<LimitedCall> COMPLETED =
+                AtomicIntegerFieldUpdater.newUpdater(LimitedCall.class, "completed");
+
+        private final AdaptiveLimit methodLimit;
+
+        private final AdaptiveLimit serverLimit;
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile int completed;
+
+        private LimitedCall(ServerCall<ReqT, RespT> delegate, AdaptiveLimit methodLimit, AdaptiveLimit serverLimit) {
+            super(delegate);
+            this.methodLimit = methodLimit;
+            this.serverLimit = serverLimit;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            complete(status.getCode() == Status.Code.DEADLINE_EXCEEDED);
+            super.close(status, trailers);
+        }
+
+        private void complete(boolean dropped) {
+            if (COMPLETED.compareAndSet(this, 0, 1)) {
+                long rtt = System.nanoTime() - startNanos;
+                methodLimit.complete(rtt, dropped);
+                serverLimit.complete(rtt, dropped);
+            }
+        }
+    }
+
+    private static final class LimitedListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final LimitedCall<ReqT, ?> call;
+
+        private LimitedListener(ServerCall.Listener<ReqT> delegate, LimitedCall<ReqT, ?> call) {
+            super(delegate);
+            this.call = call;
+        }
+
+        @Override
+        public void onCancel() {
+            call.complete(true);
+            super.onCancel();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.sever0x.bookstore.limit;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Bounds the number of unary service calls running at once.
+ * <p>
+ * A call takes a permit once its request is complete, right before the service method runs, and
+ * returns it when the call is closed or cancelled, so the permit covers the whole call and not a
+ * single callback. Calls without a free permit wait for one on their own thread, which is meant to
+ * be a virtual thread. The wait checks every {@value #POLL_MILLIS} ms whether the call was
+ * cancelled, since the cancellation callback of the call is queued behind the waiting one: a call
+ * whose deadline expires first is closed with {@code DEADLINE_EXCEEDED}, a call cancelled by the
+ * client or interrupted is closed with {@code CANCELLED}, and neither runs the service method.
+ * Streaming calls are not bounded: a long export must not hold a permit short calls wait for.
+ */
+public class MaxConcurrentCallsInterceptor implements ServerInterceptor {
+
+    /**
+     * Longest time a waiting call goes without checking whether it was cancelled.
+     */
+    static final long POLL_MILLIS = 20;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public MaxConcurrentCallsInterceptor(int maxConcurrency) {
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * @return the number of calls waiting for a permit
+     */
+    int waitingCalls() {
+        return waiting.get();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (call.getMethodDescriptor().getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.startCall(call, headers);
+        }
+        BoundedCall<ReqT, RespT> boundedCall = new BoundedCall<>(call, permits, waiting);
+        return new BoundedListener<>(next.startCall(boundedCall, headers), boundedCall);
+    }
+
+    private static final class BoundedCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private static final AtomicIntegerFieldUpdater<BoundedCall> HELD =
+                AtomicIntegerFieldUpdater.newUpdater(BoundedCall.class, "held");
+
+        private final Semaphore permits;
+
+        private final AtomicInteger waiting;
+
+        private volatile int held;
+
+        private BoundedCall(ServerCall<ReqT, RespT> delegate, Semaphore permits, AtomicInteger waiting) {
+            super(delegate);
+            this.permits = permits;
+            this.waiting = waiting;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            release();
+            super.close(status, trailers);
+        }
+
+        /**
+         * Waits for a permit until the call is cancelled.
+         *
+         * @return the status to close the call with, or {@code null} if the permit was taken
+         */
+        private Status acquire() {
+            Context context = Context.current();
+            waiting.incrementAndGet();
+            try {
+                while (!permits.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (context.isCancelled()) {
+                        return cancelled(context);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Status.CANCELLED.withDescription("Interrupted while waiting for a call slot");
+            } finally {
+                waiting.decrementAndGet();
+            }
+            held = 1;
+            if (context.isCancelled()) {
+                release();
+                return cancelled(context);
+            }
+            return null;
+        }
+
+        private static Status cancelled(Context context) {
+            Deadline deadline = context.getDeadline();
+            return deadline != null && deadline.isExpired()
+                    ? Status.DEADLINE_EXCEEDED.withDescription("No call slot free before the deadline")
+                    : Status.CANCELLED.withDescription("Call cancelled while waiting for a call slot");
+        }
+
+        private void release() {
+            if (HELD.compareAndSet(this, 1, 0)) {
+                permits.release();
+            }
+        }
+    }
+
+    private static final class BoundedListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final BoundedCall<ReqT, ?> call;
+
+        private BoundedListener(ServerCall.Listener<ReqT> delegate, BoundedCall<ReqT, ?> call) {
+            super(delegate);
+            this.call = call;
+        }
+
+        @Override
+        public void onHalfClose() {
+            Status status = call.acquire();
+            if (status != null) {
+                call.close(status, new Metadata());
+                return;
+            }
+            super.onHalfClose();
+        }
+
+        @Override
+        public void onCancel() {
+            call.release();
+            super.onCancel();
+        }
+
+        @Override
+        public void onComplete() {
+            call.release();
+            super.onComplete();
+        }
+    }
+}
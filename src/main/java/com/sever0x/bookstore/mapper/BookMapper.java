@@ -5,13 +5,16 @@ import com.sever0x.bookstore.proto.AddBookRequest;
 import com.sever0x.bookstore.proto.BookResponse;
 import com.sever0x.bookstore.proto.UpdateBookRequest;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(componentModel = "spring")
 public interface BookMapper {
 
     BookResponse bookToBookResponse(Book book);
 
+    @Mapping(target = "version", ignore = true)
     Book addBookRequestToBook(AddBookRequest addBookRequest);
 
+    @Mapping(target = "version", ignore = true)
     Book updateBookRequestToBook(UpdateBookRequest updateBookRequest);
 }
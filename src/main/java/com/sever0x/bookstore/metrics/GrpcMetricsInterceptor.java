@@ -0,0 +1,139 @@
+package com.sever0x.bookstore.metrics;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Records per-method latency histograms, in-flight calls, status codes and message sizes of all
+ * service calls. Meters are resolved once per method, so apart from the call and listener
+ * wrappers, recording allocates nothing and can stay enabled under high load.
+ * While the service handles a call, its metrics are bound to the thread for {@link RpcStages}.
+ * A call whose handler throws is recorded with the status of the exception, {@code UNKNOWN} unless
+ * it carries a gRPC status, as grpc-java closes such calls without passing through
+ * {@link ServerCall#close}.
+ */
+public class GrpcMetricsInterceptor implements ServerInterceptor {
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentHashMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public GrpcMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        String method = call.getMethodDescriptor().getFullMethodName();
+        MethodMetrics metrics = methods.get(method);
+        if (metrics == null) {
+            metrics = methods.computeIfAbsent(method, name -> new MethodMetrics(registry, name));
+        }
+
+        MonitoredCall<ReqT, RespT> monitoredCall = new MonitoredCall<>(call, metrics);
+        return new MonitoredListener<>(next.startCall(monitoredCall, headers), monitoredCall, metrics);
+    }
+
+    private static int serializedSize(Object message) {
+        return message instanceof MessageLite messageLite ? messageLite.getSerializedSize() : 0;
+    }
+
+    private static final class MonitoredCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private static final AtomicIntegerFieldUpdater<MonitoredCall> CLOSED =
+                AtomicIntegerFieldUpdater.newUpdater(MonitoredCall.class, "closed");
+
+        private final MethodMetrics metrics;
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile int closed;
+
+        private MonitoredCall(ServerCall<ReqT, RespT> delegate, MethodMetrics metrics) {
+            super(delegate);
+            this.metrics = metrics;
+            metrics.inFlight.incrementAndGet();
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            metrics.responseSize.record(serializedSize(message));
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            recordClose(status.getCode());
+            super.close(status, trailers);
+        }
+
+        private void recordClose(Status.Code code) {
+            if (CLOSED.compareAndSet(this, 0, 1)) {
+                metrics.inFlight.decrementAndGet();
+                metrics.latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                metrics.status(code).increment();
+            }
+        }
+    }
+
+    private static final class MonitoredListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final MonitoredCall<ReqT, ?> call;
+
+        private final MethodMetrics metrics;
+
+        private MonitoredListener(ServerCall.Listener<ReqT> delegate, MonitoredCall<ReqT, ?> call,
+                                  MethodMetrics metrics) {
+            super(delegate);
+            this.call = call;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            metrics.requestSize.record(serializedSize(message));
+            MethodMetrics previous = RpcStages.enter(metrics);
+            try {
+                super.onMessage(message);
+            } catch (RuntimeException | Error e) {
+                call.recordClose(Status.fromThrowable(e).getCode());
+                throw e;
+            } finally {
+                RpcStages.exit(previous);
+            }
+        }
+
+        @Override
+        public void onHalfClose() {
+            MethodMetrics previous = RpcStages.enter(metrics);
+            try {
+                super.onHalfClose();
+            } catch (RuntimeException | Error e) {
+                call.recordClose(Status.fromThrowable(e).getCode());
+                throw e;
+            } finally {
+                RpcStages.exit(previous);
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            call.recordClose(Status.Code.CANCELLED);
+            super.onCancel();
+        }
+    }
+}
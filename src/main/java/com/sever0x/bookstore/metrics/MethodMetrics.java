@@ -0,0 +1,82 @@
+package com.sever0x.bookstore.metrics;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters of one gRPC method, registered once so that recording a call only touches
+ * pre-resolved meters and does not allocate.
+ */
+final class MethodMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    final Timer latency;
+
+    final AtomicInteger inFlight = new AtomicInteger();
+
+    final DistributionSummary requestSize;
+
+    final DistributionSummary responseSize;
+
+    private final Counter[] statuses;
+
+    private final Timer[] stages;
+
+    MethodMetrics(MeterRegistry registry, String method) {
+        latency = Timer.builder("bookstore.rpc.latency")
+                .description("Latency of service calls from start to close")
+                .tag("method", method)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("bookstore.rpc.in.flight", inFlight, AtomicInteger::get)
+                .description("Service calls started and not yet closed")
+                .tag("method", method)
+                .register(registry);
+        requestSize = messageSize(registry, method, "request");
+        responseSize = messageSize(registry, method, "response");
+
+        Status.Code[] codes = Status.Code.values();
+        statuses = new Counter[codes.length];
+        for (Status.Code code : codes) {
+            statuses[code.ordinal()] = Counter.builder("bookstore.rpc.status")
+                    .description("Closed service calls by status code")
+                    .tags("method", method, "code", code.name())
+                    .register(registry);
+        }
+
+        RpcStage[] values = RpcStage.values();
+        stages = new Timer[values.length];
+        for (RpcStage stage : values) {
+            stages[stage.ordinal()] = Timer.builder("bookstore.rpc.stage.latency")
+                    .description("Time spent in a stage of service calls")
+                    .tags("method", method, "stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentiles(PERCENTILES)
+                    .register(registry);
+        }
+    }
+
+    Counter status(Status.Code code) {
+        return statuses[code.ordinal()];
+    }
+
+    Timer stage(RpcStage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    private static DistributionSummary messageSize(MeterRegistry registry, String method, String direction) {
+        return DistributionSummary.builder("bookstore.rpc.message.size")
+                .description("Serialized size of messages")
+                .baseUnit("bytes")
+                .tags("method", method, "direction", direction)
+                .register(registry);
+    }
+}
@@ -0,0 +1,10 @@
+package com.sever0x.bookstore.metrics;
+
+/**
+ * Stages of a service call timed separately from the total call latency.
+ */
+public enum RpcStage {
+    VALIDATION,
+    REPOSITORY,
+    MAPPING
+}
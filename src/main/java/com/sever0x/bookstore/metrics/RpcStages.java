@@ -0,0 +1,49 @@
+package com.sever0x.bookstore.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the duration of {@link RpcStage stages} of the service call running on the current thread.
+ * {@link GrpcMetricsInterceptor} binds the metrics of the call to the thread while the service
+ * handles it; outside of a call, recording does nothing.
+ * <pre>{@code
+ * long start = RpcStages.start();
+ * Book book = bookRepository.save(entity);
+ * RpcStages.record(RpcStage.REPOSITORY, start);
+ * }</pre>
+ */
+public final class RpcStages {
+
+    private static final ThreadLocal<MethodMetrics> CURRENT = new ThreadLocal<>();
+
+    private RpcStages() {
+    }
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos} for the given stage of the current call.
+     */
+    public static void record(RpcStage stage, long startNanos) {
+        MethodMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.stage(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    static MethodMetrics enter(MethodMetrics metrics) {
+        MethodMetrics previous = CURRENT.get();
+        CURRENT.set(metrics);
+        return previous;
+    }
+
+    static void exit(MethodMetrics previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -2,27 +2,92 @@ package com.sever0x.bookstore.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
 
 import java.util.UUID;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+        @Index(name = "idx_books_title_id", columnList = "title, id"),
+        @Index(name = "idx_books_author_id", columnList = "author, id"),
+        @Index(name = "idx_books_isbn_id", columnList = "isbn, id"),
+        @Index(name = "idx_books_quantity_id", columnList = "quantity, id")
+})
 @Getter
 @Setter
 @ToString
-@AllArgsConstructor
 @NoArgsConstructor
-public class Book {
+public class Book implements Persistable<UUID> {
 
+    /**
+     * Assigned by the application, see {@link #assignId()}.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
     private String title;
 
     private String author;
 
+    @Column(unique = true)
     private String isbn;
 
     private Integer quantity;
+
+    /**
+     * Incremented by every change of the book, starting at 1, so readers can tell whether a copy
+     * they hold is still current. Maintained explicitly rather than with {@code @Version}: updates
+     * replace books by identifier and quantity changes are bulk updates.
+     */
+    @ColumnDefault("1")
+    @Column(nullable = false)
+    private Long version = 1L;
+
+    /**
+     * Whether the identifier was assigned to a book that has not been persisted yet.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private boolean assignedId;
+
+    public Book(UUID id, String title, String author, String isbn, Integer quantity) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.isbn = isbn;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Assigns a random identifier to a book without one, so it is known before the book is
+     * saved (e.g. to choose its shard). The book is still treated as new when saved.
+     *
+     * @return the identifier of the book
+     */
+    public UUID assignId() {
+        if (id == null) {
+            id = UUID.randomUUID();
+            assignedId = true;
+        }
+        return id;
+    }
+
+    @PrePersist
+    void assignIdOnPersist() {
+        assignId();
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        assignedId = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return id == null || assignedId;
+    }
 }
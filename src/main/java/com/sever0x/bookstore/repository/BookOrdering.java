@@ -0,0 +1,164 @@
+package com.sever0x.bookstore.repository;
+
+import com.sever0x.bookstore.model.Book;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Orders books like the database does, so books sorted outside the database (e.g. pages of
+ * several shards merged in memory) come in the same order as from a single database.
+ * Identifiers compare as unsigned bytes and nulls sort last in ascending order, as in PostgreSQL
+ * and H2; text compares by UTF-16 code units, which matches the database only with a binary
+ * ({@code C}) collation.
+ */
+public final class BookOrdering {
+
+    private static final Map<String, Function<Book, Object>> PROPERTIES = Map.of(
+            "id", Book::getId,
+            "title", Book::getTitle,
+            "author", Book::getAuthor,
+            "isbn", Book::getIsbn,
+            "quantity", Book::getQuantity
+    );
+
+    private BookOrdering() {
+    }
+
+    /**
+     * Appends an ascending identifier to the sort unless it already orders by identifier, so the
+     * order of books is total and each shard returns ties in the order the merge expects.
+     */
+    public static Sort withIdTiebreak(Sort sort) {
+        return sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+    }
+
+    /**
+     * @param sort the sort order, should end with the identifier, see {@link #withIdTiebreak(Sort)}
+     * @return the comparator ordering books by the sort
+     */
+    public static Comparator<Book> comparator(Sort sort) {
+        Comparator<Book> comparator = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            Function<Book, Object> property = property(order.getProperty());
+            Comparator<Book> byProperty = Comparator.comparing(property, Comparator.nullsLast(BookOrdering::compareValues));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    /**
+     * @return the values of the sort properties of the book, usable as a keyset scroll position
+     */
+    public static Map<String, Object> keys(Book book, Sort sort) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (Sort.Order order : sort) {
+            keys.put(order.getProperty(), property(order.getProperty()).apply(book));
+        }
+        return keys;
+    }
+
+    /**
+     * Creates a book holding only the given properties, e.g. the keys of a keyset scroll position:
+     * the books following the position are those the {@link #comparator(Sort) comparator} orders
+     * after that book.
+     *
+     * @param properties the values by property name, see {@link #keys(Book, Sort)}
+     * @return the book with the given properties, the others are {@code null}
+     */
+    public static Book book(Map<String, Object> properties) {
+        Book book = new Book();
+        properties.forEach((name, value) -> {
+            switch (name) {
+                case "id" -> book.setId(value == null || value instanceof UUID
+                        ? (UUID) value
+                        : UUID.fromString(value.toString()));
+                case "title" -> book.setTitle((String) value);
+                case "author" -> book.setAuthor((String) value);
+                case "isbn" -> book.setIsbn((String) value);
+                case "quantity" -> book.setQuantity(value == null ? null : ((Number) value).intValue());
+                case "version" -> book.setVersion(value == null ? null : ((Number) value).longValue());
+                default -> throw new IllegalArgumentException("Unknown book property " + name);
+            }
+        });
+        return book;
+    }
+
+    /**
+     * Merges lists that are each ordered by the comparator.
+     *
+     * @param sorted     the ordered lists
+     * @param comparator the order of the lists
+     * @param skip       the number of leading books to skip
+     * @param limit      the maximum number of books to return
+     * @return the merged books after skipping, in comparator order
+     */
+    public static List<Book> merge(List<List<Book>> sorted, Comparator<Book> comparator, long skip, int limit) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (left, right) -> comparator.compare(left.head(), right.head()));
+        for (List<Book> books : sorted) {
+            if (!books.isEmpty()) {
+                heads.add(new Cursor(books));
+            }
+        }
+        List<Book> merged = new ArrayList<>(Math.min(limit, 1024));
+        long skipped = 0;
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Cursor cursor = heads.poll();
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                merged.add(cursor.head());
+            }
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static Function<Book, Object> property(String name) {
+        Function<Book, Object> property = PROPERTIES.get(name);
+        if (property == null) {
+            throw new IllegalArgumentException("Cannot order books by " + name);
+        }
+        return property;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object left, Object right) {
+        if (left instanceof UUID leftId && right instanceof UUID rightId) {
+            int compared = Long.compareUnsigned(leftId.getMostSignificantBits(), rightId.getMostSignificantBits());
+            return compared != 0
+                    ? compared
+                    : Long.compareUnsigned(leftId.getLeastSignificantBits(), rightId.getLeastSignificantBits());
+        }
+        return ((Comparable) left).compareTo(right);
+    }
+
+    private static final class Cursor {
+
+        private final List<Book> books;
+
+        private int position;
+
+        Cursor(List<Book> books) {
+            this.books = books;
+        }
+
+        Book head() {
+            return books.get(position);
+        }
+
+        boolean advance() {
+            return ++position < books.size();
+        }
+    }
+}
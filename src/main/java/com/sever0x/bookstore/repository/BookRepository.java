@@ -1,11 +1,154 @@
 package com.sever0x.bookstore.repository;
 
 import com.sever0x.bookstore.model.Book;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * {@link BookStorage} on a single database through JPA. The sharded backend uses it on each shard.
+ */
 @Repository
-public interface BookRepository extends JpaRepository<Book, UUID> {
+public interface BookRepository extends JpaRepository<Book, UUID>, BookRepositoryCustom, BookStorage {
+
+    /**
+     * Number of rows the JDBC driver fetches per round trip when streaming the catalog.
+     */
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Streams all books through a forward-only database cursor, so rows are fetched in
+     * batches of {@link #STREAM_FETCH_SIZE} instead of being loaded at once.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return the stream of all books ordered by identifier
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select b from Book b order by b.id")
+    Stream<Book> streamAll();
+
+    Optional<Book> findByIsbn(String isbn);
+
+    List<Book> findAllByIsbnIn(Collection<String> isbns);
+
+    boolean existsByIsbnAndIdNot(String isbn, UUID id);
+
+    boolean existsByIsbn(String isbn);
+
+    /**
+     * Streams the ISBN and identifier of every book without loading the entities.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return the stream of ISBN entries
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select b.isbn as isbn, b.id as id from Book b")
+    Stream<IsbnEntry> streamIsbnEntries();
+
+    /**
+     * Streams the identifier, title and author of every book in identifier order without
+     * loading the entities. Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return the stream of search entries
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select b.id as id, b.title as title, b.author as author from Book b order by b.id")
+    Stream<SearchEntry> streamSearchEntries();
+
+    /**
+     * Streams the identifier, author, quantity and version of every book without loading the entities.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return the stream of stock entries
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select b.id as id, b.author as author, b.quantity as quantity, b.version as version from Book b")
+    Stream<StockEntry> streamStockEntries();
+
+    /**
+     * Returns the window of books following the given position. With a keyset position the
+     * query seeks on the sort columns instead of using an offset, so deep pages cost the same
+     * as the first one and no count query is issued.
+     *
+     * @param position the position to continue from
+     * @param sort     the sort order, must end with the identifier to make positions unique
+     * @param limit    the maximum number of books to return
+     * @return the window of books
+     */
+    Window<Book> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    /**
+     * Atomically adds a signed delta to the quantity of a book in a single conditional update,
+     * refusing changes that would make the quantity negative. Increments the version of the book.
+     *
+     * @param id    the book identifier
+     * @param delta the change of the quantity
+     * @return the number of updated rows, zero if the book does not exist or has insufficient stock
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.quantity = b.quantity + :delta, b.version = b.version + 1"
+            + " where b.id = :id and b.quantity + :delta >= 0")
+    int adjustQuantity(@Param("id") UUID id, @Param("delta") int delta);
+
+    /**
+     * Adds a delta to the quantity of a book that still has the given version, used to flush
+     * changes that were already checked against the in-memory inventory. The version check orders
+     * the flush against replacements of the book, the quantity is still kept non-negative.
+     *
+     * @param id      the book identifier
+     * @param delta   the change of the quantity
+     * @param changes the number of changes the delta combines, added to the version
+     * @param version the version the book must have
+     * @return the number of updated rows, zero if the book does not exist, has another version or
+     * insufficient stock
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.quantity = b.quantity + :delta, b.version = b.version + :changes"
+            + " where b.id = :id and b.version = :version and b.quantity + :delta >= 0")
+    int addQuantity(@Param("id") UUID id, @Param("delta") int delta, @Param("changes") long changes,
+                    @Param("version") long version);
+
+    /**
+     * Increments the version of a book, locking its row until the transaction ends.
+     *
+     * @param id the book identifier
+     * @return the number of updated rows, zero if the book does not exist
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.version = b.version + 1 where b.id = :id")
+    int incrementVersion(@Param("id") UUID id);
+
+    @Query("select b.quantity from Book b where b.id = :id")
+    Optional<Integer> findQuantityById(@Param("id") UUID id);
+
+    @Query("select b.version from Book b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") UUID id);
+
+    @Query("select b.isbn from Book b where b.id = :id")
+    Optional<String> findIsbnById(@Param("id") UUID id);
+
+    @Query("select b.quantity as quantity, b.version as version from Book b where b.id = :id")
+    Optional<QuantityVersion> findQuantityVersionById(@Param("id") UUID id);
 }
@@ -0,0 +1,57 @@
+package com.sever0x.bookstore.repository;
+
+import com.sever0x.bookstore.model.Book;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.Set;
+
+/**
+ * Operations of {@link BookRepository} that are not derived from queries: control over the books
+ * the repository keeps track of, so callers processing the whole catalog can bound their memory,
+ * and projections of books to some of their properties.
+ */
+public interface BookRepositoryCustom {
+
+    /**
+     * Stops tracking changes of a loaded book, so it can be garbage collected while the catalog
+     * is streamed.
+     *
+     * @param book the book to detach
+     */
+    void detach(Book book);
+
+    /**
+     * Writes pending changes of the current transaction and stops tracking all loaded books.
+     */
+    void flushAndClear();
+
+    /**
+     * Returns a page of books with only the given properties, the sort properties and the
+     * identifier loaded. The books are plain values rather than tracked entities; their other
+     * properties are {@code null} and they must not be saved.
+     *
+     * @param properties the properties to load
+     * @param pageable   the page and sort order
+     * @return the page of partially loaded books
+     */
+    Page<Book> findAllProjected(Set<String> properties, Pageable pageable);
+
+    /**
+     * Returns the window of books following the given keyset position, like
+     * {@link BookRepository#findAllBy(ScrollPosition, Sort, Limit)}, with only the given
+     * properties, the sort properties and the identifier loaded, see
+     * {@link #findAllProjected(Set, Pageable)}.
+     *
+     * @param properties the properties to load
+     * @param position   the keyset position to continue from
+     * @param sort       the sort order, must end with the identifier to make positions unique
+     * @param limit      the maximum number of books to return
+     * @return the window of partially loaded books
+     */
+    Window<Book> findAllProjectedBy(Set<String> properties, ScrollPosition position, Sort sort, Limit limit);
+}
@@ -0,0 +1,139 @@
+package com.sever0x.bookstore.repository;
+
+import com.sever0x.bookstore.model.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implements {@link BookRepositoryCustom} on the JPA persistence context of the current
+ * transaction. Projections select the requested columns into tuples, so no entities are
+ * instantiated, registered in the persistence context or checked for changes at flush.
+ */
+@RequiredArgsConstructor
+class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public void detach(Book book) {
+        entityManager.detach(book);
+    }
+
+    @Override
+    public void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public Page<Book> findAllProjected(Set<String> properties, Pageable pageable) {
+        Sort sort = pageable.getSort();
+        List<String> columns = columns(properties, sort);
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+        query.multiselect(select(book, columns)).orderBy(QueryUtils.toOrders(sort, book, builder));
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult(Math.toIntExact(pageable.getOffset())).setMaxResults(pageable.getPageSize());
+        }
+        List<Book> content = toBooks(typedQuery.getResultList(), columns);
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> entityManager.createQuery("select count(b) from Book b", Long.class).getSingleResult());
+    }
+
+    @Override
+    public Window<Book> findAllProjectedBy(Set<String> properties, ScrollPosition position, Sort sort, Limit limit) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.scrollsBackward()) {
+            throw new UnsupportedOperationException("Projected books can only be scrolled forward by keyset");
+        }
+        Sort total = BookOrdering.withIdTiebreak(sort);
+        List<String> columns = columns(properties, total);
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+        query.multiselect(select(book, columns)).orderBy(QueryUtils.toOrders(total, book, builder));
+        if (!keyset.isInitial()) {
+            query.where(following(builder, book, total, keyset.getKeys()));
+        }
+
+        int size = limit.isLimited() ? limit.max() : Integer.MAX_VALUE - 1;
+        // one more book tells whether there is a next window
+        List<Book> books = toBooks(entityManager.createQuery(query).setMaxResults(size + 1).getResultList(), columns);
+        List<Book> content = books.subList(0, Math.min(size, books.size()));
+        return Window.from(content, index -> ScrollPosition.forward(BookOrdering.keys(content.get(index), total)),
+                books.size() > size);
+    }
+
+    /**
+     * @return the requested properties with the identifier and the sort properties, which are
+     * needed to merge and continue pages
+     */
+    private static List<String> columns(Set<String> properties, Sort sort) {
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add("id");
+        columns.addAll(properties);
+        sort.forEach(order -> columns.add(order.getProperty()));
+        return List.copyOf(columns);
+    }
+
+    private static List<Selection<?>> select(Root<Book> book, List<String> columns) {
+        List<Selection<?>> selections = new ArrayList<>(columns.size());
+        columns.forEach(column -> selections.add(book.get(column).alias(column)));
+        return selections;
+    }
+
+    private static List<Book> toBooks(List<Tuple> tuples, List<String> columns) {
+        List<Book> books = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> properties = new LinkedHashMap<>();
+            columns.forEach(column -> properties.put(column, tuple.get(column)));
+            books.add(BookOrdering.book(properties));
+        }
+        return books;
+    }
+
+    /**
+     * Seeks past the keys of the position: {@code (a > :a) or (a = :a and id > :id)} for a sort
+     * by {@code a} and the identifier, with {@code <} for descending properties.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate following(CriteriaBuilder builder, Root<Book> book, Sort sort, Map<String, Object> keys) {
+        List<Predicate> alternatives = new ArrayList<>();
+        List<Predicate> equalPrefix = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            Path<Comparable> property = book.get(order.getProperty());
+            Comparable key = (Comparable) keys.get(order.getProperty());
+            List<Predicate> alternative = new ArrayList<>(equalPrefix);
+            alternative.add(order.isAscending() ? builder.greaterThan(property, key) : builder.lessThan(property, key));
+            alternatives.add(builder.and(alternative.toArray(Predicate[]::new)));
+            equalPrefix.add(builder.equal(property, key));
+        }
+        return builder.or(alternatives.toArray(Predicate[]::new));
+    }
+}
@@ -0,0 +1,194 @@
+package com.sever0x.bookstore.repository;
+
+import com.sever0x.bookstore.model.Book;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * The operations the application performs on books, and all a storage backend has to implement.
+ * The JPA {@link BookRepository} provides them on a single database; the sharded and embedded
+ * backends implement this interface only, so every operation they offer is supported.
+ * <p>
+ * Methods share their names and semantics with the Spring Data repositories.
+ */
+public interface BookStorage extends BookRepositoryCustom {
+
+    /**
+     * Inserts a new book, assigning its identifier, or replaces the book with its identifier, and
+     * writes it immediately, so a conflicting ISBN is reported by this call.
+     *
+     * @param book the book to save
+     * @return the saved book
+     */
+    <S extends Book> S saveAndFlush(S book);
+
+    /**
+     * Inserts the given new books, assigning their identifiers.
+     *
+     * @param books the books to insert
+     * @return the saved books in the given order
+     */
+    <S extends Book> List<S> saveAll(Iterable<S> books);
+
+    Optional<Book> findById(UUID id);
+
+    boolean existsById(UUID id);
+
+    /**
+     * @param ids the identifiers to look up
+     * @return the books found, in no particular order
+     */
+    List<Book> findAllById(Iterable<UUID> ids);
+
+    long count();
+
+    void deleteById(UUID id);
+
+    Page<Book> findAll(Pageable pageable);
+
+    /**
+     * Returns the window of books following the given position. With a keyset position the
+     * query seeks on the sort columns instead of using an offset, so deep pages cost the same
+     * as the first one and no count query is issued.
+     *
+     * @param position the position to continue from; the sharded and embedded backends, like
+     *                 projections, only scroll forward by keyset
+     * @param sort     the sort order, must end with the identifier to make positions unique
+     * @param limit    the maximum number of books to return
+     * @return the window of books
+     */
+    Window<Book> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    Optional<Book> findByIsbn(String isbn);
+
+    List<Book> findAllByIsbnIn(Collection<String> isbns);
+
+    boolean existsByIsbnAndIdNot(String isbn, UUID id);
+
+    boolean existsByIsbn(String isbn);
+
+    /**
+     * Streams all books without loading them at once. Must be consumed inside a transaction and
+     * closed afterwards.
+     *
+     * @return the stream of all books
+     */
+    Stream<Book> streamAll();
+
+    /**
+     * Streams the ISBN and identifier of every book without loading the entities.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return the stream of ISBN entries
+     */
+    Stream<IsbnEntry> streamIsbnEntries();
+
+    /**
+     * Streams the identifier, title and author of every book without loading the entities.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return the stream of search entries
+     */
+    Stream<SearchEntry> streamSearchEntries();
+
+    /**
+     * Streams the identifier, author, quantity and version of every book without loading the entities.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return the stream of stock entries
+     */
+    Stream<StockEntry> streamStockEntries();
+
+    /**
+     * Atomically adds a signed delta to the quantity of a book, refusing changes that would make
+     * the quantity negative. Increments the version of the book.
+     *
+     * @param id    the book identifier
+     * @param delta the change of the quantity
+     * @return the number of updated rows, zero if the book does not exist or has insufficient stock
+     */
+    int adjustQuantity(UUID id, int delta);
+
+    /**
+     * Adds a delta to the quantity of a book that still has the given version, keeping the
+     * quantity non-negative.
+     *
+     * @param id      the book identifier
+     * @param delta   the change of the quantity
+     * @param changes the number of changes the delta combines, added to the version
+     * @param version the version the book must have
+     * @return the number of updated rows, zero if the book does not exist, has another version or
+     * insufficient stock
+     */
+    int addQuantity(UUID id, int delta, long changes, long version);
+
+    /**
+     * Increments the version of a book, locking it until the transaction ends.
+     *
+     * @param id the book identifier
+     * @return the number of updated rows, zero if the book does not exist
+     */
+    int incrementVersion(UUID id);
+
+    Optional<Integer> findQuantityById(UUID id);
+
+    Optional<Long> findVersionById(UUID id);
+
+    Optional<QuantityVersion> findQuantityVersionById(UUID id);
+
+    /**
+     * Projection of a book to its ISBN and identifier.
+     */
+    interface IsbnEntry {
+
+        String getIsbn();
+
+        UUID getId();
+    }
+
+    /**
+     * Projection of a book to the fields covered by full-text search.
+     */
+    interface SearchEntry {
+
+        UUID getId();
+
+        String getTitle();
+
+        String getAuthor();
+    }
+
+    /**
+     * Projection of a book to the fields of the inventory statistics.
+     */
+    interface StockEntry {
+
+        UUID getId();
+
+        String getAuthor();
+
+        Integer getQuantity();
+
+        Long getVersion();
+    }
+
+    /**
+     * Projection of a book to its quantity and version, read together.
+     */
+    interface QuantityVersion {
+
+        Integer getQuantity();
+
+        Long getVersion();
+    }
+}
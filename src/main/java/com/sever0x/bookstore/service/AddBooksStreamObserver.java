@@ -0,0 +1,171 @@
+package com.sever0x.bookstore.service;
+
+import com.sever0x.bookstore.mapper.BookMapper;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.proto.AddBookRequest;
+import com.sever0x.bookstore.proto.AddBookResult;
+import com.sever0x.bookstore.proto.AddBooksResponse;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.validation.BookValidator;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Receives the client stream of {@code AddBooks}, validates every book and persists the valid
+ * ones in chunks of a configured size. Before a chunk is persisted, books repeating an ISBN of an
+ * earlier book of the chunk and books whose ISBN already exists are rejected. If the chunk still
+ * violates a constraint, an ISBN was added concurrently and the books are persisted one by one, so
+ * only the offending books are rejected. A chunk that fails to persist otherwise is reported as
+ * rejected without aborting the rest of the stream.
+ */
+@Slf4j
+class AddBooksStreamObserver implements StreamObserver<AddBookRequest> {
+
+    private final BookMapper bookMapper;
+
+    private final BookValidator bookValidator;
+
+    private final BookBatchWriter bookBatchWriter;
+
+    private final StreamObserver<AddBooksResponse> responseObserver;
+
+    private final int chunkSize;
+
+    private final List<AddBookResult.Builder> results = new ArrayList<>();
+
+    private final List<Book> chunk;
+
+    private final List<AddBookResult.Builder> chunkResults;
+
+    private int added;
+
+    private int rejected;
+
+    AddBooksStreamObserver(BookMapper bookMapper, BookValidator bookValidator, BookBatchWriter bookBatchWriter,
+                           StreamObserver<AddBooksResponse> responseObserver, int chunkSize) {
+        this.bookMapper = bookMapper;
+        this.bookValidator = bookValidator;
+        this.bookBatchWriter = bookBatchWriter;
+        this.responseObserver = responseObserver;
+        this.chunkSize = chunkSize;
+        this.chunk = new ArrayList<>(chunkSize);
+        this.chunkResults = new ArrayList<>(chunkSize);
+    }
+
+    @Override
+    public void onNext(AddBookRequest request) {
+        AddBookResult.Builder result = AddBookResult.newBuilder().setIndex(results.size());
+        results.add(result);
+
+        BookValidator.ValidationResult validationResult = bookValidator.validateRequest(
+                request.getTitle(), request.getAuthor(), request.getIsbn(), request.getQuantity());
+        if (validationResult.hasErrors()) {
+            reject(result, String.join(", ", validationResult.getErrors()));
+            return;
+        }
+
+        chunk.add(bookMapper.addBookRequestToBook(request));
+        chunkResults.add(result);
+        if (chunk.size() >= chunkSize) {
+            flushChunk();
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("AddBooks stream cancelled by client after {} books, {} pending books discarded",
+                results.size(), chunk.size(), t);
+    }
+
+    @Override
+    public void onCompleted() {
+        flushChunk();
+        AddBooksResponse.Builder response = AddBooksResponse.newBuilder()
+                .setReceived(results.size())
+                .setAdded(added)
+                .setRejected(rejected);
+        results.forEach(response::addResults);
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    private void flushChunk() {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            Set<String> existing = bookBatchWriter.findExistingIsbns(chunk.stream().map(Book::getIsbn).toList());
+            Map<String, Integer> firstIndexes = new HashMap<>();
+            List<Book> books = new ArrayList<>(chunk.size());
+            List<AddBookResult.Builder> bookResults = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                Book book = chunk.get(i);
+                AddBookResult.Builder result = chunkResults.get(i);
+                Integer firstIndex = firstIndexes.putIfAbsent(book.getIsbn(), result.getIndex());
+                if (firstIndex != null) {
+                    reject(result, "ISBN " + book.getIsbn() + " repeats the book at index " + firstIndex);
+                } else if (existing.contains(book.getIsbn())) {
+                    reject(result, "Book already exists with ISBN: " + book.getIsbn());
+                } else {
+                    books.add(book);
+                    bookResults.add(result);
+                }
+            }
+            save(books, bookResults);
+        } catch (RuntimeException e) {
+            log.error("Failed to persist a chunk of {} books", chunk.size(), e);
+            chunkResults.stream()
+                    .filter(result -> !result.getSuccess() && result.getError().isEmpty())
+                    .forEach(result -> reject(result, "Failed to persist book: " + e.getMessage()));
+        } finally {
+            chunk.clear();
+            chunkResults.clear();
+        }
+    }
+
+    private void save(List<Book> books, List<AddBookResult.Builder> bookResults) {
+        if (books.isEmpty()) {
+            return;
+        }
+        try {
+            List<BookResponse> saved = bookBatchWriter.saveChunk(books);
+            for (int i = 0; i < saved.size(); i++) {
+                succeed(bookResults.get(i), saved.get(i));
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.debug("A chunk of {} books violated a constraint, persisting them one by one", books.size(), e);
+            for (int i = 0; i < books.size(); i++) {
+                saveOne(books.get(i), bookResults.get(i));
+            }
+        }
+    }
+
+    private void saveOne(Book book, AddBookResult.Builder result) {
+        try {
+            succeed(result, bookBatchWriter.saveChunk(List.of(book)).get(0));
+        } catch (DataIntegrityViolationException e) {
+            reject(result, "Book already exists with ISBN: " + book.getIsbn());
+        } catch (RuntimeException e) {
+            log.error("Failed to persist book with ISBN {}", book.getIsbn(), e);
+            reject(result, "Failed to persist book: " + e.getMessage());
+        }
+    }
+
+    private void succeed(AddBookResult.Builder result, BookResponse book) {
+        result.setSuccess(true).setBook(book);
+        added++;
+    }
+
+    private void reject(AddBookResult.Builder result, String error) {
+        result.setSuccess(false).setError(error);
+        rejected++;
+    }
+}
@@ -0,0 +1,67 @@
+package com.sever0x.bookstore.service;
+
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.mapper.BookMapper;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.repository.BookStorage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Persists chunks of books in a single transaction each, or one per shard when books are sharded.
+ * Identifiers of {@link Book} are assigned by the application, so Hibernate can group
+ * the inserts into JDBC batches instead of issuing one round trip per row.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookBatchWriter {
+
+    private final BookMapper bookMapper;
+
+    private final BookStorage bookStorage;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Finds which of the given ISBNs already belong to a book, with one query. Books added
+     * concurrently may be missed, the unique constraint still rejects them on insert.
+     *
+     * @param isbns the ISBNs to look up
+     * @return the ISBNs that exist
+     */
+    public Set<String> findExistingIsbns(Collection<String> isbns) {
+        return bookStorage.findAllByIsbnIn(isbns).stream()
+                .map(Book::getIsbn)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Inserts the given books and commits them together.
+     *
+     * @param books the books to insert
+     * @return the persisted books with their generated identifiers, in the given order
+     */
+    @Transactional
+    public List<BookResponse> saveChunk(List<Book> books) {
+        books.forEach(Book::assignId);
+        List<Book> saved = bookStorage.saveAll(books);
+        bookStorage.flushAndClear();
+
+        List<BookResponse> responses = new ArrayList<>(saved.size());
+        for (Book book : saved) {
+            BookResponse response = bookMapper.bookToBookResponse(book);
+            eventPublisher.publishEvent(BookChangedEvent.created(book.getId(), response));
+            responses.add(response);
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,121 @@
+package com.sever0x.bookstore.service;
+
+import com.sever0x.bookstore.mapper.BookMapper;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.repository.BookStorage;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Exports the whole catalog to a server stream, honouring the client's flow control.
+ * <p>
+ * The export is driven by the stream's ready callbacks: while the stream is ready, books are sent
+ * from a batch of {@link #BATCH_SIZE} books read by keyset on the identifier, and the next batch is
+ * read once the previous one is sent. When the stream is no longer ready the export returns, holding
+ * neither a thread nor a connection, and resumes on the next ready callback. Memory usage therefore
+ * does not depend on the catalog size or on the speed of the client.
+ * <p>
+ * Each batch is read in its own transaction, so the export is not a snapshot: books added or
+ * changed while it runs are included only if they sort after the last batch read.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookCatalogExporter {
+
+    /**
+     * Number of books read at once.
+     */
+    static final int BATCH_SIZE = 500;
+
+    private static final Sort BY_ID = Sort.by("id");
+
+    private final BookMapper bookMapper;
+
+    private final BookStorage bookStorage;
+
+    /**
+     * Starts sending every book to the given observer. Must be called by the service method, the
+     * export continues from the ready callbacks of the stream after it returned.
+     *
+     * @param responseObserver the observer to send the books to
+     */
+    public void export(ServerCallStreamObserver<BookResponse> responseObserver) {
+        Export export = new Export(responseObserver);
+        responseObserver.setOnReadyHandler(export);
+        responseObserver.setOnCancelHandler(export::cancelled);
+        export.run();
+    }
+
+    /**
+     * State of one export. The service method and the callbacks of a call never run concurrently.
+     */
+    private final class Export implements Runnable {
+
+        private final ServerCallStreamObserver<BookResponse> responseObserver;
+
+        private ScrollPosition position = ScrollPosition.keyset();
+
+        private Iterator<Book> batch = Collections.emptyIterator();
+
+        private boolean lastBatch;
+
+        private boolean done;
+
+        private long sent;
+
+        private Export(ServerCallStreamObserver<BookResponse> responseObserver) {
+            this.responseObserver = responseObserver;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!done && !responseObserver.isCancelled()) {
+                    if (!batch.hasNext() && lastBatch) {
+                        done = true;
+                        responseObserver.onCompleted();
+                    } else if (!responseObserver.isReady()) {
+                        return;
+                    } else if (batch.hasNext()) {
+                        responseObserver.onNext(bookMapper.bookToBookResponse(batch.next()));
+                        sent++;
+                    } else {
+                        readBatch();
+                    }
+                }
+            } catch (RuntimeException e) {
+                done = true;
+                log.warn("Catalog export failed after {} books", sent, e);
+                responseObserver.onError(Status.INTERNAL
+                        .withDescription("Catalog export failed")
+                        .asRuntimeException());
+            }
+        }
+
+        private void readBatch() {
+            Window<Book> window = bookStorage.findAllBy(position, BY_ID, Limit.of(BATCH_SIZE));
+            batch = window.iterator();
+            lastBatch = !window.hasNext();
+            if (!window.isEmpty()) {
+                position = window.positionAt(window.size() - 1);
+            }
+        }
+
+        private void cancelled() {
+            done = true;
+            log.debug("Catalog export cancelled by client after {} books", sent);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.sever0x.bookstore.service;
+
+import com.google.protobuf.FieldMask;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.proto.BookResponse;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Fields of {@link BookResponse} selected by the read mask of a request. Fields are named like
+ * the properties of {@link Book}, so the mask also names the columns to read.
+ */
+final class BookFields {
+
+    static final Set<String> NAMES = Set.of("id", "title", "author", "isbn", "quantity", "version");
+
+    private static final BookFields ALL = new BookFields(NAMES);
+
+    private final Set<String> names;
+
+    private BookFields(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * @param mask the read mask, selecting all fields when empty
+     * @return the selected fields
+     * @throws IllegalArgumentException if the mask names an unknown field
+     */
+    static BookFields of(FieldMask mask) {
+        if (mask.getPathsCount() == 0) {
+            return ALL;
+        }
+        Set<String> names = new HashSet<>();
+        for (String path : mask.getPathsList()) {
+            if (!NAMES.contains(path)) {
+                throw new IllegalArgumentException("unknown field " + path + ", expected one of " + NAMES);
+            }
+            names.add(path);
+        }
+        return names.size() == NAMES.size() ? ALL : new BookFields(Set.copyOf(names));
+    }
+
+    boolean isAll() {
+        return this == ALL;
+    }
+
+    Set<String> names() {
+        return names;
+    }
+
+    /**
+     * @return the properties to load for the selected fields, always including the version that
+     * page digests are computed from
+     */
+    Set<String> columns() {
+        if (names.contains("version")) {
+            return names;
+        }
+        Set<String> columns = new HashSet<>(names);
+        columns.add("version");
+        return columns;
+    }
+
+    /**
+     * @return the response without the fields that are not selected
+     */
+    BookResponse select(BookResponse response) {
+        if (isAll()) {
+            return response;
+        }
+        BookResponse.Builder builder = BookResponse.newBuilder();
+        if (names.contains("id")) {
+            builder.setId(response.getId());
+        }
+        if (names.contains("title")) {
+            builder.setTitle(response.getTitle());
+        }
+        if (names.contains("author")) {
+            builder.setAuthor(response.getAuthor());
+        }
+        if (names.contains("isbn")) {
+            builder.setIsbn(response.getIsbn());
+        }
+        if (names.contains("quantity")) {
+            builder.setQuantity(response.getQuantity());
+        }
+        if (names.contains("version")) {
+            builder.setVersion(response.getVersion());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Maps the selected properties of a book, which may have been loaded partially.
+     */
+    BookResponse toResponse(Book book) {
+        BookResponse.Builder builder = BookResponse.newBuilder();
+        if (names.contains("id") && book.getId() != null) {
+            builder.setId(book.getId().toString());
+        }
+        if (names.contains("title") && book.getTitle() != null) {
+            builder.setTitle(book.getTitle());
+        }
+        if (names.contains("author") && book.getAuthor() != null) {
+            builder.setAuthor(book.getAuthor());
+        }
+        if (names.contains("isbn") && book.getIsbn() != null) {
+            builder.setIsbn(book.getIsbn());
+        }
+        if (names.contains("quantity") && book.getQuantity() != null) {
+            builder.setQuantity(book.getQuantity());
+        }
+        if (names.contains("version") && book.getVersion() != null) {
+            builder.setVersion(book.getVersion());
+        }
+        return builder.build();
+    }
+}
@@ -1,21 +1,50 @@
 package com.sever0x.bookstore.service;
 
+import com.sever0x.bookstore.cache.BookCache;
+import com.sever0x.bookstore.cache.BookReadCoalescer;
+import com.sever0x.bookstore.config.IngestProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.feed.InventoryFeed;
+import com.sever0x.bookstore.index.BookSearchIndex;
+import com.sever0x.bookstore.index.IsbnIndex;
+import com.sever0x.bookstore.inventory.InventoryStats;
+import com.sever0x.bookstore.inventory.StockLedger;
 import com.sever0x.bookstore.mapper.BookMapper;
+import com.sever0x.bookstore.metrics.RpcStage;
+import com.sever0x.bookstore.metrics.RpcStages;
 import com.sever0x.bookstore.model.Book;
 import com.sever0x.bookstore.proto.*;
-import com.sever0x.bookstore.repository.BookRepository;
+import com.sever0x.bookstore.repository.BookStorage;
 import com.sever0x.bookstore.validation.BookValidator;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -23,10 +52,17 @@ import java.util.UUID;
  * The service provides the following functionality:
  * <ul>
  *     <li>Adding a new book</li>
- *     <li>Retrieving information about a book by its identifier</li>
- *     <li>Retrieving a list of books with pagination and sorting capabilities</li>
+ *     <li>Retrieving information about one or more books by their identifiers</li>
+ *     <li>Retrieving information about one or more books by ISBN</li>
+ *     <li>Retrieving a list of books with offset or keyset pagination and sorting capabilities</li>
  *     <li>Updating information about an existing book</li>
  *     <li>Deleting a book by its identifier</li>
+ *     <li>Adding a stream of books in batched transactions</li>
+ *     <li>Streaming the whole catalog</li>
+ *     <li>Adjusting and reserving stock atomically</li>
+ *     <li>Searching books by title and author</li>
+ *     <li>Watching inventory changes as they are committed</li>
+ *     <li>Reporting inventory totals and books low on stock</li>
  * </ul>
  */
 @Slf4j
@@ -34,14 +70,48 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class BookServiceImpl extends BookServiceGrpc.BookServiceImplBase {
 
+    /**
+     * Largest number of identifiers bound to a single {@code IN} query, larger batches are split.
+     */
+    static final int MAX_IDS_PER_QUERY = 1000;
+
+    /**
+     * Properties read to revalidate a page, besides the identifier and sort properties.
+     */
+    private static final Set<String> VERSION = Set.of("version");
+
     private final BookMapper bookMapper;
 
     private final BookValidator bookValidator;
 
-    private final BookRepository bookRepository;
+    private final BookStorage bookStorage;
+
+    private final BookBatchWriter bookBatchWriter;
+
+    private final IngestProperties ingestProperties;
+
+    private final BookCatalogExporter bookCatalogExporter;
+
+    private final BookCache bookCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final StockLedger stockLedger;
+
+    private final IsbnIndex isbnIndex;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final InventoryFeed inventoryFeed;
+
+    private final BookReadCoalescer readCoalescer;
+
+    private final InventoryStats inventoryStats;
 
     /**
      * Adds a new book to the repository.
+     * Retries with the idempotency key of an earlier call are answered by
+     * {@link com.sever0x.bookstore.idempotency.IdempotencyInterceptor} without calling this method.
      *
      * @param request          the request containing information about the new book
      * @param responseObserver the observer to send the response to the client
@@ -49,48 +119,202 @@ public class BookServiceImpl extends BookServiceGrpc.BookServiceImplBase {
     @Override
     @Transactional
     public void addBook(AddBookRequest request, StreamObserver<BookResponse> responseObserver) {
-        handleInvalidRequest(request.getTitle(), request.getAuthor(), request.getIsbn(), request.getQuantity(), responseObserver);
-        BookResponse bookResponse = bookMapper.bookToBookResponse(
-                bookRepository.save(bookMapper.addBookRequestToBook(request))
-        );
+        if (handleInvalidRequest(request.getTitle(), request.getAuthor(), request.getIsbn(), request.getQuantity(), responseObserver)) {
+            return;
+        }
+        long start = RpcStages.start();
+        if (bookStorage.existsByIsbn(request.getIsbn())) {
+            handleDuplicateIsbn(request.getIsbn(), responseObserver);
+            return;
+        }
+        Book newBook = bookMapper.addBookRequestToBook(request);
+        newBook.assignId();
+        Book book;
+        try {
+            book = bookStorage.saveAndFlush(newBook);
+        } catch (DataIntegrityViolationException e) {
+            // another call added the ISBN after the check above
+            rollbackDuplicateIsbn(request.getIsbn(), responseObserver);
+            return;
+        }
+        RpcStages.record(RpcStage.REPOSITORY, start);
+
+        start = RpcStages.start();
+        BookResponse bookResponse = bookMapper.bookToBookResponse(book);
+        RpcStages.record(RpcStage.MAPPING, start);
+        eventPublisher.publishEvent(BookChangedEvent.created(book.getId(), bookResponse));
         responseObserver.onNext(bookResponse);
         responseObserver.onCompleted();
     }
 
     /**
      * Retrieves information about a book by its identifier.
+     * Lookups are served from {@link BookCache}; only misses open a transaction. The read mask
+     * trims the response to the requested fields, the cache keeps whole books. A request with the
+     * version the client holds is answered with a not-modified response while that version is
+     * current; the version is taken from the cache where possible, otherwise only it is read.
      *
      * @param request          the request containing the book identifier
      * @param responseObserver the observer to send the response to the client
      */
     @Override
-    @Transactional(readOnly = true)
     public void getBook(GetBookRequest request, StreamObserver<BookResponse> responseObserver) {
         UUID bookId = UUID.fromString(request.getId());
-        bookRepository.findById(bookId)
-                .map(bookMapper::bookToBookResponse)
+        BookFields fields;
+        try {
+            fields = BookFields.of(request.getReadMask());
+        } catch (IllegalArgumentException e) {
+            handleInvalidArgument("Invalid read mask: " + e.getMessage(), responseObserver);
+            return;
+        }
+        long knownVersion = request.getKnownVersion();
+        if (knownVersion != 0 && currentVersion(bookId).filter(version -> version == knownVersion).isPresent()) {
+            responseObserver.onNext(BookResponse.newBuilder()
+                    .setId(request.getId())
+                    .setVersion(knownVersion)
+                    .setNotModified(true)
+                    .build());
+            responseObserver.onCompleted();
+            return;
+        }
+        Optional<BookResponse> book = findCachedById(bookId)
+                .map(stockLedger::withPendingQuantity)
+                .map(fields::select);
+        if (book.isEmpty()) {
+            handleNotFound(bookId, responseObserver);
+            return;
+        }
+        responseObserver.onNext(book.get());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Retrieves several books by their identifiers in one call. Duplicate identifiers are answered
+     * once, cached books are served from {@link BookCache} and all others are loaded with a single
+     * {@code IN} query per {@value #MAX_IDS_PER_QUERY} identifiers. Books are returned in request
+     * order and unknown identifiers are listed instead of failing the call.
+     *
+     * @param request          the request containing the book identifiers
+     * @param responseObserver the observer to send the response to the client
+     */
+    @Override
+    public void getBooksByIds(GetBooksByIdsRequest request, StreamObserver<GetBooksByIdsResponse> responseObserver) {
+        Map<String, UUID> bookIds = new LinkedHashMap<>();
+        List<String> invalid = new ArrayList<>();
+        for (String id : request.getIdsList()) {
+            try {
+                bookIds.putIfAbsent(id, UUID.fromString(id));
+            } catch (IllegalArgumentException e) {
+                invalid.add(id);
+            }
+        }
+        if (!invalid.isEmpty()) {
+            handleInvalidArgument("Invalid book ids: " + String.join(", ", invalid), responseObserver);
+            return;
+        }
+
+        Map<UUID, Optional<BookResponse>> found = bookCache.getAll(bookIds.values(), this::loadAllById);
+
+        GetBooksByIdsResponse.Builder response = GetBooksByIdsResponse.newBuilder();
+        bookIds.forEach((id, bookId) -> found.getOrDefault(bookId, Optional.empty())
+                .map(stockLedger::withPendingQuantity)
+                .ifPresentOrElse(response::addBooks, () -> response.addMissingIds(id)));
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Retrieves information about a book by its ISBN. The ISBN is resolved to an identifier through
+     * {@link IsbnIndex} and the book is served from {@link BookCache}, falling back to the unique
+     * ISBN index of the database.
+     *
+     * @param request          the request containing the ISBN
+     * @param responseObserver the observer to send the response to the client
+     */
+    @Override
+    public void getBookByIsbn(GetBookByIsbnRequest request, StreamObserver<BookResponse> responseObserver) {
+        String isbn = request.getIsbn();
+        if (!bookValidator.isValidISBN(isbn)) {
+            handleInvalidArgument("ISBN must be a valid 13-digit code", responseObserver);
+            return;
+        }
+        findIndexedByIsbn(isbn)
+                .or(() -> bookStorage.findByIsbn(isbn).map(this::indexBook))
+                .map(stockLedger::withPendingQuantity)
                 .ifPresentOrElse(
-                        responseObserver::onNext,
-                        () -> handleNotFound(bookId, responseObserver)
+                        book -> {
+                            responseObserver.onNext(book);
+                            responseObserver.onCompleted();
+                        },
+                        () -> responseObserver.onError(Status.NOT_FOUND
+                                .withDescription("Book not found with ISBN: " + isbn)
+                                .asRuntimeException())
                 );
+    }
+
+    /**
+     * Retrieves information about several books by ISBN. ISBNs missing from the in-memory index
+     * are looked up together in a single query; unknown ISBNs are reported instead of failing the call.
+     *
+     * @param request          the request containing the ISBNs
+     * @param responseObserver the observer to send the response to the client
+     */
+    @Override
+    public void getBooksByIsbn(GetBooksByIsbnRequest request, StreamObserver<GetBooksByIsbnResponse> responseObserver) {
+        Set<String> isbns = new LinkedHashSet<>(request.getIsbnsList());
+        List<String> invalid = isbns.stream().filter(isbn -> !bookValidator.isValidISBN(isbn)).toList();
+        if (!invalid.isEmpty()) {
+            handleInvalidArgument("ISBN must be a valid 13-digit code: " + String.join(", ", invalid), responseObserver);
+            return;
+        }
+
+        Map<String, BookResponse> found = new LinkedHashMap<>();
+        List<String> unresolved = new ArrayList<>();
+        for (String isbn : isbns) {
+            findIndexedByIsbn(isbn).ifPresentOrElse(book -> found.put(isbn, book), () -> unresolved.add(isbn));
+        }
+        if (!unresolved.isEmpty()) {
+            bookStorage.findAllByIsbnIn(unresolved).forEach(book -> found.put(book.getIsbn(), indexBook(book)));
+        }
+
+        GetBooksByIsbnResponse.Builder response = GetBooksByIsbnResponse.newBuilder();
+        for (String isbn : isbns) {
+            BookResponse book = found.get(isbn);
+            if (book != null) {
+                response.addBooks(stockLedger.withPendingQuantity(book));
+            } else {
+                response.addMissingIsbns(isbn);
+            }
+        }
+        responseObserver.onNext(response.build());
         responseObserver.onCompleted();
     }
 
     /**
      * Retrieves a list of books with pagination and sorting capabilities.
+     * In keyset mode the page is located by the token of the previous page instead of its number.
+     * With a read mask only the requested columns are read, into values rather than entities.
+     * Every page carries a digest; a request with the digest the client holds first reads only the
+     * identifiers and versions of the page and is answered with a not-modified response if the
+     * digest still matches. Concurrent identical requests share one database read.
      *
      * @param request          the request containing pagination and sorting parameters
      * @param responseObserver the observer to send the response to the client
      */
     @Override
-    @Transactional(readOnly = true)
     public void getBooks(GetBooksRequest request, StreamObserver<GetBooksResponse> responseObserver) {
-        Page<Book> books = bookRepository.findAll(getBooksPageable(request));
-        GetBooksResponse response = GetBooksResponse.newBuilder()
-                .setCurrentPage(request.getPageNumber())
-                .setTotalPages(books.getTotalPages())
-                .addAllBooks(books.map(bookMapper::bookToBookResponse))
-                .build();
+        BookFields fields;
+        try {
+            fields = BookFields.of(request.getReadMask());
+        } catch (IllegalArgumentException e) {
+            handleInvalidArgument("Invalid read mask: " + e.getMessage(), responseObserver);
+            return;
+        }
+        if (request.getKeyset()) {
+            getBooksByKeyset(request, fields, responseObserver);
+            return;
+        }
+        GetBooksResponse response = readCoalescer.page(request, () -> loadPage(request, fields));
 
         responseObserver.onNext(response);
         responseObserver.onCompleted();
@@ -98,6 +322,8 @@ public class BookServiceImpl extends BookServiceGrpc.BookServiceImplBase {
 
     /**
      * Updates information about an existing book.
+     * Retries with the idempotency key of an earlier call are answered by
+     * {@link com.sever0x.bookstore.idempotency.IdempotencyInterceptor} without calling this method.
      *
      * @param request          the request containing the new book information
      * @param responseObserver the observer to send the response to the client
@@ -105,11 +331,29 @@ public class BookServiceImpl extends BookServiceGrpc.BookServiceImplBase {
     @Override
     @Transactional
     public void updateBook(UpdateBookRequest request, StreamObserver<BookResponse> responseObserver) {
-        handleInvalidRequest(request.getTitle(), request.getAuthor(), request.getIsbn(), request.getQuantity(), responseObserver);
+        if (handleInvalidRequest(request.getTitle(), request.getAuthor(), request.getIsbn(), request.getQuantity(), responseObserver)) {
+            return;
+        }
+        long start = RpcStages.start();
+        if (bookStorage.existsByIsbnAndIdNot(request.getIsbn(), UUID.fromString(request.getId()))) {
+            handleDuplicateIsbn(request.getIsbn(), responseObserver);
+            return;
+        }
         Book book = bookMapper.updateBookRequestToBook(request);
-        bookRepository.save(book);
+        book.setVersion(nextVersion(book.getId()));
+        try {
+            bookStorage.saveAndFlush(book);
+        } catch (DataIntegrityViolationException e) {
+            rollbackDuplicateIsbn(request.getIsbn(), responseObserver);
+            return;
+        }
+        RpcStages.record(RpcStage.REPOSITORY, start);
 
-        responseObserver.onNext(bookMapper.bookToBookResponse(book));
+        start = RpcStages.start();
+        BookResponse bookResponse = bookMapper.bookToBookResponse(book);
+        RpcStages.record(RpcStage.MAPPING, start);
+        eventPublisher.publishEvent(BookChangedEvent.updated(book.getId(), bookResponse));
+        responseObserver.onNext(bookResponse);
         responseObserver.onCompleted();
     }
 
@@ -123,11 +367,14 @@ public class BookServiceImpl extends BookServiceGrpc.BookServiceImplBase {
     @Transactional
     public void deleteBook(DeleteBookRequest request, StreamObserver<DeleteBookResponse> responseObserver) {
         UUID bookId = UUID.fromString(request.getId());
-        if (!bookRepository.existsById(bookId)) {
+        long start = RpcStages.start();
+        if (!bookStorage.existsById(bookId)) {
             handleNotFound(bookId, responseObserver);
             return;
         }
-        bookRepository.deleteById(bookId);
+        bookStorage.deleteById(bookId);
+        RpcStages.record(RpcStage.REPOSITORY, start);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(bookId));
         DeleteBookResponse response = DeleteBookResponse.newBuilder()
                 .setId(request.getId())
                 .setSuccess(true)
@@ -136,20 +383,470 @@ public class BookServiceImpl extends BookServiceGrpc.BookServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    /**
+     * Adds a stream of books. Valid books are persisted in chunks, each chunk in its own
+     * transaction using JDBC batch inserts; invalid books are reported individually.
+     *
+     * @param responseObserver the observer to send the summary and per-book results to the client
+     * @return the observer receiving the books from the client
+     */
+    @Override
+    public StreamObserver<AddBookRequest> addBooks(StreamObserver<AddBooksResponse> responseObserver) {
+        return new AddBooksStreamObserver(bookMapper, bookValidator, bookBatchWriter, responseObserver,
+                ingestProperties.getChunkSize());
+    }
+
+    /**
+     * Streams all books in the catalog, reading them in keyset batches and honouring
+     * the client's flow control, see {@link BookCatalogExporter}.
+     *
+     * @param request          the request to stream the catalog
+     * @param responseObserver the observer to send the books to the client
+     */
+    @Override
+    public void streamBooks(StreamBooksRequest request, StreamObserver<BookResponse> responseObserver) {
+        bookCatalogExporter.export((ServerCallStreamObserver<BookResponse>) responseObserver);
+    }
+
+    /**
+     * Searches books whose title or author contain all words of the query, most relevant first.
+     * Matching and ranking run on the in-memory search index; only the books of the requested
+     * page are resolved, through the book cache with one query for all misses. A prefix matching
+     * too many words is rejected rather than answered with part of its matches.
+     *
+     * @param request          the request containing the query and pagination parameters
+     * @param responseObserver the observer to send the response to the client
+     */
+    @Override
+    public void searchBooks(SearchBooksRequest request, StreamObserver<SearchBooksResponse> responseObserver) {
+        if (!bookSearchIndex.isEnabled()) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                    .withDescription("Search is disabled")
+                    .asRuntimeException());
+            return;
+        }
+        if (request.getPageNumber() < 0 || request.getPageSize() <= 0) {
+            handleInvalidArgument("Page number must not be negative and page size must be positive", responseObserver);
+            return;
+        }
+
+        long start = RpcStages.start();
+        BookSearchIndex.SearchResult result;
+        try {
+            result = bookSearchIndex.search(request.getQuery(), request.getPrefix(),
+                    (int) Math.min(Integer.MAX_VALUE, (long) request.getPageNumber() * request.getPageSize()),
+                    request.getPageSize());
+        } catch (IllegalArgumentException e) {
+            handleInvalidArgument(e.getMessage(), responseObserver);
+            return;
+        }
+        RpcStages.record(RpcStage.REPOSITORY, start);
+
+        SearchBooksResponse.Builder response = SearchBooksResponse.newBuilder()
+                .setCurrentPage(request.getPageNumber())
+                .setTotalHits(result.totalHits());
+        // a book deleted since the search is skipped rather than failing the page
+        findAllCached(result.bookIds()).forEach(response::addBooks);
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Streams committed changes of the watched books until the client cancels. Changes a slow
+     * client has not received yet are merged per book instead of queueing up.
+     *
+     * @param request          the request containing the books to watch, empty for all books
+     * @param responseObserver the observer to send the changes to
+     */
+    @Override
+    public void watchInventory(WatchInventoryRequest request, StreamObserver<InventoryEvent> responseObserver) {
+        if (!inventoryFeed.isEnabled()) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                    .withDescription("Inventory feed is disabled")
+                    .asRuntimeException());
+            return;
+        }
+        Set<UUID> bookIds = new HashSet<>();
+        try {
+            request.getIdsList().forEach(id -> bookIds.add(UUID.fromString(id)));
+        } catch (IllegalArgumentException e) {
+            handleInvalidArgument("Invalid book id: " + e.getMessage(), responseObserver);
+            return;
+        }
+        if (!inventoryFeed.subscribe((ServerCallStreamObserver<InventoryEvent>) responseObserver, bookIds)) {
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many inventory subscribers")
+                    .asRuntimeException());
+        }
+    }
+
+    /**
+     * Reports the inventory totals of the catalog and of authors from the statistics kept in
+     * memory, so the cost does not depend on the size of the catalog.
+     *
+     * @param request          the request containing the authors to report
+     * @param responseObserver the observer to send the response to the client
+     */
+    @Override
+    public void getInventoryStats(GetInventoryStatsRequest request, StreamObserver<InventoryStatsResponse> responseObserver) {
+        if (!inventoryStats.isEnabled()) {
+            handleStatsDisabled(responseObserver);
+            return;
+        }
+        if (request.getTopAuthors() < 0) {
+            handleInvalidArgument("Number of top authors must not be negative", responseObserver);
+            return;
+        }
+
+        InventoryStats.Stats stats = inventoryStats.stats(request.getAuthorsList(), request.getTopAuthors());
+        InventoryStatsResponse.Builder response = InventoryStatsResponse.newBuilder()
+                .setTotalTitles(stats.titles())
+                .setTotalUnits(stats.units())
+                .setOutOfStock(stats.outOfStock());
+        stats.authors().forEach(author -> response.addAuthors(AuthorStats.newBuilder()
+                .setAuthor(author.author())
+                .setTitles(author.titles())
+                .setUnits(author.units())
+                .setOutOfStock(author.outOfStock())));
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Lists the books with at most the given quantity, lowest quantity first. The books are taken
+     * from the in-memory low-stock index; only the books of the requested page are resolved,
+     * through the book cache with one query for all misses.
+     *
+     * @param request          the request containing the threshold and pagination parameters
+     * @param responseObserver the observer to send the response to the client
+     */
+    @Override
+    public void getLowStock(GetLowStockRequest request, StreamObserver<GetLowStockResponse> responseObserver) {
+        if (!inventoryStats.isEnabled()) {
+            handleStatsDisabled(responseObserver);
+            return;
+        }
+        if (request.getThreshold() < 0 || request.getThreshold() > inventoryStats.getMaxLowStockThreshold()) {
+            handleInvalidArgument("Threshold must be between 0 and " + inventoryStats.getMaxLowStockThreshold(), responseObserver);
+            return;
+        }
+        if (request.getPageSize() <= 0) {
+            handleInvalidArgument("Page size must be positive", responseObserver);
+            return;
+        }
+
+        InventoryStats.LowStockPage page;
+        try {
+            page = inventoryStats.lowStock(request.getThreshold(), request.getPageToken(), request.getPageSize());
+        } catch (IllegalArgumentException e) {
+            handleInvalidArgument("Invalid page token: " + e.getMessage(), responseObserver);
+            return;
+        }
+        GetLowStockResponse.Builder response = GetLowStockResponse.newBuilder()
+                .setTotalCount(page.totalCount())
+                .setNextPageToken(page.nextPageToken());
+        // a book deleted since the page was taken is skipped rather than failing the page
+        findAllCached(page.bookIds()).forEach(response::addBooks);
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Adds a signed delta to the quantity of a book without a read-modify-write of the whole row,
+     * so concurrent adjustments are never lost and the quantity never goes below zero.
+     *
+     * @param request          the request containing the book identifier and the delta
+     * @param responseObserver the observer to send the new quantity to the client
+     */
+    @Override
+    public void adjustQuantity(AdjustQuantityRequest request, StreamObserver<QuantityResponse> responseObserver) {
+        applyQuantityDelta(UUID.fromString(request.getId()), request.getDelta(), responseObserver);
+    }
+
+    /**
+     * Takes the requested number of units from stock if enough are available.
+     *
+     * @param request          the request containing the book identifier and the number of units
+     * @param responseObserver the observer to send the remaining quantity to the client
+     */
+    @Override
+    public void reserveStock(ReserveStockRequest request, StreamObserver<QuantityResponse> responseObserver) {
+        if (request.getQuantity() <= 0) {
+            handleInvalidArgument("Reserved quantity must be positive", responseObserver);
+            return;
+        }
+        applyQuantityDelta(UUID.fromString(request.getId()), -request.getQuantity(), responseObserver);
+    }
+
+    private void applyQuantityDelta(UUID bookId, int delta, StreamObserver<QuantityResponse> responseObserver) {
+        StockLedger.Adjustment adjustment = stockLedger.adjust(bookId, delta);
+        switch (adjustment.outcome()) {
+            case NOT_FOUND -> handleNotFound(bookId, responseObserver);
+            case INSUFFICIENT_STOCK -> responseObserver.onError(Status.FAILED_PRECONDITION
+                    .withDescription("Insufficient stock for book with id: " + bookId)
+                    .asRuntimeException());
+            case APPLIED -> {
+                QuantityResponse response = QuantityResponse.newBuilder()
+                        .setId(bookId.toString())
+                        .setQuantity(adjustment.quantity())
+                        .build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
+        }
+    }
+
+    private void getBooksByKeyset(GetBooksRequest request, BookFields fields,
+                                  StreamObserver<GetBooksResponse> responseObserver) {
+        String sortBy = request.getSortBy().isEmpty() ? "id" : request.getSortBy();
+        if (!KeysetPageTokens.SORT_COLUMNS.contains(sortBy)) {
+            handleInvalidArgument("Keyset pagination supports sorting by " + KeysetPageTokens.SORT_COLUMNS, responseObserver);
+            return;
+        }
+        if (request.getPageSize() <= 0) {
+            handleInvalidArgument("Page size must be positive", responseObserver);
+            return;
+        }
+        Sort.Direction direction = Sort.Direction.fromOptionalString(request.getDirection()).orElse(Sort.Direction.ASC);
+
+        ScrollPosition position;
+        try {
+            position = request.getPageToken().isEmpty()
+                    ? ScrollPosition.keyset()
+                    : KeysetPageTokens.decode(request.getPageToken(), sortBy, direction);
+        } catch (IllegalArgumentException e) {
+            handleInvalidArgument("Invalid page token: " + e.getMessage(), responseObserver);
+            return;
+        }
+
+        GetBooksResponse response = readCoalescer.page(request,
+                () -> loadKeysetPage(request, fields, sortBy, direction, position));
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    private GetBooksResponse loadPage(GetBooksRequest request, BookFields fields) {
+        long start = RpcStages.start();
+        Pageable pageable = getBooksPageable(request);
+        if (!request.getKnownDigest().isEmpty()) {
+            Page<Book> versions = bookStorage.findAllProjected(VERSION, pageable);
+            String digest = PageDigests.of(fields, versions.getTotalPages(), versions.hasNext(), versions);
+            if (digest.equals(request.getKnownDigest())) {
+                RpcStages.record(RpcStage.REPOSITORY, start);
+                return notModified(request, digest);
+            }
+        }
+        Page<Book> books = fields.isAll()
+                ? bookStorage.findAll(pageable)
+                : bookStorage.findAllProjected(fields.columns(), pageable);
+        RpcStages.record(RpcStage.REPOSITORY, start);
+
+        start = RpcStages.start();
+        GetBooksResponse response = GetBooksResponse.newBuilder()
+                .setCurrentPage(request.getPageNumber())
+                .setTotalPages(books.getTotalPages())
+                .addAllBooks(books.map(book -> toResponse(book, fields)))
+                .setDigest(PageDigests.of(fields, books.getTotalPages(), books.hasNext(), books))
+                .build();
+        RpcStages.record(RpcStage.MAPPING, start);
+        return response;
+    }
+
+    private GetBooksResponse loadKeysetPage(GetBooksRequest request, BookFields fields, String sortBy,
+                                            Sort.Direction direction, ScrollPosition position) {
+        Sort sort = "id".equals(sortBy) ? Sort.by(direction, "id") : Sort.by(direction, sortBy, "id");
+        Limit limit = Limit.of(request.getPageSize());
+        if (!request.getKnownDigest().isEmpty()) {
+            Window<Book> versions = bookStorage.findAllProjectedBy(VERSION, position, sort, limit);
+            String digest = PageDigests.of(fields, totalPages(request), versions.hasNext(), versions);
+            if (digest.equals(request.getKnownDigest())) {
+                return notModified(request, digest);
+            }
+        }
+        Window<Book> books = fields.isAll()
+                ? bookStorage.findAllBy(position, sort, limit)
+                : bookStorage.findAllProjectedBy(fields.columns(), position, sort, limit);
+
+        int totalPages = totalPages(request);
+        GetBooksResponse.Builder response = GetBooksResponse.newBuilder()
+                .setCurrentPage(request.getPageNumber())
+                .setTotalPages(totalPages)
+                .setDigest(PageDigests.of(fields, totalPages, books.hasNext(), books));
+        books.forEach(book -> response.addBooks(toResponse(book, fields)));
+        if (books.hasNext() && !books.isEmpty()) {
+            KeysetScrollPosition last = (KeysetScrollPosition) books.positionAt(books.size() - 1);
+            response.setNextPageToken(KeysetPageTokens.encode(sortBy, direction, last));
+        }
+        return response.build();
+    }
+
+    /**
+     * @return the total number of pages in keyset mode, zero unless requested
+     */
+    private int totalPages(GetBooksRequest request) {
+        if (!request.getIncludeTotalPages()) {
+            return 0;
+        }
+        return (int) ((bookStorage.count() + request.getPageSize() - 1) / request.getPageSize());
+    }
+
+    private static GetBooksResponse notModified(GetBooksRequest request, String digest) {
+        return GetBooksResponse.newBuilder()
+                .setCurrentPage(request.getPageNumber())
+                .setDigest(digest)
+                .setNotModified(true)
+                .build();
+    }
+
+    /**
+     * Returns the current version of a book for revalidation, from the unflushed quantity changes
+     * or the cache if possible, otherwise by reading only the version.
+     */
+    private Optional<Long> currentVersion(UUID bookId) {
+        return stockLedger.pendingVersion(bookId)
+                .or(() -> bookCache.getIfPresent(bookId).map(BookResponse::getVersion))
+                .or(() -> bookStorage.findVersionById(bookId));
+    }
+
+    /**
+     * Increments the stored version of a book before it is replaced, which also locks the row, so
+     * concurrent updates get distinct versions. Versions not yet flushed by the stock ledger are
+     * skipped as well.
+     *
+     * @return the version for the replaced book, 1 if the book does not exist yet
+     */
+    private long nextVersion(UUID bookId) {
+        bookStorage.incrementVersion(bookId);
+        long stored = bookStorage.findVersionById(bookId).orElse(1L);
+        return stockLedger.pendingVersion(bookId)
+                .map(pending -> Math.max(stored, pending + 1))
+                .orElse(stored);
+    }
+
+    /**
+     * Maps a book loaded whole, or partially for a read mask, to the response fields selected.
+     */
+    private BookResponse toResponse(Book book, BookFields fields) {
+        return fields.isAll() ? bookMapper.bookToBookResponse(book) : fields.toResponse(book);
+    }
+
+    private Optional<BookResponse> findCachedById(UUID bookId) {
+        return bookCache.get(bookId, this::loadById);
+    }
+
+    /**
+     * Resolves books through the cache, loading all misses together.
+     *
+     * @return the books that exist with their pending quantity, in the given order
+     */
+    private List<BookResponse> findAllCached(List<UUID> bookIds) {
+        Map<UUID, Optional<BookResponse>> found = bookCache.getAll(bookIds, this::loadAllById);
+        List<BookResponse> books = new ArrayList<>(bookIds.size());
+        for (UUID bookId : bookIds) {
+            found.getOrDefault(bookId, Optional.empty())
+                    .map(stockLedger::withPendingQuantity)
+                    .ifPresent(books::add);
+        }
+        return books;
+    }
+
+    private Optional<BookResponse> loadById(UUID bookId) {
+        return readCoalescer.book(bookId, () -> readById(bookId));
+    }
+
+    private Optional<BookResponse> readById(UUID bookId) {
+        long start = RpcStages.start();
+        Optional<Book> book = bookStorage.findById(bookId);
+        RpcStages.record(RpcStage.REPOSITORY, start);
+
+        start = RpcStages.start();
+        Optional<BookResponse> bookResponse = book.map(bookMapper::bookToBookResponse);
+        RpcStages.record(RpcStage.MAPPING, start);
+        return bookResponse;
+    }
+
+    private Map<UUID, Optional<BookResponse>> loadAllById(Set<? extends UUID> bookIds) {
+        List<UUID> ids = List.copyOf(bookIds);
+        Map<UUID, Optional<BookResponse>> books = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            long start = RpcStages.start();
+            List<Book> chunk = bookStorage.findAllById(ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_QUERY)));
+            RpcStages.record(RpcStage.REPOSITORY, start);
+
+            start = RpcStages.start();
+            chunk.forEach(book -> books.put(book.getId(), Optional.of(bookMapper.bookToBookResponse(book))));
+            RpcStages.record(RpcStage.MAPPING, start);
+        }
+        ids.forEach(bookId -> books.putIfAbsent(bookId, Optional.empty()));
+        return books;
+    }
+
+    private Optional<BookResponse> findIndexedByIsbn(String isbn) {
+        return isbnIndex.find(isbn).flatMap(bookId -> {
+            Optional<BookResponse> book = findCachedById(bookId).filter(found -> isbn.equals(found.getIsbn()));
+            if (book.isEmpty()) {
+                isbnIndex.remove(isbn, bookId);
+            }
+            return book;
+        });
+    }
+
+    private BookResponse indexBook(Book book) {
+        isbnIndex.put(book.getIsbn(), book.getId());
+        return bookMapper.bookToBookResponse(book);
+    }
+
     private Pageable getBooksPageable(GetBooksRequest request) {
         return PageRequest.of(request.getPageNumber(), request.getPageSize(),
                 Sort.by(Sort.Direction.fromString(request.getDirection()), request.getSortBy()));
     }
 
-    private void handleInvalidRequest(String title, String author, String isbn, int quantity,
-                                      StreamObserver<?> responseObserver) {
+    private boolean handleInvalidRequest(String title, String author, String isbn, int quantity,
+                                         StreamObserver<?> responseObserver) {
+        long start = RpcStages.start();
         BookValidator.ValidationResult validationResult = bookValidator.validateRequest(title, author, isbn, quantity);
+        RpcStages.record(RpcStage.VALIDATION, start);
 
         if (validationResult.hasErrors()) {
             responseObserver.onError(Status.INVALID_ARGUMENT
                     .withDescription(String.join(", ", validationResult.getErrors()))
                     .asRuntimeException());
+            return true;
+        }
+        return false;
+    }
+
+    private void handleInvalidArgument(String description, StreamObserver<?> responseObserver) {
+        responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription(description)
+                .asRuntimeException());
+    }
+
+    private void handleStatsDisabled(StreamObserver<?> responseObserver) {
+        responseObserver.onError(Status.FAILED_PRECONDITION
+                .withDescription("Inventory statistics are disabled")
+                .asRuntimeException());
+    }
+
+    private void handleDuplicateIsbn(String isbn, StreamObserver<?> responseObserver) {
+        responseObserver.onError(Status.ALREADY_EXISTS
+                .withDescription("Book already exists with ISBN: " + isbn)
+                .asRuntimeException());
+    }
+
+    /**
+     * Answers a write that lost the race for an ISBN to another call. The insert or update is
+     * flushed before the response is sent, so the unique constraint fails here and not at commit.
+     */
+    private void rollbackDuplicateIsbn(String isbn, StreamObserver<?> responseObserver) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
+        handleDuplicateIsbn(isbn, responseObserver);
     }
 
     private void handleNotFound(UUID bookId, StreamObserver<?> responseObserver) {
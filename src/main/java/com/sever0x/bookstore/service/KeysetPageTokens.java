@@ -0,0 +1,78 @@
+package com.sever0x.bookstore.service;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Encodes keyset positions of {@code GetBooks} into opaque page tokens and back.
+ * A token carries the sort it was issued for, so it cannot be replayed with a different order.
+ */
+final class KeysetPageTokens {
+
+    /**
+     * Columns that can be used for keyset pagination; each has an index on the column and the id.
+     */
+    static final Set<String> SORT_COLUMNS = Set.of("id", "title", "author", "isbn", "quantity");
+
+    private static final byte VERSION = 1;
+
+    private static final String ID = "id";
+
+    private KeysetPageTokens() {
+    }
+
+    static String encode(String sortBy, Sort.Direction direction, KeysetScrollPosition position) {
+        Map<String, Object> keys = position.getKeys();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(sortBy);
+            out.writeUTF(direction.name());
+            if (!ID.equals(sortBy)) {
+                out.writeUTF(String.valueOf(keys.get(sortBy)));
+            }
+            out.writeUTF(String.valueOf(keys.get(ID)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes a page token issued for the given sort.
+     *
+     * @throws IllegalArgumentException if the token is malformed or was issued for another sort
+     */
+    static ScrollPosition decode(String token, String sortBy, Sort.Direction direction) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION || !sortBy.equals(in.readUTF()) || !direction.name().equals(in.readUTF())) {
+                throw new IllegalArgumentException("Page token does not match the requested sort");
+            }
+            Map<String, Object> keys = new LinkedHashMap<>();
+            if (!ID.equals(sortBy)) {
+                keys.put(sortBy, parseKey(sortBy, in.readUTF()));
+            }
+            keys.put(ID, UUID.fromString(in.readUTF()));
+            return ScrollPosition.forward(keys);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+    }
+
+    private static Object parseKey(String column, String value) {
+        return "quantity".equals(column) ? Integer.valueOf(value) : value;
+    }
+}
@@ -0,0 +1,55 @@
+package com.sever0x.bookstore.service;
+
+import com.sever0x.bookstore.model.Book;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.TreeSet;
+
+/**
+ * Computes the digests of {@code GetBooks} pages that clients pass back to revalidate a page.
+ * A digest covers the identifiers and versions of the books in page order, the selected fields
+ * and the page metadata, so it changes whenever any of them changes. It can therefore be computed
+ * from the identifiers and versions alone, without reading the books.
+ */
+final class PageDigests {
+
+    private static final int LENGTH = 16;
+
+    private PageDigests() {
+    }
+
+    /**
+     * @param fields     the fields selected by the read mask
+     * @param totalPages the total number of pages reported with the page
+     * @param hasNext    whether a following page exists
+     * @param books      the books of the page, at least with identifier and version loaded
+     * @return the digest of the page
+     */
+    static String of(BookFields fields, int totalPages, boolean hasNext, Iterable<Book> books) {
+        MessageDigest digest = sha256();
+        digest.update(String.join(",", new TreeSet<>(fields.names())).getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Long.BYTES);
+        digest.update(buffer.putInt(totalPages).put((byte) (hasNext ? 1 : 0)).flip());
+        for (Book book : books) {
+            buffer.clear()
+                    .putLong(book.getId().getMostSignificantBits())
+                    .putLong(book.getId().getLeastSignificantBits())
+                    .putLong(book.getVersion());
+            digest.update(buffer.flip());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), LENGTH));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
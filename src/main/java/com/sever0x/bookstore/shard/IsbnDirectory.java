@@ -0,0 +1,302 @@
+package com.sever0x.bookstore.shard;
+
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Global table of ISBNs and the books holding them, kept on the first shard, which makes ISBNs
+ * unique across shards and lets ISBN lookups read one shard instead of all of them.
+ * <p>
+ * An ISBN is reserved before the book holding it is written and released once the book is
+ * deleted or has changed its ISBN. A reservation on the first shard is atomic with the book only
+ * for books on that shard; for the others it commits first and is released again if the
+ * transaction of the book rolls back. A reservation left behind by a crash between the two is
+ * taken over by another book once it is older than {@link #STALE_AFTER} and its book does not
+ * hold the ISBN. Lookups therefore check that the book found still holds the ISBN.
+ */
+@Slf4j
+public class IsbnDirectory {
+
+    static final int SHARD = 0;
+
+    /**
+     * Age after which a reservation whose book does not hold the ISBN counts as left behind. Long
+     * enough for the transaction of any book to have completed.
+     */
+    static final Duration STALE_AFTER = Duration.ofMinutes(5);
+
+    static final String TABLE = "book_isbns";
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final Sort BY_ID = Sort.by("id");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BookRepository shardRepository;
+
+    private final Shards shards;
+
+    /**
+     * @param dataSource      the application data source, so reservations on the first shard join
+     *                        its transactions
+     * @param shardRepository the repository of a single shard, used with the shard pinned
+     * @param shards          the shards
+     */
+    public IsbnDirectory(DataSource dataSource, BookRepository shardRepository, Shards shards) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.shardRepository = shardRepository;
+        this.shards = shards;
+    }
+
+    /**
+     * Creates the table on the first shard unless it exists, and fills it with the books already
+     * stored, e.g. when sharding an existing catalog. Books sharing an ISBN with a book registered
+     * before are reported and left out.
+     */
+    void initialize() {
+        boolean created = shards.execute(SHARD, false, () -> jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (ShardInitializer.hasTable(connection, TABLE)) {
+                return false;
+            }
+            jdbcTemplate.execute("create table " + TABLE + " (isbn varchar(255) not null primary key,"
+                    + " book_id uuid not null, reserved_at timestamp not null)");
+            return true;
+        }));
+        if (!created) {
+            return;
+        }
+        long registered = 0;
+        long conflicting = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            ScrollPosition position = ScrollPosition.keyset();
+            while (true) {
+                ScrollPosition from = position;
+                int source = shard;
+                Window<Book> window = shards.execute(source, true,
+                        () -> shardRepository.findAllBy(from, BY_ID, Limit.of(BATCH_SIZE)));
+                List<Book> books = window.stream().filter(book -> book.getIsbn() != null).toList();
+                int[][] counts = shards.execute(SHARD, false, () -> jdbcTemplate.batchUpdate(
+                        "insert into " + TABLE + " (isbn, book_id, reserved_at) select ?, ?, ?"
+                                + " where not exists (select 1 from " + TABLE + " where isbn = ?)",
+                        books, BATCH_SIZE, (statement, book) -> {
+                            statement.setString(1, book.getIsbn());
+                            statement.setObject(2, book.getId());
+                            statement.setTimestamp(3, Timestamp.from(Instant.now()));
+                            statement.setString(4, book.getIsbn());
+                        }));
+                for (int[] batch : counts) {
+                    for (int count : batch) {
+                        if (count == 0) {
+                            conflicting++;
+                        } else {
+                            registered++;
+                        }
+                    }
+                }
+                if (window.isEmpty() || !window.hasNext()) {
+                    break;
+                }
+                position = window.positionAt(window.size() - 1);
+            }
+        }
+        log.info("Registered the ISBNs of {} books", registered);
+        if (conflicting > 0) {
+            log.warn("{} books share their ISBN with another book and were not registered", conflicting);
+        }
+    }
+
+    /**
+     * Reserves the ISBN for the book. A reservation made by this call is released again if the
+     * transaction of the calling thread rolls back.
+     *
+     * @param isbn   the ISBN, nothing is reserved for {@code null}
+     * @param bookId the book to hold the ISBN
+     * @throws DuplicateKeyException if another book holds the ISBN
+     */
+    void reserve(String isbn, UUID bookId) {
+        if (isbn == null || !shards.execute(SHARD, false, () -> reserveOnShard(isbn, bookId))) {
+            return;
+        }
+        releaseOnRollback(List.of(new Reservation(isbn, bookId, null)));
+    }
+
+    /**
+     * Reserves the ISBNs of new books with batched inserts, releasing them again if the
+     * transaction of the calling thread rolls back.
+     *
+     * @param books the books to reserve the ISBNs for, with identifiers assigned
+     * @throws DuplicateKeyException if an ISBN is reserved already, nothing is reserved then
+     */
+    void reserveAll(List<? extends Book> books) {
+        List<Reservation> reservations = books.stream()
+                .filter(book -> book.getIsbn() != null)
+                .map(book -> new Reservation(book.getIsbn(), book.getId(), null))
+                .toList();
+        if (reservations.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        shards.execute(SHARD, false, () -> jdbcTemplate.batchUpdate(
+                "insert into " + TABLE + " (isbn, book_id, reserved_at) values (?, ?, ?)",
+                reservations, BATCH_SIZE, (statement, reservation) -> {
+                    statement.setString(1, reservation.isbn());
+                    statement.setObject(2, reservation.bookId());
+                    statement.setTimestamp(3, now);
+                }));
+        releaseOnRollback(reservations);
+    }
+
+    /**
+     * Releases the ISBN of the book once the transaction of the calling thread commits, or right
+     * away outside a transaction.
+     */
+    void releaseAfterCommit(String isbn, UUID bookId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            release(List.of(new Reservation(isbn, bookId, null)));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    release(List.of(new Reservation(isbn, bookId, null)));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the book holding the ISBN according to the table, which may be about to be written
+     * or left behind
+     */
+    Optional<UUID> owner(String isbn) {
+        return shards.execute(SHARD, true, () -> find(isbn)).map(Reservation::bookId);
+    }
+
+    /**
+     * @return the books holding the given ISBNs according to the table, by ISBN
+     */
+    Map<String, UUID> owners(Collection<String> isbns) {
+        List<String> distinct = isbns.stream().distinct().toList();
+        Map<String, UUID> owners = new HashMap<>();
+        for (int from = 0; from < distinct.size(); from += BATCH_SIZE) {
+            List<String> chunk = distinct.subList(from, Math.min(distinct.size(), from + BATCH_SIZE));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            shards.execute(SHARD, true, () -> jdbcTemplate.query(
+                    "select isbn, book_id from " + TABLE + " where isbn in (" + placeholders + ")",
+                    (RowCallbackHandler) row -> owners.put(row.getString("isbn"), row.getObject("book_id", UUID.class)),
+                    chunk.toArray()));
+        }
+        return owners;
+    }
+
+    /**
+     * @return whether the reservation was made by this call
+     */
+    private boolean reserveOnShard(String isbn, UUID bookId) {
+        Optional<Reservation> current = find(isbn);
+        Timestamp now = Timestamp.from(Instant.now());
+        if (current.isEmpty()) {
+            // a concurrent reservation of the same ISBN makes the insert fail with a duplicate key
+            jdbcTemplate.update("insert into " + TABLE + " (isbn, book_id, reserved_at) values (?, ?, ?)",
+                    isbn, bookId, now);
+            return true;
+        }
+        UUID owner = current.get().bookId();
+        if (owner.equals(bookId)) {
+            return false;
+        }
+        Timestamp staleBefore = Timestamp.from(Instant.now().minus(STALE_AFTER));
+        if (!current.get().reservedAt().before(staleBefore)
+                || holds(owner, isbn)
+                || jdbcTemplate.update("update " + TABLE + " set book_id = ?, reserved_at = ?"
+                + " where isbn = ? and book_id = ? and reserved_at < ?", bookId, now, isbn, owner, staleBefore) == 0) {
+            throw new DuplicateKeyException("ISBN " + isbn + " already belongs to book " + owner);
+        }
+        log.warn("Took over ISBN {} from book {}, which does not hold it", isbn, owner);
+        return true;
+    }
+
+    private Optional<Reservation> find(String isbn) {
+        return jdbcTemplate.query("select isbn, book_id, reserved_at from " + TABLE + " where isbn = ?",
+                (row, index) -> new Reservation(row.getString("isbn"), row.getObject("book_id", UUID.class),
+                        row.getTimestamp("reserved_at")), isbn).stream().findFirst();
+    }
+
+    private boolean holds(UUID bookId, String isbn) {
+        return isbn.equals(shards.execute(shards.shardOf(bookId), true,
+                () -> shardRepository.findIsbnById(bookId)).orElse(null));
+    }
+
+    /**
+     * Releases the reservations if the transaction of the calling thread rolls back, except for
+     * books written anyway by transactions of their own on other shards.
+     */
+    private void releaseOnRollback(List<Reservation> reservations) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                try {
+                    release(reservations.stream()
+                            .filter(reservation -> !holds(reservation.bookId(), reservation.isbn()))
+                            .toList());
+                } catch (RuntimeException e) {
+                    log.warn("Failed to release {} ISBN reservations, they are taken over once stale",
+                            reservations.size(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the reservations still held by their books. A failure leaves them to be taken over.
+     */
+    private void release(List<Reservation> reservations) {
+        if (reservations.isEmpty()) {
+            return;
+        }
+        try {
+            shards.execute(SHARD, false, () -> jdbcTemplate.batchUpdate(
+                    "delete from " + TABLE + " where isbn = ? and book_id = ?",
+                    reservations, BATCH_SIZE, (statement, reservation) -> {
+                        statement.setString(1, reservation.isbn());
+                        statement.setObject(2, reservation.bookId());
+                    }));
+        } catch (RuntimeException e) {
+            log.warn("Failed to release {} ISBN reservations, they are taken over once stale", reservations.size(), e);
+        }
+    }
+
+    private record Reservation(String isbn, UUID bookId, Timestamp reservedAt) {
+    }
+}
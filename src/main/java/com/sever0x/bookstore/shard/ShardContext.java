@@ -0,0 +1,35 @@
+package com.sever0x.bookstore.shard;
+
+/**
+ * Shard the current thread is working on. {@link Shards} pins a shard while it runs a transaction
+ * on it, and {@link ShardRoutingDataSource} hands out connections of the pinned shard. Without a
+ * pinned shard connections come from the first shard.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return the index of the pinned shard, or {@code null} if no shard is pinned
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    static Integer enter(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void exit(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.sever0x.bookstore.shard;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Prepares the shards at startup. Hibernate manages the schema of the first shard only, so the
+ * tables are created on every other shard that does not have them yet; later changes to existing
+ * tables have to be applied to each shard. The {@link IsbnDirectory} is created and filled if
+ * missing. Optionally misplaced books are moved afterwards.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ShardInitializer implements InitializingBean {
+
+    private final ShardRoutingDataSource dataSource;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final ShardRebalancer rebalancer;
+
+    private final IsbnDirectory isbnDirectory;
+
+    private final boolean initializeSchema;
+
+    private final boolean rebalanceOnStartup;
+
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        if (initializeSchema) {
+            for (int shard = 0; shard < dataSource.size(); shard++) {
+                initializeSchema(shard);
+            }
+        }
+        isbnDirectory.initialize();
+        if (rebalanceOnStartup) {
+            rebalancer.rebalance();
+        }
+    }
+
+    private void initializeSchema(int shard) throws SQLException {
+        Integer previous = ShardContext.enter(shard);
+        try {
+            if (!hasBooksTable()) {
+                log.info("Creating the schema on shard {}", shard);
+                entityManagerFactory.unwrap(SessionFactory.class).getSchemaManager().exportMappedObjects(false);
+            }
+        } finally {
+            ShardContext.exit(previous);
+        }
+    }
+
+    private boolean hasBooksTable() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return hasTable(connection, "books");
+        }
+    }
+
+    /**
+     * @param name the table name in lower case
+     */
+    static boolean hasTable(Connection connection, String name) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // unquoted identifiers are folded to lower case by PostgreSQL and to upper case by H2
+        for (String folded : new String[]{name, name.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, folded, new String[]{"TABLE"})) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.sever0x.bookstore.shard;
+
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Moves books that are not on the shard their identifier hashes to, e.g. after a shard was
+ * appended. Each shard is scanned in identifier order; misplaced books are copied to their shard
+ * first and deleted from the old one afterwards, so an interrupted run can simply be repeated.
+ * Writes must be stopped while rebalancing.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ShardRebalancer {
+
+    static final int CHUNK_SIZE = 500;
+
+    private static final Sort BY_ID = Sort.by("id");
+
+    /**
+     * The repository of a single shard, used with the shard pinned.
+     */
+    private final BookRepository shardRepository;
+
+    private final Shards shards;
+
+    /**
+     * Moves every misplaced book to its shard.
+     *
+     * @return the number of moved books
+     */
+    public long rebalance() {
+        long start = System.nanoTime();
+        long moved = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            moved += rebalance(shard);
+        }
+        log.info("Moved {} books between {} shards in {} ms", moved, shards.count(),
+                (System.nanoTime() - start) / 1_000_000);
+        return moved;
+    }
+
+    private long rebalance(int source) {
+        long moved = 0;
+        ScrollPosition position = ScrollPosition.keyset();
+        while (true) {
+            ScrollPosition from = position;
+            Window<Book> window = shards.execute(source, true,
+                    () -> shardRepository.findAllBy(from, BY_ID, Limit.of(CHUNK_SIZE)));
+            Map<Integer, List<Book>> misplaced = window.stream()
+                    .filter(book -> shards.shardOf(book.getId()) != source)
+                    .collect(Collectors.groupingBy(book -> shards.shardOf(book.getId())));
+            for (Map.Entry<Integer, List<Book>> target : misplaced.entrySet()) {
+                List<UUID> ids = target.getValue().stream().map(Book::getId).toList();
+                shards.execute(target.getKey(), false, () -> shardRepository.saveAll(target.getValue()));
+                shards.execute(source, false, () -> {
+                    shardRepository.deleteAllByIdInBatch(ids);
+                    return null;
+                });
+                moved += ids.size();
+            }
+            if (window.isEmpty() || !window.hasNext()) {
+                return moved;
+            }
+            position = window.positionAt(window.size() - 1);
+        }
+    }
+}
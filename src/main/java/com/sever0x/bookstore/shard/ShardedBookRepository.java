@@ -0,0 +1,311 @@
+package com.sever0x.bookstore.shard;
+
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.repository.BookOrdering;
+import com.sever0x.bookstore.repository.BookRepository;
+import com.sever0x.bookstore.repository.BookStorage;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * {@link BookStorage} spreading books over {@link Shards}, with a {@link BookRepository} on each shard.
+ * <p>
+ * Calls naming a book or identifier run on the shard of the identifier; new books are assigned an
+ * identifier first to choose their shard. Calls without one fan out to every shard in parallel and
+ * combine the results: sorted pages and keyset windows are k-way merged on the sort key, which
+ * costs each shard {@code offset + size} rows for offset pages but only {@code size} rows for
+ * keyset windows. Streams visit one shard after the other and are ordered within each shard only.
+ * <p>
+ * The first write binds the transaction of the caller to its shard and later calls on that shard
+ * join it (see {@link Shards}), so a service transaction writing one book is atomic. ISBNs are reserved in
+ * the {@link IsbnDirectory} before books are written, which keeps them unique across shards and
+ * turns ISBN lookups into a lookup on the first shard and one on the shard of the book.
+ */
+public class ShardedBookRepository implements BookStorage {
+
+    private final BookRepository delegate;
+
+    private final Shards shards;
+
+    private final IsbnDirectory isbnDirectory;
+
+    public ShardedBookRepository(BookRepository delegate, Shards shards, IsbnDirectory isbnDirectory) {
+        this.delegate = delegate;
+        this.shards = shards;
+        this.isbnDirectory = isbnDirectory;
+    }
+
+    /**
+     * Reserves the ISBN of the book, then writes the book; a replaced ISBN is released once the
+     * transaction commits.
+     */
+    @Override
+    public <S extends Book> S saveAndFlush(S entity) {
+        boolean replaces = !entity.isNew();
+        UUID id = entity.assignId();
+        return shards.execute(shards.shardOf(id), false, () -> {
+            Optional<String> previousIsbn = replaces ? delegate.findIsbnById(id) : Optional.empty();
+            isbnDirectory.reserve(entity.getIsbn(), id);
+            S saved = delegate.saveAndFlush(entity);
+            previousIsbn.filter(isbn -> !isbn.equals(entity.getIsbn()))
+                    .ifPresent(isbn -> isbnDirectory.releaseAfterCommit(isbn, id));
+            return saved;
+        });
+    }
+
+    @Override
+    public <S extends Book> List<S> saveAll(Iterable<S> entities) {
+        List<S> books = new ArrayList<>();
+        entities.forEach(books::add);
+        List<S> saved = new ArrayList<>(Collections.nCopies(books.size(), null));
+        TreeMap<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        for (int i = 0; i < books.size(); i++) {
+            int shard = shards.shardOf(books.get(i).assignId());
+            positionsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+        }
+        isbnDirectory.reserveAll(books);
+        positionsByShard.forEach((shard, positions) -> {
+            List<S> group = positions.stream().map(books::get).toList();
+            List<S> result = shards.execute(shard, false, () -> delegate.saveAllAndFlush(group));
+            for (int i = 0; i < positions.size(); i++) {
+                saved.set(positions.get(i), result.get(i));
+            }
+        });
+        return saved;
+    }
+
+    @Override
+    public Optional<Book> findById(UUID id) {
+        return shards.execute(shards.shardOf(id), true, () -> delegate.findById(id));
+    }
+
+    @Override
+    public boolean existsById(UUID id) {
+        return shards.execute(shards.shardOf(id), true, () -> delegate.existsById(id));
+    }
+
+    @Override
+    public Optional<Integer> findQuantityById(UUID id) {
+        return shards.execute(shards.shardOf(id), true, () -> delegate.findQuantityById(id));
+    }
+
+    @Override
+    public Optional<Long> findVersionById(UUID id) {
+        return shards.execute(shards.shardOf(id), true, () -> delegate.findVersionById(id));
+    }
+
+    @Override
+    public Optional<QuantityVersion> findQuantityVersionById(UUID id) {
+        // seeds stock counters, which must not start from a replica behind the shard's primary
+        return shards.execute(shards.shardOf(id), false, () -> delegate.findQuantityVersionById(id));
+    }
+
+    @Override
+    public List<Book> findAllById(Iterable<UUID> ids) {
+        List<List<UUID>> idsByShard = groupByShard(ids);
+        return concat(shards.fanOut(true, shard -> idsByShard.get(shard).isEmpty()
+                ? List.<Book>of()
+                : delegate.findAllById(idsByShard.get(shard))));
+    }
+
+    private List<Book> findAll(Sort sort) {
+        Sort total = BookOrdering.withIdTiebreak(sort);
+        List<List<Book>> sorted = shards.fanOut(true, shard -> delegate.findAll(total));
+        return BookOrdering.merge(sorted, BookOrdering.comparator(total), 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<Book> findAll(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(pageable.getSort()));
+        }
+        return mergePages(pageable, delegate::findAll);
+    }
+
+    @Override
+    public Page<Book> findAllProjected(Set<String> properties, Pageable pageable) {
+        return mergePages(pageable, prefix -> delegate.findAllProjected(properties, prefix));
+    }
+
+    @Override
+    public Window<Book> findAllBy(ScrollPosition position, Sort sort, Limit limit) {
+        return mergeWindows(position, sort, limit, total -> delegate.findAllBy(position, total, limit));
+    }
+
+    @Override
+    public Window<Book> findAllProjectedBy(Set<String> properties, ScrollPosition position, Sort sort, Limit limit) {
+        return mergeWindows(position, sort, limit,
+                total -> delegate.findAllProjectedBy(properties, position, total, limit));
+    }
+
+    /**
+     * Merges the pages of all shards on the sort key.
+     *
+     * @param query queries a shard for a page
+     */
+    private Page<Book> mergePages(Pageable pageable, Function<Pageable, Page<Book>> query) {
+        Sort sort = BookOrdering.withIdTiebreak(pageable.getSort());
+        // the requested page may consist of the first offset + size books of any shard
+        Pageable prefix = pageable.isPaged()
+                ? PageRequest.of(0, Math.toIntExact(pageable.getOffset() + pageable.getPageSize()), sort)
+                : Pageable.unpaged(sort);
+        List<Page<Book>> pages = shards.fanOut(true, shard -> query.apply(prefix));
+        List<Book> content = BookOrdering.merge(pages.stream().map(Slice::getContent).toList(),
+                BookOrdering.comparator(sort), pageable.isPaged() ? pageable.getOffset() : 0,
+                pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE);
+        long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Merges the keyset windows of all shards on the sort key.
+     *
+     * @param query queries a shard for a window in the given sort order
+     */
+    private Window<Book> mergeWindows(ScrollPosition position, Sort sort, Limit limit,
+                                      Function<Sort, Window<Book>> query) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.scrollsBackward()) {
+            throw new UnsupportedOperationException("Sharded books can only be scrolled forward by keyset");
+        }
+        Sort total = BookOrdering.withIdTiebreak(sort);
+        List<Window<Book>> windows = shards.fanOut(true, shard -> query.apply(total));
+        List<List<Book>> sorted = windows.stream().map(Window::getContent).toList();
+        int size = limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+        List<Book> content = BookOrdering.merge(sorted, BookOrdering.comparator(total), 0, size);
+        int fetched = sorted.stream().mapToInt(List::size).sum();
+        boolean hasNext = fetched > content.size() || windows.stream().anyMatch(Window::hasNext);
+        return Window.from(content, index -> ScrollPosition.forward(BookOrdering.keys(content.get(index), total)),
+                hasNext);
+    }
+
+    @Override
+    public long count() {
+        return shards.fanOut(true, shard -> delegate.count()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public Optional<Book> findByIsbn(String isbn) {
+        return isbnDirectory.owner(isbn)
+                .flatMap(this::findById)
+                .filter(book -> isbn.equals(book.getIsbn()));
+    }
+
+    @Override
+    public List<Book> findAllByIsbnIn(Collection<String> isbns) {
+        Map<String, UUID> owners = isbnDirectory.owners(isbns);
+        return findAllById(owners.values()).stream()
+                .filter(book -> book.getId().equals(owners.get(book.getIsbn())))
+                .toList();
+    }
+
+    @Override
+    public boolean existsByIsbnAndIdNot(String isbn, UUID id) {
+        return findByIsbn(isbn).filter(book -> !book.getId().equals(id)).isPresent();
+    }
+
+    @Override
+    public boolean existsByIsbn(String isbn) {
+        return findByIsbn(isbn).isPresent();
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return shards.stream(delegate::streamAll);
+    }
+
+    @Override
+    public Stream<IsbnEntry> streamIsbnEntries() {
+        return shards.stream(delegate::streamIsbnEntries);
+    }
+
+    @Override
+    public Stream<SearchEntry> streamSearchEntries() {
+        return shards.stream(delegate::streamSearchEntries);
+    }
+
+    @Override
+    public Stream<StockEntry> streamStockEntries() {
+        return shards.stream(delegate::streamStockEntries);
+    }
+
+    @Override
+    public int adjustQuantity(UUID id, int delta) {
+        return shards.execute(shards.shardOf(id), false, () -> delegate.adjustQuantity(id, delta));
+    }
+
+    @Override
+    public int incrementVersion(UUID id) {
+        return shards.execute(shards.shardOf(id), false, () -> delegate.incrementVersion(id));
+    }
+
+    @Override
+    public int addQuantity(UUID id, int delta, long changes, long version) {
+        return shards.execute(shards.shardOf(id), false, () -> delegate.addQuantity(id, delta, changes, version));
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        shards.execute(shards.shardOf(id), false, () -> {
+            Optional<String> isbn = delegate.findIsbnById(id);
+            delegate.deleteById(id);
+            isbn.ifPresent(value -> isbnDirectory.releaseAfterCommit(value, id));
+            return null;
+        });
+    }
+
+    /**
+     * Detaches the book from the persistence context of the shard being read, as within a stream.
+     */
+    @Override
+    public void detach(Book book) {
+        delegate.detach(book);
+    }
+
+    /**
+     * Flushes and clears the persistence context of the transaction of the calling thread, which
+     * holds the books of the shard the transaction is bound to. Outside a transaction every call
+     * has been committed and its persistence context closed when it returns.
+     */
+    @Override
+    public void flushAndClear() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            delegate.flushAndClear();
+        }
+    }
+
+    private List<List<UUID>> groupByShard(Iterable<? extends UUID> ids) {
+        List<List<UUID>> idsByShard = new ArrayList<>(shards.count());
+        for (int i = 0; i < shards.count(); i++) {
+            idsByShard.add(new ArrayList<>());
+        }
+        ids.forEach(id -> idsByShard.get(shards.shardOf(id)).add(id));
+        return idsByShard;
+    }
+
+    private static <T> List<T> concat(List<? extends Collection<? extends T>> results) {
+        List<T> all = new ArrayList<>();
+        results.forEach(all::addAll);
+        return all;
+    }
+}
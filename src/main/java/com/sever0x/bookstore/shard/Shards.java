@@ -0,0 +1,332 @@
+package com.sever0x.bookstore.shard;
+
+import org.springframework.core.Ordered;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Places books on shards and runs work on them.
+ * <p>
+ * A book lives on the shard chosen by a jump consistent hash of its identifier: when a shard is
+ * appended, only about {@code 1/n} of the books move, all of them to the new shard (see
+ * {@link ShardRebalancer}).
+ * <p>
+ * A transaction is bound to the first shard it writes to: the shard stays pinned in
+ * {@link ShardContext} until the transaction completes, and later work on the same shard joins
+ * it, so a service transaction writing one book commits or rolls back as a whole. Reads before
+ * the first write, work on another shard, work outside a transaction and writes from a read-only
+ * transaction run in a transaction of their own, so a call spanning several shards is not atomic.
+ * A transaction must not run statements of its own before it is bound, as they would run on the
+ * first shard.
+ */
+public class Shards implements AutoCloseable {
+
+    private final int count;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final TransactionTemplate readTransaction;
+
+    private final TransactionTemplate writeTransaction;
+
+    private final DefaultTransactionDefinition streamTransaction;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public Shards(int count, PlatformTransactionManager transactionManager) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.count = count;
+        this.transactionManager = transactionManager;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.streamTransaction = new DefaultTransactionDefinition(readTransaction);
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return the index of the shard the book with the given identifier lives on
+     */
+    public int shardOf(UUID id) {
+        return jumpHash(id.getMostSignificantBits() ^ id.getLeastSignificantBits(), count);
+    }
+
+    /**
+     * Runs the work on the given shard, in the transaction of the calling thread if it is bound to
+     * the shard or the work is its first write, otherwise in a new transaction bound to the shard.
+     *
+     * @param shard    the shard index
+     * @param readOnly whether the work only reads
+     * @param work     the work to run
+     * @return the result of the work
+     */
+    public <T> T execute(int shard, boolean readOnly, Supplier<T> work) {
+        if (joins(shard, readOnly)) {
+            return work.get();
+        }
+        Integer previous = ShardContext.enter(shard);
+        try {
+            return (readOnly ? readTransaction : writeTransaction).execute(status -> {
+                bind(shard);
+                return work.get();
+            });
+        } finally {
+            ShardContext.exit(previous);
+        }
+    }
+
+    /**
+     * Whether work on the shard can run in the transaction of the calling thread, binding the
+     * transaction to the shard on its first write.
+     */
+    private boolean joins(int shard, boolean readOnly) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || (!readOnly && TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            return false;
+        }
+        ShardBinding binding = (ShardBinding) TransactionSynchronizationManager.getResource(this);
+        if (binding == null) {
+            if (readOnly) {
+                return false;
+            }
+            bind(shard);
+            return true;
+        }
+        return binding.open && binding.shard == shard;
+    }
+
+    private void bind(int shard) {
+        ShardBinding binding = new ShardBinding(shard, ShardContext.enter(shard));
+        TransactionSynchronizationManager.bindResource(this, binding);
+        TransactionSynchronizationManager.registerSynchronization(binding);
+    }
+
+    /**
+     * Runs the work on every shard in parallel, each in a new transaction.
+     *
+     * @param readOnly whether the transactions are read-only
+     * @param work     the work to run, given the shard index
+     * @return the results in shard order
+     */
+    public <T> List<T> fanOut(boolean readOnly, IntFunction<T> work) {
+        if (count == 1) {
+            return List.of(execute(0, readOnly, () -> work.apply(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int shard = i;
+            futures.add(executor.submit(() -> execute(shard, readOnly, () -> work.apply(shard))));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Concatenates a stream of every shard, one shard after the other. The stream of a shard is
+     * opened in a new read-only transaction once the previous shard is exhausted, and its
+     * transaction ends when it is exhausted or the returned stream is closed. The returned stream
+     * must be consumed on the calling thread and closed afterwards.
+     *
+     * @param query opens the stream of the pinned shard
+     * @return the stream over all shards
+     */
+    public <T> Stream<T> stream(Supplier<Stream<T>> query) {
+        ShardIterator<T> iterator = new ShardIterator<>(query);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Jump consistent hash (Lamping and Veach) of a key to one of the given number of buckets.
+     */
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    private final class ShardIterator<T> implements Iterator<T> {
+
+        private final Supplier<Stream<T>> query;
+
+        private int nextShard;
+
+        private Stream<T> stream;
+
+        private Iterator<T> current;
+
+        private TransactionStatus transaction;
+
+        private Integer previousShard;
+
+        ShardIterator(Supplier<Stream<T>> query) {
+            this.query = query;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                close();
+                if (nextShard == count) {
+                    return false;
+                }
+                open(nextShard++);
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private void open(int shard) {
+            previousShard = ShardContext.enter(shard);
+            transaction = transactionManager.getTransaction(streamTransaction);
+            try {
+                bind(shard);
+                stream = query.get();
+                current = stream.iterator();
+            } catch (RuntimeException | Error e) {
+                try {
+                    transactionManager.rollback(transaction);
+                } finally {
+                    reset();
+                }
+                throw e;
+            }
+        }
+
+        void close() {
+            if (transaction == null) {
+                return;
+            }
+            try {
+                stream.close();
+                if (!transaction.isCompleted()) {
+                    transactionManager.commit(transaction);
+                }
+            } finally {
+                reset();
+            }
+        }
+
+        private void reset() {
+            stream = null;
+            current = null;
+            transaction = null;
+            ShardContext.exit(previousShard);
+        }
+    }
+
+    /**
+     * Binding of a transaction to the shard it works on, pinning the shard until it completes.
+     */
+    private final class ShardBinding implements TransactionSynchronization {
+
+        private final int shard;
+
+        private final Integer previousShard;
+
+        /**
+         * Cleared once the transaction committed: work in after-commit callbacks runs in
+         * transactions of its own.
+         */
+        private boolean open = true;
+
+        ShardBinding(int shard, Integer previousShard) {
+            this.shard = shard;
+            this.previousShard = previousShard;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(Shards.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(Shards.this, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            open = false;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            open = false;
+            TransactionSynchronizationManager.unbindResourceIfPossible(Shards.this);
+            ShardContext.exit(previousShard);
+        }
+    }
+}
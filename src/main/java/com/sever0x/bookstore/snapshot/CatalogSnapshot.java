@@ -0,0 +1,292 @@
+package com.sever0x.bookstore.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of the catalog, read through memory mapping.
+ * <p>
+ * The file starts with a fixed header followed by one record per book:
+ * <pre>
+ * header  magic i32 | version i32 | created at i64 (epoch ms) | book count i64 | CRC32C of the records i64
+ * record  flags u8 | id 2 x i64 | quantity i32 | version i64 | isbn, title, author: length u16 + UTF-8 bytes
+ * </pre>
+ * Numbers are big-endian, a length of {@code 0xFFFF} stands for {@code null}. Flags mark books that
+ * were hot in the cache and books without quantity. Records are read through a window mapped over
+ * the file that is moved along, so snapshots may exceed the 2 GB limit of a single mapping.
+ * <p>
+ * A snapshot is written to a temporary file that replaces the previous snapshot only once
+ * complete, and the checksum is verified before any record is read.
+ */
+public final class CatalogSnapshot implements AutoCloseable {
+
+    private static final int MAGIC = 0x424B534E; // "BKSN"
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int HOT = 1;
+
+    private static final int NO_QUANTITY = 2;
+
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private static final int MAX_RECORD_SIZE = 1 + 16 + 4 + 8 + 3 * (2 + NULL_LENGTH - 1);
+
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * A book of the snapshot.
+     *
+     * @param hot whether the book was among the most used books of the cache
+     */
+    public record Entry(UUID id, String title, String author, String isbn, Integer quantity, long version,
+                        boolean hot) {
+    }
+
+    private final FileChannel channel;
+
+    private final Instant createdAt;
+
+    private final long size;
+
+    private CatalogSnapshot(FileChannel channel, Instant createdAt, long size) {
+        this.channel = channel;
+        this.createdAt = createdAt;
+        this.size = size;
+    }
+
+    /**
+     * Opens a snapshot and verifies its checksum.
+     *
+     * @param path the snapshot file
+     * @return the snapshot, to be closed after reading
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    public static CatalogSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Catalog snapshot " + path + " is truncated");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Catalog snapshot " + path + " has an unknown format");
+            }
+            Instant createdAt = Instant.ofEpochMilli(header.getLong());
+            long size = header.getLong();
+            long checksum = header.getLong();
+            if (checksum(channel) != checksum) {
+                throw new IOException("Catalog snapshot " + path + " is corrupt");
+            }
+            return new CatalogSnapshot(channel, createdAt, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts writing a snapshot.
+     *
+     * @param path      the snapshot file, replaced when the writer is committed
+     * @param createdAt the time the snapshot reflects
+     * @return the writer, to be closed after committing
+     */
+    public static Writer writer(Path path, Instant createdAt) throws IOException {
+        return new Writer(path, createdAt);
+    }
+
+    public Instant createdAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return the number of books in the snapshot
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Passes every book of the snapshot to the consumer, in the order they were written.
+     */
+    public void forEach(Consumer<Entry> consumer) throws IOException {
+        long fileSize = channel.size();
+        long position = HEADER_SIZE;
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        for (long i = 0; i < size; i++) {
+            if (window == null || (window.remaining() < MAX_RECORD_SIZE && windowStart + window.limit() < fileSize)) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, fileSize - windowStart));
+            }
+            int flags = window.get();
+            UUID id = new UUID(window.getLong(), window.getLong());
+            int quantity = window.getInt();
+            long version = window.getLong();
+            String isbn = readString(window);
+            String title = readString(window);
+            String author = readString(window);
+            consumer.accept(new Entry(id, title, author, isbn,
+                    (flags & NO_QUANTITY) != 0 ? null : quantity, version, (flags & HOT) != 0));
+            position = windowStart + window.position();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(FileChannel channel) throws IOException {
+        CRC32C crc = new CRC32C();
+        long fileSize = channel.size();
+        for (long position = HEADER_SIZE; position < fileSize; position += WINDOW_SIZE) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position)));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the books of a snapshot to a temporary file next to the snapshot.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final Path path;
+
+        private final Path temporary;
+
+        private final Instant createdAt;
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024).order(ByteOrder.BIG_ENDIAN);
+
+        private final CRC32C crc = new CRC32C();
+
+        private long size;
+
+        private boolean committed;
+
+        private Writer(Path path, Instant createdAt) throws IOException {
+            this.path = path.toAbsolutePath();
+            this.createdAt = createdAt;
+            Files.createDirectories(this.path.getParent());
+            this.temporary = Files.createTempFile(this.path.getParent(), this.path.getFileName().toString(), ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+
+        /**
+         * Appends a book.
+         *
+         * @throws IllegalArgumentException if a text field exceeds 65534 bytes in UTF-8
+         */
+        public void append(UUID id, String title, String author, String isbn, Integer quantity, long version,
+                           boolean hot) throws IOException {
+            byte[] isbnBytes = encode(isbn);
+            byte[] titleBytes = encode(title);
+            byte[] authorBytes = encode(author);
+            if (buffer.remaining() < MAX_RECORD_SIZE) {
+                flush();
+            }
+            buffer.put((byte) ((hot ? HOT : 0) | (quantity == null ? NO_QUANTITY : 0)));
+            buffer.putLong(id.getMostSignificantBits());
+            buffer.putLong(id.getLeastSignificantBits());
+            buffer.putInt(quantity == null ? 0 : quantity);
+            buffer.putLong(version);
+            putString(isbnBytes);
+            putString(titleBytes);
+            putString(authorBytes);
+            size++;
+        }
+
+        /**
+         * Completes the snapshot and atomically replaces the previous one.
+         *
+         * @return the number of written books
+         */
+        public long commit() throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(createdAt.toEpochMilli())
+                    .putLong(size)
+                    .putLong(crc.getValue())
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return size;
+        }
+
+        /**
+         * Discards the temporary file unless the snapshot was committed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void putString(byte[] bytes) {
+            if (bytes == null) {
+                buffer.putShort((short) NULL_LENGTH);
+            } else {
+                buffer.putShort((short) bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        private static byte[] encode(String value) {
+            if (value == null) {
+                return null;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= NULL_LENGTH) {
+                throw new IllegalArgumentException("Text of " + bytes.length + " bytes is too long for a catalog snapshot");
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.sever0x.bookstore.snapshot;
+
+import com.sever0x.bookstore.cache.BookCache;
+import com.sever0x.bookstore.config.BookCacheProperties;
+import com.sever0x.bookstore.config.SnapshotProperties;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.repository.BookStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Writes a {@link CatalogSnapshot} of every book periodically and when the application stops,
+ * for {@link CatalogWarmStart} of the next start. The books that are hottest in the
+ * {@link BookCache} are marked, so the next start puts them into its cache.
+ */
+@Slf4j
+@Component
+public class CatalogSnapshotWriter implements SmartLifecycle {
+
+    private final SnapshotProperties properties;
+
+    private final int hotBooks;
+
+    private final BookStorage bookStorage;
+
+    private final BookCache bookCache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+    public CatalogSnapshotWriter(SnapshotProperties properties, BookCacheProperties cacheProperties,
+                                 BookStorage bookStorage, BookCache bookCache,
+                                 PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.hotBooks = (int) Math.min(Integer.MAX_VALUE, cacheProperties.getMaximumSize());
+        this.bookStorage = bookStorage;
+        this.bookCache = bookCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Writes a snapshot of the catalog, replacing the previous one.
+     *
+     * @return the number of written books
+     */
+    public synchronized long write() {
+        long start = System.nanoTime();
+        Set<UUID> hot = new HashSet<>(bookCache.hottest(hotBooks));
+        Instant createdAt = Instant.now();
+        Long written = transactionTemplate.execute(status -> {
+            try (CatalogSnapshot.Writer writer = CatalogSnapshot.writer(properties.getPath(), createdAt);
+                 Stream<Book> books = bookStorage.streamAll()) {
+                books.forEach(book -> {
+                    try {
+                        writer.append(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(),
+                                book.getQuantity(), book.getVersion(), hot.contains(book.getId()));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    bookStorage.detach(book);
+                });
+                return writer.commit();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("Wrote a snapshot of {} books to {} in {} ms", written, properties.getPath(),
+                (System.nanoTime() - start) / 1_000_000);
+        return written;
+    }
+
+    @Override
+    public void start() {
+        if (properties.isEnabled()) {
+            long interval = properties.getInterval().toMillis();
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "catalog-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::writeQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler == null) {
+            return;
+        }
+        // a write in progress completes before the final one starts
+        scheduler.shutdown();
+        if (properties.isWriteOnShutdown()) {
+            writeQuietly();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (RuntimeException e) {
+            log.warn("Could not write the catalog snapshot to {}", properties.getPath(), e);
+        }
+    }
+}
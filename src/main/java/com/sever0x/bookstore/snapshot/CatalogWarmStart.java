@@ -0,0 +1,174 @@
+package com.sever0x.bookstore.snapshot;
+
+import com.sever0x.bookstore.cache.BookCache;
+import com.sever0x.bookstore.config.SnapshotProperties;
+import com.sever0x.bookstore.index.BookSearchIndex;
+import com.sever0x.bookstore.index.IsbnIndex;
+import com.sever0x.bookstore.mapper.BookMapper;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.repository.BookStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Warms the ISBN index, the search index and the book cache from the latest
+ * {@link CatalogSnapshot} while the application starts, instead of loading the indexes from the
+ * database before the server accepts calls. A missing, unreadable or stale snapshot is ignored
+ * and the indexes load from the database as usual.
+ * <p>
+ * Changes committed after the snapshot was written are caught up in the background: the catalog
+ * is read from the database once, outdated index entries are corrected and outdated cached books
+ * invalidated. Until then searches may miss recent changes, and the ISBN index, which is a hint
+ * anyway, may point to outdated books. Books are cached from the snapshot only for
+ * {@code bookstore.snapshot.cache-ttl}, so {@code GetBook} serves a quantity from the snapshot
+ * for at most that long, even if the verification takes longer.
+ */
+@Slf4j
+@Component
+public class CatalogWarmStart implements InitializingBean, SmartInitializingSingleton {
+
+    private final SnapshotProperties properties;
+
+    private final IsbnIndex isbnIndex;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final BookCache bookCache;
+
+    private final BookMapper bookMapper;
+
+    private final BookStorage bookStorage;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Books put into the cache from the snapshot.
+     */
+    private final Set<UUID> cachedBooks = new HashSet<>();
+
+    private long warmedBooks;
+
+    public CatalogWarmStart(SnapshotProperties properties, IsbnIndex isbnIndex, BookSearchIndex bookSearchIndex,
+                            BookCache bookCache, BookMapper bookMapper, BookStorage bookStorage,
+                            PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.isbnIndex = isbnIndex;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookCache = bookCache;
+        this.bookMapper = bookMapper;
+        this.bookStorage = bookStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Warms up from the snapshot. Runs before the indexes load themselves once all singletons are
+     * instantiated, so they know whether they are loaded already.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path path = properties.getPath();
+        if (!Files.exists(path)) {
+            log.info("No catalog snapshot at {}, loading the catalog from the database", path);
+            return;
+        }
+        long start = System.nanoTime();
+        try (CatalogSnapshot snapshot = CatalogSnapshot.open(path)) {
+            Duration age = Duration.between(snapshot.createdAt(), Instant.now());
+            if (age.compareTo(properties.getMaxAge()) > 0) {
+                log.info("Catalog snapshot {} is {} old, loading the catalog from the database", path, age);
+                return;
+            }
+            snapshot.forEach(this::warmUp);
+            log.info("Warmed up with {} books of the catalog snapshot written {} ago in {} ms",
+                    warmedBooks, age, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            // books warmed up so far are verified like the others, missing ones are added then
+            log.warn("Could not read the catalog snapshot {}, loading the catalog from the database", path, e);
+        }
+        if (warmedBooks > 0) {
+            isbnIndex.markLoaded();
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (warmedBooks > 0) {
+            Thread.ofVirtual().name("catalog-snapshot-verification").start(this::verify);
+        }
+    }
+
+    private void warmUp(CatalogSnapshot.Entry entry) {
+        if (entry.isbn() != null) {
+            isbnIndex.put(entry.isbn(), entry.id());
+        }
+        if (bookSearchIndex.isEnabled()) {
+            bookSearchIndex.indexFromSnapshot(entry.id(), entry.title(), entry.author());
+        }
+        if (entry.hot()) {
+            Book book = new Book(entry.id(), entry.title(), entry.author(), entry.isbn(), entry.quantity());
+            book.setVersion(entry.version());
+            bookCache.putIfAbsent(entry.id(), bookMapper.bookToBookResponse(book), properties.getCacheTtl());
+            cachedBooks.add(entry.id());
+        }
+        warmedBooks++;
+    }
+
+    /**
+     * Catches up with changes committed since the snapshot was written.
+     */
+    void verify() {
+        long start = System.nanoTime();
+        Set<UUID> unverifiedCachedBooks = new HashSet<>(cachedBooks);
+        boolean complete = false;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Book> books = bookStorage.streamAll()) {
+                    books.forEach(book -> {
+                        verify(book);
+                        unverifiedCachedBooks.remove(book.getId());
+                        bookStorage.detach(book);
+                    });
+                }
+            });
+            complete = true;
+        } catch (RuntimeException e) {
+            log.warn("Could not verify the catalog snapshot against the database", e);
+        } finally {
+            int removed = bookSearchIndex.finishVerification(complete);
+            // deleted since the snapshot, or not verified at all
+            unverifiedCachedBooks.forEach(bookCache::invalidate);
+            log.info("Verified the catalog snapshot against the database in {} ms, {} deleted books removed",
+                    (System.nanoTime() - start) / 1_000_000, removed);
+        }
+    }
+
+    private void verify(Book book) {
+        if (book.getIsbn() != null) {
+            isbnIndex.put(book.getIsbn(), book.getId());
+        }
+        if (bookSearchIndex.isEnabled()) {
+            bookSearchIndex.verify(book.getId(), book.getTitle(), book.getAuthor());
+        }
+        if (cachedBooks.contains(book.getId())) {
+            bookCache.invalidateIfChanged(book.getId(), bookMapper.bookToBookResponse(book));
+        }
+    }
+}
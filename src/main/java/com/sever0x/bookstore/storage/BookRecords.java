@@ -0,0 +1,140 @@
+package com.sever0x.bookstore.storage;
+
+import com.sever0x.bookstore.model.Book;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Encodes the changes of books appended to the log of {@link BookStore}:
+ * <pre>
+ * put     type u8 = 1 | id 2 x i64 | flags u8 | quantity i32 | version i64 | isbn, title, author: length u16 + UTF-8 bytes
+ * delete  type u8 = 2 | id 2 x i64
+ * </pre>
+ * Numbers are big-endian, a length of {@code 0xFFFF} stands for {@code null}, the flags mark books
+ * without quantity. Decoding reads absolute positions, so mapped buffers can be shared by readers.
+ */
+final class BookRecords {
+
+    static final byte PUT = 1;
+
+    static final byte DELETE = 2;
+
+    /**
+     * Largest size of an encoded record.
+     */
+    static final int MAX_SIZE = 1 + 16 + 1 + 4 + 8 + 3 * (2 + 0xFFFE);
+
+    private static final int NO_QUANTITY = 1;
+
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private static final int STRINGS = 1 + 16 + 1 + 4 + 8;
+
+    private BookRecords() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the book has no identifier or a text field exceeds
+     *                                  65534 bytes in UTF-8
+     */
+    static ByteBuffer put(Book book) {
+        if (book.getId() == null) {
+            throw new IllegalArgumentException("Book has no identifier");
+        }
+        byte[] isbn = encode(book.getIsbn());
+        byte[] title = encode(book.getTitle());
+        byte[] author = encode(book.getAuthor());
+        ByteBuffer record = ByteBuffer.allocate(STRINGS + length(isbn) + length(title) + length(author))
+                .put(PUT)
+                .putLong(book.getId().getMostSignificantBits())
+                .putLong(book.getId().getLeastSignificantBits())
+                .put((byte) (book.getQuantity() == null ? NO_QUANTITY : 0))
+                .putInt(book.getQuantity() == null ? 0 : book.getQuantity())
+                .putLong(book.getVersion());
+        putString(record, isbn);
+        putString(record, title);
+        putString(record, author);
+        return record.flip();
+    }
+
+    static ByteBuffer delete(UUID id) {
+        return ByteBuffer.allocate(1 + 16)
+                .put(DELETE)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .flip();
+    }
+
+    static byte type(ByteBuffer record) {
+        return record.get(0);
+    }
+
+    static UUID id(ByteBuffer record) {
+        return new UUID(record.getLong(1), record.getLong(9));
+    }
+
+    static Integer quantity(ByteBuffer record) {
+        return (record.get(17) & NO_QUANTITY) != 0 ? null : record.getInt(18);
+    }
+
+    static long version(ByteBuffer record) {
+        return record.getLong(22);
+    }
+
+    static String isbn(ByteBuffer record) {
+        return getString(record, STRINGS);
+    }
+
+    static Book book(ByteBuffer record) {
+        int position = STRINGS;
+        String isbn = getString(record, position);
+        position = skipString(record, position);
+        String title = getString(record, position);
+        position = skipString(record, position);
+        String author = getString(record, position);
+        Book book = new Book(id(record), title, author, isbn, quantity(record));
+        book.setVersion(version(record));
+        return book;
+    }
+
+    private static String getString(ByteBuffer record, int position) {
+        int length = Short.toUnsignedInt(record.getShort(position));
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int skipString(ByteBuffer record, int position) {
+        int length = Short.toUnsignedInt(record.getShort(position));
+        return position + 2 + (length == NULL_LENGTH ? 0 : length);
+    }
+
+    private static void putString(ByteBuffer record, byte[] bytes) {
+        if (bytes == null) {
+            record.putShort((short) NULL_LENGTH);
+        } else {
+            record.putShort((short) bytes.length);
+            record.put(bytes);
+        }
+    }
+
+    private static int length(byte[] bytes) {
+        return 2 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Text of " + bytes.length + " bytes is too long for the book store");
+        }
+        return bytes;
+    }
+}
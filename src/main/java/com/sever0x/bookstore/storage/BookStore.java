@@ -0,0 +1,458 @@
+package com.sever0x.bookstore.storage;
+
+import com.sever0x.bookstore.model.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Embedded storage engine keeping books in a log of memory-mapped {@link Segment} files, so the
+ * service can run without a database.
+ * <p>
+ * Every change appends a record to the log; the record of the latest version of each book is
+ * located by an in-memory index ordered by identifier like the database, and decoded from the
+ * mapped file when read. The books themselves therefore live in the page cache rather than on
+ * the heap, which only holds the index of identifiers and ISBNs.
+ * <p>
+ * Opening the store replays the log to rebuild the index. A record that is incomplete or fails
+ * its checksum, left by a crash while it was written, ends the log and is cleared. Outdated
+ * records are reclaimed by {@link #compact(double) compaction}, which copies the books still
+ * live in the sealed segments to the end of the log and deletes those segments oldest first, so
+ * the log replays to the same books whenever compaction is interrupted.
+ * <p>
+ * Reads share a lock while changes and compaction hold it exclusively; every method is atomic.
+ * With {@code sync} enabled changes are forced to the storage device before a method returns,
+ * otherwise the operating system writes them back and a crash may lose the latest changes.
+ */
+@Slf4j
+public class BookStore implements AutoCloseable {
+
+    /**
+     * Smallest segment size, large enough for any record.
+     */
+    public static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+
+    private static final Comparator<UUID> UNSIGNED = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final boolean sync;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Location of the latest record of each book, the segment in the high and the offset in the low half.
+     */
+    private final TreeMap<UUID, Long> index = new TreeMap<>(UNSIGNED);
+
+    private final Map<String, UUID> isbns = new HashMap<>();
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private Segment active;
+
+    private BookStore(Path directory, int segmentSize, boolean sync) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+    }
+
+    /**
+     * Opens the store in a directory, creating it if necessary, and recovers its books.
+     *
+     * @param directory   the directory of the log
+     * @param segmentSize the size of each segment file in bytes
+     * @param sync        whether to force changes to the storage device before returning
+     * @return the store, to be closed after use
+     */
+    public static BookStore open(Path directory, int segmentSize, boolean sync) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segments must have at least " + MIN_SEGMENT_SIZE + " bytes");
+        }
+        Files.createDirectories(directory);
+        BookStore store = new BookStore(directory, segmentSize, sync);
+        store.recover();
+        return store;
+    }
+
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        ids.sort(null);
+        for (int id : ids) {
+            Segment segment = Segment.open(directory, id);
+            segments.put(id, segment);
+            if (!segment.recover((offset, record) -> apply(segment, offset, record))) {
+                log.warn("Discarded a torn record at the end of {} bytes of {}", segment.size(), segment.path());
+            }
+        }
+        if (segments.isEmpty()) {
+            roll();
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        log.info("Recovered {} books from {} segments in {} in {} ms", index.size(), segments.size(), directory,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public Optional<Book> get(UUID id) {
+        return read(() -> Optional.ofNullable(index.get(id)).map(location -> BookRecords.book(record(location))));
+    }
+
+    public Optional<Integer> quantity(UUID id) {
+        return read(() -> Optional.ofNullable(index.get(id)).map(location -> BookRecords.quantity(record(location))));
+    }
+
+    public Optional<Long> version(UUID id) {
+        return read(() -> Optional.ofNullable(index.get(id)).map(location -> BookRecords.version(record(location))));
+    }
+
+    public boolean contains(UUID id) {
+        return read(() -> index.containsKey(id));
+    }
+
+    /**
+     * @return the identifier of the book with the ISBN
+     */
+    public Optional<UUID> findByIsbn(String isbn) {
+        return read(() -> Optional.ofNullable(isbns.get(isbn)));
+    }
+
+    /**
+     * @return the number of books
+     */
+    public long size() {
+        return read(index::size);
+    }
+
+    /**
+     * Returns books in identifier order, ordering identifiers as unsigned numbers like the database.
+     *
+     * @param after the identifier to continue after, {@code null} to start with the first book
+     * @param limit the maximum number of books to return
+     * @return the books following the identifier
+     */
+    public List<Book> scan(UUID after, int limit) {
+        return read(() -> {
+            Map<UUID, Long> following = after == null ? index : index.tailMap(after, false);
+            List<Book> books = new ArrayList<>(Math.min(limit, following.size()));
+            for (long location : following.values()) {
+                if (books.size() == limit) {
+                    break;
+                }
+                books.add(BookRecords.book(record(location)));
+            }
+            return books;
+        });
+    }
+
+    /**
+     * Inserts or replaces a book.
+     *
+     * @param book the book, with an identifier
+     * @throws DataIntegrityViolationException if another book has the same ISBN
+     */
+    public void put(Book book) {
+        putAll(List.of(book));
+    }
+
+    /**
+     * Inserts or replaces books, none of them if any violates the uniqueness of ISBNs.
+     * <p>
+     * Readers see all of the books or none, but the log has no batch marker: each book is appended
+     * as a record of its own, so a crash while the books are appended may keep any prefix of them.
+     * With {@code sync} enabled that can only happen before the method returns.
+     *
+     * @param books the books, with identifiers
+     * @throws DataIntegrityViolationException if books have the same ISBN
+     */
+    public void putAll(List<? extends Book> books) {
+        lock.writeLock().lock();
+        try {
+            Map<String, UUID> claimed = new HashMap<>();
+            for (Book book : books) {
+                checkIsbn(book, claimed);
+            }
+            for (Book book : books) {
+                append(BookRecords.put(book));
+            }
+            syncIfEnabled();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a delta to the quantity of a book unless the quantity would become negative.
+     *
+     * @param id      the book identifier
+     * @param delta   the change of the quantity
+     * @param changes the number of changes the delta combines, added to the version
+     * @param version the version the book must have, any version if {@code null}
+     * @return whether the book was changed, false if it does not exist, has another version, has no
+     * quantity or insufficient stock
+     */
+    public boolean addQuantity(UUID id, int delta, long changes, Long version) {
+        lock.writeLock().lock();
+        try {
+            Long location = index.get(id);
+            if (location == null) {
+                return false;
+            }
+            Book book = BookRecords.book(record(location));
+            if (book.getQuantity() == null || book.getQuantity() + delta < 0
+                    || version != null && !version.equals(book.getVersion())) {
+                return false;
+            }
+            book.setQuantity(book.getQuantity() + delta);
+            book.setVersion(book.getVersion() + changes);
+            append(BookRecords.put(book));
+            syncIfEnabled();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Increments the version of a book.
+     *
+     * @param id the book identifier
+     * @return whether the book exists
+     */
+    public boolean incrementVersion(UUID id) {
+        lock.writeLock().lock();
+        try {
+            Long location = index.get(id);
+            if (location == null) {
+                return false;
+            }
+            Book book = BookRecords.book(record(location));
+            book.setVersion(book.getVersion() + 1);
+            append(BookRecords.put(book));
+            syncIfEnabled();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes books.
+     *
+     * @return the number of deleted books
+     */
+    public int deleteAll(Iterable<? extends UUID> ids) {
+        lock.writeLock().lock();
+        try {
+            int deleted = 0;
+            for (UUID id : ids) {
+                if (index.containsKey(id)) {
+                    append(BookRecords.delete(id));
+                    deleted++;
+                }
+            }
+            syncIfEnabled();
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the share of the sealed segments taken by outdated records, between 0 and 1
+     */
+    public double garbageRatio() {
+        return read(() -> {
+            long size = 0;
+            long live = 0;
+            for (Segment segment : segments.headMap(active.id()).values()) {
+                size += segment.size();
+                live += segment.liveBytes();
+            }
+            return size == 0 ? 0 : 1 - (double) live / size;
+        });
+    }
+
+    /**
+     * Copies the live books of all sealed segments to the end of the log and deletes the sealed
+     * segments, if their {@link #garbageRatio() garbage ratio} reaches the threshold. Reads and
+     * changes wait while the store is compacted.
+     *
+     * @param threshold the minimum garbage ratio
+     * @return the number of reclaimed bytes
+     */
+    public long compact(double threshold) {
+        lock.writeLock().lock();
+        try {
+            if (segments.size() < 2 || garbageRatio() < threshold) {
+                return 0;
+            }
+            long start = System.nanoTime();
+            List<Segment> sealed = new ArrayList<>(segments.headMap(active.id()).values());
+            long reclaimed = 0;
+            for (Segment segment : sealed) {
+                segment.forEach((offset, record) -> {
+                    Long latest = index.get(BookRecords.id(record));
+                    if (latest != null && latest == location(segment.id(), offset)) {
+                        append(record);
+                    }
+                });
+                reclaimed += segment.size();
+            }
+            // copies must be durable before the originals are deleted
+            active.sync();
+            for (Segment segment : sealed) {
+                segments.remove(segment.id());
+                Files.delete(segment.path());
+            }
+            log.info("Compacted {} segments of the book store in {} ms", sealed.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return reclaimed;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not delete a compacted segment of the book store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces outstanding changes to the storage device. The mapped segments are released once
+     * garbage collected.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            active.sync();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkIsbn(Book book, Map<String, UUID> claimed) {
+        String isbn = book.getIsbn();
+        if (isbn == null) {
+            return;
+        }
+        UUID owner = isbns.get(isbn);
+        UUID claimant = claimed.putIfAbsent(isbn, book.getId());
+        if ((owner != null && !owner.equals(book.getId())) || (claimant != null && !claimant.equals(book.getId()))) {
+            throw new DataIntegrityViolationException("A book with ISBN " + isbn + " already exists");
+        }
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new one when it is full, and applies it
+     * to the index.
+     */
+    private void append(ByteBuffer record) {
+        int offset = active.append(record);
+        if (offset < 0) {
+            roll();
+            offset = active.append(record);
+        }
+        apply(active, offset, record);
+    }
+
+    private void apply(Segment segment, int offset, ByteBuffer record) {
+        UUID id = BookRecords.id(record);
+        Long previous;
+        if (BookRecords.type(record) == BookRecords.PUT) {
+            previous = index.put(id, location(segment.id(), offset));
+            segment.retain(offset);
+        } else {
+            previous = index.remove(id);
+        }
+        if (previous != null) {
+            segments.get(segmentOf(previous)).release(offsetOf(previous));
+            String isbn = BookRecords.isbn(record(previous));
+            if (isbn != null) {
+                isbns.remove(isbn, id);
+            }
+        }
+        if (BookRecords.type(record) == BookRecords.PUT) {
+            String isbn = BookRecords.isbn(record);
+            if (isbn != null) {
+                isbns.put(isbn, id);
+            }
+        }
+    }
+
+    private void roll() {
+        int id = active == null ? 1 : active.id() + 1;
+        try {
+            if (active != null) {
+                active.sync();
+            }
+            active = Segment.create(directory, id, segmentSize);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not create segment " + id + " of the book store", e);
+        }
+        segments.put(id, active);
+    }
+
+    private void syncIfEnabled() {
+        if (sync) {
+            active.sync();
+        }
+    }
+
+    private ByteBuffer record(long location) {
+        return segments.get(segmentOf(location)).record(offsetOf(location));
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long location(int segment, int offset) {
+        return (long) segment << 32 | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+}
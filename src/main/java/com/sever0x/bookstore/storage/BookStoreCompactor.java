@@ -0,0 +1,73 @@
+package com.sever0x.bookstore.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts the {@link BookStore} periodically once outdated records take the given share of its
+ * sealed segments.
+ */
+@Slf4j
+public class BookStoreCompactor implements SmartLifecycle {
+
+    private final BookStore store;
+
+    private final Duration interval;
+
+    private final double threshold;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+    public BookStoreCompactor(BookStore store, Duration interval, double threshold) {
+        this.store = store;
+        this.interval = interval;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-store-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compactQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        try {
+            // the store must not be closed during a compaction
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void compactQuietly() {
+        try {
+            long reclaimed = store.compact(threshold);
+            if (reclaimed > 0) {
+                log.debug("Reclaimed {} bytes of the book store", reclaimed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not compact the book store", e);
+        }
+    }
+}
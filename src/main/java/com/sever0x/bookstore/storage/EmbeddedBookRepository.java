@@ -0,0 +1,331 @@
+package com.sever0x.bookstore.storage;
+
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.repository.BookOrdering;
+import com.sever0x.bookstore.repository.BookRepository;
+import com.sever0x.bookstore.repository.BookStorage;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link BookStorage} on the embedded {@link BookStore}.
+ * <p>
+ * Lookups by identifier and ISBN use the indexes of the store. Books are ordered by identifier
+ * only, so pages and keyset windows sorted by other properties scan the whole catalog and keep
+ * the first {@code offset + size} books in a heap, which suits the catalogs of single stores but
+ * not large ones. Streams read the catalog in chunks in identifier order and see the changes
+ * committed meanwhile, like a database cursor under read committed isolation.
+ * <p>
+ * Every call is atomic and durable on its own, and loaded books are copies that are not tracked:
+ * changes have to be saved.
+ */
+public class EmbeddedBookRepository implements BookStorage {
+
+    private static final int CHUNK_SIZE = Integer.parseInt(BookRepository.STREAM_FETCH_SIZE);
+
+    private final BookStore store;
+
+    public EmbeddedBookRepository(BookStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public <S extends Book> S saveAndFlush(S entity) {
+        entity.assignId();
+        store.put(entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends Book> List<S> saveAll(Iterable<S> entities) {
+        List<S> books = new ArrayList<>();
+        entities.forEach(book -> {
+            book.assignId();
+            books.add(book);
+        });
+        store.putAll(books);
+        return books;
+    }
+
+    @Override
+    public Optional<Book> findById(UUID id) {
+        return store.get(id);
+    }
+
+    @Override
+    public boolean existsById(UUID id) {
+        return store.contains(id);
+    }
+
+    @Override
+    public Optional<Integer> findQuantityById(UUID id) {
+        return store.quantity(id);
+    }
+
+    @Override
+    public Optional<Long> findVersionById(UUID id) {
+        return store.version(id);
+    }
+
+    @Override
+    public Optional<QuantityVersion> findQuantityVersionById(UUID id) {
+        return store.get(id).<QuantityVersion>map(Projection::of);
+    }
+
+    @Override
+    public List<Book> findAllById(Iterable<UUID> ids) {
+        List<Book> books = new ArrayList<>();
+        ids.forEach(id -> store.get(id).ifPresent(books::add));
+        return books;
+    }
+
+    private List<Book> findAll(Sort sort) {
+        Sort total = BookOrdering.withIdTiebreak(sort);
+        return first(BookOrdering.comparator(total), book -> true, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<Book> findAll(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(pageable.getSort()));
+        }
+        Sort sort = BookOrdering.withIdTiebreak(pageable.getSort());
+        List<Book> content = first(BookOrdering.comparator(sort), book -> true, pageable.getOffset(),
+                pageable.getPageSize());
+        return new PageImpl<>(content, pageable, store.size());
+    }
+
+    @Override
+    public Window<Book> findAllBy(ScrollPosition position, Sort sort, Limit limit) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.scrollsBackward()) {
+            throw new UnsupportedOperationException("Embedded books can only be scrolled forward by keyset");
+        }
+        Sort total = BookOrdering.withIdTiebreak(sort);
+        Comparator<Book> comparator = BookOrdering.comparator(total);
+        Book last = BookOrdering.book(keyset.getKeys());
+        Predicate<Book> following = keyset.isInitial() ? book -> true : book -> comparator.compare(book, last) > 0;
+        int size = limit.isLimited() ? limit.max() : Integer.MAX_VALUE - 1;
+        // one more book tells whether there is a next window
+        List<Book> books = first(comparator, following, 0, size + 1);
+        List<Book> content = books.subList(0, Math.min(size, books.size()));
+        return Window.from(content, index -> ScrollPosition.forward(BookOrdering.keys(content.get(index), total)),
+                books.size() > size);
+    }
+
+    /**
+     * Returns whole books: the store decodes complete records anyway.
+     */
+    @Override
+    public Page<Book> findAllProjected(Set<String> properties, Pageable pageable) {
+        return findAll(pageable);
+    }
+
+    /**
+     * Returns whole books: the store decodes complete records anyway.
+     */
+    @Override
+    public Window<Book> findAllProjectedBy(Set<String> properties, ScrollPosition position, Sort sort, Limit limit) {
+        return findAllBy(position, sort, limit);
+    }
+
+    @Override
+    public long count() {
+        return store.size();
+    }
+
+    @Override
+    public Optional<Book> findByIsbn(String isbn) {
+        return store.findByIsbn(isbn).flatMap(store::get);
+    }
+
+    @Override
+    public List<Book> findAllByIsbnIn(Collection<String> isbns) {
+        List<Book> books = new ArrayList<>();
+        isbns.stream().distinct().forEach(isbn -> findByIsbn(isbn).ifPresent(books::add));
+        return books;
+    }
+
+    @Override
+    public boolean existsByIsbnAndIdNot(String isbn, UUID id) {
+        return store.findByIsbn(isbn).filter(owner -> !owner.equals(id)).isPresent();
+    }
+
+    @Override
+    public boolean existsByIsbn(String isbn) {
+        return store.findByIsbn(isbn).isPresent();
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new ChunkIterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Stream<IsbnEntry> streamIsbnEntries() {
+        return streamAll().<IsbnEntry>map(Projection::of);
+    }
+
+    @Override
+    public Stream<SearchEntry> streamSearchEntries() {
+        return streamAll().<SearchEntry>map(Projection::of);
+    }
+
+    @Override
+    public Stream<StockEntry> streamStockEntries() {
+        return streamAll().<StockEntry>map(Projection::of);
+    }
+
+    @Override
+    public int adjustQuantity(UUID id, int delta) {
+        return store.addQuantity(id, delta, 1, null) ? 1 : 0;
+    }
+
+    @Override
+    public int incrementVersion(UUID id) {
+        return store.incrementVersion(id) ? 1 : 0;
+    }
+
+    @Override
+    public int addQuantity(UUID id, int delta, long changes, long version) {
+        return store.addQuantity(id, delta, changes, version) ? 1 : 0;
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        store.deleteAll(List.of(id));
+    }
+
+    /**
+     * Does nothing: loaded books are not tracked.
+     */
+    @Override
+    public void detach(Book book) {
+    }
+
+    /**
+     * Does nothing: every change has been written and loaded books are not tracked.
+     */
+    @Override
+    public void flushAndClear() {
+    }
+
+    /**
+     * Returns the first books in comparator order among those matching the filter, scanning
+     * the whole catalog while keeping at most {@code skip + limit} books.
+     */
+    private List<Book> first(Comparator<Book> comparator, Predicate<Book> filter, long skip, int limit) {
+        long kept = skip + limit;
+        PriorityQueue<Book> first = new PriorityQueue<>(comparator.reversed());
+        forEach(book -> {
+            if (filter.test(book)) {
+                first.add(book);
+                if (first.size() > kept) {
+                    first.poll();
+                }
+            }
+        });
+        List<Book> sorted = new ArrayList<>(first);
+        sorted.sort(comparator);
+        return sorted.subList((int) Math.min(skip, sorted.size()), sorted.size());
+    }
+
+    private void forEach(Consumer<Book> action) {
+        try (Stream<Book> books = streamAll()) {
+            books.forEach(action);
+        }
+    }
+
+    /**
+     * Reads the books in chunks of {@link #CHUNK_SIZE}, continuing after the last identifier read.
+     */
+    private final class ChunkIterator implements Iterator<Book> {
+
+        private List<Book> chunk = store.scan(null, CHUNK_SIZE);
+
+        private int position;
+
+        @Override
+        public boolean hasNext() {
+            if (position < chunk.size()) {
+                return true;
+            }
+            if (chunk.size() < CHUNK_SIZE) {
+                return false;
+            }
+            chunk = store.scan(chunk.get(chunk.size() - 1).getId(), CHUNK_SIZE);
+            position = 0;
+            return !chunk.isEmpty();
+        }
+
+        @Override
+        public Book next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.get(position++);
+        }
+    }
+
+    private record Projection(UUID id, String isbn, String title, String author, Integer quantity, Long version)
+            implements IsbnEntry, SearchEntry, StockEntry, QuantityVersion {
+
+        static Projection of(Book book) {
+            return new Projection(book.getId(), book.getIsbn(), book.getTitle(), book.getAuthor(), book.getQuantity(),
+                    book.getVersion());
+        }
+
+        @Override
+        public Long getVersion() {
+            return version;
+        }
+
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public String getIsbn() {
+            return isbn;
+        }
+
+        @Override
+        public String getTitle() {
+            return title;
+        }
+
+        @Override
+        public String getAuthor() {
+            return author;
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return quantity;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.sever0x.bookstore.storage;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction manager of the embedded {@link BookStore}. Every call of
+ * {@link EmbeddedBookRepository} is atomic and durable on its own, so transactions hold no
+ * resources and commit nothing; they only delimit the scope of transaction synchronizations,
+ * so events are still published after commit.
+ */
+public class EmbeddedTransactionManager extends AbstractPlatformTransactionManager {
+
+    private record EmbeddedTransaction(boolean existing) {
+    }
+
+    @Override
+    protected Object doGetTransaction() {
+        return new EmbeddedTransaction(TransactionSynchronizationManager.hasResource(this));
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return ((EmbeddedTransaction) transaction).existing();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        return TransactionSynchronizationManager.unbindResource(this);
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        TransactionSynchronizationManager.bindResource(this, suspendedResources);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(this);
+    }
+}
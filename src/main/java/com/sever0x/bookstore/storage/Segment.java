@@ -0,0 +1,209 @@
+package com.sever0x.bookstore.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * A file of the write-ahead log of {@link BookStore}, mapped into memory at its full size.
+ * <p>
+ * Records are appended one after the other, each preceded by a header:
+ * <pre>
+ * header  length of the record i32 | CRC32C of the record i32
+ * </pre>
+ * New files are zero-filled, so a length of zero marks the end of the records. Not thread-safe,
+ * {@link BookStore} guards its segments.
+ */
+final class Segment {
+
+    static final int HEADER_SIZE = 8;
+
+    private final int id;
+
+    private final Path path;
+
+    private final MappedByteBuffer buffer;
+
+    private int writePosition;
+
+    private int syncedPosition;
+
+    /**
+     * Bytes of the records that are still the latest version of their book.
+     */
+    private long liveBytes;
+
+    private Segment(int id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static Path path(Path directory, int id) {
+        return directory.resolve(String.format("segment-%06d.log", id));
+    }
+
+    /**
+     * Creates an empty segment of the given size.
+     */
+    static Segment create(Path directory, int id, int size) throws IOException {
+        Path path = path(directory, id);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // mapping beyond the end extends the file with zeros
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    /**
+     * Opens an existing segment, its records have to be {@link #recover(RecordVisitor) recovered}
+     * before appending.
+     */
+    static Segment open(Path directory, int id) throws IOException {
+        Path path = path(directory, id);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+    }
+
+    int id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * @return the number of bytes taken by records
+     */
+    int size() {
+        return writePosition;
+    }
+
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Counts a record as the latest version of its book.
+     */
+    void retain(int offset) {
+        liveBytes += recordSize(offset);
+    }
+
+    /**
+     * Counts a record as outdated.
+     */
+    void release(int offset) {
+        liveBytes -= recordSize(offset);
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return the offset of the record, or -1 if the segment is full
+     */
+    int append(ByteBuffer record) {
+        int length = record.remaining();
+        int offset = writePosition;
+        if (offset + HEADER_SIZE + length > buffer.capacity()) {
+            return -1;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate());
+        buffer.put(offset + HEADER_SIZE, record, record.position(), length);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        buffer.putInt(offset, length);
+        writePosition = offset + HEADER_SIZE + length;
+        return offset;
+    }
+
+    /**
+     * @return the record at the offset, without its header
+     */
+    ByteBuffer record(int offset) {
+        return buffer.slice(offset + HEADER_SIZE, buffer.getInt(offset));
+    }
+
+    int recordSize(int offset) {
+        return HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    /**
+     * Passes every record to the visitor in the order they were appended.
+     */
+    void forEach(RecordVisitor visitor) {
+        for (int offset = 0; offset < writePosition; offset += recordSize(offset)) {
+            visitor.visit(offset, record(offset));
+        }
+    }
+
+    /**
+     * Reads the records of an opened segment up to the first one that is incomplete or corrupt,
+     * which is cleared along with everything after it, so appending continues after the last
+     * intact record.
+     *
+     * @return whether the segment ended with an intact record or free space
+     */
+    boolean recover(RecordVisitor visitor) {
+        int offset = 0;
+        boolean intact = true;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - offset - HEADER_SIZE || !checksumMatches(offset, length)) {
+                intact = false;
+                break;
+            }
+            visitor.visit(offset, record(offset));
+            offset += HEADER_SIZE + length;
+        }
+        writePosition = offset;
+        syncedPosition = offset;
+        if (!intact) {
+            // fragments of a torn record must not be mistaken for records once others are appended
+            clearFrom(offset);
+        }
+        return intact;
+    }
+
+    /**
+     * Forces the records appended since the last call to the storage device.
+     */
+    void sync() {
+        if (syncedPosition < writePosition) {
+            buffer.force(syncedPosition, writePosition - syncedPosition);
+            syncedPosition = writePosition;
+        }
+    }
+
+    private boolean checksumMatches(int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + HEADER_SIZE, length));
+        return (int) crc.getValue() == buffer.getInt(offset + 4);
+    }
+
+    private void clearFrom(int offset) {
+        byte[] zeros = new byte[64 * 1024];
+        for (int position = offset; position < buffer.capacity(); position += zeros.length) {
+            buffer.put(position, zeros, 0, Math.min(zeros.length, buffer.capacity() - position));
+        }
+        buffer.force(offset, buffer.capacity() - offset);
+    }
+
+    /**
+     * Receives the records of a segment.
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+
+        void visit(int offset, ByteBuffer record);
+    }
+}
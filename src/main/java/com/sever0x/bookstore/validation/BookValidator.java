@@ -31,8 +31,8 @@ public class BookValidator {
         return result;
     }
 
-    private boolean isValidISBN(String isbn) {
-        return isbn.matches("^\\d{13}$");
+    public boolean isValidISBN(String isbn) {
+        return isbn != null && isbn.matches("^\\d{13}$");
     }
 
     public static class ValidationResult {
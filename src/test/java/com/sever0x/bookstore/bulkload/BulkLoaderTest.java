@@ -0,0 +1,160 @@
+package com.sever0x.bookstore.bulkload;
+
+import com.sever0x.bookstore.validation.BookValidator;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Loads files into an embedded database standing in for PostgreSQL, which takes the {@code MERGE}
+ * path instead of COPY. Small chunks make several workers load the files in parallel.
+ */
+class BulkLoaderTest {
+
+    private static final UUID EXISTING_ID = UUID.randomUUID();
+
+    @TempDir
+    Path directory;
+
+    private JdbcDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bulkload-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                create table books (
+                    id uuid primary key, title varchar(255), author varchar(255), isbn varchar(255) unique,
+                    quantity integer, version bigint default 1 not null
+                )""");
+        jdbcTemplate.update("insert into books (id, title, author, isbn, quantity, version) values (?, ?, ?, ?, ?, ?)",
+                EXISTING_ID, "Old Title", "Author 7", isbn(7), 1, 3L);
+    }
+
+    @Test
+    void load_shouldUpsertCsvRecordsAndRejectInvalidOnes() throws Exception {
+        StringBuilder csv = new StringBuilder("quantity,isbn,price,title,author\r\n");
+        for (int i = 0; i < 2_000; i++) {
+            csv.append(i % 10).append(',').append(isbn(i)).append(",9.99,\"Title \"\"").append(i).append("\"\"\",Author ")
+                    .append(i).append("\r\n");
+            if (i == 10) {
+                csv.append("3,12345,1.00,Short ISBN,Someone\r\n");
+                csv.append("-1,9781111111111,1.00,Negative,Someone\r\n");
+                csv.append("many,9781111111112,1.00,Not a number,Someone\r\n");
+            }
+        }
+        Path file = Files.writeString(directory.resolve("catalog.csv"), csv);
+
+        BulkLoadReport report = load(file, RecordFormat.CSV);
+
+        assertEquals(2_003, report.records());
+        assertEquals(3, report.rejected());
+        assertEquals(2_000, report.changed());
+        assertEquals(report.totalBytes(), report.bytes());
+        assertEquals(2_000, jdbcTemplate.queryForObject("select count(*) from books", Integer.class));
+        Map<String, Object> existing = jdbcTemplate.queryForMap("select * from books where isbn = ?", isbn(7));
+        assertEquals(EXISTING_ID, existing.get("ID"));
+        assertEquals("Title \"7\"", existing.get("TITLE"));
+        assertEquals(7, existing.get("QUANTITY"));
+        assertEquals(4L, existing.get("VERSION"));
+        assertEquals(List.of(
+                "13\tISBN must be a valid 13-digit code\t3,12345,1.00,Short ISBN,Someone",
+                "14\tQuantity must be zero or positive\t-1,9781111111111,1.00,Negative,Someone",
+                "15\tQuantity must be an integer\tmany,9781111111112,1.00,Not a number,Someone"
+        ), Files.readAllLines(directory.resolve("catalog.csv.rejects")));
+
+        BulkLoadReport reload = load(file, RecordFormat.CSV);
+
+        assertEquals(0, reload.changed());
+        assertEquals(4L, jdbcTemplate.queryForObject("select version from books where isbn = ?", Long.class, isbn(7)));
+    }
+
+    @Test
+    void load_shouldReadJsonLines() throws Exception {
+        Path file = Files.writeString(directory.resolve("catalog.jsonl"), """
+                {"title": "Old Title", "author": "Author 7", "isbn": "%s", "quantity": 5, "price": 9.99}
+
+                {"title": "New Book", "author": "Someone", "isbn": %s, "quantity": "2"}
+                {"title": "Broken", "author": "Someone", "isbn": "9781111111111"
+                """.formatted(isbn(7), isbn(8)));
+
+        BulkLoadReport report = load(file, RecordFormat.JSONL);
+
+        assertEquals(3, report.records());
+        assertEquals(1, report.rejected());
+        assertEquals(2, report.changed());
+        assertEquals(5, jdbcTemplate.queryForObject("select quantity from books where id = ?", Integer.class, EXISTING_ID));
+        assertEquals(1L, jdbcTemplate.queryForObject("select version from books where isbn = ?", Long.class, isbn(8)));
+        List<String> rejects = Files.readAllLines(directory.resolve("catalog.jsonl.rejects"));
+        assertEquals(1, rejects.size());
+        assertEquals("4", rejects.get(0).split("\t")[0]);
+    }
+
+    @Test
+    void load_shouldKeepLastValidRecordOfIsbnAcrossChunks() throws Exception {
+        StringBuilder csv = new StringBuilder("title,author,isbn,quantity\n");
+        csv.append("First,Author 7,").append(isbn(7)).append(",1\n");
+        for (int i = 0; i < 50; i++) {
+            csv.append("Title ").append(i).append(",Author,").append(isbn(100 + i)).append(",1\n");
+            if (i == 25) {
+                csv.append("Middle,Author 7,").append(isbn(7)).append(",2\n");
+            }
+        }
+        csv.append("Last,Author 7,").append(isbn(7)).append(",3\n");
+        csv.append("Broken,Author 7,").append(isbn(7)).append(",-1\n");
+        Path file = Files.writeString(directory.resolve("catalog.csv"), csv);
+
+        BulkLoadReport report = load(file, RecordFormat.CSV, 64);
+
+        assertEquals(54, report.records());
+        assertEquals(1, report.rejected());
+        assertEquals(51, report.changed());
+        Map<String, Object> book = jdbcTemplate.queryForMap("select * from books where isbn = ?", isbn(7));
+        assertEquals(EXISTING_ID, book.get("ID"));
+        assertEquals("Last", book.get("TITLE"));
+        assertEquals(3, book.get("QUANTITY"));
+        // only the chunk of the last record wrote the book
+        assertEquals(4L, book.get("VERSION"));
+    }
+
+    @Test
+    void superseded_shouldListIsbnsThatLaterChunkAlsoHas() {
+        List<long[]> superseded = BulkLoader.superseded(List.of(
+                new long[]{1, 3, 5}, new long[0], new long[]{3, 4}, new long[]{0, 3, 5}));
+
+        assertArrayEquals(new long[]{3, 5}, superseded.get(0));
+        assertArrayEquals(new long[0], superseded.get(1));
+        assertArrayEquals(new long[]{3}, superseded.get(2));
+        assertArrayEquals(new long[0], superseded.get(3));
+    }
+
+    private BulkLoadReport load(Path file, RecordFormat format) throws Exception {
+        return load(file, format, 2_048);
+    }
+
+    private BulkLoadReport load(Path file, RecordFormat format, long chunkSize) throws Exception {
+        BulkLoadOptions options = new BulkLoadOptions(file, format, "", "", "", 4, chunkSize,
+                Path.of(file + ".rejects"), Duration.ofSeconds(1));
+        return new BulkLoader(dataSource, new BookValidator(), options).load(progress -> {
+        });
+    }
+
+    private static String isbn(int i) {
+        return "978%010d".formatted(i);
+    }
+}
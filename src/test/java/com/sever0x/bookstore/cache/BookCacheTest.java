@@ -0,0 +1,62 @@
+package com.sever0x.bookstore.cache;
+
+import com.sever0x.bookstore.config.BookCacheProperties;
+import com.sever0x.bookstore.proto.BookResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookCacheTest {
+
+    private final BookCache bookCache = new BookCache(new BookCacheProperties());
+
+    @Test
+    void getAll_shouldNotCacheBookInvalidatedWhileLoading() {
+        UUID changed = UUID.randomUUID();
+        UUID unchanged = UUID.randomUUID();
+
+        Map<UUID, Optional<BookResponse>> books = bookCache.getAll(List.of(changed, unchanged), bookIds -> {
+            Map<UUID, Optional<BookResponse>> loaded = load(bookIds);
+            // the change of the book commits after the loader read it
+            bookCache.invalidate(changed);
+            return loaded;
+        });
+
+        assertEquals(Optional.of(book(changed, "before")), books.get(changed));
+        assertTrue(bookCache.getIfPresent(changed).isEmpty());
+        assertEquals(Optional.of(book(unchanged, "before")), bookCache.getIfPresent(unchanged));
+    }
+
+    @Test
+    void getAll_shouldLoadOnlyMisses() {
+        UUID cached = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        bookCache.get(cached, bookId -> Optional.of(book(bookId, "cached")));
+
+        Map<UUID, Optional<BookResponse>> books = bookCache.getAll(List.of(cached, missing), bookIds -> {
+            assertEquals(Set.of(missing), bookIds);
+            return Map.of(missing, Optional.empty());
+        });
+
+        assertEquals(Optional.of(book(cached, "cached")), books.get(cached));
+        assertEquals(Optional.empty(), books.get(missing));
+    }
+
+    private static Map<UUID, Optional<BookResponse>> load(Set<? extends UUID> bookIds) {
+        Map<UUID, Optional<BookResponse>> books = new HashMap<>();
+        bookIds.forEach(bookId -> books.put(bookId, Optional.of(book(bookId, "before"))));
+        return books;
+    }
+
+    private static BookResponse book(UUID bookId, String title) {
+        return BookResponse.newBuilder().setId(bookId.toString()).setTitle(title).build();
+    }
+}
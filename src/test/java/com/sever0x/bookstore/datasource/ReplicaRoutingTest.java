@@ -0,0 +1,138 @@
+package com.sever0x.bookstore.datasource;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Routes transactions between two embedded databases standing in for the primary and a replica,
+ * each holding a single row that names it.
+ */
+class ReplicaRoutingTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private TransactionTemplate writeTransaction;
+
+    private String previousClient;
+
+    private final ExecutorService callExecutor = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        RecentWriters recentWriters = new RecentWriters(Duration.ofMinutes(1));
+
+        LazyConnectionDataSourceProxy dataSource =
+                new LazyConnectionDataSourceProxy(new WriteTrackingDataSource(primary, recentWriters));
+        dataSource.setReadOnlyDataSource(new ReplicaDataSource(primary, List.of(replica),
+                ReplicaDataSource.Balancing.ROUND_ROBIN, recentWriters));
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ClientContext.exit(previousClient);
+        callExecutor.shutdownNow();
+    }
+
+    @Test
+    void readOnlyTransactions_shouldUseReplica() {
+        previousClient = ClientContext.enter("reader");
+
+        assertEquals("replica", readOnlyTransaction.execute(status -> databaseName()));
+        assertEquals("primary", writeTransaction.execute(status -> databaseName()));
+    }
+
+    @Test
+    void readOnlyTransactions_shouldUsePrimaryAfterOwnWrite() {
+        previousClient = ClientContext.enter("writer");
+        writeTransaction.executeWithoutResult(status -> jdbcTemplate.update("update marker set touched = true"));
+
+        assertEquals("primary", readOnlyTransaction.execute(status -> databaseName()));
+
+        ClientContext.enter("other");
+        assertEquals("replica", readOnlyTransaction.execute(status -> databaseName()));
+    }
+
+    @Test
+    void calls_shouldReadOwnWriteFromPrimaryAcrossThreads() {
+        call("writer", () -> writeTransaction.execute(status ->
+                jdbcTemplate.update("update marker set touched = true")));
+
+        assertEquals("primary", call("writer", () -> readOnlyTransaction.execute(status -> databaseName())));
+        assertEquals("replica", call("other", () -> readOnlyTransaction.execute(status -> databaseName())));
+        assertNull(ClientContext.current());
+    }
+
+    /**
+     * Handles a unary call from the client through {@link ClientContextInterceptor}, delivering the
+     * message and the half-close on different threads as the transport may.
+     */
+    private <T> T call(String clientId, Supplier<T> work) {
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of(ClientContextInterceptor.CLIENT_ID_HEADER, Metadata.ASCII_STRING_MARSHALLER),
+                clientId);
+        AtomicReference<T> result = new AtomicReference<>();
+        ServerCallHandler<Object, Object> handler = (call, metadata) -> new ServerCall.Listener<>() {
+            @Override
+            public void onHalfClose() {
+                result.set(work.get());
+            }
+        };
+        @SuppressWarnings("unchecked")
+        ServerCall<Object, Object> serverCall = mock(ServerCall.class);
+        ServerCall.Listener<Object> listener = new ClientContextInterceptor().interceptCall(serverCall, headers, handler);
+
+        CompletableFuture.runAsync(() -> listener.onMessage(new Object()), callExecutor).join();
+        CompletableFuture.runAsync(listener::onHalfClose, callExecutor).join();
+        CompletableFuture.runAsync(listener::onComplete, callExecutor).join();
+        return result.get();
+    }
+
+    private String databaseName() {
+        return jdbcTemplate.queryForObject("select name from marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table marker (name varchar(16), touched boolean default false)");
+        jdbcTemplate.update("insert into marker (name) values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,122 @@
+package com.sever0x.bookstore.feed;
+
+import com.sever0x.bookstore.config.InventoryFeedProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.InventoryEvent;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryFeedTest {
+
+    @Mock
+    private ServerCallStreamObserver<InventoryEvent> observer;
+
+    private InventoryFeed inventoryFeed;
+
+    private Runnable onReady;
+
+    @BeforeEach
+    void setUp() {
+        InventoryFeedProperties properties = new InventoryFeedProperties();
+        properties.setBufferSize(2);
+        inventoryFeed = new InventoryFeed(properties);
+
+        assertTrue(inventoryFeed.subscribe(observer, Set.of()));
+        ArgumentCaptor<Runnable> onReadyCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(observer).setOnReadyHandler(onReadyCaptor.capture());
+        onReady = onReadyCaptor.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        inventoryFeed.destroy();
+    }
+
+    @Test
+    void onBookChanged_shouldCoalesceChangesForSlowSubscriber() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        BookResponse book = BookResponse.newBuilder().setId(first.toString()).setQuantity(10).setVersion(1).build();
+
+        lenient().when(observer.isReady()).thenReturn(false);
+        inventoryFeed.onBookChanged(BookChangedEvent.created(first, book));
+        inventoryFeed.onBookChanged(BookChangedEvent.quantityChanged(second, 5, 4L));
+        inventoryFeed.onBookChanged(BookChangedEvent.quantityChanged(first, 9, 2L));
+        inventoryFeed.onBookChanged(BookChangedEvent.quantityChanged(first, 8, 3L));
+        verify(observer, never()).onNext(any());
+
+        when(observer.isReady()).thenReturn(true);
+        onReady.run();
+
+        ArgumentCaptor<InventoryEvent> events = ArgumentCaptor.forClass(InventoryEvent.class);
+        verify(observer, timeout(1_000).times(2)).onNext(events.capture());
+        assertEquals(List.of(
+                InventoryEvent.newBuilder()
+                        .setType(InventoryEvent.Type.CREATED)
+                        .setId(first.toString())
+                        .setQuantity(8)
+                        .setVersion(3)
+                        .setBook(book.toBuilder().setQuantity(8).setVersion(3))
+                        .setCoalesced(2)
+                        .build(),
+                InventoryEvent.newBuilder()
+                        .setType(InventoryEvent.Type.QUANTITY_CHANGED)
+                        .setId(second.toString())
+                        .setQuantity(5)
+                        .setVersion(4)
+                        .build()
+        ), events.getAllValues());
+    }
+
+    @Test
+    void merge_shouldKeepHigherVersionWhenChangesArriveOutOfOrder() {
+        UUID bookId = UUID.randomUUID();
+        BookResponse book = BookResponse.newBuilder().setId(bookId.toString()).setQuantity(10).setVersion(1).build();
+        InventoryEvent created = InventoryFeed.toInventoryEvent(BookChangedEvent.created(bookId, book));
+        InventoryEvent newer = InventoryFeed.toInventoryEvent(BookChangedEvent.quantityChanged(bookId, 8, 3L));
+        InventoryEvent older = InventoryFeed.toInventoryEvent(BookChangedEvent.quantityChanged(bookId, 9, 2L));
+        InventoryEvent deleted = InventoryFeed.toInventoryEvent(BookChangedEvent.deleted(bookId));
+
+        InventoryEvent merged = InventorySubscription.merge(InventorySubscription.merge(created, newer), older);
+
+        assertEquals(InventoryEvent.Type.CREATED, merged.getType());
+        assertEquals(8, merged.getQuantity());
+        assertEquals(3, merged.getVersion());
+        assertEquals(8, merged.getBook().getQuantity());
+        assertEquals(2, merged.getCoalesced());
+        assertEquals(InventoryEvent.Type.DELETED,
+                InventorySubscription.merge(InventorySubscription.merge(merged, deleted), newer).getType());
+    }
+
+    @Test
+    void onBookChanged_shouldDisconnectSubscriberExceedingBuffer() {
+        for (int i = 0; i < 3; i++) {
+            inventoryFeed.onBookChanged(BookChangedEvent.quantityChanged(UUID.randomUUID(), i, 2L));
+        }
+        onReady.run();
+
+        ArgumentCaptor<StatusRuntimeException> error = ArgumentCaptor.forClass(StatusRuntimeException.class);
+        verify(observer, timeout(1_000)).onError(error.capture());
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, error.getValue().getStatus().getCode());
+        verify(observer, never()).onNext(any());
+        assertEquals(0, inventoryFeed.subscriberCount());
+    }
+}
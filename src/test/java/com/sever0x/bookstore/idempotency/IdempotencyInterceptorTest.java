@@ -0,0 +1,187 @@
+package com.sever0x.bookstore.idempotency;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sever0x.bookstore.config.IdempotencyProperties;
+import com.sever0x.bookstore.proto.AddBookRequest;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyInterceptorTest {
+
+    private static final AddBookRequest REQUEST = AddBookRequest.newBuilder()
+            .setTitle("Title")
+            .setAuthor("Author")
+            .setIsbn("9780000000001")
+            .setQuantity(1)
+            .setIdempotencyKey("7f1c9e0a-key")
+            .build();
+
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final CountingService service = new CountingService();
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .executor(serverExecutor)
+                .addService(ServerInterceptors.intercept(service,
+                        new IdempotencyInterceptor(new IdempotencyProperties(), registry)))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void interceptCall_shouldAnswerRetriesWithOriginalResponse() {
+        BookServiceGrpc.BookServiceBlockingStub stub = BookServiceGrpc.newBlockingStub(channel);
+
+        BookResponse first = stub.addBook(REQUEST);
+        BookResponse retry = stub.addBook(REQUEST);
+
+        assertEquals(first, retry);
+        assertEquals(1, service.calls.get());
+        assertEquals(1.0, registry.get("bookstore.rpc.idempotency.replayed").counter().count());
+
+        BookResponse withoutKey = stub.addBook(REQUEST.toBuilder().clearIdempotencyKey().build());
+        BookResponse otherKey = stub.addBook(REQUEST.toBuilder().setIdempotencyKey("other").build());
+
+        assertNotEquals(first.getId(), withoutKey.getId());
+        assertNotEquals(first.getId(), otherKey.getId());
+        assertEquals(3, service.calls.get());
+    }
+
+    @Test
+    void interceptCall_shouldAnswerRetriesOfCallInProgressOnceItCompletes() throws Exception {
+        BookServiceGrpc.BookServiceFutureStub stub = BookServiceGrpc.newFutureStub(channel);
+        service.release = new CountDownLatch(1);
+
+        ListenableFuture<BookResponse> original = stub.addBook(REQUEST);
+        assertTrue(service.entered.await(5, TimeUnit.SECONDS));
+        ListenableFuture<BookResponse> retry = stub.addBook(REQUEST);
+        ListenableFuture<BookResponse> secondRetry = stub.addBook(REQUEST);
+        // both retries are counted once they wait for the original call
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (replayed() < 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        assertEquals(2.0, replayed());
+        assertFalse(retry.isDone());
+        assertFalse(secondRetry.isDone());
+        service.release.countDown();
+
+        BookResponse response = original.get(5, TimeUnit.SECONDS);
+        assertEquals(response, retry.get(5, TimeUnit.SECONDS));
+        assertEquals(response, secondRetry.get(5, TimeUnit.SECONDS));
+        assertEquals(1, service.calls.get());
+    }
+
+    @Test
+    void interceptCall_shouldRunRetryOfFailedCallAgain() {
+        BookServiceGrpc.BookServiceBlockingStub stub = BookServiceGrpc.newBlockingStub(channel);
+        service.failures.set(1);
+
+        StatusRuntimeException failure = assertThrows(StatusRuntimeException.class, () -> stub.addBook(REQUEST));
+        BookResponse retry = stub.addBook(REQUEST);
+
+        assertEquals(Status.Code.UNAVAILABLE, failure.getStatus().getCode());
+        assertEquals(REQUEST.getTitle(), retry.getTitle());
+        assertEquals(2, service.calls.get());
+    }
+
+    @Test
+    void interceptCall_shouldRejectKeyReusedForDifferentRequest() {
+        BookServiceGrpc.BookServiceBlockingStub stub = BookServiceGrpc.newBlockingStub(channel);
+        stub.addBook(REQUEST);
+
+        StatusRuntimeException reused = assertThrows(StatusRuntimeException.class,
+                () -> stub.addBook(REQUEST.toBuilder().setQuantity(2).build()));
+        StatusRuntimeException tooLong = assertThrows(StatusRuntimeException.class,
+                () -> stub.addBook(REQUEST.toBuilder().setIdempotencyKey("k".repeat(129)).build()));
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, reused.getStatus().getCode());
+        assertEquals(Status.Code.INVALID_ARGUMENT, tooLong.getStatus().getCode());
+        assertEquals(1, service.calls.get());
+    }
+
+    private double replayed() {
+        Counter counter = registry.find("bookstore.rpc.idempotency.replayed").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    /**
+     * Adds books under new identifiers, optionally waiting for a latch or failing the first calls.
+     */
+    private static final class CountingService extends BookServiceGrpc.BookServiceImplBase {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private volatile CountDownLatch release;
+
+        @Override
+        public void addBook(AddBookRequest request, StreamObserver<BookResponse> responseObserver) {
+            calls.incrementAndGet();
+            entered.countDown();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failures.getAndDecrement() > 0) {
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Database unavailable").asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(BookResponse.newBuilder()
+                    .setId(UUID.randomUUID().toString())
+                    .setTitle(request.getTitle())
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sever0x.bookstore.index;
+
+import com.sever0x.bookstore.config.SearchIndexProperties;
+import com.sever0x.bookstore.repository.BookStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+class BookSearchIndexTest {
+
+    @Mock
+    private BookStorage bookStorage;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex(new SearchIndexProperties(), bookStorage, transactionManager);
+    }
+
+    @Test
+    void search_shouldRejectPrefixExpandingToMoreThanMaxTerms() {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.setMaxPrefixExpansions(2);
+        BookSearchIndex index = new BookSearchIndex(properties, bookStorage, transactionManager);
+        index.index(UUID.randomUUID(), "Dune", "Frank Herbert");
+        index.index(UUID.randomUUID(), "Dunes", "Frank Herbert");
+        index.index(UUID.randomUUID(), "Dust", "Lovecraft");
+
+        // two expansions are at the cap
+        assertEquals(2, index.search("dun", true, 0, 10).totalHits());
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> index.search("du", true, 0, 10));
+        assertEquals("Prefix 'du' matches more than 2 words, use a longer prefix", e.getMessage());
+        assertEquals(0, index.search("du", false, 0, 10).totalHits());
+    }
+
+    @Test
+    void index_shouldReuseDocumentOfDeletedBookWithoutMixingUpPostings() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        index.index(first, "Domain Driven Design", "Eric Evans");
+        index.index(second, "Clean Code", "Robert Martin");
+        index.index(third, "Clean Architecture", "Robert Martin");
+
+        index.remove(first);
+        UUID replacement = UUID.randomUUID();
+        // takes the document number of the deleted book, below those already in the postings
+        index.index(replacement, "Clean Agile", "Robert Martin");
+
+        assertEquals(3, index.size());
+        assertEquals(0, index.search("evans", false, 0, 10).totalHits());
+        assertEquals(List.of(replacement), index.search("clean agile", false, 0, 10).bookIds());
+        assertEquals(3, index.search("robert clean", false, 0, 10).totalHits());
+    }
+
+    @Test
+    void index_shouldKeepBooksFindableAcrossRepeatedUpdates() {
+        UUID bookId = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        index.index(other, "Refactoring", "Martin Fowler");
+
+        for (int i = 0; i < 100; i++) {
+            index.index(bookId, "Edition " + i, "Martin Fowler");
+        }
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(bookId), index.search("edition 99", false, 0, 10).bookIds());
+        assertEquals(0, index.search("edition 98", false, 0, 10).totalHits());
+        assertEquals(2, index.search("fowler", false, 0, 10).totalHits());
+    }
+}
@@ -0,0 +1,74 @@
+package com.sever0x.bookstore.index;
+
+import com.sever0x.bookstore.config.IsbnIndexProperties;
+import com.sever0x.bookstore.repository.BookStorage;
+import com.sever0x.bookstore.validation.BookValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IsbnIndexTest {
+
+    @Mock
+    private BookStorage bookStorage;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IsbnIndex isbnIndex;
+
+    @BeforeEach
+    void setUp() {
+        isbnIndex = new IsbnIndex(new IsbnIndexProperties(), bookStorage, new BookValidator(), transactionManager);
+    }
+
+    @Test
+    void afterSingletonsInstantiated_shouldSkipInvalidIsbns() {
+        UUID valid = UUID.randomUUID();
+        when(bookStorage.streamIsbnEntries()).thenReturn(Stream.of(
+                entry(null, UUID.randomUUID()),
+                entry("978-0-13-235088-4", UUID.randomUUID()),
+                entry("9780132350884", valid)));
+
+        isbnIndex.afterSingletonsInstantiated();
+
+        assertEquals(Optional.of(valid), isbnIndex.find("9780132350884"));
+    }
+
+    @Test
+    void putRemoveAndFind_shouldIgnoreInvalidIsbns() {
+        UUID bookId = UUID.randomUUID();
+
+        isbnIndex.put(null, bookId);
+        isbnIndex.put("not an isbn", bookId);
+        isbnIndex.remove(null, bookId);
+
+        assertEquals(Optional.empty(), isbnIndex.find(null));
+        assertEquals(Optional.empty(), isbnIndex.find("not an isbn"));
+    }
+
+    private static BookStorage.IsbnEntry entry(String isbn, UUID id) {
+        return new BookStorage.IsbnEntry() {
+            @Override
+            public String getIsbn() {
+                return isbn;
+            }
+
+            @Override
+            public UUID getId() {
+                return id;
+            }
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package com.sever0x.bookstore.inventory;
+
+import com.sever0x.bookstore.config.InventoryStatsProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.proto.BookResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class InventoryStatsTest {
+
+    private static final int THRESHOLD = 10;
+
+    private InventoryStats inventoryStats;
+
+    private long version;
+
+    @BeforeEach
+    void setUp() {
+        InventoryStatsProperties properties = new InventoryStatsProperties();
+        properties.setMaxLowStockThreshold(THRESHOLD);
+        inventoryStats = new InventoryStats(properties, null, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void changes_shouldKeepTotalsEqualToRecount() {
+        Random random = new Random(42);
+        Map<UUID, Integer> quantities = new HashMap<>();
+        Map<UUID, String> authors = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            int operation = random.nextInt(10);
+            if (ids.isEmpty() || operation < 4) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                put(id, "Author " + random.nextInt(20), random.nextInt(30), quantities, authors);
+            } else if (operation < 6) {
+                UUID id = ids.get(random.nextInt(ids.size()));
+                put(id, "Author " + random.nextInt(20), random.nextInt(30), quantities, authors);
+            } else if (operation < 9) {
+                UUID id = ids.get(random.nextInt(ids.size()));
+                int quantity = random.nextInt(30);
+                inventoryStats.setQuantity(id, quantity, ++version);
+                quantities.computeIfPresent(id, (key, previous) -> quantity);
+            } else {
+                UUID id = ids.remove(random.nextInt(ids.size()));
+                inventoryStats.remove(id);
+                quantities.remove(id);
+                authors.remove(id);
+            }
+        }
+
+        InventoryStats.Stats stats = inventoryStats.stats(List.of("Author 3", "Nobody"), 3);
+        assertEquals(quantities.size(), stats.titles());
+        assertEquals(quantities.values().stream().mapToLong(Integer::longValue).sum(), stats.units());
+        assertEquals(quantities.values().stream().filter(quantity -> quantity == 0).count(), stats.outOfStock());
+        assertEquals(authorTotals("Author 3", quantities, authors), stats.authors().get(0));
+        assertEquals(new InventoryStats.AuthorTotals("Nobody", 0, 0, 0), stats.authors().get(1));
+        List<InventoryStats.AuthorTotals> top = authors.values().stream().distinct()
+                .map(author -> authorTotals(author, quantities, authors))
+                .sorted(Comparator.comparingLong(InventoryStats.AuthorTotals::units).reversed()
+                        .thenComparing(InventoryStats.AuthorTotals::author))
+                .limit(3)
+                .toList();
+        assertEquals(top, stats.authors().subList(2, 5));
+
+        List<UUID> expected = quantities.entrySet().stream()
+                .filter(entry -> entry.getValue() <= 4)
+                .sorted(Map.Entry.<UUID, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        List<UUID> listed = new ArrayList<>();
+        String pageToken = "";
+        do {
+            InventoryStats.LowStockPage page = inventoryStats.lowStock(4, pageToken, 7);
+            assertEquals(expected.size(), page.totalCount());
+            listed.addAll(page.bookIds());
+            pageToken = page.nextPageToken();
+        } while (!pageToken.isEmpty());
+        assertEquals(expected, listed);
+    }
+
+    @Test
+    void onBookChanged_shouldIgnoreChangesOlderThanRecordedVersion() {
+        UUID id = UUID.randomUUID();
+        inventoryStats.onBookChanged(BookChangedEvent.created(id, BookResponse.newBuilder()
+                .setId(id.toString()).setAuthor("Jane Doe").setQuantity(10).setVersion(1).build()));
+
+        // two adjustments committed as versions 2 and 3, their listeners ran in reverse order
+        inventoryStats.onBookChanged(BookChangedEvent.quantityChanged(id, 4, 3L));
+        inventoryStats.onBookChanged(BookChangedEvent.quantityChanged(id, 7, 2L));
+
+        InventoryStats.Stats stats = inventoryStats.stats(List.of("Jane Doe"), 0);
+        assertEquals(4, stats.units());
+        assertEquals(new InventoryStats.AuthorTotals("Jane Doe", 1, 4, 0), stats.authors().get(0));
+        assertEquals(List.of(id), inventoryStats.lowStock(4, "", 10).bookIds());
+        assertEquals(0, inventoryStats.lowStock(3, "", 10).totalCount());
+    }
+
+    @Test
+    void lowStock_shouldRejectThresholdAboveIndexedQuantities() {
+        assertThrows(IllegalArgumentException.class, () -> inventoryStats.lowStock(THRESHOLD + 1, "", 10));
+        assertThrows(IllegalArgumentException.class, () -> inventoryStats.lowStock(THRESHOLD, "bm90IGEgdG9rZW4", 10));
+    }
+
+    private void put(UUID id, String author, int quantity, Map<UUID, Integer> quantities, Map<UUID, String> authors) {
+        inventoryStats.put(id, author, quantity, ++version);
+        quantities.put(id, quantity);
+        authors.put(id, author);
+    }
+
+    private static InventoryStats.AuthorTotals authorTotals(String author, Map<UUID, Integer> quantities,
+                                                            Map<UUID, String> authors) {
+        List<Integer> books = authors.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(author))
+                .map(entry -> quantities.get(entry.getKey()))
+                .toList();
+        return new InventoryStats.AuthorTotals(author, books.size(), books.stream().mapToLong(Integer::longValue).sum(),
+                (int) books.stream().filter(quantity -> quantity == 0).count());
+    }
+}
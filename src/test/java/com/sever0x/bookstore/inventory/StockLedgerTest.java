@@ -0,0 +1,215 @@
+package com.sever0x.bookstore.inventory;
+
+import com.sever0x.bookstore.config.WriteBehindProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.repository.BookStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockLedgerTest {
+
+    private static final UUID BOOK_ID = UUID.randomUUID();
+
+    @Mock
+    private BookStorage bookStorage;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private StockLedger stockLedger;
+
+    @BeforeEach
+    void setUp() {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        stockLedger = new StockLedger(properties, bookStorage, transactionManager, eventPublisher);
+    }
+
+    @Test
+    void adjust_shouldNeverOversellWhenReservationsRaceForLastUnits() throws Exception {
+        int units = 50;
+        int threads = 16;
+        int reservationsPerThread = 20;
+        // flushes remove drained counters, so the row is reread and must reflect them
+        AtomicInteger storedQuantity = new AtomicInteger(units);
+        AtomicLong storedVersion = new AtomicLong(3L);
+        when(bookStorage.findQuantityVersionById(BOOK_ID))
+                .thenAnswer(invocation -> Optional.of(stored(storedQuantity.get(), storedVersion.get())));
+        when(bookStorage.addQuantity(eq(BOOK_ID), anyInt(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            storedQuantity.addAndGet(invocation.<Integer>getArgument(1));
+            storedVersion.addAndGet(invocation.<Long>getArgument(2));
+            return 1;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<StockLedger.Adjustment>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    List<StockLedger.Adjustment> adjustments = new ArrayList<>();
+                    for (int j = 0; j < reservationsPerThread; j++) {
+                        adjustments.add(stockLedger.adjust(BOOK_ID, -1));
+                        if (j % 5 == 0) {
+                            // flushes drain the counter while reservations continue
+                            stockLedger.flush();
+                        }
+                    }
+                    return adjustments;
+                }));
+            }
+            start.countDown();
+
+            int applied = 0;
+            for (Future<List<StockLedger.Adjustment>> result : results) {
+                for (StockLedger.Adjustment adjustment : result.get(10, TimeUnit.SECONDS)) {
+                    assertTrue(adjustment.quantity() >= 0, "quantity " + adjustment.quantity());
+                    if (adjustment.outcome() == StockLedger.Outcome.APPLIED) {
+                        applied++;
+                    }
+                }
+            }
+            stockLedger.flush();
+
+            assertEquals(units, applied);
+            assertEquals(0, storedQuantity.get());
+            assertEquals(3L + units, storedVersion.get());
+            assertEquals(0, stockLedger.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void flush_shouldDropChangesOfBookReplacedSinceTheCounterWasSeeded() {
+        when(bookStorage.findQuantityVersionById(BOOK_ID))
+                .thenReturn(Optional.of(stored(10, 1L)), Optional.of(stored(100, 2L)));
+        stockLedger.adjust(BOOK_ID, -4);
+        // an update committed the row at version 2 before the flush
+        when(bookStorage.addQuantity(BOOK_ID, -4, 1, 1L)).thenReturn(0);
+
+        stockLedger.flush();
+
+        assertEquals(StockLedger.Outcome.APPLIED, stockLedger.adjust(BOOK_ID, -1).outcome());
+        assertEquals(99, stockLedger.withPendingQuantity(response(100, 2L)).getQuantity());
+        verify(eventPublisher, never()).publishEvent(any(BookChangedEvent.class));
+    }
+
+    @Test
+    void onBookChanged_shouldRetireCounterSoLaterChangesApplyToUpdatedBook() {
+        when(bookStorage.findQuantityVersionById(BOOK_ID))
+                .thenReturn(Optional.of(stored(10, 1L)), Optional.of(stored(20, 3L)));
+        stockLedger.adjust(BOOK_ID, -4);
+
+        stockLedger.onBookChanged(BookChangedEvent.updated(BOOK_ID, response(20, 3L)));
+        StockLedger.Adjustment adjustment = stockLedger.adjust(BOOK_ID, -5);
+        when(bookStorage.addQuantity(BOOK_ID, -5, 1, 3L)).thenReturn(1);
+        stockLedger.flush();
+
+        assertEquals(new StockLedger.Adjustment(StockLedger.Outcome.APPLIED, 15), adjustment);
+        verify(bookStorage, never()).addQuantity(BOOK_ID, -4, 1, 1L);
+        verify(eventPublisher).publishEvent(BookChangedEvent.quantityChanged(BOOK_ID, 15, 4L));
+    }
+
+    @Test
+    void adjust_shouldSeedCounterInReadWriteTransactionSoItReadsThePrimary() {
+        when(bookStorage.findQuantityVersionById(BOOK_ID)).thenReturn(Optional.of(stored(10, 1L)));
+
+        stockLedger.adjust(BOOK_ID, -1);
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertFalse(definition.getValue().isReadOnly());
+    }
+
+    @Test
+    void flush_shouldRemoveCountersWithoutChangesLeft() {
+        UUID otherId = UUID.randomUUID();
+        when(bookStorage.findQuantityVersionById(BOOK_ID)).thenReturn(Optional.of(stored(10, 1L)), Optional.of(stored(9, 2L)));
+        when(bookStorage.findQuantityVersionById(otherId)).thenReturn(Optional.of(stored(5, 1L)));
+        when(bookStorage.addQuantity(BOOK_ID, -1, 1, 1L)).thenReturn(1);
+        when(bookStorage.addQuantity(otherId, -2, 1, 1L)).thenReturn(1);
+        stockLedger.adjust(BOOK_ID, -1);
+        stockLedger.adjust(otherId, -2);
+        assertEquals(2, stockLedger.size());
+
+        stockLedger.flush();
+
+        assertEquals(0, stockLedger.size());
+        assertTrue(stockLedger.pendingVersion(BOOK_ID).isEmpty());
+        // the next change seeds a counter from the flushed row
+        assertEquals(new StockLedger.Adjustment(StockLedger.Outcome.APPLIED, 8), stockLedger.adjust(BOOK_ID, -1));
+        assertEquals(1, stockLedger.size());
+    }
+
+    @Test
+    void flush_shouldPutChangesBackWhenTransactionFails() {
+        when(bookStorage.findQuantityVersionById(BOOK_ID)).thenReturn(Optional.of(stored(10, 1L)));
+        stockLedger.adjust(BOOK_ID, -4);
+        when(bookStorage.addQuantity(BOOK_ID, -4, 1, 1L)).thenThrow(new IllegalStateException("connection lost"));
+
+        stockLedger.flush();
+        stockLedger.adjust(BOOK_ID, -1);
+        when(bookStorage.addQuantity(BOOK_ID, -5, 2, 1L)).thenReturn(1);
+        stockLedger.flush();
+
+        verify(eventPublisher).publishEvent(BookChangedEvent.quantityChanged(BOOK_ID, 5, 3L));
+    }
+
+    private static BookStorage.QuantityVersion stored(int quantity, long version) {
+        return new BookStorage.QuantityVersion() {
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+
+    private static BookResponse response(int quantity, long version) {
+        return BookResponse.newBuilder()
+                .setId(BOOK_ID.toString())
+                .setQuantity(quantity)
+                .setVersion(version)
+                .build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.sever0x.bookstore.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimitTest {
+
+    private static final long MIN_RTT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void complete_shouldGrowLimitWhileLatencyStaysAtMinimum() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 2, 500, 1.0);
+
+        saturate(limit, MIN_RTT, 5);
+
+        assertTrue(limit.getLimit() > 20, "limit " + limit.getLimit());
+    }
+
+    @Test
+    void complete_shouldShrinkLimitWhenCallsQueue() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 2, 500, 1.0);
+        saturate(limit, MIN_RTT, 1);
+        int unloaded = limit.getLimit();
+
+        // ten times the unloaded latency: most calls wait behind the limit
+        saturate(limit, 10 * MIN_RTT, 10);
+
+        assertTrue(limit.getLimit() < unloaded, "limit " + limit.getLimit() + ", unloaded " + unloaded);
+        assertTrue(limit.getLimit() >= 2);
+    }
+
+    @Test
+    void complete_shouldIgnoreLatencyWhileLimitIsBarelyUsed() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 2, 500, 1.0);
+        saturate(limit, MIN_RTT, 1);
+        int before = limit.getLimit();
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limit.tryAcquire(1.0));
+            limit.complete(100 * MIN_RTT, false);
+        }
+
+        assertEquals(before, limit.getLimit());
+    }
+
+    @Test
+    void complete_shouldCutLimitByTenthWhenCallIsDropped() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 2, 500, 1.0);
+
+        assertTrue(limit.tryAcquire(1.0));
+        limit.complete(MIN_RTT, true);
+
+        assertEquals(18, limit.getLimit());
+    }
+
+    @Test
+    void tryAcquire_shouldRejectLowerSharesFirst() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 2, 500, 1.0);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire(0.5));
+        }
+        assertFalse(limit.tryAcquire(0.5));
+        assertTrue(limit.tryAcquire(1.0));
+
+        limit.release();
+        limit.release();
+        assertTrue(limit.tryAcquire(0.5));
+    }
+
+    /**
+     * Takes every permit of the limit and completes the calls with the given latency, repeatedly.
+     */
+    private static void saturate(AdaptiveLimit limit, long rttNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int permits = 0;
+            while (limit.tryAcquire(1.0)) {
+                permits++;
+            }
+            for (int i = 0; i < permits; i++) {
+                limit.complete(rttNanos, false);
+            }
+        }
+    }
+}
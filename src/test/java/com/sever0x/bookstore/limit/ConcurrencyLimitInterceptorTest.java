@@ -0,0 +1,240 @@
+package com.sever0x.bookstore.limit;
+
+import com.sever0x.bookstore.config.ConcurrencyLimitProperties;
+import com.sever0x.bookstore.proto.AdjustQuantityRequest;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import com.sever0x.bookstore.proto.QuantityResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimitInterceptorTest {
+
+    private static final int CLIENTS = 32;
+
+    private static final long RUN_MILLIS = 1_500;
+
+    private final ExecutorService serverExecutor = Executors.newFixedThreadPool(2 * CLIENTS);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (server != null) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void interceptCall_shouldBoundLatencyUnderOverload() throws Exception {
+        Load unlimited = overload(false);
+        Load limited = overload(true);
+
+        assertTrue(limited.rejected() > 0, "expected rejections, got none");
+        assertTrue(limited.p90() * 2 < unlimited.p90(),
+                "limited p90 " + limited.p90() + "ms, unlimited p90 " + unlimited.p90() + "ms");
+        double limit = registry.get("bookstore.rpc.concurrency.limit").tag("method", "com.sever0x.bookstore.BookService/GetBooks").gauge().value();
+        assertTrue(limit < new ConcurrencyLimitProperties().getInitialLimit(), "limit " + limit);
+        assertTrue(registry.get("bookstore.rpc.concurrency.rejected").tag("method", "com.sever0x.bookstore.BookService/GetBooks").counters()
+                .stream().mapToDouble(counter -> counter.count()).sum() > 0);
+    }
+
+    @Test
+    void interceptCall_shouldLetWritesThroughWhileBulkReadsAreShed() throws Exception {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setServerInitialLimit(10);
+        properties.setBulkShare(0.5);
+        BlockingService service = new BlockingService();
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .executor(serverExecutor)
+                .addService(ServerInterceptors.intercept(service, new ConcurrencyLimitInterceptor(properties, registry)))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+
+        // bulk reads may hold half of the server limit
+        for (int i = 0; i < 5; i++) {
+            BookServiceGrpc.newFutureStub(channel).getBooks(GetBooksRequest.getDefaultInstance());
+        }
+        assertTrue(service.entered.tryAcquire(5, 5, TimeUnit.SECONDS));
+
+        BookServiceGrpc.BookServiceBlockingStub stub = BookServiceGrpc.newBlockingStub(channel)
+                .withDeadlineAfter(5, TimeUnit.SECONDS);
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> stub.getBooks(GetBooksRequest.getDefaultInstance()));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, e.getStatus().getCode());
+        stub.adjustQuantity(AdjustQuantityRequest.newBuilder().setDelta(1).build());
+        service.release.countDown();
+    }
+
+    /**
+     * Runs clients without pause against a service that can only work on two calls at a time, as a
+     * database with a small connection pool. Every eighth call adjusts the stock, the others scan pages.
+     */
+    private Load overload(boolean limited) throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        ServerServiceDefinition service = new SlowService(new Semaphore(2, true)).bindService();
+        if (limited) {
+            service = ServerInterceptors.intercept(service, new ConcurrencyLimitInterceptor(new ConcurrencyLimitProperties(), registry));
+        }
+        server = InProcessServerBuilder.forName(name).executor(serverExecutor).addService(service).build().start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        BookServiceGrpc.BookServiceBlockingStub stub = BookServiceGrpc.newBlockingStub(channel);
+
+        Load load = new Load();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.execute(() -> {
+                int calls = 0;
+                while (System.nanoTime() < deadline) {
+                    boolean write = ++calls % 8 == 0;
+                    long start = System.nanoTime();
+                    try {
+                        if (write) {
+                            stub.adjustQuantity(AdjustQuantityRequest.newBuilder().setDelta(1).build());
+                            load.writes.incrementAndGet();
+                        } else {
+                            stub.getBooks(GetBooksRequest.getDefaultInstance());
+                            load.reads.incrementAndGet();
+                        }
+                        load.latencies.add(System.nanoTime() - start);
+                    } catch (StatusRuntimeException e) {
+                        if (e.getStatus().getCode() != Status.Code.RESOURCE_EXHAUSTED) {
+                            throw e;
+                        }
+                        (write ? load.writeRejections : load.readRejections).incrementAndGet();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(RUN_MILLIS + 10_000, TimeUnit.MILLISECONDS));
+
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        return load;
+    }
+
+    private static final class Load {
+
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        private final AtomicInteger reads = new AtomicInteger();
+
+        private final AtomicInteger writes = new AtomicInteger();
+
+        private final AtomicInteger readRejections = new AtomicInteger();
+
+        private final AtomicInteger writeRejections = new AtomicInteger();
+
+        private int rejected() {
+            return readRejections.get() + writeRejections.get();
+        }
+
+        private double p90() {
+            List<Long> sorted;
+            synchronized (latencies) {
+                sorted = new ArrayList<>(latencies);
+            }
+            Collections.sort(sorted);
+            return sorted.get((int) (sorted.size() * 0.9)) / 1e6;
+        }
+    }
+
+    /**
+     * Holds bulk reads until released, writes complete right away.
+     */
+    private static final class BlockingService extends BookServiceGrpc.BookServiceImplBase {
+
+        private final Semaphore entered = new Semaphore(0);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void getBooks(GetBooksRequest request, StreamObserver<GetBooksResponse> responseObserver) {
+            entered.release();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responseObserver.onNext(GetBooksResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void adjustQuantity(AdjustQuantityRequest request, StreamObserver<QuantityResponse> responseObserver) {
+            responseObserver.onNext(QuantityResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+    }
+
+    private static final class SlowService extends BookServiceGrpc.BookServiceImplBase {
+
+        private final Semaphore connections;
+
+        private SlowService(Semaphore connections) {
+            this.connections = connections;
+        }
+
+        @Override
+        public void getBooks(GetBooksRequest request, StreamObserver<GetBooksResponse> responseObserver) {
+            work();
+            responseObserver.onNext(GetBooksResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void adjustQuantity(AdjustQuantityRequest request, StreamObserver<QuantityResponse> responseObserver) {
+            work();
+            responseObserver.onNext(QuantityResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+
+        private void work() {
+            connections.acquireUninterruptibly();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connections.release();
+            }
+        }
+    }
+}
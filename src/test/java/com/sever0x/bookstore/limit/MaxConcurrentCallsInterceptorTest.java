@@ -0,0 +1,212 @@
+package com.sever0x.bookstore.limit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import com.sever0x.bookstore.proto.StreamBooksRequest;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaxConcurrentCallsInterceptorTest {
+
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+    private final BlockingService service = new BlockingService();
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    private MaxConcurrentCallsInterceptor interceptor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.release.countDown();
+        service.releaseStreams.countDown();
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (server != null) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void interceptCall_shouldRunAtMostMaxConcurrencyUnaryCalls() throws Exception {
+        BookServiceGrpc.BookServiceFutureStub stub = BookServiceGrpc.newFutureStub(start(2));
+
+        List<ListenableFuture<GetBooksResponse>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(stub.getBooks(GetBooksRequest.getDefaultInstance()));
+        }
+        assertTrue(service.entered.tryAcquire(2, 5, TimeUnit.SECONDS));
+        service.release.countDown();
+        for (ListenableFuture<GetBooksResponse> call : calls) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(2, service.maxRunning.get());
+    }
+
+    @Test
+    void interceptCall_shouldNotCountStreamingCalls() throws Exception {
+        ManagedChannel channel = start(1);
+        BookServiceGrpc.newStub(channel).streamBooks(StreamBooksRequest.getDefaultInstance(), new NoOpObserver<>());
+        assertTrue(service.entered.tryAcquire(5, TimeUnit.SECONDS));
+
+        // the export keeps blocking its thread, yet the only slot is free for unary calls
+        service.release.countDown();
+        BookServiceGrpc.newBlockingStub(channel).withDeadlineAfter(5, TimeUnit.SECONDS)
+                .getBooks(GetBooksRequest.getDefaultInstance());
+    }
+
+    @Test
+    void interceptCall_shouldGiveUpWaitingAtDeadlineWithoutLeakingSlot() throws Exception {
+        ManagedChannel channel = start(1);
+        ListenableFuture<GetBooksResponse> running = BookServiceGrpc.newFutureStub(channel)
+                .getBooks(GetBooksRequest.getDefaultInstance());
+        assertTrue(service.entered.tryAcquire(5, TimeUnit.SECONDS));
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> BookServiceGrpc.newBlockingStub(channel).withDeadlineAfter(100, TimeUnit.MILLISECONDS)
+                        .getBooks(GetBooksRequest.getDefaultInstance()));
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, e.getStatus().getCode());
+
+        service.release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        BookServiceGrpc.newBlockingStub(channel).withDeadlineAfter(5, TimeUnit.SECONDS)
+                .getBooks(GetBooksRequest.getDefaultInstance());
+        assertEquals(1, service.maxRunning.get());
+    }
+
+    @Test
+    void interceptCall_shouldNotRunCallCancelledWhileWaiting() throws Exception {
+        ManagedChannel channel = start(1);
+        ListenableFuture<GetBooksResponse> running = BookServiceGrpc.newFutureStub(channel)
+                .getBooks(GetBooksRequest.getDefaultInstance());
+        assertTrue(service.entered.tryAcquire(5, TimeUnit.SECONDS));
+
+        // without a deadline the call would wait for the slot forever
+        Context.CancellableContext context = Context.current().withCancellation();
+        ListenableFuture<GetBooksResponse> cancelled = context.call(() -> BookServiceGrpc.newFutureStub(channel)
+                .getBooks(GetBooksRequest.getDefaultInstance()));
+        awaitWaitingCalls(1);
+        context.cancel(null);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> cancelled.get(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.CANCELLED, Status.fromThrowable(e.getCause()).getCode());
+        awaitWaitingCalls(0);
+
+        service.release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        BookServiceGrpc.newBlockingStub(channel).withDeadlineAfter(5, TimeUnit.SECONDS)
+                .getBooks(GetBooksRequest.getDefaultInstance());
+        assertEquals(2, service.calls.get());
+    }
+
+    private void awaitWaitingCalls(int calls) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (interceptor.waitingCalls() != calls && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(calls, interceptor.waitingCalls());
+    }
+
+    private ManagedChannel start(int maxConcurrency) throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        interceptor = new MaxConcurrentCallsInterceptor(maxConcurrency);
+        server = InProcessServerBuilder.forName(name)
+                .executor(serverExecutor)
+                .addService(ServerInterceptors.intercept(service, interceptor))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        return channel;
+    }
+
+    /**
+     * Blocks unary and streaming calls, as a service waiting on the database, until released.
+     */
+    private static final class BlockingService extends BookServiceGrpc.BookServiceImplBase {
+
+        private final Semaphore entered = new Semaphore(0);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final CountDownLatch releaseStreams = new CountDownLatch(1);
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public void getBooks(GetBooksRequest request, StreamObserver<GetBooksResponse> responseObserver) {
+            calls.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                block(release);
+            } finally {
+                running.decrementAndGet();
+            }
+            responseObserver.onNext(GetBooksResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void streamBooks(StreamBooksRequest request, StreamObserver<BookResponse> responseObserver) {
+            block(releaseStreams);
+            responseObserver.onCompleted();
+        }
+
+        private void block(CountDownLatch latch) {
+            entered.release();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class NoOpObserver<T> implements StreamObserver<T> {
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.sever0x.bookstore.metrics;
+
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.proto.GetBookRequest;
+import com.sever0x.bookstore.proto.GetBooksRequest;
+import com.sever0x.bookstore.proto.GetBooksResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GrpcMetricsInterceptorTest {
+
+    private static final String GET_BOOK = "com.sever0x.bookstore.BookService/GetBook";
+
+    private static final String GET_BOOKS = "com.sever0x.bookstore.BookService/GetBooks";
+
+    private static final BookResponse BOOK = BookResponse.newBuilder()
+            .setId("8f14e45f-ceea-467f-a8b4-1f4c1a2b3c4d")
+            .setTitle("Title")
+            .setIsbn("9780132350884")
+            .setQuantity(3)
+            .build();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    private BookServiceGrpc.BookServiceBlockingStub stub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(new TestService(), new GrpcMetricsInterceptor(registry)))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        stub = BookServiceGrpc.newBlockingStub(channel);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void interceptCall_shouldRecordStatusLatencyAndMessageSizes() {
+        GetBookRequest request = GetBookRequest.newBuilder().setId(BOOK.getId()).build();
+
+        stub.getBook(request);
+
+        assertEquals(1, status(GET_BOOK, Status.Code.OK));
+        Timer latency = registry.get("bookstore.rpc.latency").tag("method", GET_BOOK).timer();
+        assertEquals(1, latency.count());
+        assertTrue(latency.totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(request.getSerializedSize(), size(GET_BOOK, "request").totalAmount());
+        assertEquals(BOOK.getSerializedSize(), size(GET_BOOK, "response").totalAmount());
+        assertEquals(0, registry.get("bookstore.rpc.in.flight").tag("method", GET_BOOK).gauge().value());
+    }
+
+    @Test
+    void interceptCall_shouldRecordStatusOfExceptionThrownByHandler() {
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> stub.getBooks(GetBooksRequest.getDefaultInstance()));
+
+        assertEquals(Status.Code.UNKNOWN, e.getStatus().getCode());
+        assertEquals(1, status(GET_BOOKS, Status.Code.UNKNOWN));
+        assertEquals(0, status(GET_BOOKS, Status.Code.CANCELLED));
+        assertEquals(1, registry.get("bookstore.rpc.latency").tag("method", GET_BOOKS).timer().count());
+        assertEquals(0, registry.get("bookstore.rpc.in.flight").tag("method", GET_BOOKS).gauge().value());
+    }
+
+    private double status(String method, Status.Code code) {
+        return registry.get("bookstore.rpc.status").tags("method", method, "code", code.name()).counter().count();
+    }
+
+    private DistributionSummary size(String method, String direction) {
+        return registry.get("bookstore.rpc.message.size").tags("method", method, "direction", direction).summary();
+    }
+
+    private static final class TestService extends BookServiceGrpc.BookServiceImplBase {
+
+        @Override
+        public void getBook(GetBookRequest request, StreamObserver<BookResponse> responseObserver) {
+            responseObserver.onNext(BOOK);
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void getBooks(GetBooksRequest request, StreamObserver<GetBooksResponse> responseObserver) {
+            throw new IllegalStateException("database unavailable");
+        }
+    }
+}
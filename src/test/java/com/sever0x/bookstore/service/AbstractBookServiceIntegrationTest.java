@@ -0,0 +1,169 @@
+package com.sever0x.bookstore.service;
+
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.proto.*;
+import com.sever0x.bookstore.repository.BookStorage;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Service tests shared by the storage backends, each subclass runs them against one backend.
+ */
+abstract class AbstractBookServiceIntegrationTest {
+
+    @Autowired
+    protected BookStorage bookStorage;
+
+    protected abstract BookServiceGrpc.BookServiceBlockingStub client();
+
+    @BeforeEach
+    void deleteBooks() {
+        bookStorage.findAll(Pageable.unpaged()).forEach(book -> bookStorage.deleteById(book.getId()));
+    }
+
+    @Test
+    void testAddBook() {
+        AddBookRequest request = addRequest("New Book Title", "1234567890123", 5);
+
+        BookResponse response = client().addBook(request);
+        assertEquals(request.getTitle(), response.getTitle());
+        assertEquals(request.getAuthor(), response.getAuthor());
+        assertEquals(request.getIsbn(), response.getIsbn());
+        assertEquals(request.getQuantity(), response.getQuantity());
+
+        assertStored(response.getId(), request.getTitle(), request.getAuthor(), request.getIsbn(), request.getQuantity());
+    }
+
+    @Test
+    void testAddBookWithDuplicateIsbn() {
+        AddBookRequest request = addRequest("New Book Title", "1234567890123", 5);
+        client().addBook(request);
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () -> client().addBook(request));
+        assertEquals(Status.Code.ALREADY_EXISTS, e.getStatus().getCode());
+    }
+
+    @Test
+    void testGetBook() {
+        AddBookRequest addBookRequest = addRequest("Book Title", "1234567890123", 13);
+        BookResponse book = client().addBook(addBookRequest);
+
+        BookResponse response = client().getBook(GetBookRequest.newBuilder()
+                .setId(book.getId())
+                .build());
+
+        assertEquals(book.getId(), response.getId());
+        assertEquals(addBookRequest.getTitle(), response.getTitle());
+        assertEquals(addBookRequest.getQuantity(), response.getQuantity());
+        assertStored(response.getId(), addBookRequest.getTitle(), addBookRequest.getAuthor(), addBookRequest.getIsbn(),
+                addBookRequest.getQuantity());
+    }
+
+    @Test
+    void testUpdateBook() {
+        BookResponse bookResponse = client().addBook(addRequest("Old Book Title", "0123456789012", 10));
+
+        UpdateBookRequest updateRequest = UpdateBookRequest.newBuilder()
+                .setId(bookResponse.getId())
+                .setTitle("Updated Book Title")
+                .setAuthor("Updated Book Author")
+                .setIsbn("9876543210987")
+                .setQuantity(15)
+                .build();
+
+        BookResponse response = client().updateBook(updateRequest);
+        assertEquals(updateRequest.getId(), response.getId());
+        assertEquals(updateRequest.getTitle(), response.getTitle());
+        assertEquals(updateRequest.getAuthor(), response.getAuthor());
+        assertEquals(updateRequest.getIsbn(), response.getIsbn());
+        assertEquals(updateRequest.getQuantity(), response.getQuantity());
+        assertEquals(bookResponse.getVersion() + 1, response.getVersion());
+        assertTrue(client().getBook(GetBookRequest.newBuilder()
+                .setId(response.getId())
+                .setKnownVersion(response.getVersion())
+                .build()).getNotModified());
+
+        assertStored(response.getId(), updateRequest.getTitle(), updateRequest.getAuthor(), updateRequest.getIsbn(),
+                updateRequest.getQuantity());
+        assertFalse(bookStorage.existsByIsbn("0123456789012"));
+    }
+
+    @Test
+    void testDeleteBook() {
+        BookResponse bookResponse = client().addBook(addRequest("Book to Delete", "1111111111111", 20));
+
+        DeleteBookResponse response = client().deleteBook(DeleteBookRequest.newBuilder()
+                .setId(bookResponse.getId())
+                .build());
+        assertEquals(bookResponse.getId(), response.getId());
+        assertTrue(response.getSuccess());
+
+        assertFalse(bookStorage.existsById(UUID.fromString(bookResponse.getId())));
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> client().getBook(GetBookRequest.newBuilder().setId(bookResponse.getId()).build()));
+        assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+    }
+
+    @Test
+    void testGetBooksPagesAndWindows() {
+        IntStream.of(4, 1, 3, 0, 2).forEach(i ->
+                client().addBook(addRequest("Title " + i, Long.toString(9_780_000_000_000L + i), i)));
+
+        GetBooksResponse page = client().getBooks(GetBooksRequest.newBuilder()
+                .setPageNumber(1)
+                .setPageSize(2)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .build());
+
+        assertEquals(3, page.getTotalPages());
+        assertEquals("Title 2", page.getBooks(0).getTitle());
+        assertEquals("Title 3", page.getBooks(1).getTitle());
+
+        List<Integer> quantities = new ArrayList<>();
+        String token = "";
+        do {
+            GetBooksResponse window = client().getBooks(GetBooksRequest.newBuilder()
+                    .setPageSize(2)
+                    .setSortBy("quantity")
+                    .setDirection("DESC")
+                    .setKeyset(true)
+                    .setPageToken(token)
+                    .build());
+            window.getBooksList().forEach(book -> quantities.add(book.getQuantity()));
+            token = window.getNextPageToken();
+        } while (!token.isEmpty());
+        assertEquals(List.of(4, 3, 2, 1, 0), quantities);
+    }
+
+    protected void assertStored(String id, String title, String author, String isbn, int quantity) {
+        Book book = bookStorage.findById(UUID.fromString(id)).orElseThrow();
+        assertEquals(title, book.getTitle());
+        assertEquals(author, book.getAuthor());
+        assertEquals(isbn, book.getIsbn());
+        assertEquals(quantity, book.getQuantity());
+    }
+
+    protected static AddBookRequest addRequest(String title, String isbn, int quantity) {
+        return AddBookRequest.newBuilder()
+                .setTitle(title)
+                .setAuthor("Author")
+                .setIsbn(isbn)
+                .setQuantity(quantity)
+                .build();
+    }
+}
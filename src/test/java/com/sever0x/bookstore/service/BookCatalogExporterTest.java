@@ -0,0 +1,172 @@
+package com.sever0x.bookstore.service;
+
+import com.sever0x.bookstore.mapper.BookMapper;
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.proto.BookResponse;
+import com.sever0x.bookstore.repository.BookStorage;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookCatalogExporterTest {
+
+    @Mock
+    private BookMapper bookMapper;
+
+    @Mock
+    private BookStorage bookStorage;
+
+    @Test
+    void export_shouldSendOnlyWhatSlowClientRequestsAndResumeWhenReady() {
+        int count = BookCatalogExporter.BATCH_SIZE + 3;
+        List<Book> books = IntStream.range(0, count)
+                .mapToObj(i -> new Book(new UUID(0, i), "Title " + i, "Author", "978%010d".formatted(i), i))
+                .toList();
+        List<Book> firstBatch = books.subList(0, BookCatalogExporter.BATCH_SIZE);
+        List<Book> secondBatch = books.subList(BookCatalogExporter.BATCH_SIZE, count);
+        ScrollPosition afterFirstBatch = ScrollPosition.forward(Map.of("id", firstBatch.get(firstBatch.size() - 1).getId()));
+        when(bookStorage.findAllBy(eq(ScrollPosition.keyset()), any(Sort.class), eq(Limit.of(BookCatalogExporter.BATCH_SIZE))))
+                .thenReturn(Window.from(firstBatch, index -> ScrollPosition.forward(Map.of("id", firstBatch.get(index).getId())), true));
+        when(bookStorage.findAllBy(eq(afterFirstBatch), any(Sort.class), eq(Limit.of(BookCatalogExporter.BATCH_SIZE))))
+                .thenReturn(Window.from(secondBatch, index -> ScrollPosition.forward(Map.of("id", secondBatch.get(index).getId())), false));
+        when(bookMapper.bookToBookResponse(any(Book.class)))
+                .thenAnswer(invocation -> BookResponse.newBuilder().setId(invocation.<Book>getArgument(0).getId().toString()).build());
+        SlowClient client = new SlowClient(2);
+
+        new BookCatalogExporter(bookMapper, bookStorage).export(client);
+
+        // the export returned without waiting for the client
+        assertEquals(2, client.received.size());
+        assertFalse(client.completed);
+
+        while (!client.completed) {
+            client.consume(7);
+        }
+
+        assertEquals(books.stream().map(book -> book.getId().toString()).toList(),
+                client.received.stream().map(BookResponse::getId).toList());
+        verify(bookStorage, times(2)).findAllBy(any(ScrollPosition.class), any(Sort.class), any(Limit.class));
+    }
+
+    @Test
+    void export_shouldStopWhenClientCancels() {
+        Book book = new Book(UUID.randomUUID(), "Title", "Author", "9780000000001", 1);
+        when(bookStorage.findAllBy(eq(ScrollPosition.keyset()), any(Sort.class), any(Limit.class)))
+                .thenReturn(Window.from(List.of(book, book, book), index -> ScrollPosition.forward(Map.of("id", book.getId())), true));
+        when(bookMapper.bookToBookResponse(book)).thenReturn(BookResponse.getDefaultInstance());
+        SlowClient client = new SlowClient(1);
+
+        new BookCatalogExporter(bookMapper, bookStorage).export(client);
+        client.cancel();
+        client.consume(5);
+
+        assertEquals(1, client.received.size());
+        assertFalse(client.completed);
+    }
+
+    /**
+     * A client that is ready for the number of messages it requested, calling the ready handler
+     * like the call's executor once it requests more.
+     */
+    private static final class SlowClient extends ServerCallStreamObserver<BookResponse> {
+
+        private final List<BookResponse> received = new ArrayList<>();
+
+        private int credit;
+
+        private boolean cancelled;
+
+        private boolean completed;
+
+        private Runnable onReadyHandler;
+
+        private Runnable onCancelHandler;
+
+        private SlowClient(int credit) {
+            this.credit = credit;
+        }
+
+        private void consume(int messages) {
+            credit += messages;
+            onReadyHandler.run();
+        }
+
+        private void cancel() {
+            cancelled = true;
+            onCancelHandler.run();
+        }
+
+        @Override
+        public boolean isReady() {
+            return credit > 0;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public void onNext(BookResponse value) {
+            credit--;
+            received.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new AssertionError("Export failed", t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
@@ -1,9 +1,23 @@
 package com.sever0x.bookstore.service;
 
+import com.google.protobuf.FieldMask;
+import com.sever0x.bookstore.cache.BookCache;
+import com.sever0x.bookstore.cache.BookReadCoalescer;
+import com.sever0x.bookstore.config.BookCacheProperties;
+import com.sever0x.bookstore.config.CoalescingProperties;
+import com.sever0x.bookstore.config.IngestProperties;
+import com.sever0x.bookstore.config.InventoryStatsProperties;
+import com.sever0x.bookstore.config.SearchIndexProperties;
+import com.sever0x.bookstore.event.BookChangedEvent;
+import com.sever0x.bookstore.feed.InventoryFeed;
+import com.sever0x.bookstore.index.BookSearchIndex;
+import com.sever0x.bookstore.index.IsbnIndex;
+import com.sever0x.bookstore.inventory.InventoryStats;
+import com.sever0x.bookstore.inventory.StockLedger;
 import com.sever0x.bookstore.mapper.BookMapper;
 import com.sever0x.bookstore.model.Book;
 import com.sever0x.bookstore.proto.*;
-import com.sever0x.bookstore.repository.BookRepository;
+import com.sever0x.bookstore.repository.BookStorage;
 import com.sever0x.bookstore.validation.BookValidator;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -11,20 +25,39 @@ import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,7 +72,25 @@ class BookServiceImplUnitTest {
     private BookValidator bookValidator;
 
     @Mock
-    private BookRepository bookRepository;
+    private BookStorage bookStorage;
+
+    @Mock
+    private BookBatchWriter bookBatchWriter;
+
+    @Mock
+    private BookCatalogExporter bookCatalogExporter;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private IsbnIndex isbnIndex;
+
+    @Mock
+    private InventoryFeed inventoryFeed;
 
     @Mock
     private StreamObserver<BookResponse> responseObserver;
@@ -50,9 +101,38 @@ class BookServiceImplUnitTest {
     @Mock
     private StreamObserver<DeleteBookResponse> deleteBookResponseObserver;
 
+    @Mock
+    private StreamObserver<AddBooksResponse> addBooksResponseObserver;
+
+    @Mock
+    private StreamObserver<QuantityResponse> quantityResponseObserver;
+
+    @Mock
+    private StreamObserver<GetBooksByIsbnResponse> getBooksByIsbnResponseObserver;
+
+    @Mock
+    private StreamObserver<SearchBooksResponse> searchBooksResponseObserver;
+
+    @Mock
+    private StreamObserver<GetBooksByIdsResponse> getBooksByIdsResponseObserver;
+
+    private final IngestProperties ingestProperties = new IngestProperties();
+
+    private BookSearchIndex bookSearchIndex;
+
+    private InventoryStats inventoryStats;
+
+    private BookReadCoalescer readCoalescer;
+
     @BeforeEach
     void setUp() {
-        bookService = new BookServiceImpl(bookMapper, bookValidator, bookRepository);
+        bookSearchIndex = new BookSearchIndex(new SearchIndexProperties(), bookStorage, mock(PlatformTransactionManager.class));
+        inventoryStats = new InventoryStats(new InventoryStatsProperties(), bookStorage, mock(PlatformTransactionManager.class));
+        readCoalescer = new BookReadCoalescer(new CoalescingProperties());
+        bookService = new BookServiceImpl(bookMapper, bookValidator, bookStorage, bookBatchWriter,
+                ingestProperties, bookCatalogExporter, new BookCache(new BookCacheProperties()), eventPublisher, stockLedger, isbnIndex,
+                bookSearchIndex, inventoryFeed, readCoalescer, inventoryStats);
+        lenient().when(stockLedger.withPendingQuantity(any())).thenAnswer(invocation -> invocation.getArgument(0));
     }
 
     @Test
@@ -80,7 +160,7 @@ class BookServiceImplUnitTest {
         when(bookValidator.validateRequest(anyString(), anyString(), anyString(), anyInt()))
                 .thenReturn(new BookValidator.ValidationResult());
         when(bookMapper.addBookRequestToBook(request)).thenReturn(book);
-        when(bookRepository.save(book)).thenReturn(book);
+        when(bookStorage.saveAndFlush(book)).thenReturn(book);
         when(bookMapper.bookToBookResponse(book)).thenReturn(expectedResponse);
 
         bookService.addBook(request, responseObserver);
@@ -89,6 +169,31 @@ class BookServiceImplUnitTest {
         verify(responseObserver, times(1)).onCompleted();
     }
 
+    @Test
+    void addBook_shouldReturnAlreadyExistsWhenIsbnIsTakenConcurrently() {
+        AddBookRequest request = AddBookRequest.newBuilder()
+                .setTitle("Book Title")
+                .setAuthor("Book Author")
+                .setIsbn("1234567890123")
+                .setQuantity(10)
+                .build();
+        Book book = new Book();
+        book.setIsbn("1234567890123");
+
+        when(bookValidator.validateRequest(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(new BookValidator.ValidationResult());
+        when(bookMapper.addBookRequestToBook(request)).thenReturn(book);
+        when(bookStorage.saveAndFlush(book)).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        bookService.addBook(request, responseObserver);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(error.capture());
+        assertEquals(Status.Code.ALREADY_EXISTS, Status.fromThrowable(error.getValue()).getCode());
+        verify(responseObserver, never()).onNext(any());
+        verify(eventPublisher, never()).publishEvent(any(BookChangedEvent.class));
+    }
+
     @Test
     void addBook_shouldHandleInvalidRequest() {
         AddBookRequest request = AddBookRequest.newBuilder()
@@ -132,7 +237,7 @@ class BookServiceImplUnitTest {
                 .setQuantity(10)
                 .build();
 
-        when(bookRepository.findById(UUID.fromString(bookId))).thenReturn(Optional.of(book));
+        when(bookStorage.findById(UUID.fromString(bookId))).thenReturn(Optional.of(book));
         when(bookMapper.bookToBookResponse(book)).thenReturn(expectedResponse);
 
         bookService.getBook(request, responseObserver);
@@ -146,18 +251,312 @@ class BookServiceImplUnitTest {
         String bookId = UUID.randomUUID().toString();
         GetBookRequest request = GetBookRequest.newBuilder().setId(bookId).build();
 
-        when(bookRepository.findById(UUID.fromString(bookId))).thenReturn(Optional.empty());
+        when(bookStorage.findById(UUID.fromString(bookId))).thenReturn(Optional.empty());
 
-        try {
-            bookService.getBook(request, responseObserver);
-        } catch (StatusRuntimeException e) {
-            assertEquals(Status.NOT_FOUND.getCode(), e.getStatus().getCode());
-            assertEquals("Book not found with id: " + bookId, e.getStatus().getDescription());
-        }
+        bookService.getBook(request, responseObserver);
+
+        ArgumentCaptor<StatusRuntimeException> error = ArgumentCaptor.forClass(StatusRuntimeException.class);
+        verify(responseObserver).onError(error.capture());
+        assertEquals(Status.NOT_FOUND.getCode(), error.getValue().getStatus().getCode());
+        assertEquals("Book not found with id: " + bookId, error.getValue().getStatus().getDescription());
         verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+
+    @Test
+    void getBook_shouldServeRepeatedLookupsFromCache() {
+        String bookId = UUID.randomUUID().toString();
+        GetBookRequest request = GetBookRequest.newBuilder().setId(bookId).build();
+
+        Book book = new Book(UUID.fromString(bookId), "Book Title", "Book Author", "1234567890123", 10);
+        BookResponse expectedResponse = BookResponse.newBuilder().setId(bookId).build();
+
+        when(bookStorage.findById(UUID.fromString(bookId))).thenReturn(Optional.of(book));
+        when(bookMapper.bookToBookResponse(book)).thenReturn(expectedResponse);
+
+        bookService.getBook(request, responseObserver);
+        bookService.getBook(request, responseObserver);
+
+        verify(bookStorage, times(1)).findById(UUID.fromString(bookId));
+        verify(responseObserver, times(2)).onNext(expectedResponse);
+    }
+
+    @Test
+    void getBook_shouldReturnOnlyFieldsOfReadMask() {
+        String bookId = UUID.randomUUID().toString();
+        GetBookRequest request = GetBookRequest.newBuilder()
+                .setId(bookId)
+                .setReadMask(FieldMask.newBuilder().addPaths("title").addPaths("quantity"))
+                .build();
+
+        Book book = new Book(UUID.fromString(bookId), "Book Title", "Book Author", "1234567890123", 10);
+        when(bookStorage.findById(UUID.fromString(bookId))).thenReturn(Optional.of(book));
+        when(bookMapper.bookToBookResponse(book)).thenReturn(BookResponse.newBuilder()
+                .setId(bookId)
+                .setTitle("Book Title")
+                .setAuthor("Book Author")
+                .setIsbn("1234567890123")
+                .setQuantity(10)
+                .build());
+
+        bookService.getBook(request, responseObserver);
+
+        verify(responseObserver, times(1)).onNext(BookResponse.newBuilder()
+                .setTitle("Book Title")
+                .setQuantity(10)
+                .build());
+        verify(responseObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void getBook_shouldAnswerNotModifiedWhileVersionIsCurrent() {
+        UUID bookId = UUID.randomUUID();
+        when(bookStorage.findVersionById(bookId)).thenReturn(Optional.of(3L));
+
+        bookService.getBook(GetBookRequest.newBuilder().setId(bookId.toString()).setKnownVersion(3).build(),
+                responseObserver);
+
+        verify(responseObserver, times(1)).onNext(BookResponse.newBuilder()
+                .setId(bookId.toString())
+                .setVersion(3)
+                .setNotModified(true)
+                .build());
+        verify(bookStorage, never()).findById(any());
+    }
+
+    @Test
+    void getBook_shouldRejectUnknownReadMaskField() {
+        GetBookRequest request = GetBookRequest.newBuilder()
+                .setId(UUID.randomUUID().toString())
+                .setReadMask(FieldMask.newBuilder().addPaths("price"))
+                .build();
+
+        bookService.getBook(request, responseObserver);
+
+        ArgumentCaptor<StatusRuntimeException> captor = ArgumentCaptor.forClass(StatusRuntimeException.class);
+        verify(responseObserver, times(1)).onError(captor.capture());
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), captor.getValue().getStatus().getCode());
+        verify(bookStorage, never()).findById(any());
+    }
+
+    @Test
+    void getBookByIsbn_shouldResolveIdThroughIndex() {
+        UUID bookId = UUID.randomUUID();
+        Book book = new Book(bookId, "Book Title", "Book Author", "1234567890123", 10);
+        BookResponse expectedResponse = BookResponse.newBuilder()
+                .setId(bookId.toString())
+                .setIsbn("1234567890123")
+                .build();
+
+        when(bookValidator.isValidISBN("1234567890123")).thenReturn(true);
+        when(isbnIndex.find("1234567890123")).thenReturn(Optional.of(bookId));
+        when(bookStorage.findById(bookId)).thenReturn(Optional.of(book));
+        when(bookMapper.bookToBookResponse(book)).thenReturn(expectedResponse);
+
+        bookService.getBookByIsbn(GetBookByIsbnRequest.newBuilder().setIsbn("1234567890123").build(), responseObserver);
+
+        verify(bookStorage, never()).findByIsbn(anyString());
+        verify(responseObserver, times(1)).onNext(expectedResponse);
         verify(responseObserver, times(1)).onCompleted();
     }
 
+    @Test
+    void getBooksByIds_shouldLoadMissesWithOneQueryInRequestOrder() {
+        Book first = new Book(UUID.randomUUID(), "Book 1", "Author 1", "1234567890123", 5);
+        Book second = new Book(UUID.randomUUID(), "Book 2", "Author 2", "2345678901234", 3);
+        UUID missingId = UUID.randomUUID();
+        BookResponse firstResponse = BookResponse.newBuilder().setId(first.getId().toString()).build();
+        BookResponse secondResponse = BookResponse.newBuilder().setId(second.getId().toString()).build();
+
+        when(bookStorage.findAllById(any())).thenReturn(List.of(first, second));
+        when(bookMapper.bookToBookResponse(first)).thenReturn(firstResponse);
+        when(bookMapper.bookToBookResponse(second)).thenReturn(secondResponse);
+
+        GetBooksByIdsRequest request = GetBooksByIdsRequest.newBuilder()
+                .addIds(second.getId().toString())
+                .addIds(missingId.toString())
+                .addIds(first.getId().toString())
+                .addIds(second.getId().toString())
+                .build();
+        bookService.getBooksByIds(request, getBooksByIdsResponseObserver);
+
+        verify(bookStorage, times(1)).findAllById(any());
+        verify(getBooksByIdsResponseObserver, times(1)).onNext(GetBooksByIdsResponse.newBuilder()
+                .addBooks(secondResponse)
+                .addBooks(firstResponse)
+                .addMissingIds(missingId.toString())
+                .build());
+        verify(getBooksByIdsResponseObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void getBooksByIsbn_shouldReportMissingIsbns() {
+        Book book = new Book(UUID.randomUUID(), "Book Title", "Book Author", "1234567890123", 10);
+        BookResponse bookResponse = BookResponse.newBuilder()
+                .setId(book.getId().toString())
+                .setIsbn("1234567890123")
+                .build();
+
+        when(bookValidator.isValidISBN(anyString())).thenReturn(true);
+        when(bookStorage.findAllByIsbnIn(List.of("1234567890123", "2345678901234"))).thenReturn(List.of(book));
+        when(bookMapper.bookToBookResponse(book)).thenReturn(bookResponse);
+
+        GetBooksByIsbnRequest request = GetBooksByIsbnRequest.newBuilder()
+                .addIsbns("1234567890123")
+                .addIsbns("2345678901234")
+                .addIsbns("1234567890123")
+                .build();
+        bookService.getBooksByIsbn(request, getBooksByIsbnResponseObserver);
+
+        verify(isbnIndex, times(1)).put("1234567890123", book.getId());
+        verify(getBooksByIsbnResponseObserver, times(1)).onNext(GetBooksByIsbnResponse.newBuilder()
+                .addBooks(bookResponse)
+                .addMissingIsbns("2345678901234")
+                .build());
+        verify(getBooksByIsbnResponseObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void searchBooks_shouldRankTitleMatchesFirst() {
+        Book byAuthor = new Book(UUID.randomUUID(), "Collected Stories", "Ursula Le Guin", "1234567890123", 5);
+        Book byTitle = new Book(UUID.randomUUID(), "Ursula's Garden", "Jane Doe", "2345678901234", 3);
+        Book unrelated = new Book(UUID.randomUUID(), "Dune", "Frank Herbert", "3456789012345", 7);
+        for (Book book : List.of(byAuthor, byTitle, unrelated)) {
+            bookSearchIndex.index(book.getId(), book.getTitle(), book.getAuthor());
+        }
+        BookResponse byAuthorResponse = BookResponse.newBuilder().setId(byAuthor.getId().toString()).build();
+        BookResponse byTitleResponse = BookResponse.newBuilder().setId(byTitle.getId().toString()).build();
+        when(bookStorage.findAllById(any())).thenReturn(List.of(byAuthor, byTitle));
+        when(bookMapper.bookToBookResponse(byAuthor)).thenReturn(byAuthorResponse);
+        when(bookMapper.bookToBookResponse(byTitle)).thenReturn(byTitleResponse);
+
+        SearchBooksRequest request = SearchBooksRequest.newBuilder()
+                .setQuery("URS")
+                .setPrefix(true)
+                .setPageNumber(0)
+                .setPageSize(10)
+                .build();
+        bookService.searchBooks(request, searchBooksResponseObserver);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<UUID>> ids = ArgumentCaptor.forClass(Iterable.class);
+        verify(bookStorage, times(1)).findAllById(ids.capture());
+        assertEquals(Set.of(byAuthor.getId(), byTitle.getId()), Set.copyOf((List<UUID>) ids.getValue()));
+        verify(bookStorage, never()).findById(any());
+        verify(searchBooksResponseObserver, times(1)).onNext(SearchBooksResponse.newBuilder()
+                .setCurrentPage(0)
+                .setTotalHits(2)
+                .addBooks(byTitleResponse)
+                .addBooks(byAuthorResponse)
+                .build());
+        verify(searchBooksResponseObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void getLowStock_shouldPageLowestQuantitiesFirstWithoutScanningCatalog() {
+        Book empty = new Book(UUID.randomUUID(), "Empty", "Jane Doe", "1234567890123", 0);
+        Book low = new Book(UUID.randomUUID(), "Low", "Jane Doe", "2345678901234", 2);
+        Book plenty = new Book(UUID.randomUUID(), "Plenty", "John Roe", "3456789012345", 50);
+        for (Book book : List.of(empty, low, plenty)) {
+            inventoryStats.put(book.getId(), book.getAuthor(), book.getQuantity(), book.getVersion());
+        }
+        BookResponse emptyResponse = BookResponse.newBuilder().setId(empty.getId().toString()).build();
+        BookResponse lowResponse = BookResponse.newBuilder().setId(low.getId().toString()).build();
+        when(bookStorage.findAllById(any())).thenAnswer(invocation -> Stream.of(empty, low, plenty)
+                .filter(book -> invocation.<Iterable<UUID>>getArgument(0).iterator().next().equals(book.getId()))
+                .toList());
+        when(bookMapper.bookToBookResponse(empty)).thenReturn(emptyResponse);
+        when(bookMapper.bookToBookResponse(low)).thenReturn(lowResponse);
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetLowStockResponse> observer = mock(StreamObserver.class);
+
+        bookService.getLowStock(GetLowStockRequest.newBuilder().setThreshold(5).setPageSize(1).build(), observer);
+
+        ArgumentCaptor<GetLowStockResponse> first = ArgumentCaptor.forClass(GetLowStockResponse.class);
+        verify(observer).onNext(first.capture());
+        assertEquals(2, first.getValue().getTotalCount());
+        assertEquals(List.of(emptyResponse), first.getValue().getBooksList());
+        assertFalse(first.getValue().getNextPageToken().isEmpty());
+
+        bookService.getLowStock(GetLowStockRequest.newBuilder().setThreshold(5).setPageSize(1)
+                .setPageToken(first.getValue().getNextPageToken()).build(), observer);
+
+        verify(observer).onNext(GetLowStockResponse.newBuilder().setTotalCount(2).addBooks(lowResponse).build());
+        verify(bookStorage, times(2)).findAllById(any());
+        verify(bookStorage, never()).findAllById(List.of(plenty.getId()));
+        verify(bookStorage, never()).streamAll();
+    }
+
+    @Test
+    void getInventoryStats_shouldReportTotalsMaintainedFromChanges() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        inventoryStats.onBookChanged(BookChangedEvent.created(first, BookResponse.newBuilder()
+                .setAuthor("Jane Doe").setQuantity(3).setVersion(1).build()));
+        inventoryStats.onBookChanged(BookChangedEvent.created(second, BookResponse.newBuilder()
+                .setAuthor("John Roe").setQuantity(8).setVersion(1).build()));
+        inventoryStats.onBookChanged(BookChangedEvent.quantityChanged(first, 0, 2L));
+        @SuppressWarnings("unchecked")
+        StreamObserver<InventoryStatsResponse> observer = mock(StreamObserver.class);
+
+        bookService.getInventoryStats(GetInventoryStatsRequest.newBuilder()
+                .addAuthors("Jane Doe")
+                .setTopAuthors(1)
+                .build(), observer);
+
+        verify(observer).onNext(InventoryStatsResponse.newBuilder()
+                .setTotalTitles(2)
+                .setTotalUnits(8)
+                .setOutOfStock(1)
+                .addAuthors(AuthorStats.newBuilder().setAuthor("Jane Doe").setTitles(1).setUnits(0).setOutOfStock(1))
+                .addAuthors(AuthorStats.newBuilder().setAuthor("John Roe").setTitles(1).setUnits(8))
+                .build());
+        verify(observer).onCompleted();
+        verifyNoInteractions(bookStorage);
+    }
+
+    @Test
+    void getBooks_shouldShareOneQueryBetweenConcurrentIdenticalRequests() {
+        int callers = 32;
+        GetBooksRequest request = GetBooksRequest.newBuilder()
+                .setPageNumber(0)
+                .setPageSize(10)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .build();
+        Book book = new Book(UUID.randomUUID(), "Book 1", "Author 1", "1234567890123", 5);
+        BookResponse bookResponse = BookResponse.newBuilder().setId(book.getId().toString()).build();
+
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookStorage.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return new PageImpl<>(List.of(book));
+        });
+        when(bookMapper.bookToBookResponse(book)).thenReturn(bookResponse);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                executor.execute(() -> bookService.getBooks(request, getBooksResponseObserver));
+            }
+            // the first caller holds the query until every other caller waits for it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (readCoalescer.pageWaiterCount() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(callers - 1, readCoalescer.pageWaiterCount());
+            release.countDown();
+        }
+
+        verify(bookStorage, times(1)).findAll(any(Pageable.class));
+        verify(getBooksResponseObserver, times(callers)).onNext(GetBooksResponse.newBuilder()
+                .setCurrentPage(0)
+                .setTotalPages(1)
+                .addBooks(bookResponse)
+                .setDigest(PageDigests.of(BookFields.of(FieldMask.getDefaultInstance()), 1, false, List.of(book)))
+                .build());
+        verify(getBooksResponseObserver, times(callers)).onCompleted();
+    }
+
     @Test
     void getBooks_shouldReturnBooksSuccessfully() {
         int pageNumber = 0;
@@ -198,9 +597,10 @@ class BookServiceImplUnitTest {
                 .setCurrentPage(pageNumber)
                 .setTotalPages(booksPage.getTotalPages())
                 .addAllBooks(Arrays.asList(bookResponse1, bookResponse2))
+                .setDigest(PageDigests.of(BookFields.of(FieldMask.getDefaultInstance()), 1, false, books))
                 .build();
 
-        when(bookRepository.findAll(any(Pageable.class))).thenReturn(booksPage);
+        when(bookStorage.findAll(any(Pageable.class))).thenReturn(booksPage);
         when(bookMapper.bookToBookResponse(book1)).thenReturn(bookResponse1);
         when(bookMapper.bookToBookResponse(book2)).thenReturn(bookResponse2);
 
@@ -210,6 +610,107 @@ class BookServiceImplUnitTest {
         verify(getBooksResponseObserver, times(1)).onCompleted();
     }
 
+    @Test
+    void getBooks_shouldProjectColumnsOfReadMask() {
+        GetBooksRequest request = GetBooksRequest.newBuilder()
+                .setPageNumber(0)
+                .setPageSize(10)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .setReadMask(FieldMask.newBuilder().addPaths("title"))
+                .build();
+
+        Book book = new Book();
+        book.setId(UUID.randomUUID());
+        book.setTitle("Book 1");
+        when(bookStorage.findAllProjected(eq(Set.of("title", "version")), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(book)));
+
+        bookService.getBooks(request, getBooksResponseObserver);
+
+        verify(bookStorage, never()).findAll(any(Pageable.class));
+        verify(getBooksResponseObserver, times(1)).onNext(GetBooksResponse.newBuilder()
+                .setCurrentPage(0)
+                .setTotalPages(1)
+                .addBooks(BookResponse.newBuilder().setTitle("Book 1"))
+                .setDigest(PageDigests.of(BookFields.of(request.getReadMask()), 1, false, List.of(book)))
+                .build());
+        verify(getBooksResponseObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void getBooks_shouldAnswerNotModifiedWhileDigestIsCurrent() {
+        GetBooksRequest request = GetBooksRequest.newBuilder()
+                .setPageNumber(0)
+                .setPageSize(10)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .build();
+        Book book = new Book(UUID.randomUUID(), "Book 1", "Author 1", "1234567890123", 5);
+        when(bookStorage.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(book)));
+        when(bookMapper.bookToBookResponse(book)).thenReturn(BookResponse.newBuilder().setId(book.getId().toString()).build());
+
+        bookService.getBooks(request, getBooksResponseObserver);
+        ArgumentCaptor<GetBooksResponse> captor = ArgumentCaptor.forClass(GetBooksResponse.class);
+        verify(getBooksResponseObserver).onNext(captor.capture());
+        String digest = captor.getValue().getDigest();
+
+        Book versionOnly = new Book();
+        versionOnly.setId(book.getId());
+        versionOnly.setTitle(book.getTitle());
+        when(bookStorage.findAllProjected(eq(Set.of("version")), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(versionOnly)));
+        bookService.getBooks(request.toBuilder().setKnownDigest(digest).build(), getBooksResponseObserver);
+
+        verify(getBooksResponseObserver, times(2)).onNext(captor.capture());
+        assertTrue(captor.getValue().getNotModified());
+        assertEquals(0, captor.getValue().getBooksCount());
+        verify(bookStorage, times(1)).findAll(any(Pageable.class));
+
+        versionOnly.setVersion(2L);
+        bookService.getBooks(request.toBuilder().setKnownDigest(digest).build(), getBooksResponseObserver);
+
+        verify(getBooksResponseObserver, times(3)).onNext(captor.capture());
+        assertFalse(captor.getValue().getNotModified());
+        verify(bookStorage, times(2)).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void getBooks_shouldSeekByPageTokenInKeysetMode() {
+        Book book1 = new Book(UUID.randomUUID(), "Book 1", "Author 1", "1234567890123", 5);
+        Book book2 = new Book(UUID.randomUUID(), "Book 2", "Author 2", "2345678901234", 3);
+        Window<Book> firstWindow = Window.from(List.of(book1), index ->
+                ScrollPosition.forward(Map.of("title", book1.getTitle(), "id", book1.getId())), true);
+        Window<Book> secondWindow = Window.from(List.of(book2), index ->
+                ScrollPosition.forward(Map.of("title", book2.getTitle(), "id", book2.getId())), false);
+
+        when(bookStorage.findAllBy(eq(ScrollPosition.keyset()), any(Sort.class), eq(Limit.of(1))))
+                .thenReturn(firstWindow);
+        when(bookStorage.findAllBy(eq(ScrollPosition.forward(Map.of("title", book1.getTitle(), "id", book1.getId()))),
+                any(Sort.class), eq(Limit.of(1))))
+                .thenReturn(secondWindow);
+
+        GetBooksRequest firstRequest = GetBooksRequest.newBuilder()
+                .setKeyset(true)
+                .setPageSize(1)
+                .setSortBy("title")
+                .setDirection("ASC")
+                .build();
+        bookService.getBooks(firstRequest, getBooksResponseObserver);
+
+        ArgumentCaptor<GetBooksResponse> captor = ArgumentCaptor.forClass(GetBooksResponse.class);
+        verify(getBooksResponseObserver).onNext(captor.capture());
+        String nextPageToken = captor.getValue().getNextPageToken();
+        assertFalse(nextPageToken.isEmpty());
+
+        bookService.getBooks(firstRequest.toBuilder().setPageToken(nextPageToken).build(), getBooksResponseObserver);
+
+        verify(getBooksResponseObserver, times(2)).onNext(captor.capture());
+        assertTrue(captor.getValue().getNextPageToken().isEmpty());
+        verify(bookStorage, never()).count();
+        verify(bookStorage, never()).findAll(any(Pageable.class));
+    }
+
     @Test
     void updateBook_shouldUpdateBookSuccessfully() {
         String bookId = UUID.randomUUID().toString();
@@ -243,7 +744,7 @@ class BookServiceImplUnitTest {
 
         bookService.updateBook(request, responseObserver);
 
-        verify(bookRepository, times(1)).save(book);
+        verify(bookStorage, times(1)).saveAndFlush(book);
         verify(responseObserver, times(1)).onNext(expectedResponse);
         verify(responseObserver, times(1)).onCompleted();
     }
@@ -283,11 +784,11 @@ class BookServiceImplUnitTest {
                 .setSuccess(true)
                 .build();
 
-        when(bookRepository.existsById(UUID.fromString(bookId))).thenReturn(true);
+        when(bookStorage.existsById(UUID.fromString(bookId))).thenReturn(true);
 
         bookService.deleteBook(request, deleteBookResponseObserver);
 
-        verify(bookRepository, times(1)).deleteById(UUID.fromString(bookId));
+        verify(bookStorage, times(1)).deleteById(UUID.fromString(bookId));
         verify(deleteBookResponseObserver, times(1)).onNext(expectedResponse);
         verify(deleteBookResponseObserver, times(1)).onCompleted();
     }
@@ -297,7 +798,7 @@ class BookServiceImplUnitTest {
         String bookId = UUID.randomUUID().toString();
         DeleteBookRequest request = DeleteBookRequest.newBuilder().setId(bookId).build();
 
-        when(bookRepository.existsById(UUID.fromString(bookId))).thenReturn(false);
+        when(bookStorage.existsById(UUID.fromString(bookId))).thenReturn(false);
 
         try {
             bookService.deleteBook(request, deleteBookResponseObserver);
@@ -306,4 +807,139 @@ class BookServiceImplUnitTest {
             assertEquals("Book not found with id: " + bookId, e.getStatus().getDescription());
         }
     }
+
+    @Test
+    void addBooks_shouldPersistValidBooksInChunks() {
+        ingestProperties.setChunkSize(2);
+        AddBookRequest valid = AddBookRequest.newBuilder()
+                .setTitle("Book Title")
+                .setAuthor("Book Author")
+                .setIsbn("1234567890123")
+                .setQuantity(1)
+                .build();
+        AddBookRequest invalid = valid.toBuilder().setIsbn("123").build();
+        AddBookRequest second = valid.toBuilder().setIsbn("1234567890124").build();
+        AddBookRequest third = valid.toBuilder().setIsbn("1234567890125").build();
+
+        BookValidator.ValidationResult invalidResult = new BookValidator.ValidationResult();
+        invalidResult.addError("ISBN must be a valid 13-digit code");
+        when(bookValidator.validateRequest(anyString(), anyString(), anyString(), anyInt()))
+                .thenAnswer(invocation -> "123".equals(invocation.getArgument(2))
+                        ? invalidResult
+                        : new BookValidator.ValidationResult());
+
+        BookResponse bookResponse = BookResponse.newBuilder().setId(UUID.randomUUID().toString()).build();
+        when(bookMapper.addBookRequestToBook(any(AddBookRequest.class))).thenAnswer(invocation -> toBook(invocation.getArgument(0)));
+        when(bookBatchWriter.saveChunk(anyList())).thenAnswer(invocation -> invocation.<List<Book>>getArgument(0)
+                .stream()
+                .map(saved -> bookResponse)
+                .toList());
+
+        StreamObserver<AddBookRequest> requestObserver = bookService.addBooks(addBooksResponseObserver);
+        requestObserver.onNext(valid);
+        requestObserver.onNext(invalid);
+        requestObserver.onNext(second);
+        requestObserver.onNext(third);
+        requestObserver.onCompleted();
+
+        ArgumentCaptor<AddBooksResponse> captor = ArgumentCaptor.forClass(AddBooksResponse.class);
+        verify(bookBatchWriter, times(2)).saveChunk(anyList());
+        verify(addBooksResponseObserver, times(1)).onNext(captor.capture());
+        verify(addBooksResponseObserver, times(1)).onCompleted();
+
+        AddBooksResponse response = captor.getValue();
+        assertEquals(4, response.getReceived());
+        assertEquals(3, response.getAdded());
+        assertEquals(1, response.getRejected());
+        assertEquals(1, response.getResults(1).getIndex());
+        assertEquals("ISBN must be a valid 13-digit code", response.getResults(1).getError());
+        assertEquals(bookResponse, response.getResults(3).getBook());
+    }
+
+    @Test
+    void addBooks_shouldRejectOnlyBooksWithDuplicateIsbns() {
+        ingestProperties.setChunkSize(10);
+        AddBookRequest first = AddBookRequest.newBuilder()
+                .setTitle("Book Title")
+                .setAuthor("Book Author")
+                .setIsbn("1234567890123")
+                .setQuantity(1)
+                .build();
+        AddBookRequest existing = first.toBuilder().setIsbn("1234567890124").build();
+        AddBookRequest addedConcurrently = first.toBuilder().setIsbn("1234567890125").build();
+        when(bookValidator.validateRequest(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(new BookValidator.ValidationResult());
+        when(bookMapper.addBookRequestToBook(any(AddBookRequest.class))).thenAnswer(invocation -> toBook(invocation.getArgument(0)));
+        when(bookBatchWriter.findExistingIsbns(anyList())).thenReturn(Set.of("1234567890124"));
+        BookResponse firstResponse = BookResponse.newBuilder().setIsbn("1234567890123").build();
+        when(bookBatchWriter.saveChunk(anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            if (books.stream().anyMatch(book -> "1234567890125".equals(book.getIsbn()))) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+            }
+            return List.of(firstResponse);
+        });
+
+        StreamObserver<AddBookRequest> requestObserver = bookService.addBooks(addBooksResponseObserver);
+        requestObserver.onNext(first);
+        requestObserver.onNext(existing);
+        requestObserver.onNext(first);
+        requestObserver.onNext(addedConcurrently);
+        requestObserver.onCompleted();
+
+        ArgumentCaptor<AddBooksResponse> captor = ArgumentCaptor.forClass(AddBooksResponse.class);
+        verify(addBooksResponseObserver).onNext(captor.capture());
+        AddBooksResponse response = captor.getValue();
+        assertEquals(1, response.getAdded());
+        assertEquals(3, response.getRejected());
+        assertEquals(firstResponse, response.getResults(0).getBook());
+        assertEquals("Book already exists with ISBN: 1234567890124", response.getResults(1).getError());
+        assertEquals("ISBN 1234567890123 repeats the book at index 0", response.getResults(2).getError());
+        assertEquals("Book already exists with ISBN: 1234567890125", response.getResults(3).getError());
+        // the chunk, then its books one by one
+        verify(bookBatchWriter, times(3)).saveChunk(anyList());
+    }
+
+    @Test
+    void adjustQuantity_shouldReturnNewQuantity() {
+        UUID bookId = UUID.randomUUID();
+        AdjustQuantityRequest request = AdjustQuantityRequest.newBuilder()
+                .setId(bookId.toString())
+                .setDelta(-3)
+                .build();
+
+        when(stockLedger.adjust(bookId, -3)).thenReturn(new StockLedger.Adjustment(StockLedger.Outcome.APPLIED, 7));
+
+        bookService.adjustQuantity(request, quantityResponseObserver);
+
+        verify(bookStorage, never()).saveAndFlush(any());
+        verify(quantityResponseObserver, times(1)).onNext(QuantityResponse.newBuilder()
+                .setId(bookId.toString())
+                .setQuantity(7)
+                .build());
+        verify(quantityResponseObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void reserveStock_shouldRejectInsufficientStock() {
+        UUID bookId = UUID.randomUUID();
+        ReserveStockRequest request = ReserveStockRequest.newBuilder()
+                .setId(bookId.toString())
+                .setQuantity(5)
+                .build();
+
+        when(stockLedger.adjust(bookId, -5))
+                .thenReturn(new StockLedger.Adjustment(StockLedger.Outcome.INSUFFICIENT_STOCK, 2));
+
+        bookService.reserveStock(request, quantityResponseObserver);
+
+        ArgumentCaptor<StatusRuntimeException> captor = ArgumentCaptor.forClass(StatusRuntimeException.class);
+        verify(quantityResponseObserver, times(1)).onError(captor.capture());
+        assertEquals(Status.FAILED_PRECONDITION.getCode(), captor.getValue().getStatus().getCode());
+        verify(quantityResponseObserver, never()).onNext(any());
+    }
+
+    private static Book toBook(AddBookRequest request) {
+        return new Book(null, request.getTitle(), request.getAuthor(), request.getIsbn(), request.getQuantity());
+    }
 }
@@ -2,12 +2,10 @@ package com.sever0x.bookstore.service;
 
 import com.sever0x.bookstore.config.GrpcClientTestConfiguration;
 import com.sever0x.bookstore.proto.*;
-import com.sever0x.bookstore.repository.BookRepository;
 import org.citrusframework.TestCaseRunner;
 import org.citrusframework.annotations.CitrusResource;
 import org.citrusframework.annotations.CitrusTest;
 import org.citrusframework.junit.jupiter.CitrusExtension;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,9 +23,10 @@ import javax.sql.DataSource;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.citrusframework.actions.ExecuteSQLQueryAction.Builder.query;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 
+/**
+ * Runs the shared service tests on PostgreSQL through JPA, and checks the rows written.
+ */
 @SpringBootTest(
         properties = {
                 "grpc.server.inProcessName=test",
@@ -38,7 +37,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 @Testcontainers
 @ExtendWith(CitrusExtension.class)
 @Import(GrpcClientTestConfiguration.class)
-class BookServiceIntegrationTest {
+class BookServiceIntegrationTest extends AbstractBookServiceIntegrationTest {
 
     @Container
     @ServiceConnection
@@ -53,9 +52,6 @@ class BookServiceIntegrationTest {
 
     private final String dataSourceUrl = postgres.getJdbcUrl();
 
-    @Autowired
-    private BookRepository bookRepository;
-
     @Autowired
     private BookServiceGrpc.BookServiceBlockingStub client;
 
@@ -66,120 +62,50 @@ class BookServiceIntegrationTest {
         dynamicPropertyRegistry.add("spring.datasource.password", postgres::getPassword);
     }
 
+    @Override
+    protected BookServiceGrpc.BookServiceBlockingStub client() {
+        return client;
+    }
+
     @Test
     void connectionEstablished() {
         assertThat(postgres.isCreated()).isTrue();
         assertThat(postgres.isRunning()).isTrue();
     }
 
-    @BeforeEach
-    void setUp() {
-        bookRepository.deleteAll();
-    }
-
     @Test
     @CitrusTest
-    void testAddBook(@CitrusResource TestCaseRunner runner) {
-        AddBookRequest request = AddBookRequest.newBuilder()
-                .setTitle("New Book Title")
-                .setAuthor("New Book Author")
-                .setIsbn("1234567890123")
-                .setQuantity(5)
-                .build();
-
-        BookResponse response = client.addBook(request);
-        assertEquals(request.getTitle(), response.getTitle());
-        assertEquals(request.getAuthor(), response.getAuthor());
-        assertEquals(request.getIsbn(), response.getIsbn());
-        assertEquals(request.getQuantity(), response.getQuantity());
+    void testBookRows(@CitrusResource TestCaseRunner runner) {
+        AddBookRequest addRequest = addRequest("Old Book Title", "0123456789012", 10);
+        BookResponse book = client.addBook(addRequest);
 
         runner.$(query(dataSource())
-                .statement("SELECT count(*) FROM books WHERE id = '" + response.getId() +"'")
-                .validate("count", "1"));
-    }
-
-    @Test
-    @CitrusTest
-    void testGetBook(@CitrusResource TestCaseRunner runner) {
-        AddBookRequest addBookRequest = AddBookRequest.newBuilder()
-                .setTitle("Book Title")
-                .setAuthor("Book Author")
-                .setIsbn("1234567890123")
-                .setQuantity(13)
-                .build();
-        BookResponse book = client.addBook(addBookRequest);
-
-        GetBookRequest request = GetBookRequest.newBuilder()
-                .setId(book.getId())
-                .build();
-
-        BookResponse response = client.getBook(request);
-        assertEquals(request.getId(), response.getId());
-
-        runner.$(query(dataSource())
-                .statement("SELECT title, author, isbn, quantity FROM books WHERE id = '" + response.getId() + "'")
-                .validate("title", addBookRequest.getTitle())
-                .validate("author", addBookRequest.getAuthor())
-                .validate("isbn", addBookRequest.getIsbn())
-                .validate("quantity", String.valueOf(addBookRequest.getQuantity()))
-        );
-    }
-
-    @Test
-    @CitrusTest
-    void testUpdateBook(@CitrusResource TestCaseRunner runner) {
-        AddBookRequest addRequest = AddBookRequest.newBuilder()
-                .setTitle("Old Book Title")
-                .setAuthor("Old Book Author")
-                .setIsbn("0123456789012")
-                .setQuantity(10)
-                .build();
-        BookResponse bookResponse = client.addBook(addRequest);
+                .statement("SELECT title, author, isbn, quantity FROM books WHERE id = '" + book.getId() + "'")
+                .validate("title", addRequest.getTitle())
+                .validate("author", addRequest.getAuthor())
+                .validate("isbn", addRequest.getIsbn())
+                .validate("quantity", String.valueOf(addRequest.getQuantity())));
 
         UpdateBookRequest updateRequest = UpdateBookRequest.newBuilder()
-                .setId(bookResponse.getId())
+                .setId(book.getId())
                 .setTitle("Updated Book Title")
                 .setAuthor("Updated Book Author")
                 .setIsbn("9876543210987")
                 .setQuantity(15)
                 .build();
-
-        BookResponse response = client.updateBook(updateRequest);
-        assertEquals(updateRequest.getId(), response.getId());
-        assertEquals(updateRequest.getTitle(), response.getTitle());
-        assertEquals(updateRequest.getAuthor(), response.getAuthor());
-        assertEquals(updateRequest.getIsbn(), response.getIsbn());
-        assertEquals(updateRequest.getQuantity(), response.getQuantity());
+        client.updateBook(updateRequest);
 
         runner.$(query(dataSource())
-                .statement("SELECT title, author, isbn, quantity FROM books WHERE id = '" + response.getId() + "'")
+                .statement("SELECT title, author, isbn, quantity FROM books WHERE id = '" + book.getId() + "'")
                 .validate("title", updateRequest.getTitle())
                 .validate("author", updateRequest.getAuthor())
                 .validate("isbn", updateRequest.getIsbn())
                 .validate("quantity", String.valueOf(updateRequest.getQuantity())));
-    }
-
-    @Test
-    @CitrusTest
-    void testDeleteBook(@CitrusResource TestCaseRunner runner) {
-        AddBookRequest addRequest = AddBookRequest.newBuilder()
-                .setTitle("Book to Delete")
-                .setAuthor("Delete Author")
-                .setIsbn("1111111111111")
-                .setQuantity(20)
-                .build();
-        BookResponse bookResponse = client.addBook(addRequest);
-
-        DeleteBookRequest deleteRequest = DeleteBookRequest.newBuilder()
-                .setId(bookResponse.getId())
-                .build();
 
-        DeleteBookResponse response = client.deleteBook(deleteRequest);
-        assertEquals(deleteRequest.getId(), response.getId());
-        assertTrue(response.getSuccess());
+        client.deleteBook(DeleteBookRequest.newBuilder().setId(book.getId()).build());
 
         runner.$(query(dataSource())
-                .statement("SELECT COUNT(*) FROM books WHERE id = '" + response.getId() + "'")
+                .statement("SELECT COUNT(*) FROM books WHERE id = '" + book.getId() + "'")
                 .validate("count", "0"));
     }
 
@@ -191,4 +117,4 @@ class BookServiceIntegrationTest {
         dataSource.setPassword("test");
         return dataSource;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package com.sever0x.bookstore.service;
+
+import com.sever0x.bookstore.proto.BookServiceGrpc;
+import com.sever0x.bookstore.storage.EmbeddedBookRepository;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the shared service tests on the embedded storage engine, without a database.
+ */
+@SpringBootTest(properties = {
+        "spring.main.web-application-type=none",
+        "grpc.server.port=-1",
+        "grpc.server.in-process-name=embedded-storage-test"
+})
+@ActiveProfiles("embedded")
+class EmbeddedBookServiceIntegrationTest extends AbstractBookServiceIntegrationTest {
+
+    private static final Path DIRECTORY = createDirectory();
+
+    private ManagedChannel channel;
+
+    private BookServiceGrpc.BookServiceBlockingStub client;
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("bookstore.storage.embedded.directory", DIRECTORY::toString);
+        registry.add("bookstore.storage.embedded.segment-size", () -> "1MB");
+    }
+
+    @BeforeEach
+    void setUp() {
+        channel = InProcessChannelBuilder.forName("embedded-storage-test").build();
+        client = BookServiceGrpc.newBlockingStub(channel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+    }
+
+    @Override
+    protected BookServiceGrpc.BookServiceBlockingStub client() {
+        return client;
+    }
+
+    @Test
+    void bookStorage_shouldBeEmbedded() {
+        assertTrue(bookStorage instanceof EmbeddedBookRepository);
+    }
+
+    private static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("embedded-storage-test");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.sever0x.bookstore.shard;
+
+import com.sever0x.bookstore.model.Book;
+import com.sever0x.bookstore.repository.BookRepository;
+import com.sever0x.bookstore.repository.BookStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Spreads books over three embedded databases.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.main.web-application-type=none",
+        "grpc.server.port=-1",
+        "grpc.server.in-process-name=sharded-book-repository-test",
+        "bookstore.sharding.enabled=true",
+        "bookstore.sharding.shards[0].url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "bookstore.sharding.shards[1].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "bookstore.sharding.shards[2].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"
+})
+class ShardedBookRepositoryTest {
+
+    @Autowired
+    private BookStorage bookStorage;
+
+    @Autowired
+    @Qualifier("bookRepository")
+    private BookRepository shardRepository;
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        shards.fanOut(false, shard -> {
+            shardRepository.deleteAllInBatch();
+            return null;
+        });
+        // statements outside a pinned shard run on the first shard, which holds the ISBNs
+        new JdbcTemplate(dataSource).update("delete from " + IsbnDirectory.TABLE);
+    }
+
+    @Test
+    void saveAll_shouldPlaceEveryBookOnItsShard() {
+        List<Book> books = bookStorage.saveAll(books(60));
+
+        long total = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            long count = shards.execute(shard, true, shardRepository::count);
+            assertTrue(count > 0, "shard " + shard + " is empty");
+            total += count;
+        }
+        assertEquals(60, total);
+        for (Book book : books) {
+            assertTrue(shards.execute(shards.shardOf(book.getId()), true, () -> shardRepository.existsById(book.getId())));
+        }
+        assertEquals(60, bookStorage.count());
+    }
+
+    @Test
+    void findAll_shouldMergePagesOfAllShards() {
+        List<Book> books = books(30);
+        Collections.shuffle(books, new Random(42));
+        bookStorage.saveAll(books);
+
+        Page<Book> page = bookStorage.findAll(PageRequest.of(1, 7, Sort.by("title")));
+
+        assertEquals(30, page.getTotalElements());
+        assertEquals(IntStream.range(7, 14).mapToObj(ShardedBookRepositoryTest::title).toList(),
+                page.getContent().stream().map(Book::getTitle).toList());
+    }
+
+    @Test
+    void findAllBy_shouldScrollOverAllShards() {
+        bookStorage.saveAll(books(30));
+        Sort sort = Sort.by(Sort.Direction.DESC, "quantity", "id");
+
+        List<Integer> quantities = new ArrayList<>();
+        ScrollPosition position = ScrollPosition.keyset();
+        Window<Book> window;
+        do {
+            window = bookStorage.findAllBy(position, sort, Limit.of(4));
+            window.forEach(book -> quantities.add(book.getQuantity()));
+            if (!window.isEmpty()) {
+                position = window.positionAt(window.size() - 1);
+            }
+        } while (window.hasNext());
+
+        List<Integer> expected = IntStream.range(0, 30).boxed().sorted(Comparator.reverseOrder()).toList();
+        assertEquals(expected, quantities);
+    }
+
+    @Test
+    void saveAndFlush_shouldRejectIsbnOfBookOnAnotherShard() {
+        Book first = new Book(idOnShard(1), "First", "Jane Doe", "9780000000001", 1);
+        Book second = new Book(idOnShard(2), "Second", "John Roe", "9780000000001", 2);
+        bookStorage.saveAndFlush(first);
+
+        assertThrows(DataIntegrityViolationException.class, () -> bookStorage.saveAndFlush(second));
+
+        assertEquals(1, bookStorage.count());
+        assertEquals(first.getId(), bookStorage.findByIsbn("9780000000001").orElseThrow().getId());
+        assertTrue(bookStorage.existsByIsbnAndIdNot("9780000000001", second.getId()));
+        assertFalse(bookStorage.existsByIsbnAndIdNot("9780000000001", first.getId()));
+    }
+
+    @Test
+    void saveAndFlush_shouldReleaseIsbnWhenTransactionRollsBack() {
+        Book book = new Book(idOnShard(1), "First", "Jane Doe", "9780000000001", 1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            bookStorage.saveAndFlush(book);
+            status.setRollbackOnly();
+        });
+
+        assertFalse(bookStorage.existsById(book.getId()));
+        Book other = bookStorage.saveAndFlush(new Book(idOnShard(2), "Second", "John Roe", "9780000000001", 2));
+        assertEquals(other.getId(), bookStorage.findByIsbn("9780000000001").orElseThrow().getId());
+    }
+
+    @Test
+    void transaction_shouldCommitOrRollBackAllWorkOnTheShardOfTheBook() {
+        Book book = bookStorage.saveAndFlush(new Book(idOnShard(1), "Title", "Jane Doe", "9780000000001", 1));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            assertEquals(1, bookStorage.incrementVersion(book.getId()));
+            assertEquals(1, bookStorage.adjustQuantity(book.getId(), 4));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1L, bookStorage.findVersionById(book.getId()).orElseThrow());
+        assertEquals(1, bookStorage.findQuantityById(book.getId()).orElseThrow());
+    }
+
+    @Test
+    void rebalance_shouldMoveMisplacedBooks() {
+        Book book = books(1).get(0);
+        book.assignId();
+        int home = shards.shardOf(book.getId());
+        int misplaced = (home + 1) % shards.count();
+        shards.execute(misplaced, false, () -> shardRepository.save(book));
+
+        assertEquals(1, rebalancer.rebalance());
+
+        assertTrue(shards.execute(home, true, () -> shardRepository.existsById(book.getId())));
+        assertFalse(shards.execute(misplaced, true, () -> shardRepository.existsById(book.getId())));
+        assertTrue(bookStorage.findById(book.getId()).isPresent());
+    }
+
+    private UUID idOnShard(int shard) {
+        while (true) {
+            UUID id = UUID.randomUUID();
+            if (shards.shardOf(id) == shard) {
+                return id;
+            }
+        }
+    }
+
+    private static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new Book(null, title(i), "Author " + i, Long.toString(9_780_000_000_000L + i), i));
+        }
+        return books;
+    }
+
+    private static String title(int i) {
+        return String.format("Title %02d", i);
+    }
+}
@@ -0,0 +1,87 @@
+package com.sever0x.bookstore.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CatalogSnapshotTest {
+
+    private static final Instant CREATED_AT = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void open_shouldReadWrittenBooks() throws IOException {
+        Path path = directory.resolve("catalog.snapshot");
+        List<CatalogSnapshot.Entry> books = List.of(
+                new CatalogSnapshot.Entry(UUID.randomUUID(), "Title", "Author", "9780000000001", 5, 3, true),
+                new CatalogSnapshot.Entry(UUID.randomUUID(), "Čapek – Válka s mloky", "Karel Čapek", "9780000000002", 0, 1, false),
+                new CatalogSnapshot.Entry(UUID.randomUUID(), null, "Author", null, null, 1, false));
+        write(path, books);
+
+        try (CatalogSnapshot snapshot = CatalogSnapshot.open(path)) {
+            assertEquals(CREATED_AT, snapshot.createdAt());
+            assertEquals(3, snapshot.size());
+            assertEquals(books, read(snapshot));
+        }
+    }
+
+    @Test
+    void open_shouldRejectCorruptSnapshot() throws IOException {
+        Path path = directory.resolve("catalog.snapshot");
+        write(path, List.of(new CatalogSnapshot.Entry(UUID.randomUUID(), "Title", "Author", "9780000000001", 5, 1, false)));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), channel.size() - 1);
+        }
+
+        assertThrows(IOException.class, () -> CatalogSnapshot.open(path));
+    }
+
+    @Test
+    void writer_shouldKeepPreviousSnapshotUntilCommitted() throws IOException {
+        Path path = directory.resolve("catalog.snapshot");
+        List<CatalogSnapshot.Entry> books =
+                List.of(new CatalogSnapshot.Entry(UUID.randomUUID(), "Title", "Author", "9780000000001", 5, 1, false));
+        write(path, books);
+
+        try (CatalogSnapshot.Writer writer = CatalogSnapshot.writer(path, Instant.now())) {
+            writer.append(UUID.randomUUID(), "Other", "Author", "9780000000002", 1, 1, false);
+        }
+
+        try (CatalogSnapshot snapshot = CatalogSnapshot.open(path);
+             Stream<Path> files = Files.list(directory)) {
+            assertEquals(books, read(snapshot));
+            assertEquals(List.of(path), files.toList());
+        }
+    }
+
+    private static void write(Path path, List<CatalogSnapshot.Entry> books) throws IOException {
+        try (CatalogSnapshot.Writer writer = CatalogSnapshot.writer(path, CREATED_AT)) {
+            for (CatalogSnapshot.Entry book : books) {
+                writer.append(book.id(), book.title(), book.author(), book.isbn(), book.quantity(), book.version(), book.hot());
+            }
+            writer.commit();
+        }
+    }
+
+    private static List<CatalogSnapshot.Entry> read(CatalogSnapshot snapshot) throws IOException {
+        List<CatalogSnapshot.Entry> books = new ArrayList<>();
+        snapshot.forEach(books::add);
+        return books;
+    }
+}
@@ -0,0 +1,126 @@
+package com.sever0x.bookstore.storage;
+
+import com.sever0x.bookstore.model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void open_shouldRecoverChangesOfPreviousRun() throws IOException {
+        Book kept = book("9780000000001", 5);
+        Book deleted = book("9780000000002", 7);
+        try (BookStore store = open()) {
+            store.putAll(List.of(kept, deleted));
+            kept.setTitle("Čapek – Válka s mloky");
+            store.put(kept);
+            store.addQuantity(kept.getId(), -2, 1, null);
+            store.deleteAll(List.of(deleted.getId()));
+        }
+
+        try (BookStore store = open()) {
+            assertEquals(1, store.size());
+            assertEquals(fields(kept.getId(), "Čapek – Válka s mloky", "9780000000001", 3), fields(store.get(kept.getId()).orElseThrow()));
+            assertEquals(2L, store.version(kept.getId()).orElseThrow());
+            assertFalse(store.contains(deleted.getId()));
+            assertTrue(store.findByIsbn("9780000000002").isEmpty());
+            assertThrows(DataIntegrityViolationException.class, () -> store.put(book("9780000000001", 1)));
+        }
+    }
+
+    @Test
+    void open_shouldDiscardTornRecord() throws IOException {
+        Book first = book("9780000000001", 1);
+        Book torn = book("9780000000002", 2);
+        try (BookStore store = open()) {
+            store.put(first);
+            store.put(torn);
+        }
+        // corrupt the last written byte, as if the record had not reached the disk completely
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        int last = bytes.length - 1;
+        while (bytes[last] == 0) {
+            last--;
+        }
+        bytes[last] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        Book next = book("9780000000003", 3);
+        try (BookStore store = open()) {
+            assertTrue(store.contains(first.getId()));
+            assertFalse(store.contains(torn.getId()));
+            store.put(next);
+        }
+        try (BookStore store = open()) {
+            assertEquals(2, store.size());
+            assertTrue(store.contains(next.getId()));
+        }
+    }
+
+    @Test
+    void compact_shouldDeleteOutdatedSegments() throws IOException {
+        Book book = book("9780000000001", 0);
+        Book deleted = book("9780000000002", 0);
+        book.setTitle("x".repeat(1000));
+        try (BookStore store = open()) {
+            store.put(deleted);
+            for (int i = 0; i < 3000; i++) {
+                book.setQuantity(i);
+                store.put(book);
+            }
+            store.deleteAll(List.of(deleted.getId()));
+            int segmentsBefore = segments().size();
+            assertTrue(segmentsBefore > 2);
+            assertTrue(store.garbageRatio() > 0.9);
+
+            assertTrue(store.compact(0.5) > 0);
+
+            assertTrue(segments().size() < segmentsBefore);
+            assertEquals(0, store.garbageRatio());
+            assertEquals(2999, store.quantity(book.getId()).orElseThrow());
+        }
+        try (BookStore store = open()) {
+            assertEquals(1, store.size());
+            assertEquals(2999, store.quantity(book.getId()).orElseThrow());
+        }
+    }
+
+    private BookStore open() throws IOException {
+        return BookStore.open(directory, BookStore.MIN_SEGMENT_SIZE, true);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static Book book(String isbn, int quantity) {
+        return new Book(UUID.randomUUID(), "Title", "Author", isbn, quantity);
+    }
+
+    private static List<Object> fields(Book book) {
+        return fields(book.getId(), book.getTitle(), book.getIsbn(), book.getQuantity());
+    }
+
+    private static List<Object> fields(UUID id, String title, String isbn, Integer quantity) {
+        return List.of(id, title, isbn, quantity);
+    }
+}